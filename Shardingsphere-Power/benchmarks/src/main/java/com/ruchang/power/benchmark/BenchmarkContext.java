@@ -0,0 +1,55 @@
+package com.ruchang.power.benchmark;
+
+import com.ruchang.power.ShardingpherePowerApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 基准测试用的 Spring 上下文
+ * 以 h2、bench profile 启动订单服务（不启动 Web 容器），数据源为内存 H2（见主工程 test-jar 中的 application-h2.yml）
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * 启动订单服务上下文，args 为覆盖配置的命令行参数（--key=value）
+     */
+    public static ConfigurableApplicationContext start(String... args) {
+        return new SpringApplicationBuilder(ShardingpherePowerApplication.class)
+                .profiles("h2", "bench")
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    /**
+     * 启动带 Web 容器（随机端口）的订单服务上下文，用于经过 HTTP 的基准测试
+     */
+    public static ConfigurableApplicationContext startServer(String... args) {
+        return new SpringApplicationBuilder(ShardingpherePowerApplication.class)
+                .profiles("h2", "bench")
+                .properties("server.port=0")
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    /**
+     * Web 容器实际监听的端口
+     */
+    public static int getServerPort(ConfigurableApplicationContext context) {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    /**
+     * 清空所有分片上的订单及用户汇总数据
+     */
+    public static void clearOrders(ConfigurableApplicationContext context) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM t_order");
+        jdbcTemplate.update("DELETE FROM t_user_order_summary");
+    }
+}
@@ -0,0 +1,78 @@
+package com.ruchang.power.benchmark;
+
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量下单吞吐：逐行 createOrder 与按分片分组的多行 INSERT（createOrders）对比
+ * 每次调用写入 batchSize 个订单，结果为每秒调用次数，乘以 batchSize 即每秒订单数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderBulkInsertBenchmark {
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private List<OrderCreateRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        orderService = context.getBean(OrderService.class);
+        requests = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            requests.add(new OrderCreateRequest((long) i % 64, "iPhone 15", new BigDecimal("5999.00")));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearOrders() {
+        BenchmarkContext.clearOrders(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void perRow(Blackhole blackhole) {
+        for (OrderCreateRequest each : requests) {
+            blackhole.consume(orderService.createOrder(each.getUserId(), each.getProductName(), each.getAmount()));
+        }
+    }
+
+    @Benchmark
+    public void bulk(Blackhole blackhole) {
+        blackhole.consume(orderService.createOrders(requests));
+    }
+}
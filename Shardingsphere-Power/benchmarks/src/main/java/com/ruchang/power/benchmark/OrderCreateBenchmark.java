@@ -0,0 +1,61 @@
+package com.ruchang.power.benchmark;
+
+import com.ruchang.power.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单笔下单耗时：OrderService.createOrder 完整链路（主键、订单号生成，分片路由，INSERT，用户汇总 upsert）
+ * 加 -t 4 可查看并发下单的表现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderCreateBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("5999.00");
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        orderService = context.getBean(OrderService.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearOrders() {
+        BenchmarkContext.clearOrders(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object createOrder() {
+        long userId = ThreadLocalRandom.current().nextLong(1024);
+        return orderService.createOrder(userId, "iPhone 15", AMOUNT);
+    }
+}
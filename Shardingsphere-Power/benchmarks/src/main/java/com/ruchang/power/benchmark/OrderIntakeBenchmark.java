@@ -0,0 +1,100 @@
+package com.ruchang.power.benchmark;
+
+import com.ruchang.power.service.OrderIntakePipeline;
+import com.ruchang.power.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单吞吐（订单/秒）：同步下单（每笔一个事务）与异步组提交对比
+ * mode=SYNC 为 OrderService.createOrder；COMMITTED 入队并等待所在批次提交；ACCEPTED 只入队，队列满时让出 CPU 重试，
+ * 稳定后等于写线程的组提交吞吐。并发线程数决定每批能凑到的订单数，可用 -t 调整
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class OrderIntakeBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("5999.00");
+
+    @Param({"SYNC", "COMMITTED", "ACCEPTED"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private OrderIntakePipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--order.intake.enabled=true");
+        orderService = context.getBean(OrderService.class);
+        pipeline = context.getBean(OrderIntakePipeline.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearOrders() throws InterruptedException {
+        awaitDrained();
+        BenchmarkContext.clearOrders(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        awaitDrained();
+        context.close();
+    }
+
+    @Benchmark
+    public Object createOrder() throws Exception {
+        long userId = ThreadLocalRandom.current().nextLong(1024);
+        if ("SYNC".equals(mode)) {
+            return orderService.createOrder(userId, "iPhone 15", AMOUNT);
+        }
+        while (true) {
+            try {
+                OrderIntakePipeline.Submission submission = pipeline.submit(userId, "iPhone 15", AMOUNT);
+                return "COMMITTED".equals(mode) ? submission.getFuture().get() : submission.getOrder();
+            } catch (RejectedExecutionException e) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 等待已受理的订单写完，避免上一轮的订单落到下一轮
+     */
+    private void awaitDrained() throws InterruptedException {
+        while (true) {
+            Map<String, Object> status = pipeline.getStatus();
+            long done = (Long) status.get("committed") + (Long) status.get("failed");
+            if (done >= (Long) status.get("accepted")) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ruchang.power.benchmark;
+
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.dto.OrderCursorPage;
+import com.ruchang.power.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户订单翻页：offset 分页（getUserOrdersPage）与游标分页（getUserOrdersScroll）读取同一页的耗时对比
+ * 单个用户 2000 笔订单，每页 10 条，page 为页码
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderPagingBenchmark {
+
+    private static final long USER_ID = 42L;
+
+    private static final int ORDERS = 2000;
+
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"0", "10", "150"})
+    private int page;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    /**
+     * 目标页的游标（上一页的 nextCursor），第一页为 null
+     */
+    private String cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        orderService = context.getBean(OrderService.class);
+        BenchmarkContext.clearOrders(context);
+
+        List<OrderCreateRequest> requests = new ArrayList<>(ORDERS / 10);
+        for (int i = 0; i < 10; i++) {
+            requests.clear();
+            for (int j = 0; j < ORDERS / 10; j++) {
+                requests.add(new OrderCreateRequest(USER_ID, "iPhone 15", new BigDecimal("5999.00")));
+            }
+            orderService.createOrders(requests);
+        }
+
+        for (int i = 0; i < page; i++) {
+            OrderCursorPage result = orderService.getUserOrdersScroll(USER_ID, cursor, PAGE_SIZE);
+            cursor = result.getNextCursor();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object offset() {
+        return orderService.getUserOrdersPage(USER_ID, page, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Object keyset() {
+        return orderService.getUserOrdersScroll(USER_ID, cursor, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,120 @@
+package com.ruchang.power.benchmark;
+
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条与按用户查询：
+ * - findByOrderNoGene：新订单号，按基因路由到单表
+ * - findByOrderNoLegacy：旧订单号（无基因），广播到全部物理表
+ * - findByUserId：按分库键路由到单库
+ * - findById：订单ID带用户基因，路由到单表
+ * nearCache=false 时每次查询都访问数据库（bench profile 默认关闭订单本地缓存），true 时单条查询基本命中本地缓存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderQueryBenchmark {
+
+    private static final int USERS = 64;
+
+    private static final int ORDERS_PER_USER = 50;
+
+    private static final String LEGACY_INSERT = "INSERT INTO t_order "
+            + "(order_id, order_no, user_id, product_name, amount, status, create_time, update_time) "
+            + "VALUES (?, ?, ?, ?, ?, 1, ?, ?)";
+
+    @Param({"false", "true"})
+    private boolean nearCache;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private final List<Order> orders = new ArrayList<>();
+
+    private final List<String> legacyOrderNos = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--order.near-cache.enabled=" + nearCache);
+        orderService = context.getBean(OrderService.class);
+        BenchmarkContext.clearOrders(context);
+
+        List<OrderCreateRequest> requests = new ArrayList<>(USERS);
+        for (int i = 0; i < ORDERS_PER_USER; i++) {
+            requests.clear();
+            for (long userId = 0; userId < USERS; userId++) {
+                requests.add(new OrderCreateRequest(userId, "iPhone 15", new BigDecimal("5999.00")));
+            }
+            orders.addAll(orderService.createOrders(requests));
+        }
+
+        // 旧格式数据：订单ID不带基因，订单号25位，按订单号查询只能广播
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> args = new ArrayList<>(USERS * ORDERS_PER_USER);
+        for (int i = 0; i < USERS * ORDERS_PER_USER; i++) {
+            String orderNo = String.format("ORD20240101000000%08X", i);
+            legacyOrderNos.add(orderNo);
+            args.add(new Object[]{1_000_000L + i, orderNo, (long) i % USERS, "iPad Air", new BigDecimal("4599.00"),
+                    now, now});
+        }
+        jdbcTemplate.batchUpdate(LEGACY_INSERT, args);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findByOrderNoGene() {
+        return orderService.getOrderByNo(randomOrder().getOrderNo());
+    }
+
+    @Benchmark
+    public Object findByOrderNoLegacy() {
+        return orderService.getOrderByNo(legacyOrderNos.get(ThreadLocalRandom.current().nextInt(legacyOrderNos.size())));
+    }
+
+    @Benchmark
+    public Object findByUserId() {
+        return orderService.getUserOrders(ThreadLocalRandom.current().nextLong(USERS));
+    }
+
+    @Benchmark
+    public Object findById() {
+        return orderService.getOrderById(randomOrder().getOrderId());
+    }
+
+    private Order randomOrder() {
+        return orders.get(ThreadLocalRandom.current().nextInt(orders.size()));
+    }
+}
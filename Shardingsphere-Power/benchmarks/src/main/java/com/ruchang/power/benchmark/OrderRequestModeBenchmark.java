@@ -0,0 +1,93 @@
+package com.ruchang.power.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求执行模式基线：平台线程（Tomcat 默认 200 线程）下的 p99 延迟和并发上限
+ * 256 个客户端线程经 HTTP 按旧订单号查询（广播到全部物理表），SampleTime 模式输出 p99 延迟，
+ * 结束时打印服务端同时处理中的请求数峰值（http.server.requests.active.max）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(1)
+public class OrderRequestModeBenchmark {
+
+    private static final int ORDERS = 4096;
+
+    private static final String LEGACY_INSERT = "INSERT INTO t_order "
+            + "(order_id, order_no, user_id, product_name, amount, status, create_time, update_time) "
+            + "VALUES (?, ?, ?, ?, ?, 1, ?, ?)";
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private String baseUrl;
+
+    private final List<String> orderNos = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.startServer();
+        BenchmarkContext.clearOrders(context);
+
+        // 旧格式订单号（无基因），按订单号查询广播到全部物理表
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> args = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            String orderNo = String.format("ORD20240101000000%08X", i);
+            orderNos.add(orderNo);
+            args.add(new Object[]{1_000_000L + i, orderNo, (long) i % 64, "iPad Air", new BigDecimal("4599.00"),
+                    now, now});
+        }
+        jdbcTemplate.batchUpdate(LEGACY_INSERT, args);
+
+        client = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + BenchmarkContext.getServerPort(context) + "/api/orders/no/";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        double peak = context.getBean(MeterRegistry.class).get("http.server.requests.active.max").gauge().value();
+        System.out.printf("%nmax concurrent requests=%.0f%n", peak);
+        context.close();
+    }
+
+    @Benchmark
+    public int findByOrderNoBroadcast() throws Exception {
+        String orderNo = orderNos.get(ThreadLocalRandom.current().nextInt(orderNos.size()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + orderNo)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,127 @@
+package com.ruchang.power.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ruchang.power.controller.OrderJsonWriter;
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.dto.OrderView;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.repository.OrderRepository;
+import com.ruchang.power.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户订单列表响应：查询 + JSON 输出的耗时和每次请求的分配量
+ * entity 为原做法（加载托管实体，HashMap 包装后由 ObjectMapper 反射序列化），
+ * view 为构造表达式查询只读视图，由 OrderJsonWriter 直接写出。
+ * 加 -prof gc 查看 gc.alloc.rate.norm（每次请求分配的字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderResponseBenchmark {
+
+    private static final long USER_ID = 42L;
+
+    /**
+     * 用户的订单数
+     */
+    @Param({"10", "100"})
+    private int orders;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderRepository orderRepository;
+
+    private ObjectMapper objectMapper;
+
+    private OrderJsonWriter orderJsonWriter;
+
+    private TransactionTemplate readOnly;
+
+    /**
+     * 丢弃输出，close 后仍可继续写（ObjectMapper、JsonGenerator 结束时都会关闭目标流）
+     */
+    private final OutputStream out = new OutputStream() {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        orderRepository = context.getBean(OrderRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        orderJsonWriter = context.getBean(OrderJsonWriter.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        BenchmarkContext.clearOrders(context);
+
+        List<OrderCreateRequest> requests = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            requests.add(new OrderCreateRequest(USER_ID, "iPhone 15", new BigDecimal("5999.00")));
+        }
+        context.getBean(OrderService.class).createOrders(requests);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object entity() throws IOException {
+        List<Order> data = readOnly.execute(status -> orderRepository.findByUserId(USER_ID));
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("userId", USER_ID);
+        result.put("total", data.size());
+        result.put("data", data);
+        objectMapper.writeValue(out, result);
+        return data;
+    }
+
+    @Benchmark
+    public Object view() throws IOException {
+        List<OrderView> data = readOnly.execute(status -> orderRepository.findViewsByUserId(USER_ID));
+        JsonGenerator json = orderJsonWriter.begin(out);
+        json.writeNumberField("userId", USER_ID);
+        json.writeNumberField("total", data.size());
+        orderJsonWriter.writeData(json, data);
+        orderJsonWriter.end(json);
+        return data;
+    }
+}
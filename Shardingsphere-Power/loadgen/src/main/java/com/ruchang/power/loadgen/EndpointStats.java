@@ -0,0 +1,79 @@
+package com.ruchang.power.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个接口的压测统计，延迟单位为微秒
+ * 非 2xx 响应、超时和连接失败都记为 errors（延迟同样计入直方图），超出 max-in-flight 未发送的记为 dropped
+ */
+final class EndpointStats {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    void record(long latencyNanos, boolean success) {
+        histogram.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    boolean isEmpty() {
+        return histogram.getTotalCount() == 0 && dropped.sum() == 0;
+    }
+
+    /**
+     * 写入报告的统计，毫秒
+     */
+    Map<String, Object> toReport(double seconds) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long count = histogram.getTotalCount();
+        result.put("count", count);
+        result.put("errors", errors.sum());
+        result.put("dropped", dropped.sum());
+        result.put("throughput", round(count / seconds));
+        result.put("mean", round(histogram.getMean() / 1000));
+        result.put("p50", millis(50));
+        result.put("p90", millis(90));
+        result.put("p99", millis(99));
+        result.put("p999", millis(99.9));
+        result.put("max", round(histogram.getMaxValue() / 1000.0));
+        result.put("histogram", encode());
+        return result;
+    }
+
+    private double millis(double percentile) {
+        return round(histogram.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    /**
+     * 压缩后 Base64 编码的完整直方图，可用 Histogram.decodeFromCompressedByteBuffer 还原后重新分析
+     */
+    private String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
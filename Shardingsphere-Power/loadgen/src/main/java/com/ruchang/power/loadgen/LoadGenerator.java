@@ -0,0 +1,231 @@
+package com.ruchang.power.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ruchang.power.ShardingpherePowerApplication;
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端压测入口
+ * 以 h2、loadgen profile（内存 H2 代替两个分片库）在随机端口启动订单服务，预先写入 seed-orders 个订单，
+ * 然后按 rate 的到达率开环发送混合请求：请求按计划时间发出，不等待前一个请求返回，
+ * 延迟从计划发送时间算起，服务变慢时排队的时间同样计入（避免协调遗漏）
+ */
+public final class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    private final LoadOptions options;
+
+    private final String baseUrl;
+
+    private final Workload workload;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+
+    private final Semaphore inFlight;
+
+    /**
+     * 正式压测开始的计划时间，之前发出的请求属于预热
+     */
+    private long measureStartNanos = Long.MAX_VALUE;
+
+    private LoadGenerator(LoadOptions options, int port) {
+        this.options = options;
+        this.baseUrl = "http://127.0.0.1:" + port;
+        this.workload = new Workload(options.getUsers());
+        this.inFlight = new Semaphore(options.getMaxInFlight());
+        for (Operation each : options.getMix().keySet()) {
+            stats.put(each, new EndpointStats());
+        }
+        // 需要已有订单的请求在没有可用订单时改为下单
+        stats.computeIfAbsent(Operation.CREATE, operation -> new EndpointStats());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        Map<Operation, Integer> mix = options.getMix();
+        LoadReport baseline = options.getBaseline() == null ? null : LoadReport.read(options.getBaseline());
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ShardingpherePowerApplication.class)
+                .profiles("h2", "loadgen")
+                .properties("server.port=0")
+                .logStartupInfo(false)
+                .run(options.getApplicationArgs());
+        LoadReport report;
+        try {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            LoadGenerator generator = new LoadGenerator(options, port);
+            generator.seed(context.getBean(OrderService.class));
+            report = LoadReport.of(options, generator.run(mix));
+        } finally {
+            context.close();
+        }
+        Path path = report.write(options.getReport());
+        // 控制台编码不一定是 UTF-8（例如经 exec 插件启动），统一按 UTF-8 输出
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        out.println();
+        out.print(report.format());
+        out.println("报告: " + path.toAbsolutePath());
+        if (baseline != null) {
+            out.println();
+            out.print(report.compare(baseline));
+        }
+    }
+
+    /**
+     * 预先写入订单，不经过 HTTP
+     */
+    private void seed(OrderService orderService) {
+        int remaining = options.getSeedOrders();
+        while (remaining > 0) {
+            int size = Math.min(SEED_BATCH_SIZE, remaining);
+            List<OrderCreateRequest> requests = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                requests.add(new OrderCreateRequest(workload.randomUser(), "seed",
+                        BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100, 10_000), 2)));
+            }
+            for (Order each : orderService.createOrders(requests)) {
+                workload.created(each.getOrderId(), each.getOrderNo(), each.getUserId());
+            }
+            remaining -= size;
+        }
+        log.info("已预先写入订单: {}", workload.size());
+    }
+
+    /**
+     * 按计划时间发送请求直到压测结束，再等待未返回的请求
+     */
+    private Map<String, Object> run(Map<Operation, Integer> mix) throws InterruptedException {
+        Operation[] operations = mix.keySet().toArray(new Operation[0]);
+        int[] cumulativeWeights = new int[operations.length];
+        int totalWeight = 0;
+        for (int i = 0; i < operations.length; i++) {
+            totalWeight += mix.get(operations[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRate();
+        boolean poisson = options.isPoisson();
+        long start = System.nanoTime();
+        measureStartNanos = start + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long end = measureStartNanos + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+        log.info("开始压测: rate={}/s, arrival={}, warmup={}s, duration={}s, mix={}", options.getRate(),
+                poisson ? "poisson" : "uniform", options.getWarmupSeconds(), options.getDurationSeconds(), mix);
+        double next = start;
+        while (next < end) {
+            long intended = (long) next;
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+                continue;
+            }
+            int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+            int index = 0;
+            while (cumulativeWeights[index] <= pick) {
+                index++;
+            }
+            send(operations[index], intended);
+            next += poisson ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos
+                    : meanIntervalNanos;
+        }
+        if (!inFlight.tryAcquire(options.getMaxInFlight(), DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("{} 秒后仍有 {} 个请求未返回", DRAIN_TIMEOUT_SECONDS,
+                    options.getMaxInFlight() - inFlight.availablePermits());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        stats.forEach((operation, each) -> {
+            if (mix.containsKey(operation) || !each.isEmpty()) {
+                result.put(operation.getName(), each.toReport(options.getDurationSeconds()));
+            }
+        });
+        return result;
+    }
+
+    private void send(Operation operation, long intended) {
+        HttpRequest request = operation.request(baseUrl, workload);
+        if (request == null) {
+            operation = Operation.CREATE;
+            request = operation.request(baseUrl, workload);
+        }
+        EndpointStats endpoint = stats.get(operation);
+        boolean measured = intended >= measureStartNanos;
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                endpoint.dropped();
+            }
+            return;
+        }
+        boolean create = operation == Operation.CREATE;
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            long latency = System.nanoTime() - intended;
+            boolean success = error == null && response.statusCode() / 100 == 2;
+            if (measured) {
+                endpoint.record(latency, success);
+            }
+            if (success && create) {
+                created(response);
+            }
+            inFlight.release();
+        });
+    }
+
+    /**
+     * 新订单加入后续支付、按订单号查询的候选
+     */
+    private void created(HttpResponse<String> response) {
+        try {
+            JsonNode json = MAPPER.readTree(response.body());
+            if (json.hasNonNull("orderId") && json.hasNonNull("orderNo")) {
+                workload.created(json.get("orderId").asLong(), json.get("orderNo").asText(),
+                        userId(response.request().uri().getRawQuery()));
+            }
+        } catch (Exception e) {
+            log.debug("解析下单响应失败: {}", response.body(), e);
+        }
+    }
+
+    private static long userId(String query) {
+        for (String each : query.split("&")) {
+            if (each.startsWith("userId=")) {
+                return Long.parseLong(each.substring("userId=".length()));
+            }
+        }
+        throw new IllegalArgumentException("下单请求缺少 userId: " + query);
+    }
+}
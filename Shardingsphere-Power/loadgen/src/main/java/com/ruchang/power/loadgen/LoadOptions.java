@@ -0,0 +1,149 @@
+package com.ruchang.power.loadgen;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行 --load.key=value，其余参数原样交给订单服务
+ *
+ * - rate：每秒发起的请求数（所有接口合计），按到达率开环发送，不等待上一个请求返回
+ * - arrival：到达间隔分布，poisson（指数分布，默认）或 uniform（固定间隔）
+ * - duration / warmup：正式压测、预热秒数，预热期间的延迟不计入报告
+ * - mix：各接口的请求占比，例如 create=20,pay=10,get-by-no=40,user-page=25,stats=5
+ * - users：下单、查询使用的用户ID范围 [0, users)
+ * - seed-orders：压测前预先写入的订单数，供支付、按订单号查询使用
+ * - max-in-flight：同时未返回的请求上限，超出时本次请求记为 dropped（服务已严重过载）
+ * - report / baseline：报告路径（默认 target/loadgen/report-时间.json）、对比的上次报告
+ * - label：报告中的标签，便于区分不同的配置
+ */
+public final class LoadOptions {
+
+    private static final String PREFIX = "--load.";
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    private final List<String> applicationArgs = new ArrayList<>();
+
+    private LoadOptions() {
+    }
+
+    public static LoadOptions parse(String... args) {
+        LoadOptions result = new LoadOptions();
+        for (String each : args) {
+            if (!each.startsWith(PREFIX)) {
+                result.applicationArgs.add(each);
+                continue;
+            }
+            int index = each.indexOf('=');
+            if (index < 0) {
+                throw new IllegalArgumentException("压测参数格式为 --load.key=value: " + each);
+            }
+            result.values.put(each.substring(PREFIX.length(), index), each.substring(index + 1));
+        }
+        return result;
+    }
+
+    public double getRate() {
+        return positive("rate", Double.parseDouble(get("rate", "50")));
+    }
+
+    public boolean isPoisson() {
+        String arrival = get("arrival", "poisson");
+        if (!"poisson".equals(arrival) && !"uniform".equals(arrival)) {
+            throw new IllegalArgumentException("load.arrival 只支持 poisson / uniform: " + arrival);
+        }
+        return "poisson".equals(arrival);
+    }
+
+    public int getDurationSeconds() {
+        return (int) positive("duration", Integer.parseInt(get("duration", "60")));
+    }
+
+    public int getWarmupSeconds() {
+        return Integer.parseInt(get("warmup", "10"));
+    }
+
+    public int getUsers() {
+        return (int) positive("users", Integer.parseInt(get("users", "1000")));
+    }
+
+    public int getSeedOrders() {
+        return Integer.parseInt(get("seed-orders", "5000"));
+    }
+
+    public int getMaxInFlight() {
+        return (int) positive("max-in-flight", Integer.parseInt(get("max-in-flight", "2000")));
+    }
+
+    public String getReport() {
+        return get("report", null);
+    }
+
+    public String getBaseline() {
+        return get("baseline", null);
+    }
+
+    public String getLabel() {
+        return get("label", "");
+    }
+
+    /**
+     * 各接口的请求占比
+     */
+    public Map<Operation, Integer> getMix() {
+        Map<Operation, Integer> result = new EnumMap<>(Operation.class);
+        for (String each : get("mix", "create=20,pay=10,get-by-no=40,user-page=25,stats=5").split(",")) {
+            String[] pair = each.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("load.mix 格式为 接口=占比,...: " + each);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                result.put(Operation.of(pair[0].trim()), weight);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("load.mix 至少需要一个接口");
+        }
+        return result;
+    }
+
+    /**
+     * 透传给订单服务的参数
+     */
+    public String[] getApplicationArgs() {
+        return applicationArgs.toArray(new String[0]);
+    }
+
+    /**
+     * 写入报告的全部压测参数（含默认值）
+     */
+    public Map<String, Object> toReport() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rate", getRate());
+        result.put("arrival", isPoisson() ? "poisson" : "uniform");
+        result.put("duration", getDurationSeconds());
+        result.put("warmup", getWarmupSeconds());
+        result.put("mix", getMix().entrySet().stream().collect(LinkedHashMap::new,
+                (map, entry) -> map.put(entry.getKey().getName(), entry.getValue()), Map::putAll));
+        result.put("users", getUsers());
+        result.put("seedOrders", getSeedOrders());
+        result.put("maxInFlight", getMaxInFlight());
+        result.put("applicationArgs", applicationArgs);
+        return result;
+    }
+
+    private String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    private static double positive(String key, double value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("load." + key + " 必须大于 0: " + value);
+        }
+        return value;
+    }
+}
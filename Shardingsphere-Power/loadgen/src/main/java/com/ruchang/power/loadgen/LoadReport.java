@@ -0,0 +1,135 @@
+package com.ruchang.power.loadgen;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压测报告：meta（提交、时间、JDK、标签）、options（压测参数）、endpoints（各接口统计，毫秒）
+ * 以 JSON 保存，和另一次的报告按接口对比 p50 / p99 / 吞吐量
+ */
+final class LoadReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Map<String, Object> content;
+
+    private LoadReport(Map<String, Object> content) {
+        this.content = content;
+    }
+
+    static LoadReport of(LoadOptions options, Map<String, Object> endpoints) {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("commit", gitCommit());
+        meta.put("time", LocalDateTime.now().toString());
+        meta.put("java", Runtime.version().toString());
+        meta.put("label", options.getLabel());
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("meta", meta);
+        content.put("options", options.toReport());
+        content.put("endpoints", endpoints);
+        return new LoadReport(content);
+    }
+
+    static LoadReport read(String path) throws IOException {
+        return new LoadReport(MAPPER.readValue(Paths.get(path).toFile(), new TypeReference<Map<String, Object>>() {
+        }));
+    }
+
+    /**
+     * 保存报告，未指定路径时写入 target/loadgen/report-时间.json
+     */
+    Path write(String path) throws IOException {
+        Path target = path != null ? Paths.get(path)
+                : Paths.get("target", "loadgen", "report-" + LocalDateTime.now().format(FILE_TIME) + ".json");
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        MAPPER.writeValue(target.toFile(), content);
+        return target;
+    }
+
+    /**
+     * 各接口统计表
+     */
+    String format() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%-10s %8s %7s %8s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "dropped", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)", "max(ms)"));
+        endpoints().forEach((name, stats) -> result.append(String.format("%-10s %8s %7s %8s %9s %9s %9s %9s %9s %9s%n",
+                name, stats.get("count"), stats.get("errors"), stats.get("dropped"), stats.get("throughput"),
+                stats.get("p50"), stats.get("p90"), stats.get("p99"), stats.get("p999"), stats.get("max"))));
+        return result.toString();
+    }
+
+    /**
+     * 与上一次报告的对比，变化为 (本次 - 上次) / 上次
+     */
+    String compare(LoadReport baseline) {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("对比 %s -> %s%n", baseline.meta().get("commit"), meta().get("commit")));
+        result.append(String.format("%-10s %20s %20s %20s%n", "endpoint", "p50(ms)", "p99(ms)", "req/s"));
+        Map<String, Map<String, Object>> previous = baseline.endpoints();
+        endpoints().forEach((name, stats) -> {
+            Map<String, Object> before = previous.get(name);
+            if (before == null) {
+                result.append(String.format("%-10s %s%n", name, "上次报告中没有该接口"));
+                return;
+            }
+            result.append(String.format("%-10s %20s %20s %20s%n", name, delta(before, stats, "p50"),
+                    delta(before, stats, "p99"), delta(before, stats, "throughput")));
+        });
+        return result.toString();
+    }
+
+    private static String delta(Map<String, Object> before, Map<String, Object> after, String key) {
+        double previous = ((Number) before.get(key)).doubleValue();
+        double current = ((Number) after.get(key)).doubleValue();
+        String change = previous == 0 ? "n/a" : String.format("%+.1f%%", (current - previous) * 100 / previous);
+        return String.format("%.2f→%.2f %s", previous, current, change);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> meta() {
+        return (Map<String, Object>) content.get("meta");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> endpoints() {
+        return (Map<String, Map<String, Object>>) content.get("endpoints");
+    }
+
+    /**
+     * 当前代码的提交，有未提交的改动时带 -dirty
+     */
+    private static String gitCommit() {
+        try {
+            Process process = new ProcessBuilder("git", "describe", "--always", "--dirty").redirectErrorStream(true).start();
+            String line;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                line = reader.readLine();
+            }
+            return process.waitFor() == 0 && line != null ? line.trim() : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
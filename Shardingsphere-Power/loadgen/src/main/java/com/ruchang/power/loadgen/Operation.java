@@ -0,0 +1,105 @@
+package com.ruchang.power.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测的接口
+ * 需要已有订单的请求（支付、按订单号查询）在还没有可用订单时返回 null，本次改为下单
+ */
+public enum Operation {
+
+    /**
+     * POST /api/orders
+     */
+    CREATE("create") {
+        @Override
+        HttpRequest request(String baseUrl, Workload workload) {
+            String query = "?userId=" + workload.randomUser() + "&productName=loadgen&amount="
+                    + (ThreadLocalRandom.current().nextInt(100, 10_000) / 100.0);
+            return builder(baseUrl + "/api/orders" + query).POST(HttpRequest.BodyPublishers.noBody()).build();
+        }
+    },
+
+    /**
+     * PUT /api/orders/{orderId}/pay
+     */
+    PAY("pay") {
+        @Override
+        HttpRequest request(String baseUrl, Workload workload) {
+            Workload.OrderRef order = workload.nextUnpaid();
+            if (order == null) {
+                return null;
+            }
+            return builder(baseUrl + "/api/orders/" + order.orderId + "/pay?userId=" + order.userId)
+                    .PUT(HttpRequest.BodyPublishers.noBody()).build();
+        }
+    },
+
+    /**
+     * GET /api/orders/no/{orderNo}
+     */
+    GET_BY_NO("get-by-no") {
+        @Override
+        HttpRequest request(String baseUrl, Workload workload) {
+            Workload.OrderRef order = workload.randomOrder();
+            return order == null ? null : builder(baseUrl + "/api/orders/no/" + order.orderNo).GET().build();
+        }
+    },
+
+    /**
+     * GET /api/orders/user/{userId}/page
+     */
+    USER_PAGE("user-page") {
+        @Override
+        HttpRequest request(String baseUrl, Workload workload) {
+            return builder(baseUrl + "/api/orders/user/" + workload.randomUser() + "/page?page=0&size=10")
+                    .GET().build();
+        }
+    },
+
+    /**
+     * GET /api/orders/stats
+     */
+    STATS("stats") {
+        @Override
+        HttpRequest request(String baseUrl, Workload workload) {
+            return builder(baseUrl + "/api/orders/stats").GET().build();
+        }
+    };
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String name;
+
+    Operation(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 按接口名查找，例如 get-by-no
+     */
+    public static Operation of(String name) {
+        for (Operation each : values()) {
+            if (each.name.equals(name)) {
+                return each;
+            }
+        }
+        throw new IllegalArgumentException("未知的压测接口: " + name);
+    }
+
+    /**
+     * 本次请求，需要的订单还不存在时返回 null
+     */
+    abstract HttpRequest request(String baseUrl, Workload workload);
+
+    private static HttpRequest.Builder builder(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ruchang.power.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测过程中已知的订单：按订单号查询从全部订单中随机挑选，支付只挑还未支付的订单
+ */
+final class Workload {
+
+    private final int users;
+
+    private final List<OrderRef> orders = new ArrayList<>();
+
+    private final Queue<OrderRef> unpaid = new ConcurrentLinkedQueue<>();
+
+    Workload(int users) {
+        this.users = users;
+    }
+
+    long randomUser() {
+        return ThreadLocalRandom.current().nextLong(users);
+    }
+
+    /**
+     * 新下单成功的订单
+     */
+    void created(long orderId, String orderNo, long userId) {
+        OrderRef order = new OrderRef(orderId, orderNo, userId);
+        synchronized (orders) {
+            orders.add(order);
+        }
+        unpaid.add(order);
+    }
+
+    /**
+     * 随机一个已知订单，还没有订单时返回 null
+     */
+    OrderRef randomOrder() {
+        synchronized (orders) {
+            return orders.isEmpty() ? null : orders.get(ThreadLocalRandom.current().nextInt(orders.size()));
+        }
+    }
+
+    /**
+     * 取出一个待支付的订单，没有时返回 null
+     */
+    OrderRef nextUnpaid() {
+        return unpaid.poll();
+    }
+
+    int size() {
+        synchronized (orders) {
+            return orders.size();
+        }
+    }
+
+    static final class OrderRef {
+
+        final long orderId;
+
+        final String orderNo;
+
+        final long userId;
+
+        private OrderRef(long orderId, String orderNo, long userId) {
+            this.orderId = orderId;
+            this.orderNo = orderNo;
+            this.userId = userId;
+        }
+    }
+}
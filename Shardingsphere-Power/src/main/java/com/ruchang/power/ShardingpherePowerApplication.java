@@ -2,11 +2,13 @@ package com.ruchang.power;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @Author : wolf
  */
 @SpringBootApplication
+@EnableScheduling
 public class ShardingpherePowerApplication {
 
     public static void main(String[] args) {
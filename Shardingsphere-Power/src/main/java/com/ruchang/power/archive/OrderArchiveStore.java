@@ -0,0 +1,463 @@
+package com.ruchang.power.archive;
+
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.sharding.OrderKeyGenerator;
+import com.ruchang.power.sharding.OrderNoGene;
+import com.ruchang.power.sharding.OrderTablePartition;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * 冷订单存储
+ * 已归档的订单按 create_time 所在月份分区保存为只追加的段文件（{dir}/{yyyyMM}/*.seg），段文件内存映射只读访问；
+ * 删除用户订单时追加一条墓碑（{dir}/tombstones），查询时屏蔽该用户删除前创建的冷订单。
+ * 归档先写 .pending 段，热表删除成功后再发布为 .seg，进程中断后由 OrderArchiveService 重放未发布的段。
+ * 多实例部署时 dir 需指向共享存储，并且只在一个实例上运行归档任务。
+ * 这里只负责冷订单的读取，订单统计、用户汇总中的已归档部分以数据库为准（见 OrderArchiveService），不读取这里的计数
+ */
+@Slf4j
+@Component
+public class OrderArchiveStore {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String PENDING_SUFFIX = ".pending";
+
+    private static final String TOMBSTONE_FILE = "tombstones";
+
+    private static final int STATUS_COUNT = 4;
+
+    /**
+     * 订单ID、订单号中的时间与 create_time 的最大偏差（订单号可能借用之后的秒）
+     */
+    private static final long LOOKUP_TOLERANCE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * 按时间遍历时每次读取的时间跨度
+     */
+    private static final long WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final Comparator<Order> NEWEST_FIRST = Comparator.comparing(Order::getCreateTime)
+            .thenComparing(Order::getOrderId).reversed();
+
+    @Value("${order.archive.dir:data/order-archive}")
+    private String dir;
+
+    private Path root;
+
+    /**
+     * 月份（yyyyMM）-> 已发布的段
+     */
+    private final NavigableMap<Integer, List<OrderSegment>> partitions = new ConcurrentSkipListMap<>();
+
+    /**
+     * 用户ID -> 最近一次删除时间
+     */
+    private final Map<Long, Long> tombstones = new ConcurrentHashMap<>();
+
+    /**
+     * 可见冷订单按状态计数，下标 1~4
+     */
+    private final AtomicLong[] statusCounts = new AtomicLong[STATUS_COUNT + 1];
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public OrderArchiveStore() {
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            statusCounts[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * 加载已发布的段和墓碑，清理写了一半的临时文件
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        root = Paths.get(dir).toAbsolutePath();
+        Files.createDirectories(root);
+        loadTombstones();
+        int segments = 0;
+        try (DirectoryStream<Path> months = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path month : months) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(month)) {
+                    for (Path each : files) {
+                        String name = each.getFileName().toString();
+                        if (name.endsWith(".tmp")) {
+                            Files.delete(each);
+                        } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                            register(Integer.parseInt(month.getFileName().toString()), OrderSegment.open(each));
+                            segments++;
+                        }
+                    }
+                }
+            }
+        }
+        log.info("冷订单存储加载完成: dir={}, segments={}, counts={}", root, segments, statusCountsAsMap());
+    }
+
+    /**
+     * 写入待发布的段（每个月份一个），写入后对查询不可见，调用方删除热数据后调用 publish
+     */
+    public List<Path> writePending(List<Order> orders) throws IOException {
+        Map<Integer, List<Order>> byMonth = new TreeMap<>();
+        for (Order each : orders) {
+            byMonth.computeIfAbsent(monthOf(each.getCreateTime().getTime()), key -> new ArrayList<>()).add(each);
+        }
+        List<Path> result = new ArrayList<>(byMonth.size());
+        for (Map.Entry<Integer, List<Order>> entry : byMonth.entrySet()) {
+            Path month = root.resolve(Integer.toString(entry.getKey()));
+            Files.createDirectories(month);
+            Path path = month.resolve(String.format("%d-%06d%s%s", System.currentTimeMillis(),
+                    sequence.incrementAndGet() % 1_000_000, SEGMENT_SUFFIX, PENDING_SUFFIX));
+            OrderSegment.write(path, entry.getValue());
+            result.add(path);
+        }
+        return result;
+    }
+
+    /**
+     * 未发布的段（上次归档中断留下的）
+     */
+    public List<Path> findPending() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> months = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path month : months) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(month, "*" + PENDING_SUFFIX)) {
+                    files.forEach(result::add);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 读取待发布段中的订单
+     */
+    public List<Order> readPending(Path pending) throws IOException {
+        return OrderSegment.open(pending).findAll();
+    }
+
+    /**
+     * 发布段，之后对查询可见
+     */
+    public synchronized void publish(Path pending) throws IOException {
+        String name = pending.getFileName().toString();
+        Path path = pending.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+        Files.move(pending, path, StandardCopyOption.ATOMIC_MOVE);
+        register(Integer.parseInt(path.getParent().getFileName().toString()), OrderSegment.open(path));
+    }
+
+    /**
+     * 用户的冷订单，按 create_time 升序
+     */
+    public List<Order> findByUserId(long userId) {
+        List<Order> result = new ArrayList<>();
+        Long deletedAt = tombstones.get(userId);
+        for (List<OrderSegment> segments : partitions.values()) {
+            for (OrderSegment each : segments) {
+                result.addAll(each.findByUserId(userId, createTime -> deletedAt == null || createTime > deletedAt));
+            }
+        }
+        result.sort(Comparator.comparing(Order::getCreateTime).thenComparing(Order::getOrderId));
+        return result;
+    }
+
+    /**
+     * 用户排在 (beforeTime, beforeOrderId) 之后的冷订单，按 create_time、order_id 倒序，最多 limit 条
+     * 从游标所在月份往前逐月读取，凑够 limit 条后不再读取更早的月份
+     *
+     * @param beforeTime 为 null 时从最新的订单开始
+     */
+    public List<Order> findByUserId(long userId, Date beforeTime, Long beforeOrderId, int limit) {
+        Long deletedAt = tombstones.get(userId);
+        long before = beforeTime == null ? Long.MAX_VALUE : beforeTime.getTime();
+        NavigableMap<Integer, List<OrderSegment>> months = beforeTime == null ? partitions.descendingMap()
+                : partitions.headMap(monthOf(before), true).descendingMap();
+        List<Order> result = new ArrayList<>();
+        for (List<OrderSegment> segments : months.values()) {
+            for (OrderSegment each : segments) {
+                for (Order order : each.findByUserId(userId,
+                        createTime -> createTime <= before && (deletedAt == null || createTime > deletedAt))) {
+                    if (order.getCreateTime().getTime() < before || order.getOrderId() < beforeOrderId) {
+                        result.add(order);
+                    }
+                }
+            }
+            // 更早月份的订单都排在已读到的订单之后
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        result.sort(NEWEST_FIRST);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 按订单ID查找冷订单
+     * 新订单ID带有生成时间，只查找该时间前后所在的月份；旧订单ID查找全部月份。各段先按 order_id 范围排除
+     */
+    public Optional<Order> findByOrderId(long orderId) {
+        for (List<OrderSegment> segments : candidateMonths(OrderKeyGenerator.timestampOf(orderId)).values()) {
+            for (OrderSegment each : segments) {
+                Order result = each.findByOrderId(orderId, this::isVisible);
+                if (result != null) {
+                    return Optional.of(result);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 按订单号查找冷订单，新订单号只查找其中的时间前后所在的月份
+     */
+    public Optional<Order> findByOrderNo(String orderNo) {
+        long time = OrderNoGene.timeOf(orderNo);
+        for (List<OrderSegment> segments : candidateMonths(time).values()) {
+            for (OrderSegment each : segments) {
+                if (time >= 0 && (time < each.getMinCreateTime() - LOOKUP_TOLERANCE_MILLIS
+                        || time > each.getMaxCreateTime() + LOOKUP_TOLERANCE_MILLIS)) {
+                    continue;
+                }
+                Order result = each.findByOrderNo(orderNo, this::isVisible);
+                if (result != null) {
+                    return Optional.of(result);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * create_time 在 [start, end] 内的冷订单，只读取覆盖的月份分区
+     */
+    public List<Order> findByCreateTimeBetween(Date start, Date end) {
+        List<Order> result = new ArrayList<>();
+        long from = start.getTime();
+        long to = end.getTime();
+        if (from > to) {
+            return result;
+        }
+        for (List<OrderSegment> segments : partitions.subMap(monthOf(from), true, monthOf(to), true).values()) {
+            for (OrderSegment each : segments) {
+                result.addAll(each.findByCreateTimeBetween(from, to, this::isVisible));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按 create_time、order_id 升序遍历 [start, end] 内的冷订单，每次只读取一天的订单（内存占用与一天的冷订单数有关），
+     * 跳过没有冷订单的月份
+     */
+    public Iterator<Order> scanByCreateTime(Date start, Date end) {
+        return new Iterator<Order>() {
+
+            private long next = start.getTime();
+
+            private Iterator<Order> window = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!window.hasNext() && next <= end.getTime()) {
+                    Integer month = partitions.ceilingKey(monthOf(next));
+                    if (month == null) {
+                        next = Long.MAX_VALUE;
+                        break;
+                    }
+                    next = Math.max(next, OrderTablePartition.startOf(month));
+                    long to = Math.min(end.getTime(), next + WINDOW_MILLIS - 1);
+                    List<Order> orders = findByCreateTimeBetween(new Date(next), new Date(to));
+                    orders.sort(Comparator.comparing(Order::getCreateTime).thenComparing(Order::getOrderId));
+                    window = orders.iterator();
+                    next = to + 1;
+                }
+                return window.hasNext();
+            }
+
+            @Override
+            public Order next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return window.next();
+            }
+        };
+    }
+
+    /**
+     * 可见冷订单按状态计数（状态 -> 订单数）
+     */
+    public Map<Integer, Long> countByStatus() {
+        return statusCountsAsMap();
+    }
+
+    /**
+     * 用户可见冷订单按状态计数，下标 1~4
+     */
+    public long[] countByUserId(long userId) {
+        Long deletedAt = tombstones.get(userId);
+        return countByUserId(userId, createTime -> deletedAt == null || createTime > deletedAt);
+    }
+
+    /**
+     * 删除用户的冷订单（追加墓碑，屏蔽当前时间之前创建的订单）
+     */
+    public synchronized void deleteUser(long userId) {
+        long[] counts = countByUserId(userId);
+        long now = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(root.resolve(TOMBSTONE_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer record = ByteBuffer.allocate(16).putLong(userId).putLong(now);
+            record.flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入冷订单墓碑失败: userId=" + userId, e);
+        }
+        tombstones.merge(userId, now, Math::max);
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            statusCounts[i].addAndGet(-counts[i]);
+        }
+    }
+
+    /**
+     * 存储概况
+     */
+    public Map<String, Object> getStatus() {
+        long segments = 0;
+        long rows = 0;
+        long bytes = 0;
+        for (List<OrderSegment> each : partitions.values()) {
+            for (OrderSegment segment : each) {
+                segments++;
+                rows += segment.getRowCount();
+                bytes += segment.getSize();
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dir", root.toString());
+        result.put("months", new ArrayList<>(partitions.keySet()));
+        result.put("segments", segments);
+        result.put("rows", rows);
+        result.put("bytes", bytes);
+        result.put("tombstones", tombstones.size());
+        result.put("counts", statusCountsAsMap());
+        return result;
+    }
+
+    /**
+     * 时间前后所在的月份分区，时间未知（小于 0）时返回全部
+     */
+    private NavigableMap<Integer, List<OrderSegment>> candidateMonths(long time) {
+        if (time < 0) {
+            return partitions;
+        }
+        return partitions.subMap(monthOf(time - LOOKUP_TOLERANCE_MILLIS), true,
+                monthOf(time + LOOKUP_TOLERANCE_MILLIS), true);
+    }
+
+    private boolean isVisible(long userId, long createTime) {
+        Long deletedAt = tombstones.get(userId);
+        return deletedAt == null || createTime > deletedAt;
+    }
+
+    private long[] countByUserId(long userId, LongPredicate visible) {
+        long[] result = new long[STATUS_COUNT + 1];
+        for (List<OrderSegment> segments : partitions.values()) {
+            for (OrderSegment each : segments) {
+                long[] counts = each.countByUserId(userId, visible);
+                for (int i = 1; i <= STATUS_COUNT; i++) {
+                    result[i] += counts[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 登记段并计入状态计数，已删除用户（删除时订单可能还在待发布段中）的订单不计入
+     */
+    private void register(int month, OrderSegment segment) {
+        long[] counts = new long[STATUS_COUNT + 1];
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            counts[i] = segment.getStatusCount(i);
+        }
+        for (Map.Entry<Long, Long> entry : tombstones.entrySet()) {
+            long deletedAt = entry.getValue();
+            long[] hidden = segment.countByUserId(entry.getKey(), createTime -> createTime <= deletedAt);
+            for (int i = 1; i <= STATUS_COUNT; i++) {
+                counts[i] -= hidden[i];
+            }
+        }
+        partitions.computeIfAbsent(month, key -> new CopyOnWriteArrayList<>()).add(segment);
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            statusCounts[i].addAndGet(counts[i]);
+        }
+    }
+
+    private Map<Integer, Long> statusCountsAsMap() {
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            result.put(i, statusCounts[i].get());
+        }
+        return result;
+    }
+
+    private static int monthOf(long millis) {
+        ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault());
+        return time.getYear() * 100 + time.getMonthValue();
+    }
+
+    private void loadTombstones() throws IOException {
+        Path path = root.resolve(TOMBSTONE_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        // 只读取完整的记录，忽略中断写入留下的半条
+        long records = Files.size(path) / 16;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            for (long i = 0; i < records; i++) {
+                tombstones.merge(in.readLong(), in.readLong(), Math::max);
+            }
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.ruchang.power.archive;
+
+import com.ruchang.power.entity.Order;
+import lombok.Getter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 冷订单段文件（只追加写入，写完后不再修改）
+ * 行按 user_id、create_time 排序，列式存储：
+ * 1. 头部：魔数、版本、行数、create_time 范围、各状态行数；
+ * 2. 索引列 user_id、create_time 不压缩，读取时直接在内存映射上二分、扫描，不需要解码；
+ * 3. 其余列（order_id、order_no、product_name 字典编码、amount、status、update_time）各自 Deflate 压缩，
+ * 只在有命中行时解压需要的段。
+ */
+public final class OrderSegment {
+
+    private static final int MAGIC = 0x4F534547; // "OSEG"
+
+    private static final int VERSION = 1;
+
+    private static final int STATUS_COUNT = 4;
+
+    /**
+     * 头部长度：魔数、版本、行数、最小/最大 create_time、状态 1~4 的行数
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8 * STATUS_COUNT;
+
+    private static final int PAYLOAD_COLUMNS = 6;
+
+    private static final int ORDER_ID = 0;
+
+    private static final int ORDER_NO = 1;
+
+    private static final int PRODUCT_NAME = 2;
+
+    private static final int AMOUNT = 3;
+
+    private static final int STATUS = 4;
+
+    private static final int UPDATE_TIME = 5;
+
+    private static final Comparator<Order> ROW_ORDER = Comparator.comparingLong(Order::getUserId)
+            .thenComparing(Order::getCreateTime)
+            .thenComparingLong(Order::getOrderId);
+
+    @Getter
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    @Getter
+    private final int rowCount;
+
+    @Getter
+    private final long minCreateTime;
+
+    @Getter
+    private final long maxCreateTime;
+
+    /**
+     * 状态 -> 行数，下标 1~4
+     */
+    private final long[] statusCounts = new long[STATUS_COUNT + 1];
+
+    private final int userIdOffset;
+
+    private final int createTimeOffset;
+
+    /**
+     * 各压缩列的起始位置、压缩后长度、解压后长度
+     */
+    private final int[] columnOffsets = new int[PAYLOAD_COLUMNS];
+
+    private final int[] columnLengths = new int[PAYLOAD_COLUMNS];
+
+    private final int[] columnRawLengths = new int[PAYLOAD_COLUMNS];
+
+    /**
+     * order_id 的最小、最大值，第一次按订单ID查找时计算
+     */
+    private volatile long[] orderIdRange;
+
+    private OrderSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("不是订单段文件: " + path);
+        }
+        rowCount = buffer.getInt(8);
+        minCreateTime = buffer.getLong(12);
+        maxCreateTime = buffer.getLong(20);
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            statusCounts[i] = buffer.getLong(28 + (i - 1) * 8);
+        }
+        userIdOffset = HEADER_SIZE;
+        createTimeOffset = userIdOffset + rowCount * 8;
+        int offset = createTimeOffset + rowCount * 8;
+        for (int i = 0; i < PAYLOAD_COLUMNS; i++) {
+            columnRawLengths[i] = buffer.getInt(offset);
+            columnLengths[i] = buffer.getInt(offset + 4);
+            columnOffsets[i] = offset + 8;
+            offset = columnOffsets[i] + columnLengths[i];
+        }
+    }
+
+    /**
+     * 写入段文件：先写临时文件并刷盘，再原子重命名，读取方不会看到写了一半的段
+     *
+     * @param orders 同一个月的订单，create_time、update_time 不能为空
+     */
+    public static OrderSegment write(Path path, List<Order> orders) throws IOException {
+        List<Order> rows = new ArrayList<>(orders);
+        rows.sort(ROW_ORDER);
+        long[] statusCounts = new long[STATUS_COUNT + 1];
+        long minCreateTime = Long.MAX_VALUE;
+        long maxCreateTime = Long.MIN_VALUE;
+        for (Order each : rows) {
+            statusCounts[each.getStatus()]++;
+            minCreateTime = Math.min(minCreateTime, each.getCreateTime().getTime());
+            maxCreateTime = Math.max(maxCreateTime, each.getCreateTime().getTime());
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows.size());
+            out.writeLong(minCreateTime);
+            out.writeLong(maxCreateTime);
+            for (int i = 1; i <= STATUS_COUNT; i++) {
+                out.writeLong(statusCounts[i]);
+            }
+            for (Order each : rows) {
+                out.writeLong(each.getUserId());
+            }
+            for (Order each : rows) {
+                out.writeLong(each.getCreateTime().getTime());
+            }
+            writeColumn(out, rows, (row, column) -> column.writeLong(row.getOrderId()));
+            writeColumn(out, rows, (row, column) -> column.writeUTF(row.getOrderNo()));
+            writeDictionaryColumn(out, rows);
+            writeColumn(out, rows, (row, column) -> {
+                byte[] unscaled = row.getAmount().unscaledValue().toByteArray();
+                column.writeByte(row.getAmount().scale());
+                column.writeByte(unscaled.length);
+                column.write(unscaled);
+            });
+            writeColumn(out, rows, (row, column) -> column.writeByte(row.getStatus()));
+            writeColumn(out, rows, (row, column) -> column.writeLong(row.getUpdateTime().getTime()));
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    /**
+     * 以只读内存映射方式打开段文件
+     */
+    public static OrderSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OrderSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 文件大小（字节）
+     */
+    public long getSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 全部订单
+     */
+    public List<Order> findAll() {
+        List<Integer> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(i);
+        }
+        return read(rows);
+    }
+
+    /**
+     * 指定状态的行数（含已被墓碑屏蔽的行）
+     */
+    public long getStatusCount(int status) {
+        return statusCounts[status];
+    }
+
+    /**
+     * 用户的全部订单，按 create_time 升序
+     *
+     * @param visible create_time -> 是否可见（过滤已删除用户的墓碑）
+     */
+    public List<Order> findByUserId(long userId, LongPredicate visible) {
+        int from = lowerBound(userId);
+        int to = lowerBound(userId + 1);
+        List<Integer> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            if (visible.test(createTimeAt(i))) {
+                rows.add(i);
+            }
+        }
+        return read(rows);
+    }
+
+    /**
+     * 按订单ID查找，不在本段时返回 null
+     *
+     * @param visible (user_id, create_time) 是否可见
+     */
+    public Order findByOrderId(long orderId, RowFilter visible) {
+        long[] range = orderIdRange();
+        if (rowCount == 0 || orderId < range[0] || orderId > range[1]) {
+            return null;
+        }
+        try {
+            DataInputStream in = column(ORDER_ID);
+            for (int i = 0; i < rowCount; i++) {
+                if (in.readLong() == orderId) {
+                    return visible.test(userIdAt(i), createTimeAt(i)) ? read(List.of(i)).get(0) : null;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("读取订单段失败: " + path, e);
+        }
+    }
+
+    /**
+     * 按订单号查找，不在本段时返回 null
+     *
+     * @param visible (user_id, create_time) 是否可见
+     */
+    public Order findByOrderNo(String orderNo, RowFilter visible) {
+        if (rowCount == 0) {
+            return null;
+        }
+        try {
+            DataInputStream in = column(ORDER_NO);
+            for (int i = 0; i < rowCount; i++) {
+                if (in.readUTF().equals(orderNo)) {
+                    return visible.test(userIdAt(i), createTimeAt(i)) ? read(List.of(i)).get(0) : null;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("读取订单段失败: " + path, e);
+        }
+    }
+
+    /**
+     * create_time 在 [start, end] 内的订单
+     *
+     * @param visible (user_id, create_time) 是否可见
+     */
+    public List<Order> findByCreateTimeBetween(long start, long end, RowFilter visible) {
+        if (rowCount == 0 || end < minCreateTime || start > maxCreateTime) {
+            return new ArrayList<>();
+        }
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            long createTime = createTimeAt(i);
+            if (createTime >= start && createTime <= end && visible.test(userIdAt(i), createTime)) {
+                rows.add(i);
+            }
+        }
+        return read(rows);
+    }
+
+    /**
+     * 用户可见行按状态计数
+     */
+    public long[] countByUserId(long userId, LongPredicate visible) {
+        long[] result = new long[STATUS_COUNT + 1];
+        int from = lowerBound(userId);
+        int to = lowerBound(userId + 1);
+        if (from == to) {
+            return result;
+        }
+        byte[] status = inflate(STATUS);
+        for (int i = from; i < to; i++) {
+            if (visible.test(createTimeAt(i))) {
+                result[status[i]]++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 行可见性判断
+     */
+    @FunctionalInterface
+    public interface RowFilter {
+
+        boolean test(long userId, long createTime);
+    }
+
+    private long[] orderIdRange() {
+        long[] result = orderIdRange;
+        if (result == null) {
+            result = new long[]{Long.MAX_VALUE, Long.MIN_VALUE};
+            try {
+                DataInputStream in = column(ORDER_ID);
+                for (int i = 0; i < rowCount; i++) {
+                    long orderId = in.readLong();
+                    result[0] = Math.min(result[0], orderId);
+                    result[1] = Math.max(result[1], orderId);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("读取订单段失败: " + path, e);
+            }
+            orderIdRange = result;
+        }
+        return result;
+    }
+
+    private long userIdAt(int row) {
+        return buffer.getLong(userIdOffset + row * 8);
+    }
+
+    private long createTimeAt(int row) {
+        return buffer.getLong(createTimeOffset + row * 8);
+    }
+
+    /**
+     * 第一个 user_id >= userId 的行
+     */
+    private int lowerBound(long userId) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (userIdAt(mid) < userId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 解码指定行（升序行号）
+     */
+    private List<Order> read(List<Integer> rows) {
+        List<Order> result = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return result;
+        }
+        try {
+            Map<Integer, Order> byRow = new LinkedHashMap<>();
+            for (int each : rows) {
+                byRow.put(each, Order.builder().userId(userIdAt(each)).createTime(new Date(createTimeAt(each)))
+                        .newOrder(false).build());
+            }
+            int last = rows.get(rows.size() - 1);
+            DataInputStream orderIds = column(ORDER_ID);
+            DataInputStream orderNos = column(ORDER_NO);
+            DataInputStream amounts = column(AMOUNT);
+            DataInputStream updateTimes = column(UPDATE_TIME);
+            byte[] status = inflate(STATUS);
+            String[] productNames = readDictionaryColumn(byRow);
+            for (int i = 0; i <= last; i++) {
+                long orderId = orderIds.readLong();
+                String orderNo = orderNos.readUTF();
+                int scale = amounts.readByte();
+                byte[] unscaled = new byte[amounts.readUnsignedByte()];
+                amounts.readFully(unscaled);
+                long updateTime = updateTimes.readLong();
+                Order order = byRow.get(i);
+                if (order != null) {
+                    order.setOrderId(orderId);
+                    order.setOrderNo(orderNo);
+                    order.setProductName(productNames[i]);
+                    order.setAmount(new BigDecimal(new BigInteger(unscaled), scale));
+                    order.setStatus((int) status[i]);
+                    order.setUpdateTime(new Date(updateTime));
+                }
+            }
+            result.addAll(byRow.values());
+            return result;
+        } catch (IOException e) {
+            throw new IllegalStateException("读取订单段失败: " + path, e);
+        }
+    }
+
+    /**
+     * 商品名字典列：字典大小、字典项，再按行写字典下标
+     */
+    private static void writeDictionaryColumn(DataOutputStream out, List<Order> rows) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Order each : rows) {
+            dictionary.putIfAbsent(each.getProductName(), dictionary.size());
+        }
+        writeColumn(out, null, (ignored, column) -> {
+            column.writeInt(dictionary.size());
+            for (String each : dictionary.keySet()) {
+                column.writeUTF(each);
+            }
+            for (Order each : rows) {
+                column.writeInt(dictionary.get(each.getProductName()));
+            }
+        });
+    }
+
+    private String[] readDictionaryColumn(Map<Integer, Order> byRow) throws IOException {
+        DataInputStream in = column(PRODUCT_NAME);
+        String[] dictionary = new String[in.readInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readUTF();
+        }
+        String[] result = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            int code = in.readInt();
+            if (byRow.containsKey(i)) {
+                result[i] = dictionary[code];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写入一个压缩列：解压后长度、压缩后长度、压缩数据
+     *
+     * @param rows 为 null 时 writer 只调用一次，自行写入整列
+     */
+    private static void writeColumn(DataOutputStream out, List<Order> rows, ColumnWriter writer) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (DataOutputStream column = new DataOutputStream(raw)) {
+            if (rows == null) {
+                writer.write(null, column);
+            } else {
+                for (Order each : rows) {
+                    writer.write(each, column);
+                }
+            }
+        }
+        byte[] input = raw.toByteArray();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                compressed.write(chunk, 0, length);
+            }
+            out.writeInt(input.length);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private DataInputStream column(int index) {
+        return new DataInputStream(new ByteArrayInputStream(inflate(index)));
+    }
+
+    private byte[] inflate(int index) {
+        ByteBuffer input = buffer.slice(columnOffsets[index], columnLengths[index]);
+        byte[] result = new byte[columnRawLengths[index]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < result.length && !inflater.finished()) {
+                length += inflater.inflate(result, length, result.length - length);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("订单段已损坏: " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnWriter {
+
+        void write(Order row, DataOutputStream column) throws IOException;
+    }
+}
@@ -1,14 +1,20 @@
 package com.ruchang.power.controller;
 
+import com.ruchang.power.dto.SQLRouteTrace;
+import com.ruchang.power.service.OrderOutboxRelay;
+import com.ruchang.power.sharding.SQLRouteTracer;
+import com.ruchang.power.sharding.ShardPoolController;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.sql.DataSource;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +31,15 @@ public class DebugController {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private SQLRouteTracer sqlRouteTracer;
+
+    @Autowired
+    private ShardPoolController shardPoolController;
+
+    @Autowired
+    private OrderOutboxRelay orderOutboxRelay;
+
     /**
      * 查看当前ShardingSphere配置
      */
@@ -71,27 +86,72 @@ public class DebugController {
     }
 
     /**
-     * 测试SQL路由
+     * 查看最近的SQL路由记录（逻辑SQL -> 实际SQL），从新到旧
+     * 按 order.sql-trace.sample-rate 采样，慢SQL总会被记录
+     *
+     * @param table      逻辑表或实际表
+     * @param dataSource 实际数据源
+     * @param slowOnly   只看慢SQL
+     * @param limit      最多返回条数
      */
-    @GetMapping("/test-sql")
-    public String testSqlRouting() {
-        try {
-            // 清除之前的测试数据
-            jdbcTemplate.execute("DELETE FROM t_order WHERE order_no LIKE 'TEST%'");
+    @GetMapping("/sql-trace")
+    public Map<String, Object> sqlTrace(@RequestParam(required = false) String table,
+                                        @RequestParam(required = false) String dataSource,
+                                        @RequestParam(defaultValue = "false") boolean slowOnly,
+                                        @RequestParam(defaultValue = "50") int limit) {
+        List<SQLRouteTrace> traces = sqlRouteTracer.find(table, dataSource, slowOnly, Math.max(0, limit));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("capacity", sqlRouteTracer.getCapacity());
+        result.put("sampleRate", sqlRouteTracer.getSampleRate());
+        result.put("slowThresholdMs", sqlRouteTracer.getSlowThresholdMillis());
+        result.put("recorded", sqlRouteTracer.getRecorded());
+        result.put("count", traces.size());
+        result.put("data", traces);
+        return result;
+    }
 
-            // 测试1：应该路由到 t_order_0
-            jdbcTemplate.execute(
-                    "INSERT INTO t_order(order_id, order_no, user_id, product_name, amount, status) " +
-                            "VALUES (100, 'TEST_100', 100, 'Test Product', 100.00, 1)"
-            );
+    /**
+     * 查看各分片连接池：大小、活跃 / 空闲 / 等待连接数、上一周期平均等待耗时、连接严格模式次数
+     */
+    @GetMapping("/pools")
+    public Map<String, Object> pools() {
+        return shardPoolController.getStatus();
+    }
 
-            // 测试2：应该路由到 t_order_1
-            jdbcTemplate.execute(
-                    "INSERT INTO t_order(order_id, order_no, user_id, product_name, amount, status) " +
-                            "VALUES (101, 'TEST_101', 101, 'Test Product', 101.00, 1)"
-            );
+    /**
+     * 查看订单事件中继：各库、各消费者的投递位置、积压、投递 / 失败次数
+     */
+    @GetMapping("/outbox")
+    public Map<String, Object> outbox() {
+        return orderOutboxRelay.getStatus();
+    }
 
-            return "测试SQL已执行，请查看控制台日志中的'Actual SQL'部分";
+    /**
+     * 测试SQL路由，本次执行的SQL全部记录到路由追踪
+     */
+    @GetMapping("/test-sql")
+    public String testSqlRouting() {
+        try {
+            sqlRouteTracer.traceAll(() -> {
+                // 清除之前的测试数据
+                jdbcTemplate.execute("DELETE FROM t_order WHERE order_no LIKE 'TEST%'");
+
+                // 测试1：应该路由到 t_order_0
+                jdbcTemplate.execute(
+                        "INSERT INTO t_order(order_id, order_no, user_id, product_name, amount, status) " +
+                                "VALUES (100, 'TEST_100', 100, 'Test Product', 100.00, 1)"
+                );
+
+                // 测试2：应该路由到 t_order_1
+                jdbcTemplate.execute(
+                        "INSERT INTO t_order(order_id, order_no, user_id, product_name, amount, status) " +
+                                "VALUES (101, 'TEST_101', 101, 'Test Product', 101.00, 1)"
+                );
+                return null;
+            });
+
+            return "测试SQL已执行，路由结果请查看 /debug/sql-trace?table=t_order";
 
         } catch (Exception e) {
             return "测试失败: " + e.getMessage();
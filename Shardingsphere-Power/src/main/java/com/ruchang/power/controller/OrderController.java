@@ -1,18 +1,41 @@
 package com.ruchang.power.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.dto.OrderCursorPage;
+import com.ruchang.power.dto.OrderView;
 import com.ruchang.power.entity.Order;
+import com.ruchang.power.entity.UserOrderSummary;
+import com.ruchang.power.service.OrderArchiveService;
+import com.ruchang.power.service.OrderExportService;
+import com.ruchang.power.service.OrderIntakePipeline;
+import com.ruchang.power.service.OrderPartitionService;
+import com.ruchang.power.service.OrderPurgeService;
 import com.ruchang.power.service.OrderService;
+import com.ruchang.power.service.UserOrderSummaryRebuildJob;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 订单REST控制器
@@ -25,16 +48,43 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private UserOrderSummaryRebuildJob userOrderSummaryRebuildJob;
+
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    @Autowired
+    private OrderIntakePipeline orderIntakePipeline;
+
+    @Autowired
+    private OrderJsonWriter orderJsonWriter;
+
+    @Autowired
+    private OrderPurgeService orderPurgeService;
+
+    @Autowired
+    private OrderPartitionService orderPartitionService;
+
     /**
      * 创建订单
      * POST /api/orders
+     * 启用异步下单（order.intake.enabled）时进入组提交队列，ack=ACCEPTED 入队即返回 202，
+     * ack=COMMITTED 等待提交后返回 200（超时返回 202）；队列已满返回 429
      */
     @PostMapping
     public ResponseEntity<Map<String, Object>> createOrder(
             @RequestParam Long userId,
             @RequestParam String productName,
-            @RequestParam BigDecimal amount) {
+            @RequestParam BigDecimal amount,
+            @RequestParam(required = false) OrderIntakePipeline.Ack ack) {
 
+        if (orderIntakePipeline.isEnabled()) {
+            return submitOrder(userId, productName, amount, ack == null ? orderIntakePipeline.getDefaultAck() : ack);
+        }
         try {
             Order order = orderService.createOrder(userId, productName, amount);
 
@@ -54,6 +104,91 @@ public class OrderController {
         }
     }
 
+    private ResponseEntity<Map<String, Object>> submitOrder(Long userId, String productName, BigDecimal amount,
+                                                            OrderIntakePipeline.Ack ack) {
+        OrderIntakePipeline.Submission submission;
+        try {
+            submission = orderIntakePipeline.submit(userId, productName, amount);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        }
+
+        Order order = submission.getOrder();
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("data", order);
+        result.put("orderId", order.getOrderId());
+        result.put("orderNo", order.getOrderNo());
+        if (ack == OrderIntakePipeline.Ack.ACCEPTED) {
+            result.put("message", "订单已受理");
+            return ResponseEntity.accepted().body(result);
+        }
+        try {
+            submission.getFuture().get(orderIntakePipeline.getCommitTimeoutMs(), TimeUnit.MILLISECONDS);
+            result.put("message", "订单创建成功");
+            return ResponseEntity.ok(result);
+        } catch (TimeoutException e) {
+            result.put("message", "订单已受理，等待写入超时");
+            return ResponseEntity.accepted().body(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("message", "订单已受理");
+            return ResponseEntity.accepted().body(result);
+        } catch (ExecutionException e) {
+            log.error("创建订单失败: userId={}, productName={}", userId, productName, e.getCause());
+            return ResponseEntity.internalServerError().body(
+                    Map.of("success", false, "message", "创建订单失败: " + e.getCause().getMessage())
+            );
+        }
+    }
+
+    /**
+     * 查询异步下单队列和写入概况
+     * GET /api/orders/intake
+     */
+    @GetMapping("/intake")
+    public ResponseEntity<Map<String, Object>> getIntakeStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "status", orderIntakePipeline.getStatus()
+        ));
+    }
+
+    /**
+     * 批量创建订单
+     * POST /api/orders/bulk
+     * 请求体：[{"userId":1,"productName":"iPhone 15","amount":5999.00}, ...]
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<Map<String, Object>> createOrders(@RequestBody List<OrderCreateRequest> requests) {
+        try {
+            List<Order> orders = orderService.createOrders(requests);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("message", "批量创建订单成功");
+            result.put("total", orders.size());
+            result.put("data", orders);
+
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        } catch (Exception e) {
+            log.error("批量创建订单失败: size={}", requests.size(), e);
+            return ResponseEntity.internalServerError().body(
+                    Map.of("success", false, "message", "批量创建订单失败: " + e.getMessage())
+            );
+        }
+    }
+
     /**
      * 批量创建测试数据
      * POST /api/orders/batch-test
@@ -118,57 +253,145 @@ public class OrderController {
     }
 
     /**
-     * 查询用户订单列表
+     * 查询用户订单列表（流式输出，见 OrderJsonWriter）
      * GET /api/orders/user/{userId}
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<Map<String, Object>> getUserOrders(@PathVariable Long userId) {
-        List<Order> orders = orderService.getUserOrders(userId);
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("success", true);
-        result.put("userId", userId);
-        result.put("total", orders.size());
-        result.put("data", orders);
-
-        // 统计消费总额
-        BigDecimal totalAmount = orderService.getUserTotalAmount(userId);
-        result.put("totalAmount", totalAmount);
-
-        return ResponseEntity.ok(result);
+    public void getUserOrders(@PathVariable Long userId, HttpServletResponse response) throws IOException {
+        List<OrderView> orders = orderService.getUserOrders(userId);
+
+        // 消费总额、各状态订单数读取用户汇总
+        Optional<UserOrderSummary> summary = orderService.getUserSummary(userId);
+        BigDecimal totalAmount = summary.map(UserOrderSummary::getTotalAmount)
+                .orElse(BigDecimal.ZERO);
+
+        JsonGenerator json = orderJsonWriter.begin(response);
+        json.writeFieldName(OrderJsonWriter.USER_ID);
+        json.writeNumber(userId);
+        json.writeFieldName(OrderJsonWriter.TOTAL);
+        json.writeNumber(orders.size());
+        json.writeFieldName(OrderJsonWriter.TOTAL_AMOUNT);
+        json.writeNumber(totalAmount);
+        json.writeFieldName(OrderJsonWriter.SUMMARY);
+        json.writeObject(summary.orElse(null));
+        orderJsonWriter.writeData(json, orders);
+        orderJsonWriter.end(json);
     }
 
     /**
-     * 分页查询用户订单
+     * 分页查询用户订单（保留兼容，深分页请使用 /scroll）
      * GET /api/orders/user/{userId}/page?page=0&size=10
      */
     @GetMapping("/user/{userId}/page")
-    public ResponseEntity<Map<String, Object>> getUserOrdersPage(
+    public void getUserOrdersPage(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            HttpServletResponse response) throws IOException {
+
+        Page<OrderView> orderPage = orderService.getUserOrdersPage(userId, page, size);
+
+        JsonGenerator json = orderJsonWriter.begin(response);
+        json.writeFieldName(OrderJsonWriter.USER_ID);
+        json.writeNumber(userId);
+        json.writeFieldName(OrderJsonWriter.PAGE);
+        json.writeNumber(page);
+        json.writeFieldName(OrderJsonWriter.SIZE);
+        json.writeNumber(size);
+        json.writeFieldName(OrderJsonWriter.TOTAL_PAGES);
+        json.writeNumber(orderPage.getTotalPages());
+        json.writeFieldName(OrderJsonWriter.TOTAL_ELEMENTS);
+        json.writeNumber(orderPage.getTotalElements());
+        orderJsonWriter.writeData(json, orderPage.getContent());
+        orderJsonWriter.end(json);
+    }
 
-        Page<Order> orderPage = orderService.getUserOrdersPage(userId, page, size);
+    /**
+     * 游标分页查询用户订单（深分页推荐使用）
+     * GET /api/orders/user/{userId}/scroll?after=&size=10
+     * after 传上一页返回的 nextCursor，第一页不传
+     */
+    @GetMapping("/user/{userId}/scroll")
+    public void getUserOrdersScroll(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            HttpServletResponse response) throws IOException {
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("success", true);
-        result.put("userId", userId);
-        result.put("page", page);
-        result.put("size", size);
-        result.put("totalPages", orderPage.getTotalPages());
-        result.put("totalElements", orderPage.getTotalElements());
-        result.put("data", orderPage.getContent());
-
-        return ResponseEntity.ok(result);
+        OrderCursorPage orderPage;
+        try {
+            orderPage = orderService.getUserOrdersScroll(userId, after, size);
+        } catch (IllegalArgumentException e) {
+            orderJsonWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        JsonGenerator json = orderJsonWriter.begin(response);
+        json.writeFieldName(OrderJsonWriter.USER_ID);
+        json.writeNumber(userId);
+        json.writeFieldName(OrderJsonWriter.SIZE);
+        json.writeNumber(orderPage.getData().size());
+        json.writeFieldName(OrderJsonWriter.HAS_MORE);
+        json.writeBoolean(orderPage.isHasMore());
+        json.writeFieldName(OrderJsonWriter.NEXT_CURSOR);
+        json.writeString(orderPage.getNextCursor());
+        orderJsonWriter.writeData(json, orderPage.getData());
+        orderJsonWriter.end(json);
+    }
+
+    /**
+     * 按创建时间范围流式导出订单（各分片游标归并，按 create_time 升序）
+     * GET /api/orders/export?start=2025-01-01 00:00:00&end=2025-01-31 23:59:59&format=ndjson|csv
+     * 在请求线程内同步写出，不受异步请求超时限制；同时进行的导出超过 order.export.max-concurrent 时返回 429
+     */
+    @GetMapping("/export")
+    public void exportOrders(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            orderJsonWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST, "不支持的导出格式: " + format);
+            return;
+        }
+        if (start.after(end)) {
+            orderJsonWriter.writeError(response, HttpServletResponse.SC_BAD_REQUEST, "start 不能晚于 end");
+            return;
+        }
+        if (!orderExportService.tryAcquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "10");
+            orderJsonWriter.writeError(response, HttpStatus.TOO_MANY_REQUESTS.value(), "导出任务过多，请稍后重试");
+            return;
+        }
+
+        try {
+            boolean csv = exportFormat == OrderExportService.Format.CSV;
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders." + (csv ? "csv" : "ndjson"));
+            orderExportService.export(start, end, exportFormat, response.getOutputStream());
+        } catch (SQLException e) {
+            log.error("订单导出失败: start={}, end={}", start, end, e);
+            throw new IOException("订单导出失败", e);
+        } finally {
+            orderExportService.release();
+        }
     }
 
     /**
      * 支付订单
-     * PUT /api/orders/{orderId}/pay
+     * PUT /api/orders/{orderId}/pay?userId=
+     * 传入 userId 时直接条件更新，不传时先按订单ID查出所属用户
      */
     @PutMapping("/{orderId}/pay")
-    public ResponseEntity<Map<String, Object>> payOrder(@PathVariable Long orderId) {
-        boolean success = orderService.payOrder(orderId);
+    public ResponseEntity<Map<String, Object>> payOrder(
+            @PathVariable Long orderId,
+            @RequestParam(required = false) Long userId) {
+        boolean success = orderService.payOrder(orderId, userId);
 
         if (success) {
             return ResponseEntity.ok(Map.of(
@@ -183,13 +406,46 @@ public class OrderController {
         }
     }
 
+    /**
+     * 批量支付订单（支付网关批量回调）
+     * PUT /api/orders/pay
+     * 请求体：[orderId1, orderId2, ...]，非待支付状态的订单会被跳过
+     */
+    @PutMapping("/pay")
+    public ResponseEntity<Map<String, Object>> payOrders(@RequestBody List<Long> orderIds) {
+        try {
+            List<Long> paid = orderService.payOrders(orderIds);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("message", "批量支付完成");
+            result.put("requested", orderIds.size());
+            result.put("paid", paid.size());
+            result.put("paidOrderIds", paid);
+
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        } catch (Exception e) {
+            log.error("批量支付订单失败: size={}", orderIds.size(), e);
+            return ResponseEntity.internalServerError().body(
+                    Map.of("success", false, "message", "批量支付订单失败: " + e.getMessage())
+            );
+        }
+    }
+
     /**
      * 完成订单
-     * PUT /api/orders/{orderId}/complete
+     * PUT /api/orders/{orderId}/complete?userId=
+     * 传入 userId 时直接条件更新，不传时先按订单ID查出所属用户
      */
     @PutMapping("/{orderId}/complete")
-    public ResponseEntity<Map<String, Object>> completeOrder(@PathVariable Long orderId) {
-        boolean success = orderService.completeOrder(orderId);
+    public ResponseEntity<Map<String, Object>> completeOrder(
+            @PathVariable Long orderId,
+            @RequestParam(required = false) Long userId) {
+        boolean success = orderService.completeOrder(orderId, userId);
 
         if (success) {
             return ResponseEntity.ok(Map.of(
@@ -206,11 +462,14 @@ public class OrderController {
 
     /**
      * 取消订单
-     * PUT /api/orders/{orderId}/cancel
+     * PUT /api/orders/{orderId}/cancel?userId=
+     * 传入 userId 时直接条件更新，不传时先按订单ID查出所属用户
      */
     @PutMapping("/{orderId}/cancel")
-    public ResponseEntity<Map<String, Object>> cancelOrder(@PathVariable Long orderId) {
-        boolean success = orderService.cancelOrder(orderId);
+    public ResponseEntity<Map<String, Object>> cancelOrder(
+            @PathVariable Long orderId,
+            @RequestParam(required = false) Long userId) {
+        boolean success = orderService.cancelOrder(orderId, userId);
 
         if (success) {
             return ResponseEntity.ok(Map.of(
@@ -242,18 +501,156 @@ public class OrderController {
     }
 
     /**
-     * 删除用户所有订单
-     * DELETE /api/orders/user/{userId}
+     * 查询用户订单汇总（总金额、各状态订单数、最近下单时间）
+     * GET /api/orders/user/{userId}/summary
+     */
+    @GetMapping("/user/{userId}/summary")
+    public ResponseEntity<Map<String, Object>> getUserSummary(@PathVariable Long userId) {
+        Optional<UserOrderSummary> summary = orderService.getUserSummary(userId);
+
+        if (summary.isPresent()) {
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "data", summary.get()
+            ));
+        } else {
+            return ResponseEntity.ok(Map.of(
+                    "success", false,
+                    "message", "用户汇总不存在"
+            ));
+        }
+    }
+
+    /**
+     * 后台重建全部用户订单汇总
+     * POST /api/orders/summary/rebuild
+     */
+    @PostMapping("/summary/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSummaries() {
+        boolean started = userOrderSummaryRebuildJob.start();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", started);
+        result.put("message", started ? "用户汇总重建已启动" : "用户汇总重建正在运行");
+        result.put("status", userOrderSummaryRebuildJob.getStatus());
+        return started ? ResponseEntity.accepted().body(result) : ResponseEntity.status(409).body(result);
+    }
+
+    /**
+     * 查询用户汇总重建进度
+     * GET /api/orders/summary/rebuild
+     */
+    @GetMapping("/summary/rebuild")
+    public ResponseEntity<Map<String, Object>> getRebuildStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "status", userOrderSummaryRebuildJob.getStatus()
+        ));
+    }
+
+    /**
+     * 后台归档已完成、已取消且超过保留期的订单（平时由定时任务执行）
+     * POST /api/orders/archive
+     */
+    @PostMapping("/archive")
+    public ResponseEntity<Map<String, Object>> archiveOrders() {
+        boolean started = orderArchiveService.start();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", started);
+        result.put("message", started ? "订单归档已启动" : "订单归档正在运行");
+        result.put("status", orderArchiveService.getStatus());
+        return started ? ResponseEntity.accepted().body(result) : ResponseEntity.status(409).body(result);
+    }
+
+    /**
+     * 查询订单归档进度和冷存储概况
+     * GET /api/orders/archive
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<Map<String, Object>> getArchiveStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "status", orderArchiveService.getStatus()
+        ));
+    }
+
+    /**
+     * 立即创建并登记缺少的按月分区表（平时由定时任务执行）
+     * POST /api/orders/partitions
+     */
+    @PostMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> ensurePartitions() {
+        int created = orderPartitionService.ensurePartitions();
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "created", created,
+                "status", orderPartitionService.getStatus()
+        ));
+    }
+
+    /**
+     * 查询订单按月分表概况
+     * GET /api/orders/partitions
+     */
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> getPartitionStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "status", orderPartitionService.getStatus()
+        ));
+    }
+
+    /**
+     * 删除用户所有订单（分块删除）
+     * DELETE /api/orders/user/{userId}?async=false
+     * async=true 时提交后台任务，返回 202 和任务ID，通过 GET /api/orders/purge/{jobId} 查询进度
      */
     @DeleteMapping("/user/{userId}")
-    public ResponseEntity<Map<String, Object>> deleteUserOrders(@PathVariable Long userId) {
-        long deletedCount = orderService.deleteUserOrders(userId);
+    public ResponseEntity<Map<String, Object>> deleteUserOrders(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "false") boolean async) {
+
+        try {
+            if (async) {
+                String jobId = orderPurgeService.submit(userId);
+                return ResponseEntity.accepted().body(Map.of(
+                        "success", true,
+                        "userId", userId,
+                        "jobId", jobId,
+                        "message", "删除任务已提交"
+                ));
+            }
+            long deletedCount = orderPurgeService.purge(userId);
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "userId", userId,
+                    "deletedCount", deletedCount,
+                    "message", String.format("成功删除用户 %d 的 %d 条订单", userId, deletedCount)
+            ));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        }
+    }
 
+    /**
+     * 查询删除任务进度
+     * GET /api/orders/purge/{jobId}
+     */
+    @GetMapping("/purge/{jobId}")
+    public ResponseEntity<Map<String, Object>> getPurgeJob(@PathVariable String jobId) {
+        Map<String, Object> job = orderPurgeService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(404).body(
+                    Map.of("success", false, "message", "删除任务不存在: " + jobId)
+            );
+        }
         return ResponseEntity.ok(Map.of(
                 "success", true,
-                "userId", userId,
-                "deletedCount", deletedCount,
-                "message", String.format("成功删除用户 %d 的 %d 条订单", userId, deletedCount)
+                "job", job
         ));
     }
 
@@ -263,11 +660,9 @@ public class OrderController {
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getSystemStats() {
-        String stats = orderService.getSystemStats();
-
         return ResponseEntity.ok(Map.of(
                 "success", true,
-                "stats", stats,
+                "stats", orderService.getSystemStats(),
                 "timestamp", System.currentTimeMillis()
         ));
     }
@@ -0,0 +1,164 @@
+package com.ruchang.power.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ruchang.power.dto.OrderView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 订单列表接口的流式 JSON 输出
+ * 直接把 {"success":true, ..., "data":[...]} 写入响应流，不构建 Map 包装、不经过反射序列化；
+ * 字段名预先编码（SerializedString），时间使用 ObjectMapper 配置的日期格式（与其他接口中的 Date 字段一致），
+ * 每次写出复制一份格式对象，同一次写出的各行复用
+ */
+@Component
+public class OrderJsonWriter {
+
+    static final SerializableString USER_ID = new SerializedString("userId");
+
+    static final SerializableString TOTAL = new SerializedString("total");
+
+    static final SerializableString TOTAL_AMOUNT = new SerializedString("totalAmount");
+
+    static final SerializableString SUMMARY = new SerializedString("summary");
+
+    static final SerializableString PAGE = new SerializedString("page");
+
+    static final SerializableString SIZE = new SerializedString("size");
+
+    static final SerializableString TOTAL_PAGES = new SerializedString("totalPages");
+
+    static final SerializableString TOTAL_ELEMENTS = new SerializedString("totalElements");
+
+    static final SerializableString HAS_MORE = new SerializedString("hasMore");
+
+    static final SerializableString NEXT_CURSOR = new SerializedString("nextCursor");
+
+    private static final SerializableString SUCCESS = new SerializedString("success");
+
+    private static final SerializableString MESSAGE = new SerializedString("message");
+
+    private static final SerializableString DATA = new SerializedString("data");
+
+    private static final SerializableString ORDER_ID = new SerializedString("orderId");
+
+    private static final SerializableString ORDER_NO = new SerializedString("orderNo");
+
+    private static final SerializableString PRODUCT_NAME = new SerializedString("productName");
+
+    private static final SerializableString AMOUNT = new SerializedString("amount");
+
+    private static final SerializableString STATUS = new SerializedString("status");
+
+    private static final SerializableString CREATE_TIME = new SerializedString("createTime");
+
+    private static final SerializableString UPDATE_TIME = new SerializedString("updateTime");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 开始 200 响应并写入 "success":true，之后由调用方写入其余字段
+     */
+    public JsonGenerator begin(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        return begin(response.getOutputStream());
+    }
+
+    /**
+     * 在输出流上开始响应对象
+     */
+    public JsonGenerator begin(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeFieldName(SUCCESS);
+        generator.writeBoolean(true);
+        return generator;
+    }
+
+    /**
+     * 写出 {"success":false,"message":...} 错误响应
+     */
+    public void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream(),
+                JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeFieldName(SUCCESS);
+        generator.writeBoolean(false);
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(message);
+        end(generator);
+    }
+
+    /**
+     * 写入 "data":[...]
+     */
+    public void writeData(JsonGenerator generator, List<OrderView> orders) throws IOException {
+        DateFormat dateFormat = dateFormat();
+        generator.writeFieldName(DATA);
+        generator.writeStartArray();
+        for (OrderView each : orders) {
+            generator.writeStartObject();
+            generator.writeFieldName(ORDER_ID);
+            generator.writeNumber(each.getOrderId());
+            generator.writeFieldName(ORDER_NO);
+            generator.writeString(each.getOrderNo());
+            generator.writeFieldName(USER_ID);
+            generator.writeNumber(each.getUserId());
+            generator.writeFieldName(PRODUCT_NAME);
+            generator.writeString(each.getProductName());
+            generator.writeFieldName(AMOUNT);
+            generator.writeNumber(each.getAmount());
+            generator.writeFieldName(STATUS);
+            generator.writeNumber(each.getStatus());
+            generator.writeFieldName(CREATE_TIME);
+            writeTime(generator, each.getCreateTime(), dateFormat);
+            generator.writeFieldName(UPDATE_TIME);
+            writeTime(generator, each.getUpdateTime(), dateFormat);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * 结束响应对象并刷出
+     */
+    public void end(JsonGenerator generator) throws IOException {
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    /**
+     * ObjectMapper 的日期格式（DateFormat 不是线程安全的，复制一份），按时间戳输出 Date 时返回 null
+     */
+    private DateFormat dateFormat() {
+        if (objectMapper.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)) {
+            return null;
+        }
+        return (DateFormat) objectMapper.getDateFormat().clone();
+    }
+
+    private static void writeTime(JsonGenerator generator, long millis, DateFormat dateFormat) throws IOException {
+        if (dateFormat == null) {
+            generator.writeNumber(millis);
+        } else {
+            generator.writeString(dateFormat.format(new Date(millis)));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ruchang.power.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 统计同时处理中的请求数，用于观察 Tomcat 请求线程池能承载的并发
+ * http.server.requests.active 为当前值，http.server.requests.active.max 为启动以来的峰值
+ */
+@Component
+public class RequestConcurrencyFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger max = new AtomicInteger();
+
+    @PostConstruct
+    public void registerMeters() {
+        Gauge.builder("http.server.requests.active", active, AtomicInteger::get)
+                .description("处理中的请求数")
+                .register(meterRegistry);
+        Gauge.builder("http.server.requests.active.max", max, AtomicInteger::get)
+                .description("启动以来同时处理中的请求数峰值")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        max.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
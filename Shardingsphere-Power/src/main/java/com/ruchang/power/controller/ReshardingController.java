@@ -0,0 +1,102 @@
+package com.ruchang.power.controller;
+
+import com.ruchang.power.dto.ReshardingRequest;
+import com.ruchang.power.service.ReshardingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在线扩容控制器
+ * 流程：POST /api/resharding 开始 -> GET 查看进度 -> POST /cutover 切换（或 POST /abort 放弃）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/resharding")
+public class ReshardingController {
+
+    @Autowired
+    private ReshardingService reshardingService;
+
+    /**
+     * 查询扩容状态和进度
+     * GET /api/resharding
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "status", reshardingService.getStatus()
+        ));
+    }
+
+    /**
+     * 开始扩容：生成目标布局，后台复制并校验，期间订单写入双写到目标节点
+     * POST /api/resharding
+     * Body: {"databases": ["ds0", "ds1", "ds2", "ds3"], "tables": ["t_order_0", "t_order_1"]}
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestBody ReshardingRequest request) {
+        return run("扩容已开始", () -> reshardingService.start(request.getDatabases(), request.getTables()));
+    }
+
+    /**
+     * 重新校验并修复目标节点数据
+     * POST /api/resharding/verify
+     */
+    @PostMapping("/verify")
+    public ResponseEntity<Map<String, Object>> verify() {
+        return run("校验已开始", reshardingService::verify);
+    }
+
+    /**
+     * 切换到目标布局（切换期间暂停订单写入），完成后清理旧数据
+     * POST /api/resharding/cutover
+     */
+    @PostMapping("/cutover")
+    public ResponseEntity<Map<String, Object>> cutover() {
+        return run("切换已开始", reshardingService::cutover);
+    }
+
+    /**
+     * 放弃扩容，删除已复制到目标节点的数据
+     * POST /api/resharding/abort
+     */
+    @PostMapping("/abort")
+    public ResponseEntity<Map<String, Object>> abort() {
+        return run("已放弃扩容，正在清理目标节点", reshardingService::abort);
+    }
+
+    /**
+     * 继续未完成的清理
+     * POST /api/resharding/cleanup
+     */
+    @PostMapping("/cleanup")
+    public ResponseEntity<Map<String, Object>> cleanup() {
+        return run("清理已开始", reshardingService::cleanup);
+    }
+
+    private ResponseEntity<Map<String, Object>> run(String message, Runnable action) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            action.run();
+            result.put("success", true);
+            result.put("message", message);
+            result.put("status", reshardingService.getStatus());
+            return ResponseEntity.accepted().body(result);
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        } catch (IllegalStateException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            result.put("status", reshardingService.getStatus());
+            return ResponseEntity.status(409).body(result);
+        }
+    }
+}
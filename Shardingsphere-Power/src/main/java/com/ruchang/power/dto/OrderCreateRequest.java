@@ -0,0 +1,31 @@
+package com.ruchang.power.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 创建订单请求（批量下单使用）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCreateRequest {
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 商品名称
+     */
+    private String productName;
+
+    /**
+     * 订单金额
+     */
+    private BigDecimal amount;
+}
@@ -0,0 +1,29 @@
+package com.ruchang.power.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Data
+@AllArgsConstructor
+public class OrderCursorPage {
+
+    /**
+     * 本页订单，按 create_time、order_id 倒序
+     */
+    private List<OrderView> data;
+
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+}
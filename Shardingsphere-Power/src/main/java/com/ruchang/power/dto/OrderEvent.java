@@ -0,0 +1,73 @@
+package com.ruchang.power.dto;
+
+import com.ruchang.power.entity.OrderTransition;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 订单事件（t_order_outbox 中的一行）
+ * 只带订单ID和用户ID，需要订单详情的消费者自行查询；同一个库内按序号有序，不同库之间不保证顺序
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent {
+
+    /**
+     * 所在的库（分片规则中的逻辑数据源名）
+     */
+    private String dataSourceName;
+
+    /**
+     * 库内递增的事件序号
+     */
+    private long id;
+
+    private Type type;
+
+    private Long orderId;
+
+    private Long userId;
+
+    private Date createTime;
+
+    /**
+     * 全局唯一的事件ID（库名:序号），至少一次投递，消费者可按它去重
+     */
+    public String getEventId() {
+        return dataSourceName + ":" + id;
+    }
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+
+        CREATED,
+
+        PAID,
+
+        COMPLETED,
+
+        CANCELLED;
+
+        /**
+         * 状态流转对应的事件
+         */
+        public static Type of(OrderTransition transition) {
+            switch (transition) {
+                case PAY:
+                    return PAID;
+                case COMPLETE:
+                    return COMPLETED;
+                case CANCEL:
+                    return CANCELLED;
+                default:
+                    throw new IllegalStateException("不支持的订单状态流转: " + transition);
+            }
+        }
+    }
+}
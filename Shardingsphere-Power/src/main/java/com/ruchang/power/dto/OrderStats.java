@@ -0,0 +1,42 @@
+package com.ruchang.power.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 订单统计
+ */
+@Data
+@AllArgsConstructor
+public class OrderStats {
+
+    /**
+     * 总订单数
+     */
+    private long total;
+
+    /**
+     * 待支付
+     */
+    private long pending;
+
+    /**
+     * 已支付
+     */
+    private long paid;
+
+    /**
+     * 已完成
+     */
+    private long completed;
+
+    /**
+     * 已取消
+     */
+    private long cancelled;
+
+    /**
+     * 最近一次与数据库校准的时间戳，尚未校准时为 0
+     */
+    private long reconciledAt;
+}
@@ -0,0 +1,68 @@
+package com.ruchang.power.dto;
+
+import com.ruchang.power.entity.Order;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 订单只读视图（列表、分页接口使用）
+ * 由 JPQL 构造表达式直接填充，不进入持久化上下文，没有脏检查快照和代理；时间保存为毫秒值
+ */
+@Getter
+public final class OrderView {
+
+    private final long orderId;
+
+    private final String orderNo;
+
+    private final long userId;
+
+    private final String productName;
+
+    private final BigDecimal amount;
+
+    private final int status;
+
+    private final long createTime;
+
+    private final long updateTime;
+
+    public OrderView(Long orderId, String orderNo, Long userId, String productName, BigDecimal amount,
+                     Integer status, Date createTime, Date updateTime) {
+        this.orderId = orderId;
+        this.orderNo = orderNo;
+        this.userId = userId;
+        this.productName = productName;
+        this.amount = amount;
+        this.status = status;
+        this.createTime = createTime.getTime();
+        this.updateTime = updateTime.getTime();
+    }
+
+    /**
+     * 由订单实体（如冷订单存储读出的订单）转换
+     */
+    public static OrderView of(Order order) {
+        return new OrderView(order.getOrderId(), order.getOrderNo(), order.getUserId(), order.getProductName(),
+                order.getAmount(), order.getStatus(), order.getCreateTime(), order.getUpdateTime());
+    }
+
+    /**
+     * 转换为新的订单实体（不在持久化上下文中），调用方修改它不影响本视图
+     */
+    public Order toOrder() {
+        return Order.builder()
+                .orderId(orderId)
+                .orderNo(orderNo)
+                .userId(userId)
+                .productName(productName)
+                .amount(amount)
+                .status(status)
+                .createTime(new Date(createTime))
+                .updateTime(new Date(updateTime))
+                .newOrder(false)
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.ruchang.power.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 扩容请求
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReshardingRequest {
+
+    /**
+     * 扩容后的全部库，例如 ds0, ds1, ds2, ds3
+     */
+    private List<String> databases;
+
+    /**
+     * 扩容后每个库中的全部订单表，例如 t_order_0 ~ t_order_3
+     */
+    private List<String> tables;
+}
@@ -0,0 +1,63 @@
+package com.ruchang.power.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 一条逻辑 SQL 的路由记录：逻辑 SQL -> 各物理执行单元的实际 SQL
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SQLRouteTrace {
+
+    /**
+     * 写入环形缓冲区的序号，越大越新
+     */
+    private long sequence;
+
+    private Date time;
+
+    private String logicSql;
+
+    private String sqlType;
+
+    private String logicTable;
+
+    /**
+     * single 单节点 / multi 部分节点 / broadcast 全部节点
+     */
+    private String route;
+
+    private double elapsedMillis;
+
+    /**
+     * 是否超过慢 SQL 阈值（慢 SQL 不受采样率限制，总会被记录）
+     */
+    private boolean slow;
+
+    private List<Unit> units;
+
+    /**
+     * 物理执行单元
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Unit {
+
+        private String dataSource;
+
+        private List<String> actualTables;
+
+        private String actualSql;
+
+        private double elapsedMillis;
+
+        private boolean success;
+    }
+}
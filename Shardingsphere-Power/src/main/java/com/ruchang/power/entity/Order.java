@@ -1,11 +1,11 @@
 package com.ruchang.power.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.UpdateTimestamp;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
@@ -21,28 +21,29 @@ import java.util.Date;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "t_order")  // 逻辑表名
-public class Order {
+public class Order implements Persistable<Long> {
 
     /**
      * 订单ID - 使用Snowflake算法生成分布式ID
      * 作为分表键，决定数据落在哪个物理表
+     * 由 OrderKeyGenerator 在应用侧预先分配
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "order_id", nullable = false)
     private Long orderId;
 
     /**
      * 订单编号 - 业务唯一标识
+     * 末尾携带分片基因，按订单号查询可直接路由到单表
      */
-    @Column(name = "order_no", nullable = false, length = 64, unique = true)
+    @Column(name = "order_no", nullable = false, length = 64, unique = true, updatable = false)
     private String orderNo;
 
     /**
      * 用户ID - 作为分库键，决定数据落在哪个物理库
      * 分库规则：user_id % 2
      */
-    @Column(name = "user_id", nullable = false)
+    @Column(name = "user_id", nullable = false, updatable = false)
     private Long userId;
 
     /**
@@ -68,21 +69,70 @@ public class Order {
     private Integer status;
 
     /**
-     * 创建时间
+     * 创建时间（精确到秒，写入前截断，见 truncateToSeconds）
      */
-    @CreationTimestamp
     @Column(name = "create_time", nullable = false, updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date createTime;
 
     /**
-     * 更新时间
+     * 更新时间（精确到秒）
      */
-    @UpdateTimestamp
     @Column(name = "update_time", nullable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date updateTime;
 
+    /**
+     * 是否为新建实体
+     * 主键由应用分配，需告诉 Spring Data 直接 persist，避免 merge 前多一次查询
+     */
+    @JsonIgnore
+    @Transient
+    @Builder.Default
+    private boolean newOrder = true;
+
+    @JsonIgnore
+    @Override
+    public Long getId() {
+        return orderId;
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isNew() {
+        return newOrder;
+    }
+
+    /**
+     * 截断到秒
+     * create_time、update_time 为 DATETIME，MySQL 写入时对毫秒四舍五入；按月分表以 create_time 路由，
+     * 不截断时月末最后半秒的订单会写入本月分区、却存储为下月 1 日，按下月时间范围查询时被裁剪掉
+     */
+    public static Date truncateToSeconds(Date time) {
+        return time == null ? null : new Date(time.getTime() - Math.floorMod(time.getTime(), 1000L));
+    }
+
+    @PrePersist
+    void prePersist() {
+        Date now = truncateToSeconds(new Date());
+        createTime = createTime == null ? now : truncateToSeconds(createTime);
+        updateTime = updateTime == null ? now : truncateToSeconds(updateTime);
+    }
+
+    @PreUpdate
+    void preUpdate() {
+        updateTime = truncateToSeconds(new Date());
+    }
+
+    /**
+     * 持久化或加载后不再是新实体
+     */
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newOrder = false;
+    }
+
     /**
      * 设置订单状态为待支付
      */
@@ -96,32 +146,31 @@ public class Order {
      * 支付订单
      */
     public boolean pay() {
-        if (this.status == 1) { // 只有待支付状态才能支付
-            this.status = 2;
-            return true;
-        }
-        return false;
+        return apply(OrderTransition.PAY);
     }
 
     /**
      * 完成订单
      */
     public boolean complete() {
-        if (this.status == 2) { // 只有已支付状态才能完成
-            this.status = 3;
-            return true;
-        }
-        return false;
+        return apply(OrderTransition.COMPLETE);
     }
 
     /**
      * 取消订单
      */
     public boolean cancel() {
-        if (this.status == 1) { // 只有待支付状态才能取消
-            this.status = 4;
+        return apply(OrderTransition.CANCEL);
+    }
+
+    /**
+     * 按流转规则变更状态，当前状态不满足时返回 false
+     */
+    public boolean apply(OrderTransition transition) {
+        if (this.status != null && this.status == transition.getFrom()) {
+            this.status = transition.getTo();
             return true;
         }
         return false;
     }
-}
\ No newline at end of file
+}
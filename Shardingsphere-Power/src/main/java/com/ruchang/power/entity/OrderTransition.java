@@ -0,0 +1,44 @@
+package com.ruchang.power.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 订单状态流转规则
+ * 待支付(1) -> 已支付(2) -> 已完成(3)，待支付(1) -> 已取消(4)
+ * Order 的内存状态机与仓储层的条件更新共用这份规则
+ */
+@Getter
+@AllArgsConstructor
+public enum OrderTransition {
+
+    /**
+     * 只有待支付状态才能支付
+     */
+    PAY(1, 2, "支付"),
+
+    /**
+     * 只有已支付状态才能完成
+     */
+    COMPLETE(2, 3, "完成"),
+
+    /**
+     * 只有待支付状态才能取消
+     */
+    CANCEL(1, 4, "取消");
+
+    /**
+     * 流转前状态
+     */
+    private final int from;
+
+    /**
+     * 流转后状态
+     */
+    private final int to;
+
+    /**
+     * 操作名称
+     */
+    private final String description;
+}
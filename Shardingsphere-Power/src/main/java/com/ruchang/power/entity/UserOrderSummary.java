@@ -0,0 +1,100 @@
+package com.ruchang.power.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 用户订单汇总
+ * 对应逻辑表 t_user_order_summary，按 user_id 分库，与该用户的订单位于同一个库，
+ * 可以和订单写入放在同一个本地事务中维护
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "t_user_order_summary")
+public class UserOrderSummary {
+
+    /**
+     * 用户ID - 分库键
+     */
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * 订单总金额（包含所有状态和已归档的订单，与 sumAmountByUserId 口径一致）
+     */
+    @Column(name = "total_amount", nullable = false, precision = 15, scale = 2)
+    private BigDecimal totalAmount;
+
+    /**
+     * 订单总数（包含已归档的订单，下同）
+     */
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+
+    /**
+     * 待支付订单数
+     */
+    @Column(name = "pending_count", nullable = false)
+    private Long pendingCount;
+
+    /**
+     * 已支付订单数
+     */
+    @Column(name = "paid_count", nullable = false)
+    private Long paidCount;
+
+    /**
+     * 已完成订单数
+     */
+    @Column(name = "completed_count", nullable = false)
+    private Long completedCount;
+
+    /**
+     * 已取消订单数
+     */
+    @Column(name = "cancelled_count", nullable = false)
+    private Long cancelledCount;
+
+    /**
+     * 已归档（移入冷订单存储）的已完成订单数，计入 completedCount；
+     * 冷订单存储不一定与数据库共享，重建汇总时从这里取已归档部分，不读冷订单存储
+     */
+    @Column(name = "archived_completed_count", nullable = false)
+    private Long archivedCompletedCount;
+
+    /**
+     * 已归档的已取消订单数，计入 cancelledCount
+     */
+    @Column(name = "archived_cancelled_count", nullable = false)
+    private Long archivedCancelledCount;
+
+    /**
+     * 已归档订单的总金额，计入 totalAmount
+     */
+    @Column(name = "archived_amount", nullable = false, precision = 15, scale = 2)
+    private BigDecimal archivedAmount;
+
+    /**
+     * 最近一次下单时间
+     */
+    @Column(name = "last_order_time")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastOrderTime;
+
+    /**
+     * 更新时间
+     */
+    @Column(name = "update_time", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateTime;
+}
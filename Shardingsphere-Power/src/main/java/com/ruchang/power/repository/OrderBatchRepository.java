@@ -0,0 +1,193 @@
+package com.ruchang.power.repository;
+
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.sharding.OrderShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单批量写入
+ * 先按物理分片分组，再对每组使用多行 INSERT / IN 条件更新，整块的语句通过 JDBC batch 一次发送，
+ * 每条 SQL 只会被 ShardingSphere 路由到一个物理表，避免 JPA 逐行 save
+ */
+@Slf4j
+@Repository
+public class OrderBatchRepository {
+
+    private static final String INSERT_PREFIX = "INSERT INTO t_order "
+            + "(order_id, order_no, user_id, product_name, amount, status, create_time, update_time) VALUES ";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int COLUMN_COUNT = 8;
+
+    private static final String SELECT_FOR_UPDATE = "SELECT order_id, user_id FROM t_order "
+            + "WHERE order_id IN (%s) AND status = ? FOR UPDATE";
+
+    private static final String UPDATE_STATUS = "UPDATE t_order SET status = ?, update_time = ? "
+            + "WHERE order_id IN (%s) AND status = ?";
+
+    private static final String DELETE_CHUNK = "DELETE FROM %s WHERE user_id = ? AND status = ? LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 单条 INSERT 语句包含的行数
+     */
+    @Value("${order.bulk.rows-per-statement:50}")
+    private int rowsPerStatement;
+
+    /**
+     * 批量插入订单（订单ID、订单号、时间需提前设置好）
+     *
+     * @param orders 订单列表
+     * @return 插入的行数
+     */
+    public int insertAll(List<Order> orders) {
+        Map<DataNode, List<Order>> groups = new LinkedHashMap<>();
+        for (Order each : orders) {
+            groups.computeIfAbsent(orderShardRouter.route(each), key -> new ArrayList<>()).add(each);
+        }
+
+        int rows = 0;
+        for (Map.Entry<DataNode, List<Order>> entry : groups.entrySet()) {
+            rows += insertGroup(entry.getValue());
+            log.debug("批量写入分片: node={}, rows={}", entry.getKey().format(), entry.getValue().size());
+        }
+        return rows;
+    }
+
+    /**
+     * 批量条件更新订单状态，仅状态为 from 的订单会被更新
+     * 每个物理分片先 SELECT ... FOR UPDATE 锁住满足条件的行，再用一条 IN 语句更新，
+     * 返回的就是实际被更新的订单，调用方据此维护汇总，需在事务中调用
+     *
+     * @return 被更新的订单ID -> 用户ID
+     */
+    public Map<Long, Long> updateStatusAll(Collection<Long> orderIds, int from, int to) {
+        // 旧订单ID没有基因，无法按分片分组，归入 null 组广播执行
+        Map<DataNode, List<Long>> groups = new LinkedHashMap<>();
+        for (Long each : orderIds) {
+            groups.computeIfAbsent(orderShardRouter.routeByOrderId(each), key -> new ArrayList<>()).add(each);
+        }
+
+        Map<Long, Long> result = new LinkedHashMap<>();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (List<Long> group : groups.values()) {
+            Map<Long, Long> locked = new LinkedHashMap<>();
+            List<Object> args = new ArrayList<>(group);
+            args.add(from);
+            jdbcTemplate.query(String.format(SELECT_FOR_UPDATE, placeholders(group.size())),
+                    rs -> {
+                        locked.put(rs.getLong(1), rs.getLong(2));
+                    }, args.toArray());
+            if (locked.isEmpty()) {
+                continue;
+            }
+
+            List<Object> updateArgs = new ArrayList<>(locked.size() + 3);
+            updateArgs.add(to);
+            updateArgs.add(now);
+            updateArgs.addAll(locked.keySet());
+            updateArgs.add(from);
+            jdbcTemplate.update(String.format(UPDATE_STATUS, placeholders(locked.size())), updateArgs.toArray());
+            result.putAll(locked);
+        }
+        return result;
+    }
+
+    /**
+     * 在一个物理表上删除用户指定状态的一块订单，直接在该表的主库上执行，每块单独提交
+     * ShardingSphere 不支持路由到多个节点的 DELETE ... LIMIT，调用方按 OrderShardRouter.getUserDataNodes 逐表执行
+     *
+     * @return 删除的行数，小于 limit 表示该表中该状态已删完
+     */
+    public int deleteChunk(DataNode node, long userId, int status, int limit) {
+        return new JdbcTemplate(orderShardRouter.getActualDataSource(node.getDataSourceName()))
+                .update(String.format(DELETE_CHUNK, node.getTableName()), userId, status, limit);
+    }
+
+    private int insertGroup(List<Order> group) {
+        int fullChunks = group.size() / rowsPerStatement;
+        int rows = 0;
+        if (fullChunks > 0) {
+            int[] counts = jdbcTemplate.batchUpdate(insertSql(rowsPerStatement),
+                    new BatchPreparedStatementSetter() {
+
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            int from = i * rowsPerStatement;
+                            bind(ps, group.subList(from, from + rowsPerStatement));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return fullChunks;
+                        }
+                    });
+            rows += Arrays.stream(counts).map(each -> each < 0 ? rowsPerStatement : each).sum();
+        }
+        List<Order> tail = group.subList(fullChunks * rowsPerStatement, group.size());
+        if (!tail.isEmpty()) {
+            rows += jdbcTemplate.update(insertSql(tail.size()), ps -> bind(ps, tail));
+        }
+        return rows;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder result = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append('?');
+        }
+        return result.toString();
+    }
+
+    private static String insertSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rowCount * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement ps, List<Order> rows) throws SQLException {
+        int index = 1;
+        for (Order each : rows) {
+            ps.setLong(index, each.getOrderId());
+            ps.setString(index + 1, each.getOrderNo());
+            ps.setLong(index + 2, each.getUserId());
+            ps.setString(index + 3, each.getProductName());
+            ps.setBigDecimal(index + 4, each.getAmount());
+            ps.setInt(index + 5, each.getStatus());
+            ps.setTimestamp(index + 6, new Timestamp(each.getCreateTime().getTime()));
+            ps.setTimestamp(index + 7, new Timestamp(each.getUpdateTime().getTime()));
+            index += COLUMN_COUNT;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.ruchang.power.repository;
+
+import com.ruchang.power.dto.OrderEvent;
+import com.ruchang.power.sharding.OrderShardRouter;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订单事件 outbox
+ * 追加经 ShardingSphere 按 user_id 路由到用户所在的库（与订单写入同一本地事务）；
+ * 投递位置、序号空洞、读取、清理直接访问各库的主库（t_order_outbox_position、t_order_outbox_gap 不在分片规则中）
+ */
+@Repository
+public class OrderOutboxRepository {
+
+    public static final String LOGIC_TABLE = "t_order_outbox";
+
+    private static final String INSERT_EVENT = "INSERT INTO t_order_outbox (event_type, order_id, user_id, create_time) "
+            + "VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_AFTER = "SELECT id, event_type, order_id, user_id, create_time "
+            + "FROM t_order_outbox WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String SELECT_MAX_ID = "SELECT COALESCE(MAX(id), 0) FROM t_order_outbox";
+
+    private static final String DELETE_DELIVERED = "DELETE FROM t_order_outbox WHERE id <= ? AND create_time < ? LIMIT ?";
+
+    private static final String INSERT_POSITION = "INSERT IGNORE INTO t_order_outbox_position "
+            + "(consumer, position, update_time) VALUES (?, 0, ?)";
+
+    private static final String LOCK_POSITION = "SELECT position FROM t_order_outbox_position "
+            + "WHERE consumer = ? FOR UPDATE";
+
+    private static final String SELECT_POSITION = "SELECT position FROM t_order_outbox_position WHERE consumer = ?";
+
+    private static final String ADVANCE_POSITION = "UPDATE t_order_outbox_position SET position = ?, update_time = ? "
+            + "WHERE consumer = ? AND position = ?";
+
+    private static final String SELECT_GAP_EVENTS = "SELECT o.id, o.event_type, o.order_id, o.user_id, o.create_time "
+            + "FROM t_order_outbox_gap g JOIN t_order_outbox o ON o.id = g.id WHERE g.consumer = ? ORDER BY o.id LIMIT ?";
+
+    private static final String SELECT_GAP_SUMMARY = "SELECT COUNT(*), MIN(id) FROM t_order_outbox_gap WHERE consumer = ?";
+
+    private static final String INSERT_GAP = "INSERT IGNORE INTO t_order_outbox_gap (consumer, id, create_time) "
+            + "VALUES (?, ?, ?)";
+
+    private static final String DELETE_GAP = "DELETE FROM t_order_outbox_gap WHERE consumer = ? AND id = ?";
+
+    private static final String DELETE_EXPIRED_GAPS = "DELETE FROM t_order_outbox_gap WHERE consumer = ? AND create_time < ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    private final Map<String, JdbcTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 追加事件，需要在订单写入的事务中调用
+     *
+     * @param rows event_type, order_id, user_id, create_time
+     */
+    public void append(List<Object[]> rows) {
+        if (rows.size() == 1) {
+            jdbcTemplate.update(INSERT_EVENT, rows.get(0));
+        } else {
+            jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+        }
+    }
+
+    /**
+     * 配置了 outbox 表的库（包含扩容预留的库）
+     */
+    public Set<String> getDataSourceNames() {
+        Set<String> result = new LinkedHashSet<>();
+        for (DataNode each : orderShardRouter.getAllTableDataNodes().getOrDefault(LOGIC_TABLE,
+                Collections.emptyList())) {
+            result.add(each.getDataSourceName());
+        }
+        return result;
+    }
+
+    /**
+     * 锁住并返回消费者在该库的投递位置，首次投递时从 0 开始；需要在该库主库的事务中调用，
+     * 多个实例同时中继时按库、消费者串行读取
+     */
+    public long lockPosition(String dataSourceName, String consumer) {
+        JdbcTemplate template = template(dataSourceName);
+        template.update(INSERT_POSITION, consumer, new Timestamp(System.currentTimeMillis()));
+        Long result = template.queryForObject(LOCK_POSITION, Long.class, consumer);
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * 消费者在该库的投递位置，还没有投递过时返回 0
+     */
+    public long getPosition(String dataSourceName, String consumer) {
+        List<Long> result = template(dataSourceName).queryForList(SELECT_POSITION, Long.class, consumer);
+        return result.isEmpty() ? 0 : result.get(0);
+    }
+
+    /**
+     * 投递位置仍为 expected 时推进到 position，返回是否推进成功（失败说明其他实例已推进）
+     */
+    public boolean advancePosition(String dataSourceName, String consumer, long expected, long position) {
+        return template(dataSourceName).update(ADVANCE_POSITION, position, new Timestamp(System.currentTimeMillis()),
+                consumer, expected) > 0;
+    }
+
+    /**
+     * 读取位置之后的事件（按序号）
+     */
+    public List<OrderEvent> findAfter(String dataSourceName, long position, int limit) {
+        return template(dataSourceName).query(SELECT_AFTER, (rs, rowNum) -> new OrderEvent(dataSourceName,
+                rs.getLong(1), OrderEvent.Type.valueOf(rs.getString(2)), rs.getLong(3), rs.getLong(4),
+                rs.getTimestamp(5)), position, limit);
+    }
+
+    /**
+     * 读取消费者跳过的序号中已经提交的事件（迟提交的事务），按序号
+     */
+    public List<OrderEvent> findGapEvents(String dataSourceName, String consumer, int limit) {
+        return template(dataSourceName).query(SELECT_GAP_EVENTS, (rs, rowNum) -> new OrderEvent(dataSourceName,
+                rs.getLong(1), OrderEvent.Type.valueOf(rs.getString(2)), rs.getLong(3), rs.getLong(4),
+                rs.getTimestamp(5)), consumer, limit);
+    }
+
+    /**
+     * 记录消费者跳过的序号，需要与推进位置在同一事务中调用
+     */
+    public void addGaps(String dataSourceName, String consumer, List<Long> ids) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long each : ids) {
+            rows.add(new Object[]{consumer, each, now});
+        }
+        template(dataSourceName).batchUpdate(INSERT_GAP, rows);
+    }
+
+    /**
+     * 删除已补投的序号
+     */
+    public void deleteGaps(String dataSourceName, String consumer, List<Long> ids) {
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long each : ids) {
+            rows.add(new Object[]{consumer, each});
+        }
+        template(dataSourceName).batchUpdate(DELETE_GAP, rows);
+    }
+
+    /**
+     * 删除早于 before 跳过的序号（不再等待这些事务提交），返回删除数
+     */
+    public int deleteExpiredGaps(String dataSourceName, String consumer, Timestamp before) {
+        return template(dataSourceName).update(DELETE_EXPIRED_GAPS, consumer, before);
+    }
+
+    /**
+     * 消费者仍在等待的序号数
+     */
+    public long countGaps(String dataSourceName, String consumer) {
+        Long result = template(dataSourceName).queryForObject(SELECT_GAP_SUMMARY, (rs, rowNum) -> rs.getLong(1),
+                consumer);
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * 消费者仍在等待的最小序号，没有时返回 Long.MAX_VALUE
+     */
+    public long getMinGapId(String dataSourceName, String consumer) {
+        Long result = template(dataSourceName).queryForObject(SELECT_GAP_SUMMARY,
+                (rs, rowNum) -> rs.getLong(1) == 0 ? Long.MAX_VALUE : rs.getLong(2), consumer);
+        return result == null ? Long.MAX_VALUE : result;
+    }
+
+    /**
+     * 该库最大的事件序号
+     */
+    public long getMaxId(String dataSourceName) {
+        Long result = template(dataSourceName).queryForObject(SELECT_MAX_ID, Long.class);
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * 删除已投递（序号不超过 upTo）且早于 before 的事件，每次最多 limit 条
+     */
+    public int deleteDelivered(String dataSourceName, long upTo, Timestamp before, int limit) {
+        return template(dataSourceName).update(DELETE_DELIVERED, upTo, before, limit);
+    }
+
+    private JdbcTemplate template(String dataSourceName) {
+        return templates.computeIfAbsent(dataSourceName,
+                key -> new JdbcTemplate(orderShardRouter.getActualDataSource(key)));
+    }
+}
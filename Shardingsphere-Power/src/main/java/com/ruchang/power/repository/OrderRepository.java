@@ -1,9 +1,11 @@
 package com.ruchang.power.repository;
 
+import com.ruchang.power.dto.OrderView;
 import com.ruchang.power.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,7 +23,14 @@ import java.util.Optional;
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
     /**
-     * 根据订单号查询（会广播查询所有分片）
+     * 只读视图查询的 SELECT 部分（构造表达式，不加载实体）
+     */
+    String SELECT_VIEW = "SELECT new com.ruchang.power.dto.OrderView(o.orderId, o.orderNo, o.userId, "
+            + "o.productName, o.amount, o.status, o.createTime, o.updateTime) FROM Order o ";
+
+    /**
+     * 根据订单号查询
+     * 带基因的订单号直接路由到单表，旧订单号会广播查询所有分片
      *
      * @param orderNo 订单号
      * @return 订单
@@ -37,13 +46,75 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
 
     /**
-     * 分页查询用户订单
+     * 根据用户ID查询只读视图
+     *
+     * @param userId 用户ID
+     * @return 用户订单列表
+     */
+    @Query(SELECT_VIEW + "WHERE o.userId = :userId")
+    List<OrderView> findViewsByUserId(@Param("userId") Long userId);
+
+    /**
+     * 分页查询用户订单（只读视图）
      *
      * @param userId   用户ID
      * @param pageable 分页参数
      * @return 分页结果
      */
-    Page<Order> findByUserId(Long userId, Pageable pageable);
+    @Query(value = SELECT_VIEW + "WHERE o.userId = :userId",
+            countQuery = "SELECT COUNT(o) FROM Order o WHERE o.userId = :userId")
+    Page<OrderView> findViewsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * 游标分页 - 第一页
+     * 不带 offset，也不查总数，每个分片只读取 pageable 指定的行数
+     *
+     * @param userId   用户ID
+     * @param pageable 只使用其中的 size
+     * @return 按 create_time、order_id 倒序的订单
+     */
+    @Query(SELECT_VIEW + "WHERE o.userId = :userId ORDER BY o.createTime DESC, o.orderId DESC")
+    List<OrderView> findUserOrdersFirst(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * 游标分页 - 后续页，从 (createTime, orderId) 之后继续读取
+     *
+     * @param userId     用户ID
+     * @param createTime 上一页最后一条的创建时间
+     * @param orderId    上一页最后一条的订单ID
+     * @param pageable   只使用其中的 size
+     * @return 按 create_time、order_id 倒序的订单
+     */
+    @Query(SELECT_VIEW + "WHERE o.userId = :userId "
+            + "AND (o.createTime < :createTime OR (o.createTime = :createTime AND o.orderId < :orderId)) "
+            + "ORDER BY o.createTime DESC, o.orderId DESC")
+    List<OrderView> findUserOrdersAfter(@Param("userId") Long userId,
+                                        @Param("createTime") Date createTime,
+                                        @Param("orderId") Long orderId,
+                                        Pageable pageable);
+
+    /**
+     * 游标分页 - 第一页，只读取 [from, to) 内创建的订单（按月分表时只访问覆盖的分区表）
+     */
+    @Query(SELECT_VIEW + "WHERE o.userId = :userId AND o.createTime >= :from AND o.createTime < :to "
+            + "ORDER BY o.createTime DESC, o.orderId DESC")
+    List<OrderView> findUserOrdersFirstBetween(@Param("userId") Long userId,
+                                               @Param("from") Date from,
+                                               @Param("to") Date to,
+                                               Pageable pageable);
+
+    /**
+     * 游标分页 - 后续页，只读取 [from, to) 内创建的订单（按月分表时只访问覆盖的分区表）
+     */
+    @Query(SELECT_VIEW + "WHERE o.userId = :userId AND o.createTime >= :from AND o.createTime < :to "
+            + "AND (o.createTime < :createTime OR (o.createTime = :createTime AND o.orderId < :orderId)) "
+            + "ORDER BY o.createTime DESC, o.orderId DESC")
+    List<OrderView> findUserOrdersAfterBetween(@Param("userId") Long userId,
+                                               @Param("from") Date from,
+                                               @Param("to") Date to,
+                                               @Param("createTime") Date createTime,
+                                               @Param("orderId") Long orderId,
+                                               Pageable pageable);
 
     /**
      * 根据用户ID和状态查询
@@ -90,10 +161,63 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     long countByStatus(Integer status);
 
     /**
-     * 删除用户的订单
+     * 按状态分组统计订单数量（每个分片一次 GROUP BY，由 ShardingSphere 归并）
+     *
+     * @return [status, count] 列表
+     */
+    @Query("SELECT o.status, COUNT(o) FROM Order o GROUP BY o.status")
+    List<Object[]> countGroupByStatus();
+
+    /**
+     * 按状态分组统计用户订单数量
      *
      * @param userId 用户ID
-     * @return 删除的记录数
+     * @return [status, count] 列表
+     */
+    @Query("SELECT o.status, COUNT(o) FROM Order o WHERE o.userId = :userId GROUP BY o.status")
+    List<Object[]> countByUserIdGroupByStatus(@Param("userId") Long userId);
+
+    /**
+     * 按状态汇总用户订单（订单数、金额、最近下单时间），用于重建用户汇总
+     *
+     * @param userId 用户ID
+     * @return [status, count, sum(amount), max(createTime)] 列表
+     */
+    @Query("SELECT o.status, COUNT(o), SUM(o.amount), MAX(o.createTime) FROM Order o "
+            + "WHERE o.userId = :userId GROUP BY o.status")
+    List<Object[]> summarizeByUserId(@Param("userId") Long userId);
+
+    /**
+     * 按 user_id 升序遍历有订单的用户
+     *
+     * @param after    上一批最后一个用户ID
+     * @param pageable 每批数量
+     * @return 用户ID列表
+     */
+    @Query("SELECT DISTINCT o.userId FROM Order o WHERE o.userId > :after ORDER BY o.userId")
+    List<Long> findUserIdsAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * 查询订单所属用户（只取一列，不加载实体）
+     *
+     * @param orderId 订单ID
+     * @return 用户ID
+     */
+    @Query("SELECT o.userId FROM Order o WHERE o.orderId = :orderId")
+    Optional<Long> findUserIdByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * 条件更新订单状态，仅当前状态为 from 时生效，并发回调下不会覆盖彼此的结果
+     * 同时带 user_id 和 order_id，直接路由到单个物理表
+     *
+     * @return 更新的行数，0 表示订单不存在或状态不满足
      */
-    long deleteByUserId(Long userId);
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :to, o.updateTime = :now "
+            + "WHERE o.orderId = :orderId AND o.userId = :userId AND o.status = :from")
+    int updateStatus(@Param("orderId") Long orderId,
+                     @Param("userId") Long userId,
+                     @Param("from") Integer from,
+                     @Param("to") Integer to,
+                     @Param("now") Date now);
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.ruchang.power.repository;
+
+import com.ruchang.power.sharding.OrderShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 加积分记录（t_order_point_award），每个订单最多一行，保证同一订单只调用一次 point-service
+ * 与订单事件同库，直接访问各库的主库（不在分片规则中）
+ */
+@Repository
+public class PointAwardRepository {
+
+    /**
+     * 已占用，正在调用 point-service 或调用结果未知（超时、进程退出）
+     */
+    public static final int STATUS_CLAIMED = 0;
+
+    /**
+     * point-service 已返回成功
+     */
+    public static final int STATUS_AWARDED = 1;
+
+    private static final String INSERT_CLAIM = "INSERT IGNORE INTO t_order_point_award "
+            + "(order_id, user_id, status, create_time, update_time) VALUES (?, ?, 0, ?, ?)";
+
+    private static final String SELECT_STATUS = "SELECT status FROM t_order_point_award WHERE order_id = ?";
+
+    private static final String UPDATE_AWARDED = "UPDATE t_order_point_award SET status = 1, update_time = ? "
+            + "WHERE order_id = ? AND status = 0";
+
+    private static final String DELETE_CLAIM = "DELETE FROM t_order_point_award WHERE order_id = ? AND status = 0";
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    private final Map<String, JdbcTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 占用订单的加积分记录，返回是否占用成功（已有记录时返回 false，不再调用 point-service）
+     */
+    public boolean claim(String dataSourceName, long orderId, long userId) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return template(dataSourceName).update(INSERT_CLAIM, orderId, userId, now, now) > 0;
+    }
+
+    /**
+     * 订单的加积分状态，没有记录时返回 null
+     */
+    public Integer getStatus(String dataSourceName, long orderId) {
+        List<Integer> result = template(dataSourceName).queryForList(SELECT_STATUS, Integer.class, orderId);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * point-service 返回成功后标记为已加积分
+     */
+    public void markAwarded(String dataSourceName, long orderId) {
+        template(dataSourceName).update(UPDATE_AWARDED, new Timestamp(System.currentTimeMillis()), orderId);
+    }
+
+    /**
+     * 确定没有加上积分（连接失败、point-service 返回错误）时释放占用，重试时重新调用
+     */
+    public void release(String dataSourceName, long orderId) {
+        template(dataSourceName).update(DELETE_CLAIM, orderId);
+    }
+
+    private JdbcTemplate template(String dataSourceName) {
+        return templates.computeIfAbsent(dataSourceName,
+                key -> new JdbcTemplate(orderShardRouter.getActualDataSource(key)));
+    }
+}
@@ -0,0 +1,311 @@
+package com.ruchang.power.repository;
+
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderSlotLayout;
+import com.ruchang.power.sharding.ReshardingState;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 扩容迁移的数据访问
+ * 行数据直接读写物理数据源上的物理表，绕过 ShardingSphere 路由（迁移期间源节点和目标节点都要访问）；
+ * 迁移状态保存在元数据库（order.resharding.meta-data-source）的 t_order_resharding 表中
+ */
+@Repository
+public class ReshardingRepository {
+
+    /**
+     * 参与迁移的逻辑表，行数据以 Object[] 按 columns 顺序保存
+     */
+    public enum Table {
+
+        ORDER("t_order", new String[]{"order_id", "order_no", "user_id", "product_name", "amount", "status",
+                "create_time", "update_time"}, 2, 0, 7),
+
+        USER_ORDER_SUMMARY("t_user_order_summary", new String[]{"user_id", "total_amount", "order_count",
+                "pending_count", "paid_count", "completed_count", "cancelled_count", "archived_completed_count",
+                "archived_cancelled_count", "archived_amount", "last_order_time", "update_time"}, 0, -1, 11);
+
+        private final String logicTable;
+
+        private final String[] columns;
+
+        private final int userIdIndex;
+
+        /**
+         * order_id 所在列，按库分片（每库一张表）的逻辑表为 -1
+         */
+        private final int orderIdIndex;
+
+        private final int updateTimeIndex;
+
+        Table(String logicTable, String[] columns, int userIdIndex, int orderIdIndex, int updateTimeIndex) {
+            this.logicTable = logicTable;
+            this.columns = columns;
+            this.userIdIndex = userIdIndex;
+            this.orderIdIndex = orderIdIndex;
+            this.updateTimeIndex = updateTimeIndex;
+        }
+
+        public String getLogicTable() {
+            return logicTable;
+        }
+
+        /**
+         * 主键（第一列）
+         */
+        public long keyOf(Object[] row) {
+            return ((Number) row[0]).longValue();
+        }
+
+        public long userIdOf(Object[] row) {
+            return ((Number) row[userIdIndex]).longValue();
+        }
+
+        /**
+         * 行在指定布局下所在的物理节点
+         */
+        public DataNode nodeOf(Object[] row, OrderSlotLayout layout) {
+            long userId = userIdOf(row);
+            if (orderIdIndex < 0) {
+                return new DataNode(layout.databaseOf(userId), logicTable);
+            }
+            return layout.orderNodeOf(userId, ((Number) row[orderIdIndex]).longValue());
+        }
+
+        /**
+         * 物理节点在指定布局下是否会被路由到
+         */
+        public boolean isOwned(DataNode node, OrderSlotLayout layout) {
+            return orderIdIndex < 0 ? layout.getDatabases().contains(node.getDataSourceName()) : layout.owns(node);
+        }
+
+        /**
+         * 行的更新时间（毫秒）
+         */
+        public long updateTimeOf(Object[] row) {
+            return toMillis(row[updateTimeIndex]);
+        }
+    }
+
+    private static final int META_ID = 1;
+
+    private static final String SELECT_STATE = "SELECT phase, version, database_slots, table_slots, target_version, "
+            + "target_database_slots, target_table_slots FROM t_order_resharding WHERE id = ?";
+
+    private static final String INSERT_STATE = "INSERT IGNORE INTO t_order_resharding "
+            + "(id, phase, version, database_slots, table_slots, update_time) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_STATE = "UPDATE t_order_resharding SET phase = ?, version = ?, "
+            + "database_slots = ?, table_slots = ?, target_version = ?, target_database_slots = ?, "
+            + "target_table_slots = ?, update_time = ? WHERE id = ? AND phase = ? AND version = ?";
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    private final Map<String, JdbcTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 读取迁移状态，首次使用时写入初始布局
+     */
+    public ReshardingState loadState(String metaDataSource, OrderSlotLayout initial) {
+        JdbcTemplate template = template(metaDataSource);
+        template.update(INSERT_STATE, META_ID, ReshardingState.Phase.IDLE.name(), initial.getVersion(),
+                initial.databasesAsString(), initial.tablesAsString(), new Timestamp(System.currentTimeMillis()));
+        return template.queryForObject(SELECT_STATE, (rs, rowNum) -> {
+            OrderSlotLayout current = OrderSlotLayout.parse(rs.getLong(2), rs.getString(3), rs.getString(4));
+            String targetDatabases = rs.getString(6);
+            OrderSlotLayout target = targetDatabases == null ? null
+                    : OrderSlotLayout.parse(rs.getLong(5), targetDatabases, rs.getString(7));
+            return new ReshardingState(ReshardingState.Phase.valueOf(rs.getString(1)), current, target);
+        }, META_ID);
+    }
+
+    /**
+     * 保存迁移状态，仅当持久化的阶段、版本仍为 expected 时成功（多实例并发操作时只有一个生效）
+     */
+    public boolean saveState(String metaDataSource, ReshardingState expected, ReshardingState state) {
+        OrderSlotLayout target = state.getTarget();
+        return template(metaDataSource).update(UPDATE_STATE,
+                state.getPhase().name(), state.getCurrent().getVersion(),
+                state.getCurrent().databasesAsString(), state.getCurrent().tablesAsString(),
+                target == null ? null : target.getVersion(),
+                target == null ? null : target.databasesAsString(),
+                target == null ? null : target.tablesAsString(),
+                new Timestamp(System.currentTimeMillis()),
+                META_ID, expected.getPhase().name(), expected.getCurrent().getVersion()) == 1;
+    }
+
+    /**
+     * 按主键升序读取一批行
+     */
+    public List<Object[]> scan(Table table, DataNode node, long afterKey, int limit) {
+        String sql = "SELECT " + String.join(", ", table.columns) + " FROM " + node.getTableName()
+                + " WHERE " + table.columns[0] + " > ? ORDER BY " + table.columns[0] + " LIMIT ?";
+        return template(node.getDataSourceName()).query(sql, (rs, rowNum) -> readRow(rs, table), afterKey, limit);
+    }
+
+    /**
+     * 按主键读取
+     *
+     * @return 主键 -> 行
+     */
+    public Map<Long, Object[]> findByKeys(Table table, DataNode node, Collection<Long> keys) {
+        Map<Long, Object[]> result = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT " + String.join(", ", table.columns) + " FROM " + node.getTableName()
+                + " WHERE " + table.columns[0] + " IN (" + placeholders(keys.size()) + ")";
+        template(node.getDataSourceName()).query(sql, rs -> {
+            Object[] row = readRow(rs, table);
+            result.put(table.keyOf(row), row);
+        }, keys.toArray());
+        return result;
+    }
+
+    /**
+     * 删除用户的全部行
+     */
+    public int deleteByUserId(Table table, DataNode node, long userId) {
+        return template(node.getDataSourceName()).update("DELETE FROM " + node.getTableName()
+                + " WHERE " + table.columns[table.userIdIndex] + " = ?", userId);
+    }
+
+    /**
+     * 插入行，主键已存在的跳过（复制时不覆盖双写已写入的新数据）
+     */
+    public int insertIgnore(Table table, DataNode node, List<Object[]> rows) {
+        return write(node, "INSERT IGNORE INTO " + node.getTableName() + columnList(table), rows, "");
+    }
+
+    /**
+     * 插入行，主键已存在的整行覆盖
+     */
+    public int upsert(Table table, DataNode node, List<Object[]> rows) {
+        StringBuilder update = new StringBuilder(" ON DUPLICATE KEY UPDATE ");
+        for (int i = 1; i < table.columns.length; i++) {
+            if (i > 1) {
+                update.append(", ");
+            }
+            update.append(table.columns[i]).append(" = VALUES(").append(table.columns[i]).append(')');
+        }
+        return write(node, "INSERT INTO " + node.getTableName() + columnList(table), rows, update.toString());
+    }
+
+    /**
+     * 按主键删除
+     */
+    public int deleteByKeys(Table table, DataNode node, Collection<Long> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        return template(node.getDataSourceName()).update("DELETE FROM " + node.getTableName()
+                + " WHERE " + table.columns[0] + " IN (" + placeholders(keys.size()) + ")", keys.toArray());
+    }
+
+    /**
+     * 行校验和，对数据库返回的类型差异做了归一化（数值、时间），两个节点上相同的行校验和相同
+     */
+    public static long checksum(Object[] row) {
+        CRC32 crc = new CRC32();
+        for (Object each : row) {
+            crc.update(normalize(each).getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        return crc.getValue();
+    }
+
+    private int write(DataNode node, String prefix, List<Object[]> rows, String suffix) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int columnCount = rows.get(0).length;
+        StringBuilder sql = new StringBuilder(prefix).append(" VALUES ");
+        String row = "(" + placeholders(columnCount) + ")";
+        List<Object> args = new ArrayList<>(rows.size() * columnCount);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+            for (Object each : rows.get(i)) {
+                args.add(each);
+            }
+        }
+        sql.append(suffix);
+        return template(node.getDataSourceName()).update(sql.toString(), args.toArray());
+    }
+
+    private JdbcTemplate template(String dataSourceName) {
+        return templates.computeIfAbsent(dataSourceName,
+                key -> new JdbcTemplate(orderShardRouter.getActualDataSource(key)));
+    }
+
+    private static String columnList(Table table) {
+        return " (" + String.join(", ", table.columns) + ")";
+    }
+
+    private static Object[] readRow(ResultSet rs, Table table) throws SQLException {
+        Object[] result = new Object[table.columns.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = rs.getObject(i + 1);
+        }
+        return result;
+    }
+
+    private static String normalize(Object value) {
+        if (value == null) {
+            return "\u0000";
+        }
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = ((BigDecimal) value).stripTrailingZeros();
+            return decimal.signum() == 0 ? "0" : decimal.toPlainString();
+        }
+        if (value instanceof Number) {
+            return Long.toString(((Number) value).longValue());
+        }
+        if (value instanceof Date || value instanceof LocalDateTime) {
+            return Long.toString(toMillis(value));
+        }
+        return value.toString();
+    }
+
+    private static long toMillis(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value).getTime();
+        }
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder result = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append('?');
+        }
+        return result.toString();
+    }
+}
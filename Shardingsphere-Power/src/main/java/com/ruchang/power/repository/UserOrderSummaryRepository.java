@@ -0,0 +1,75 @@
+package com.ruchang.power.repository;
+
+import com.ruchang.power.entity.UserOrderSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 用户订单汇总数据访问接口
+ * 计数均使用 col = col ± n 的原子更新，不做读-改-写
+ */
+@Repository
+public interface UserOrderSummaryRepository extends JpaRepository<UserOrderSummary, Long> {
+
+    /**
+     * 待支付 -> 已支付
+     */
+    @Modifying
+    @Query("UPDATE UserOrderSummary s SET s.pendingCount = s.pendingCount - :count, s.paidCount = s.paidCount + :count, "
+            + "s.updateTime = :now WHERE s.userId = :userId")
+    int markPaid(@Param("userId") Long userId, @Param("count") long count, @Param("now") Date now);
+
+    /**
+     * 已支付 -> 已完成
+     */
+    @Modifying
+    @Query("UPDATE UserOrderSummary s SET s.paidCount = s.paidCount - :count, s.completedCount = s.completedCount + :count, "
+            + "s.updateTime = :now WHERE s.userId = :userId")
+    int markCompleted(@Param("userId") Long userId, @Param("count") long count, @Param("now") Date now);
+
+    /**
+     * 待支付 -> 已取消
+     */
+    @Modifying
+    @Query("UPDATE UserOrderSummary s SET s.pendingCount = s.pendingCount - :count, "
+            + "s.cancelledCount = s.cancelledCount + :count, s.updateTime = :now WHERE s.userId = :userId")
+    int markCancelled(@Param("userId") Long userId, @Param("count") long count, @Param("now") Date now);
+
+    /**
+     * 重建时整体覆盖汇总值
+     */
+    @Modifying
+    @Query("UPDATE UserOrderSummary s SET s.totalAmount = :totalAmount, s.orderCount = :orderCount, "
+            + "s.pendingCount = :pendingCount, s.paidCount = :paidCount, s.completedCount = :completedCount, "
+            + "s.cancelledCount = :cancelledCount, s.lastOrderTime = :lastOrderTime, s.updateTime = :now "
+            + "WHERE s.userId = :userId")
+    int overwrite(@Param("userId") Long userId,
+                  @Param("totalAmount") BigDecimal totalAmount,
+                  @Param("orderCount") long orderCount,
+                  @Param("pendingCount") long pendingCount,
+                  @Param("paidCount") long paidCount,
+                  @Param("completedCount") long completedCount,
+                  @Param("cancelledCount") long cancelledCount,
+                  @Param("lastOrderTime") Date lastOrderTime,
+                  @Param("now") Date now);
+
+    /**
+     * 各库已归档的已完成、已取消订单数之和（订单统计校准时加上热表中的计数）
+     */
+    @Query("SELECT SUM(s.archivedCompletedCount), SUM(s.archivedCancelledCount) FROM UserOrderSummary s")
+    List<Object[]> sumArchivedCounts();
+
+    /**
+     * 删除用户汇总
+     */
+    @Modifying
+    @Query("DELETE FROM UserOrderSummary s WHERE s.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,332 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.archive.OrderArchiveStore;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderTablePartition;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 冷热分离：把已完成、已取消且超过保留期的订单从热表移到冷订单存储（OrderArchiveStore）
+ * 逐个物理表按 order_id 分批读取，每批先写入待发布段，再从热表删除，最后发布段；
+ * 已完成、已取消是终态，不会再被修改，移动期间不需要加锁。同一时间只运行一个，扩容迁移期间不运行。
+ *
+ * 删除热数据的同一个本地事务中把移走的订单计入用户汇总行的 archived_* 列（汇总行与订单同库），
+ * 订单统计校准、汇总重建只读数据库中的这几列，不依赖冷订单存储在哪个实例上；
+ * 汇总行缺失（尚未回填）的用户的订单暂不归档，回填后下次归档
+ */
+@Slf4j
+@Service
+public class OrderArchiveService {
+
+    private static final String SELECT_SQL = "SELECT order_id, order_no, user_id, product_name, amount, status, "
+            + "create_time, update_time FROM %s WHERE status IN (3, 4) AND update_time < ? AND order_id > ? "
+            + "ORDER BY order_id LIMIT ?";
+
+    private static final String LOCK_SQL = "SELECT order_id FROM %s WHERE status IN (3, 4) AND order_id IN (%s) "
+            + "FOR UPDATE";
+
+    private static final String DELETE_SQL = "DELETE FROM %s WHERE status IN (3, 4) AND order_id IN (%s)";
+
+    private static final String SUMMARY_SQL = "SELECT user_id FROM t_user_order_summary WHERE user_id IN (%s)";
+
+    private static final String ARCHIVED_SQL = "UPDATE t_user_order_summary SET "
+            + "archived_completed_count = archived_completed_count + ?, "
+            + "archived_cancelled_count = archived_cancelled_count + ?, archived_amount = archived_amount + ?, "
+            + "update_time = ? WHERE user_id = ?";
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private OrderArchiveStore orderArchiveStore;
+
+    @Autowired
+    private ReshardingService reshardingService;
+
+    @Autowired
+    private OrderNearCache orderNearCache;
+
+    @Autowired
+    private OrderStatsCounter orderStatsCounter;
+
+    /**
+     * 完成（或取消）多少天后归档，按 update_time 计算
+     */
+    @Value("${order.archive.min-age-days:90}")
+    private int minAgeDays;
+
+    /**
+     * 每批移动的订单数
+     */
+    @Value("${order.archive.batch-size:5000}")
+    private int batchSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong archived = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final Map<String, TransactionTemplate> transactionTemplates = new ConcurrentHashMap<>();
+
+    private volatile long startTime;
+
+    private volatile long finishTime;
+
+    private volatile String lastError;
+
+    /**
+     * 定时归档
+     */
+    @Scheduled(cron = "${order.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        start();
+    }
+
+    /**
+     * 启动归档，已在运行时返回 false
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        archived.set(0);
+        skipped.set(0);
+        startTime = System.currentTimeMillis();
+        finishTime = 0;
+        lastError = null;
+        executor.execute(this::run);
+        return true;
+    }
+
+    /**
+     * 当前进度和冷存储概况
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", running.get());
+        result.put("archived", archived.get());
+        result.put("skipped", skipped.get());
+        result.put("startTime", startTime);
+        result.put("finishTime", finishTime);
+        result.put("lastError", lastError);
+        result.put("store", orderArchiveStore.getStatus());
+        return result;
+    }
+
+    private void run() {
+        try {
+            recover();
+            Timestamp before = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(minAgeDays));
+            // 按月分表时，晚于截止时间所在月份的分区中不会有可归档的订单（update_time 不早于 create_time）
+            int lastMonth = OrderTablePartition.monthOf(before.getTime());
+            for (DataNode each : orderShardRouter.getAllDataNodes()) {
+                if (OrderTablePartition.monthOf(each.getTableName()) <= lastMonth) {
+                    archive(each, before);
+                }
+            }
+            log.info("订单归档完成: archived={}, skipped={}, cost={}ms", archived.get(), skipped.get(),
+                    System.currentTimeMillis() - startTime);
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            log.error("订单归档失败: archived={}", archived.get(), e);
+        } finally {
+            finishTime = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    private void archive(DataNode node, Timestamp before) throws IOException {
+        JdbcTemplate template = new JdbcTemplate(orderShardRouter.getActualDataSource(node.getDataSourceName()));
+        String select = String.format(SELECT_SQL, node.getTableName());
+        long after = Long.MIN_VALUE;
+        while (!Thread.currentThread().isInterrupted()) {
+            checkIdle();
+            List<Order> orders = template.query(select, (rs, rowNum) -> Order.builder()
+                    .orderId(rs.getLong(1))
+                    .orderNo(rs.getString(2))
+                    .userId(rs.getLong(3))
+                    .productName(rs.getString(4))
+                    .amount(rs.getBigDecimal(5))
+                    .status(rs.getInt(6))
+                    .createTime(rs.getTimestamp(7))
+                    .updateTime(rs.getTimestamp(8))
+                    .newOrder(false)
+                    .build(), before, after, batchSize);
+            if (orders.isEmpty()) {
+                return;
+            }
+            List<Order> movable = withSummary(template, node, orders);
+            skipped.addAndGet(orders.size() - movable.size());
+            if (!movable.isEmpty()) {
+                List<Path> pending = orderArchiveStore.writePending(movable);
+                archived.addAndGet(move(node, movable));
+                for (Path each : pending) {
+                    orderArchiveStore.publish(each);
+                }
+            }
+            if (orders.size() < batchSize) {
+                return;
+            }
+            after = orders.get(orders.size() - 1).getOrderId();
+        }
+    }
+
+    /**
+     * 重放上次中断时未发布的段：段已完整写入，补做热表删除（已删除的订单在当时的事务中已计入汇总，不会重复计入）后发布
+     */
+    private void recover() throws IOException {
+        for (Path each : orderArchiveStore.findPending()) {
+            Map<DataNode, List<Order>> byNode = new LinkedHashMap<>();
+            for (Order order : orderArchiveStore.readPending(each)) {
+                byNode.computeIfAbsent(orderShardRouter.route(order), key -> new ArrayList<>()).add(order);
+            }
+            for (Map.Entry<DataNode, List<Order>> entry : byNode.entrySet()) {
+                move(entry.getKey(), entry.getValue());
+            }
+            orderArchiveStore.publish(each);
+            log.warn("已恢复未发布的冷订单段: {}", each);
+        }
+    }
+
+    /**
+     * 只保留已有汇总行的用户的订单
+     */
+    private List<Order> withSummary(JdbcTemplate template, DataNode node, List<Order> orders) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        orders.forEach(each -> userIds.add(each.getUserId()));
+        Set<Long> existing = new HashSet<>(template.queryForList(String.format(SUMMARY_SQL,
+                String.join(", ", Collections.nCopies(userIds.size(), "?"))), Long.class, userIds.toArray()));
+        if (existing.size() == userIds.size()) {
+            return orders;
+        }
+        List<Order> result = new ArrayList<>(orders.size());
+        for (Order each : orders) {
+            if (existing.contains(each.getUserId())) {
+                result.add(each);
+            }
+        }
+        log.info("用户汇总尚未回填，暂不归档: node={}, orders={}", node.format(), orders.size() - result.size());
+        return result;
+    }
+
+    /**
+     * 在一个本地事务中从热表删除订单，并计入各用户汇总行的已归档部分
+     *
+     * @return 实际删除的订单数（已被删除的订单跳过）
+     */
+    private int move(DataNode node, List<Order> orders) {
+        String dataSourceName = node.getDataSourceName();
+        JdbcTemplate template = new JdbcTemplate(orderShardRouter.getActualDataSource(dataSourceName));
+        List<Long> orderIds = new ArrayList<>(orders.size());
+        orders.forEach(each -> orderIds.add(each.getOrderId()));
+        String placeholders = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+        Integer moved = transactionTemplate(dataSourceName).execute(status -> {
+            Set<Long> locked = new HashSet<>(template.queryForList(
+                    String.format(LOCK_SQL, node.getTableName(), placeholders), Long.class, orderIds.toArray()));
+            if (locked.isEmpty()) {
+                return 0;
+            }
+            template.update(String.format(DELETE_SQL, node.getTableName(), placeholders), orderIds.toArray());
+            Map<Long, ArchivedDelta> deltas = new LinkedHashMap<>();
+            for (Order each : orders) {
+                if (locked.contains(each.getOrderId())) {
+                    deltas.computeIfAbsent(each.getUserId(), key -> new ArchivedDelta()).add(each);
+                }
+            }
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            deltas.forEach((userId, delta) -> args.add(new Object[]{delta.completed, delta.cancelled, delta.amount,
+                    now, userId}));
+            int[] rows = template.batchUpdate(ARCHIVED_SQL, args);
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == 0) {
+                    // 归档期间用户订单被删除（汇总行随之删除），冷订单存储中的订单由删除时的墓碑屏蔽
+                    log.warn("归档时用户汇总已删除: userId={}", args.get(i)[4]);
+                }
+            }
+            Map<Integer, Long> movedByStatus = new HashMap<>();
+            deltas.values().forEach(each -> {
+                movedByStatus.merge(3, each.completed, Long::sum);
+                movedByStatus.merge(4, each.cancelled, Long::sum);
+            });
+            orderStatsCounter.moved(movedByStatus);
+            return locked.size();
+        });
+        orderNearCache.invalidate(orderIds);
+        return moved == null ? 0 : moved;
+    }
+
+    private TransactionTemplate transactionTemplate(String dataSourceName) {
+        return transactionTemplates.computeIfAbsent(dataSourceName, key -> new TransactionTemplate(
+                new DataSourceTransactionManager(orderShardRouter.getActualDataSource(key))));
+    }
+
+    private void checkIdle() {
+        if (!reshardingService.isIdle()) {
+            throw new IllegalStateException("订单分片迁移中，暂停归档");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 单个用户本批归档的订单
+     */
+    private static final class ArchivedDelta {
+
+        private long completed;
+
+        private long cancelled;
+
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        private void add(Order order) {
+            if (order.getStatus() == 3) {
+                completed++;
+            } else {
+                cancelled++;
+            }
+            amount = amount.add(order.getAmount());
+        }
+    }
+}
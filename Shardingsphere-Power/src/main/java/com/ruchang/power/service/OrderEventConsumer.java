@@ -0,0 +1,23 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderEvent;
+
+import java.util.List;
+
+/**
+ * 订单事件消费者，注册为 Spring Bean 后由 OrderOutboxRelay 按库批量投递
+ * 投递至少一次：抛出异常时整批稍后重试，已处理过的事件可能再次收到，需要按 OrderEvent.getEventId() 或业务主键幂等；
+ * 在事务之外调用，可以访问外部服务
+ */
+public interface OrderEventConsumer {
+
+    /**
+     * 消费者名称，作为投递位置的键，改名后会从头投递
+     */
+    String getName();
+
+    /**
+     * 处理同一个库中按序号排列的一批事件，长事务迟提交的事件会在序号更大的事件之后补投
+     */
+    void accept(List<OrderEvent> events);
+}
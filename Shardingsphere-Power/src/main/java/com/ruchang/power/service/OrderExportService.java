@@ -0,0 +1,422 @@
+package com.ruchang.power.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.ruchang.power.archive.OrderArchiveStore;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单流式导出
+ * 每个物理表单独打开一个只进游标（按 create_time, order_id 排序），在应用内做 k 路归并后直接写入输出流，
+ * 内存占用只与分片数 × fetch-size 有关，与时间范围内的数据量无关，也不会产生 JPA 托管实体。
+ *
+ * 导出走每个物理库单独的小连接池（export-库名），不占用业务连接池：
+ * - MySQL 只在这个连接池上开启 useCursorFetch，服务端游标按 fetch-size 分批拉取，业务查询不受影响；
+ * - 同一个库的所有物理表游标共用一个连接（服务端游标允许同一连接上同时打开多个），
+ *   一次导出在每个库只占一个连接，与分表数无关；
+ * - 同时进行的导出最多 max-concurrent 个，导出连接池大小与之相同。
+ * 已归档的冷订单作为一路按天读取的游标参与归并（见 OrderArchiveStore.scanByCreateTime）
+ */
+@Slf4j
+@Service
+public class OrderExportService {
+
+    private static final String SELECT_SQL = "SELECT order_id, order_no, user_id, product_name, amount, status, "
+            + "create_time, update_time FROM %s WHERE create_time >= ? AND create_time <= ? "
+            + "ORDER BY create_time, order_id";
+
+    private static final String[] COLUMNS = {"orderId", "orderNo", "userId", "productName", "amount", "status",
+            "createTime", "updateTime"};
+
+    private static final String TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private OrderArchiveStore orderArchiveStore;
+
+    /**
+     * 每个分片游标一次拉取的行数
+     */
+    @Value("${order.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * 同时进行的导出数
+     */
+    @Value("${order.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * 物理库名 -> 导出专用连接池
+     */
+    private final Map<String, HikariDataSource> dataSources = new ConcurrentHashMap<>();
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("order.export.max-concurrent 必须大于 0: " + maxConcurrent);
+        }
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dataSources.values().forEach(HikariDataSource::close);
+    }
+
+    /**
+     * 占用一个导出名额，已有 max-concurrent 个导出在进行时返回 false；成功后必须调用 release
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 导出时间范围内的订单，按 create_time 升序；调用前需要 tryAcquire 占用名额
+     *
+     * @return 导出的行数
+     */
+    public long export(Date start, Date end, Format format, OutputStream out) throws SQLException, IOException {
+        Map<String, List<DataNode>> nodes = new LinkedHashMap<>();
+        for (DataNode each : orderShardRouter.getAllDataNodes()) {
+            nodes.computeIfAbsent(each.getDataSourceName(), key -> new ArrayList<>()).add(each);
+        }
+        List<Connection> connections = new ArrayList<>(nodes.size());
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<DataNode>> entry : nodes.entrySet()) {
+                Connection connection = dataSource(entry.getKey()).getConnection();
+                connections.add(connection);
+                for (DataNode each : entry.getValue()) {
+                    cursors.add(new ShardCursor(connection, each, start, end, fetchSize));
+                }
+            }
+            cursors.add(new ArchiveCursor(orderArchiveStore.scanByCreateTime(start, end)));
+            PriorityQueue<Cursor> heap = new PriorityQueue<>(cursors.size(),
+                    Comparator.comparingLong((Cursor cursor) -> cursor.createTime)
+                            .thenComparingLong(cursor -> cursor.orderId));
+            for (Cursor each : cursors) {
+                if (each.next()) {
+                    heap.add(each);
+                }
+            }
+
+            RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new JsonRowWriter(out);
+            long count = 0;
+            while (!heap.isEmpty()) {
+                Cursor cursor = heap.poll();
+                writer.write(cursor);
+                count++;
+                if (cursor.next()) {
+                    heap.add(cursor);
+                }
+            }
+            writer.finish();
+            log.info("订单导出完成: start={}, end={}, format={}, rows={}", start, end, format, count);
+            return count;
+        } finally {
+            for (Cursor each : cursors) {
+                each.close();
+            }
+            for (Connection each : connections) {
+                try {
+                    each.close();
+                } catch (SQLException e) {
+                    log.warn("关闭导出连接失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 导出专用连接池，连接参数取自该库主库的连接池
+     */
+    private HikariDataSource dataSource(String dataSourceName) {
+        return dataSources.computeIfAbsent(dataSourceName, key -> {
+            DataSource actual = orderShardRouter.getActualDataSource(key);
+            if (!(actual instanceof HikariDataSource)) {
+                throw new IllegalStateException("导出只支持 HikariCP 数据源: " + key);
+            }
+            HikariDataSource source = (HikariDataSource) actual;
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("export-" + key);
+            if (source.getDriverClassName() != null) {
+                config.setDriverClassName(source.getDriverClassName());
+            }
+            config.setJdbcUrl(source.getJdbcUrl());
+            config.setUsername(source.getUsername());
+            config.setPassword(source.getPassword());
+            config.setDataSourceProperties(source.getDataSourceProperties());
+            if (source.getJdbcUrl() != null && source.getJdbcUrl().startsWith("jdbc:mysql:")) {
+                config.addDataSourceProperty("useCursorFetch", "true");
+            }
+            config.setReadOnly(true);
+            config.setMaximumPoolSize(maxConcurrent);
+            config.setMinimumIdle(0);
+            config.setIdleTimeout(TimeUnit.MINUTES.toMillis(1));
+            return new HikariDataSource(config);
+        });
+    }
+
+    /**
+     * 按 create_time, order_id 升序的只进游标，当前行直接保存在字段中
+     */
+    private abstract static class Cursor implements AutoCloseable {
+
+        protected long orderId;
+
+        protected String orderNo;
+
+        protected long userId;
+
+        protected String productName;
+
+        protected BigDecimal amount;
+
+        protected int status;
+
+        protected long createTime;
+
+        protected long updateTime;
+
+        abstract boolean next() throws SQLException;
+
+        @Override
+        public abstract void close();
+    }
+
+    /**
+     * 单个物理表上的只进游标，不为每行创建对象；连接由同库的游标共用
+     */
+    private static final class ShardCursor extends Cursor {
+
+        private final DataNode dataNode;
+
+        private final PreparedStatement statement;
+
+        private final ResultSet resultSet;
+
+        private ShardCursor(Connection connection, DataNode dataNode, Date start, Date end,
+                            int fetchSize) throws SQLException {
+            this.dataNode = dataNode;
+            this.statement = connection.prepareStatement(String.format(SELECT_SQL, dataNode.getTableName()),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, new Timestamp(start.getTime()));
+                statement.setTimestamp(2, new Timestamp(end.getTime()));
+                this.resultSet = statement.executeQuery();
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            }
+        }
+
+        @Override
+        boolean next() throws SQLException {
+            if (!resultSet.next()) {
+                return false;
+            }
+            orderId = resultSet.getLong(1);
+            orderNo = resultSet.getString(2);
+            userId = resultSet.getLong(3);
+            productName = resultSet.getString(4);
+            amount = resultSet.getBigDecimal(5);
+            status = resultSet.getInt(6);
+            createTime = resultSet.getTimestamp(7).getTime();
+            updateTime = resultSet.getTimestamp(8).getTime();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.warn("关闭导出游标失败: node={}", dataNode.format(), e);
+            }
+        }
+    }
+
+    /**
+     * 已归档的冷订单
+     */
+    private static final class ArchiveCursor extends Cursor {
+
+        private final Iterator<Order> orders;
+
+        private ArchiveCursor(Iterator<Order> orders) {
+            this.orders = orders;
+        }
+
+        @Override
+        boolean next() {
+            if (!orders.hasNext()) {
+                return false;
+            }
+            Order order = orders.next();
+            orderId = order.getOrderId();
+            orderNo = order.getOrderNo();
+            userId = order.getUserId();
+            productName = order.getProductName();
+            amount = order.getAmount();
+            status = order.getStatus();
+            createTime = order.getCreateTime().getTime();
+            updateTime = order.getUpdateTime().getTime();
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private interface RowWriter {
+
+        void write(Cursor row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * 每行一个 JSON 对象（NDJSON）
+     */
+    private final class JsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat(TIME_PATTERN);
+
+        private JsonRowWriter(OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Cursor row) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField(COLUMNS[0], row.orderId);
+            generator.writeStringField(COLUMNS[1], row.orderNo);
+            generator.writeNumberField(COLUMNS[2], row.userId);
+            generator.writeStringField(COLUMNS[3], row.productName);
+            generator.writeNumberField(COLUMNS[4], row.amount);
+            generator.writeNumberField(COLUMNS[5], row.status);
+            generator.writeStringField(COLUMNS[6], timeFormat.format(new Date(row.createTime)));
+            generator.writeStringField(COLUMNS[7], timeFormat.format(new Date(row.updateTime)));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * CSV，首行为表头
+     */
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat(TIME_PATTERN);
+
+        private CsvRowWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(Cursor row) throws IOException {
+            writer.write(Long.toString(row.orderId));
+            writer.write(',');
+            writer.write(row.orderNo);
+            writer.write(',');
+            writer.write(Long.toString(row.userId));
+            writer.write(',');
+            writeQuoted(row.productName);
+            writer.write(',');
+            writer.write(row.amount.toPlainString());
+            writer.write(',');
+            writer.write(Integer.toString(row.status));
+            writer.write(',');
+            writer.write(timeFormat.format(new Date(row.createTime)));
+            writer.write(',');
+            writer.write(timeFormat.format(new Date(row.updateTime)));
+            writer.write('\n');
+        }
+
+        private void writeQuoted(String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
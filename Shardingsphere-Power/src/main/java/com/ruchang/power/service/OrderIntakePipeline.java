@@ -0,0 +1,315 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.sharding.OrderShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步下单（组提交）
+ * 请求先分配好带基因的订单ID、订单号，按所在分库放入有界队列；每个分库一个写线程，
+ * 攒够 max-batch-size 条或等待 max-delay-ms 后在一个事务中批量写入，把每笔订单的提交开销摊到整批上。
+ * 队列满时拒绝（调用方返回 429）。已接受但未提交的订单只在本实例内存中，进程崩溃会丢失，
+ * 需要持久化确认的调用方应等待提交结果（Ack.COMMITTED）
+ */
+@Slf4j
+@Component
+public class OrderIntakePipeline {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private ReshardingService reshardingService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Getter
+    @Value("${order.intake.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 每个分库的队列容量
+     */
+    @Value("${order.intake.queue-capacity:4096}")
+    private int queueCapacity;
+
+    /**
+     * 每个事务最多写入的订单数
+     */
+    @Value("${order.intake.max-batch-size:200}")
+    private int maxBatchSize;
+
+    /**
+     * 收到第一笔订单后最多等待多久凑批
+     */
+    @Value("${order.intake.max-delay-ms:5}")
+    private long maxDelayMs;
+
+    /**
+     * 未指定时的确认方式
+     */
+    @Getter
+    @Value("${order.intake.default-ack:COMMITTED}")
+    private Ack defaultAck;
+
+    /**
+     * 等待提交的最长时间，超时后按已接受返回
+     */
+    @Getter
+    @Value("${order.intake.commit-timeout-ms:5000}")
+    private long commitTimeoutMs;
+
+    /**
+     * 分库 -> 写线程
+     */
+    private final Map<String, ShardWriter> writers = new ConcurrentHashMap<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong committed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile boolean stopped;
+
+    /**
+     * 确认方式
+     */
+    public enum Ack {
+
+        /**
+         * 进入队列即返回，订单随后异步写入
+         */
+        ACCEPTED,
+
+        /**
+         * 所在批次提交后返回
+         */
+        COMMITTED
+    }
+
+    /**
+     * 提交订单，返回已分配ID的订单和提交结果；队列已满时抛出 RejectedExecutionException
+     */
+    public Submission submit(Long userId, String productName, BigDecimal amount) {
+        if (!enabled || stopped) {
+            throw new IllegalStateException("异步下单未启用");
+        }
+        reshardingService.checkWritable();
+        Order order = orderService.prepareOrder(userId, productName, amount, new Date());
+        Entry entry = new Entry(order, new CompletableFuture<>());
+        ShardWriter writer = writers.computeIfAbsent(orderShardRouter.route(order).getDataSourceName(), ShardWriter::new);
+        if (!writer.queue.offer(entry)) {
+            rejected.incrementAndGet();
+            writer.rejectedCounter.increment();
+            throw new RejectedExecutionException("下单队列已满: dataSource=" + writer.dataSourceName);
+        }
+        accepted.incrementAndGet();
+        return new Submission(order, entry.future);
+    }
+
+    /**
+     * 队列和写入概况
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> queues = new LinkedHashMap<>();
+        writers.forEach((name, writer) -> queues.put(name, writer.queue.size()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("queueCapacity", queueCapacity);
+        result.put("maxBatchSize", maxBatchSize);
+        result.put("maxDelayMs", maxDelayMs);
+        result.put("accepted", accepted.get());
+        result.put("committed", committed.get());
+        result.put("failed", failed.get());
+        result.put("rejected", rejected.get());
+        result.put("queues", queues);
+        return result;
+    }
+
+    /**
+     * 停止接收，写完队列中已接受的订单
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopped = true;
+        for (ShardWriter each : writers.values()) {
+            each.thread.join(TimeUnit.SECONDS.toMillis(30));
+            if (!each.queue.isEmpty()) {
+                log.error("异步下单队列未写完: dataSource={}, remaining={}", each.dataSourceName, each.queue.size());
+            }
+        }
+    }
+
+    /**
+     * 已接受的订单和它的提交结果
+     */
+    @Getter
+    public static class Submission {
+
+        private final Order order;
+
+        private final CompletableFuture<Order> future;
+
+        Submission(Order order, CompletableFuture<Order> future) {
+            this.order = order;
+            this.future = future;
+        }
+    }
+
+    private static class Entry {
+
+        private final Order order;
+
+        private final CompletableFuture<Order> future;
+
+        Entry(Order order, CompletableFuture<Order> future) {
+            this.order = order;
+            this.future = future;
+        }
+    }
+
+    /**
+     * 单个分库的队列和写线程
+     */
+    private class ShardWriter implements Runnable {
+
+        private final String dataSourceName;
+
+        private final BlockingQueue<Entry> queue;
+
+        private final Thread thread;
+
+        private final Counter rejectedCounter;
+
+        private final DistributionSummary batchSize;
+
+        private final Timer commitTimer;
+
+        ShardWriter(String dataSourceName) {
+            this.dataSourceName = dataSourceName;
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            Gauge.builder("order.intake.queue.size", queue, BlockingQueue::size)
+                    .description("异步下单队列中等待写入的订单数")
+                    .tag("data_source", dataSourceName)
+                    .register(meterRegistry);
+            rejectedCounter = Counter.builder("order.intake.rejected")
+                    .description("异步下单队列已满被拒绝的订单数")
+                    .tag("data_source", dataSourceName)
+                    .register(meterRegistry);
+            batchSize = DistributionSummary.builder("order.intake.batch.size")
+                    .description("异步下单每个事务写入的订单数")
+                    .tag("data_source", dataSourceName)
+                    .register(meterRegistry);
+            commitTimer = Timer.builder("order.intake.commit")
+                    .description("异步下单每批写入耗时")
+                    .tag("data_source", dataSourceName)
+                    .register(meterRegistry);
+            thread = new Thread(this, "order-intake-" + dataSourceName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            List<Entry> batch = new ArrayList<>(maxBatchSize);
+            while (!stopped || !queue.isEmpty()) {
+                try {
+                    Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    fill(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    queue.drainTo(batch);
+                    stopped = true;
+                }
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * 凑批：先取走队列中已有的，不够时等到 max-delay-ms
+         */
+        private void fill(List<Entry> batch) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+            while (batch.size() < maxBatchSize) {
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= maxBatchSize || remaining <= 0) {
+                    return;
+                }
+                Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        }
+
+        private void commit(List<Entry> batch) {
+            List<Order> orders = new ArrayList<>(batch.size());
+            batch.forEach(each -> orders.add(each.order));
+            long start = System.nanoTime();
+            try {
+                orderService.saveOrders(orders);
+                commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSize.record(batch.size());
+                committed.addAndGet(batch.size());
+                batch.forEach(each -> each.future.complete(each.order));
+            } catch (RuntimeException e) {
+                if (batch.size() == 1 || e instanceof IllegalStateException) {
+                    fail(batch, e);
+                    return;
+                }
+                // 整批失败时逐条重试，避免一笔坏数据拖垮同批的其他订单
+                log.warn("异步下单批量写入失败，逐条重试: dataSource={}, size={}", dataSourceName, batch.size(), e);
+                for (Entry each : batch) {
+                    commit(Collections.singletonList(each));
+                }
+            }
+        }
+
+        private void fail(List<Entry> batch, RuntimeException e) {
+            failed.addAndGet(batch.size());
+            log.error("异步下单写入失败: dataSource={}, size={}", dataSourceName, batch.size(), e);
+            batch.forEach(each -> each.future.completeExceptionally(e));
+        }
+    }
+}
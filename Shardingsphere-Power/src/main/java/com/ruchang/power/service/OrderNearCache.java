@@ -0,0 +1,281 @@
+package com.ruchang.power.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ruchang.power.dto.OrderView;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.sharding.OrderKeyGenerator;
+import com.ruchang.power.sharding.OrderNoGene;
+import com.ruchang.power.sharding.ReadWriteRouting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 订单本地缓存（near cache）
+ * 按订单ID缓存单条查询结果，另有订单号 -> 订单ID 的索引（订单号与订单ID的对应关系不会变化）；
+ * Caffeine 按 W-TinyLFU 淘汰，偶尔被扫到一次的订单不会挤掉热点订单。
+ * 缓存的是不可变的 OrderView，命中时每次返回新的 Order 实体，调用方修改返回值不会改到缓存。
+ * 已完成、已取消的订单不会再变化，缓存 finished-ttl-ms；待支付、已支付的还会流转，只缓存 active-ttl-ms。
+ *
+ * 状态流转、删除在写入时和事务提交后各失效一次，并递增该用户基因的写入代次：
+ * 写入前发起、提交后才返回的查询结果不会再放入缓存。失效后 sticky-window-ms（覆盖主从复制延迟）内回源走主库，
+ * 从库上尚未同步的旧状态、已删除或已归档的订单不会被放回缓存。查不到的订单不缓存；
+ * 读写事务内、主库查询范围内（ReadWriteRouting.isPrimaryRequired）不读也不写缓存。
+ * 其他实例的写入不会通知到本实例，期间最多读到 active-ttl-ms 前的状态
+ */
+@Component
+public class OrderNearCache {
+
+    /**
+     * 旧主键取不到用户基因，使用任意写入都会递增的全局代次
+     */
+    private static final int ANY_GENE = OrderNoGene.GENE_SIZE;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${order.near-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.near-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${order.near-cache.finished-ttl-ms:600000}")
+    private long finishedTtlMs;
+
+    @Value("${order.near-cache.active-ttl-ms:2000}")
+    private long activeTtlMs;
+
+    @Value("${order.read-write-splitting.sticky-window-ms:1000}")
+    private long stickyWindowMs;
+
+    /**
+     * 订单ID -> 订单
+     */
+    private Cache<Long, OrderView> orders;
+
+    /**
+     * 刚失效的订单ID，sticky-window-ms 内回源走主库
+     */
+    private Cache<Long, Boolean> recentlyWritten;
+
+    /**
+     * 订单号 -> 订单ID
+     */
+    private Cache<String, Long> orderIds;
+
+    /**
+     * 用户基因 -> 写入代次，最后一个为全局代次
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(ANY_GENE + 1);
+
+    /**
+     * 用户基因 -> 回源走主库的截止时间（删除用户订单时按基因设置），最后一个对应旧主键、旧订单号
+     */
+    private final AtomicLongArray primaryUntil = new AtomicLongArray(ANY_GENE + 1);
+
+    @PostConstruct
+    public void init() {
+        if (finishedTtlMs <= 0 || activeTtlMs <= 0) {
+            throw new IllegalArgumentException("order.near-cache.finished-ttl-ms / active-ttl-ms 必须大于 0");
+        }
+        orders = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new StatusExpiry())
+                .recordStats()
+                .build();
+        // 索引只用来找到订单ID，按最长的有效期过期，指向的订单已失效时按订单号重新查询
+        orderIds = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(finishedTtlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        recentlyWritten = Caffeine.newBuilder()
+                .expireAfterWrite(stickyWindowMs, TimeUnit.MILLISECONDS)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, orders, "order");
+        CaffeineCacheMetrics.monitor(meterRegistry, orderIds, "order-no");
+        Gauge.builder("order.near-cache.hit.ratio", orders, each -> each.stats().hitRate())
+                .description("订单本地缓存命中率")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按订单ID查询，未命中时执行 query 并缓存结果
+     */
+    public Optional<Order> getById(Long orderId, Supplier<Optional<Order>> query) {
+        if (!isReadable()) {
+            return query.get();
+        }
+        OrderView cached = orders.getIfPresent(orderId);
+        if (cached != null) {
+            return Optional.of(cached.toOrder());
+        }
+        return load(orderId, query);
+    }
+
+    /**
+     * 按订单号查询，先经索引找到订单ID，未命中时执行 query 并缓存结果
+     */
+    public Optional<Order> getByNo(String orderNo, Supplier<Optional<Order>> query) {
+        if (!isReadable()) {
+            return query.get();
+        }
+        Long orderId = orderIds.getIfPresent(orderNo);
+        OrderView cached = orderId == null ? null : orders.getIfPresent(orderId);
+        if (cached != null) {
+            return Optional.of(cached.toOrder());
+        }
+        int userGene = OrderNoGene.userGene(orderNo);
+        long generation = generation(userGene);
+        Optional<Order> result = readPrimary(orderId, userGene) ? ReadWriteRouting.primary(query) : query.get();
+        result.ifPresent(each -> put(each, userGene, generation));
+        return result;
+    }
+
+    /**
+     * 订单状态变化或被删除，立即失效并在事务提交后再失效一次
+     */
+    public void invalidate(Long orderId) {
+        evict(orderId);
+        afterCommit(() -> evict(orderId));
+    }
+
+    /**
+     * 多个订单状态变化或被删除
+     */
+    public void invalidate(Collection<Long> orderIds) {
+        orderIds.forEach(this::evict);
+        afterCommit(() -> orderIds.forEach(this::evict));
+    }
+
+    /**
+     * 用户的订单被删除（按用户扫描缓存，只用于删除用户订单这类低频操作）
+     */
+    public void invalidateUser(Long userId) {
+        evictUser(userId);
+        afterCommit(() -> evictUser(userId));
+    }
+
+    /**
+     * 当前缓存的订单数（近似值）
+     */
+    public long size() {
+        return orders.estimatedSize();
+    }
+
+    private Optional<Order> load(Long orderId, Supplier<Optional<Order>> query) {
+        int userGene = OrderKeyGenerator.userGene(orderId);
+        long generation = generation(userGene);
+        Optional<Order> result = readPrimary(orderId, userGene) ? ReadWriteRouting.primary(query) : query.get();
+        result.ifPresent(each -> put(each, userGene, generation));
+        return result;
+    }
+
+    /**
+     * 订单刚失效、或该用户基因的订单刚被删除时回源走主库
+     */
+    private boolean readPrimary(Long orderId, int userGene) {
+        if (orderId != null && recentlyWritten.getIfPresent(orderId) != null) {
+            return true;
+        }
+        return System.currentTimeMillis() < primaryUntil.get(userGene < 0 ? ANY_GENE : userGene);
+    }
+
+    /**
+     * 查询期间该用户基因没有写入提交时才放入缓存
+     */
+    private void put(Order order, int userGene, long generation) {
+        if (order.getOrderId() == null || order.getStatus() == null || generation(userGene) != generation) {
+            return;
+        }
+        orders.put(order.getOrderId(), OrderView.of(order));
+        if (order.getOrderNo() != null) {
+            orderIds.put(order.getOrderNo(), order.getOrderId());
+        }
+    }
+
+    /**
+     * 移除用户的全部订单，该用户基因（含旧主键）的订单在 sticky-window-ms 内回源走主库
+     */
+    private void evictUser(long userId) {
+        int userGene = (int) (userId & (OrderNoGene.GENE_SIZE - 1));
+        written(userGene);
+        orders.asMap().values().removeIf(each -> each.getUserId() == userId);
+        long until = System.currentTimeMillis() + stickyWindowMs;
+        primaryUntil.accumulateAndGet(userGene, until, Math::max);
+        primaryUntil.accumulateAndGet(ANY_GENE, until, Math::max);
+    }
+
+    private void evict(Long orderId) {
+        written(OrderKeyGenerator.userGene(orderId));
+        recentlyWritten.put(orderId, Boolean.TRUE);
+        orders.invalidate(orderId);
+    }
+
+    private void written(int userGene) {
+        if (userGene >= 0) {
+            generations.incrementAndGet(userGene);
+        }
+        generations.incrementAndGet(ANY_GENE);
+    }
+
+    private long generation(int userGene) {
+        return generations.get(userGene < 0 ? ANY_GENE : userGene);
+    }
+
+    private boolean isReadable() {
+        return enabled && !ReadWriteRouting.isPrimaryRequired();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * 按订单状态决定有效期，访问不延长
+     */
+    private final class StatusExpiry implements Expiry<Long, OrderView> {
+
+        @Override
+        public long expireAfterCreate(Long key, OrderView value, long currentTime) {
+            return ttlNanos(value);
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, OrderView value, long currentTime, long currentDuration) {
+            return ttlNanos(value);
+        }
+
+        @Override
+        public long expireAfterRead(Long key, OrderView value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private long ttlNanos(OrderView order) {
+            boolean finished = order.getStatus() == 3 || order.getStatus() == 4;
+            return TimeUnit.MILLISECONDS.toNanos(finished ? finishedTtlMs : activeTtlMs);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderEvent;
+import com.ruchang.power.repository.OrderOutboxRepository;
+import com.ruchang.power.sharding.OrderShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单事件中继
+ * 单独的后台线程按库、按消费者读取 t_order_outbox 中投递位置之后的事件，每批最多 batch-size 条：
+ * 锁住位置行（SELECT ... FOR UPDATE）读取后立即提交，在事务之外交给 OrderEventConsumer 处理（可能调用外部服务，不占用行锁和连接），
+ * 处理成功后用另一个短事务按原位置比较并推进（CAS）；处理失败时位置不变，retry-backoff-ms 后整批重试（至少一次）。
+ * 多个实例同时开启中继时只有一个能推进位置，同一批可能被重复投递。
+ *
+ * 事件序号由各库自增生成，分配顺序与提交顺序不一定一致：读到的序号不连续时先停在空洞前，
+ * 空洞持续 gap-timeout-ms 后跳过，跳过的序号与推进位置在同一事务中记入 t_order_outbox_gap，
+ * 之后每次投递都补读其中已提交的事件（长事务迟提交），补投后删除；超过 gap-retention-ms 仍未出现的序号视为已回滚，不再等待。
+ * 因此迟提交的事件会晚于序号更大的事件投递。
+ * 已被所有消费者投递（不含仍在等待的空洞）、早于 retention-hours 的事件定期删除
+ */
+@Slf4j
+@Component
+public class OrderOutboxRelay {
+
+    private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private List<OrderEventConsumer> consumers = Collections.emptyList();
+
+    @Value("${order.outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${order.outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order.outbox.relay.poll-interval-ms:200}")
+    private long pollIntervalMs;
+
+    @Value("${order.outbox.relay.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    @Value("${order.outbox.relay.gap-timeout-ms:1000}")
+    private long gapTimeoutMs;
+
+    @Value("${order.outbox.relay.gap-retention-ms:3600000}")
+    private long gapRetentionMs;
+
+    @Value("${order.outbox.retention-hours:24}")
+    private int retentionHours;
+
+    /**
+     * 库名 + 消费者名 -> 投递通道，启动后才有值
+     */
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    private final Map<String, TransactionTemplate> transactionTemplates = new ConcurrentHashMap<>();
+
+    private volatile Thread worker;
+
+    private volatile boolean stopped;
+
+    private long nextCleanupTime;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("订单事件中继未开启");
+            return;
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("order.outbox.relay.batch-size 必须大于 0: " + batchSize);
+        }
+        Set<String> names = new HashSet<>();
+        for (OrderEventConsumer each : consumers) {
+            if (!names.add(each.getName())) {
+                throw new IllegalStateException("订单事件消费者重名: " + each.getName());
+            }
+        }
+        for (String dataSourceName : orderOutboxRepository.getDataSourceNames()) {
+            for (OrderEventConsumer each : consumers) {
+                channels.put(dataSourceName + "/" + each.getName(), new Channel(dataSourceName, each));
+            }
+        }
+        Thread thread = new Thread(this::run, "order-outbox-relay");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+        log.info("订单事件中继已启动: dataSources={}, consumers={}", orderOutboxRepository.getDataSourceNames(), names);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 各库、各消费者的投递状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("running", worker != null && worker.isAlive());
+        Map<String, Object> details = new LinkedHashMap<>();
+        channels.forEach((key, channel) -> details.put(key, channel.toStatus()));
+        result.put("channels", details);
+        return result;
+    }
+
+    private void run() {
+        while (!stopped) {
+            boolean more = false;
+            try {
+                Map<String, Long> maxIds = new LinkedHashMap<>();
+                for (Channel each : channels.values()) {
+                    long maxId = maxIds.computeIfAbsent(each.dataSourceName, orderOutboxRepository::getMaxId);
+                    more |= each.relay();
+                    each.lag = Math.max(0, maxId - each.position);
+                }
+                if (System.currentTimeMillis() >= nextCleanupTime) {
+                    nextCleanupTime = System.currentTimeMillis() + CLEANUP_INTERVAL_MILLIS;
+                    cleanup();
+                }
+            } catch (RuntimeException e) {
+                log.warn("订单事件中继异常，稍后重试: {}", e.getMessage());
+                sleep(retryBackoffMs);
+                continue;
+            }
+            if (!more) {
+                sleep(pollIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * 放弃超过 gap-retention-ms 的序号空洞，删除已被所有消费者投递、早于保留期的事件
+     */
+    private void cleanup() {
+        long now = System.currentTimeMillis();
+        Timestamp before = new Timestamp(now - TimeUnit.HOURS.toMillis(retentionHours));
+        Timestamp gapBefore = new Timestamp(now - gapRetentionMs);
+        for (String dataSourceName : orderOutboxRepository.getDataSourceNames()) {
+            long upTo = consumers.isEmpty() ? orderOutboxRepository.getMaxId(dataSourceName) : Long.MAX_VALUE;
+            for (OrderEventConsumer each : consumers) {
+                int expired = orderOutboxRepository.deleteExpiredGaps(dataSourceName, each.getName(), gapBefore);
+                if (expired > 0) {
+                    log.warn("序号空洞超过 gap-retention-ms 仍未提交，视为已回滚: dataSource={}, consumer={}, count={}",
+                            dataSourceName, each.getName(), expired);
+                }
+                upTo = Math.min(upTo, orderOutboxRepository.getPosition(dataSourceName, each.getName()));
+                upTo = Math.min(upTo, orderOutboxRepository.getMinGapId(dataSourceName, each.getName()) - 1);
+            }
+            long deleted = 0;
+            int rows;
+            do {
+                rows = orderOutboxRepository.deleteDelivered(dataSourceName, upTo, before, batchSize);
+                deleted += rows;
+            } while (rows >= batchSize && !stopped);
+            if (deleted > 0) {
+                log.info("清理已投递的订单事件: dataSource={}, upTo={}, deleted={}", dataSourceName, upTo, deleted);
+            }
+        }
+    }
+
+    private TransactionTemplate transactionTemplate(String dataSourceName) {
+        return transactionTemplates.computeIfAbsent(dataSourceName, key -> new TransactionTemplate(
+                new DataSourceTransactionManager(orderShardRouter.getActualDataSource(key))));
+    }
+
+    private void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+    }
+
+    /**
+     * 一个库到一个消费者的投递
+     */
+    private final class Channel {
+
+        private final String dataSourceName;
+
+        private final OrderEventConsumer consumer;
+
+        private final Counter deliveredCounter;
+
+        private final Counter failureCounter;
+
+        private final Timer delayTimer;
+
+        private volatile long position;
+
+        private volatile long lag;
+
+        private volatile String lastError;
+
+        private long retryAt;
+
+        /**
+         * 正在等待的序号空洞及开始等待的时间
+         */
+        private long gapId = -1;
+
+        private long gapSince;
+
+        private Channel(String dataSourceName, OrderEventConsumer consumer) {
+            this.dataSourceName = dataSourceName;
+            this.consumer = consumer;
+            deliveredCounter = Counter.builder("order.outbox.delivered")
+                    .description("已投递的订单事件数")
+                    .tag("data_source", dataSourceName)
+                    .tag("consumer", consumer.getName())
+                    .register(meterRegistry);
+            failureCounter = Counter.builder("order.outbox.failures")
+                    .description("投递失败（整批重试）次数")
+                    .tag("data_source", dataSourceName)
+                    .tag("consumer", consumer.getName())
+                    .register(meterRegistry);
+            delayTimer = Timer.builder("order.outbox.delay")
+                    .description("订单事件从写入到投递成功的耗时")
+                    .tag("consumer", consumer.getName())
+                    .register(meterRegistry);
+            Gauge.builder("order.outbox.lag", this, each -> each.lag)
+                    .description("尚未投递的订单事件数（按序号估算）")
+                    .tag("data_source", dataSourceName)
+                    .tag("consumer", consumer.getName())
+                    .register(meterRegistry);
+        }
+
+        /**
+         * 投递一批，返回是否读满一批（可能还有待投递的事件）
+         */
+        private boolean relay() {
+            long now = System.currentTimeMillis();
+            if (now < retryAt) {
+                return false;
+            }
+            Batch batch;
+            boolean advanced;
+            try {
+                batch = transactionTemplate(dataSourceName).execute(status -> read());
+                if (batch == null || batch.isEmpty()) {
+                    return false;
+                }
+                consumer.accept(Collections.unmodifiableList(batch.getEvents()));
+                advanced = Boolean.TRUE.equals(transactionTemplate(dataSourceName).execute(status -> commit(batch)));
+            } catch (RuntimeException e) {
+                failureCounter.increment();
+                retryAt = now + retryBackoffMs;
+                lastError = e.getMessage();
+                log.warn("订单事件投递失败，{}ms 后重试: dataSource={}, consumer={}, position={}",
+                        retryBackoffMs, dataSourceName, consumer.getName(), position, e);
+                return false;
+            }
+            if (advanced) {
+                position = batch.getNext();
+            } else {
+                log.info("投递位置已被其他实例推进，本批可能重复投递: dataSource={}, consumer={}, position={}",
+                        dataSourceName, consumer.getName(), batch.current);
+            }
+            long deliveredAt = System.currentTimeMillis();
+            List<OrderEvent> delivered = batch.getEvents();
+            for (OrderEvent each : delivered) {
+                delayTimer.record(Math.max(0, deliveredAt - each.getCreateTime().getTime()), TimeUnit.MILLISECONDS);
+            }
+            deliveredCounter.increment(delivered.size());
+            lastError = null;
+            return batch.ready.size() >= batchSize || batch.late.size() >= batchSize;
+        }
+
+        /**
+         * 锁住位置行，读取迟提交的空洞事件和位置之后连续的事件（在读取事务中调用）
+         */
+        private Batch read() {
+            long current = orderOutboxRepository.lockPosition(dataSourceName, consumer.getName());
+            position = current;
+            List<OrderEvent> late = orderOutboxRepository.findGapEvents(dataSourceName, consumer.getName(), batchSize);
+            List<Long> skipped = new ArrayList<>();
+            List<OrderEvent> ready = contiguous(current,
+                    orderOutboxRepository.findAfter(dataSourceName, current, batchSize), skipped);
+            return new Batch(current, late, ready, skipped);
+        }
+
+        /**
+         * 按读取时的位置推进，记录跳过的序号、删除已补投的序号；位置已被其他实例推进时不做修改（在推进事务中调用）
+         */
+        private boolean commit(Batch batch) {
+            if (!orderOutboxRepository.advancePosition(dataSourceName, consumer.getName(), batch.current,
+                    batch.getNext())) {
+                return false;
+            }
+            if (!batch.skipped.isEmpty()) {
+                orderOutboxRepository.addGaps(dataSourceName, consumer.getName(), batch.skipped);
+            }
+            if (!batch.late.isEmpty()) {
+                List<Long> ids = new ArrayList<>(batch.late.size());
+                for (OrderEvent each : batch.late) {
+                    ids.add(each.getId());
+                }
+                orderOutboxRepository.deleteGaps(dataSourceName, consumer.getName(), ids);
+            }
+            return true;
+        }
+
+        /**
+         * 从位置之后连续的事件，遇到空洞时停下，空洞超时后跳过并把跳过的序号加入 skipped；
+         * 新消费者从表中现有最早的事件开始（更早的已被清理，不算空洞）
+         */
+        private List<OrderEvent> contiguous(long current, List<OrderEvent> events, List<Long> skipped) {
+            List<OrderEvent> result = new ArrayList<>(events.size());
+            long expected = current == 0 && !events.isEmpty() ? events.get(0).getId() : current + 1;
+            for (OrderEvent each : events) {
+                if (each.getId() != expected) {
+                    if (!gapExpired(expected)) {
+                        break;
+                    }
+                    log.info("跳过订单事件序号空洞，提交后补投: dataSource={}, consumer={}, ids=[{}, {})",
+                            dataSourceName, consumer.getName(), expected, each.getId());
+                    for (long id = expected; id < each.getId(); id++) {
+                        skipped.add(id);
+                    }
+                }
+                result.add(each);
+                expected = each.getId() + 1;
+            }
+            return result;
+        }
+
+        private boolean gapExpired(long expected) {
+            long now = System.currentTimeMillis();
+            if (gapId != expected) {
+                gapId = expected;
+                gapSince = now;
+            }
+            return now - gapSince >= gapTimeoutMs;
+        }
+
+        private Map<String, Object> toStatus() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("position", position);
+            result.put("lag", lag);
+            result.put("gaps", orderOutboxRepository.countGaps(dataSourceName, consumer.getName()));
+            result.put("delivered", (long) deliveredCounter.count());
+            result.put("failures", (long) failureCounter.count());
+            result.put("lastError", lastError);
+            return result;
+        }
+    }
+
+    /**
+     * 一次读取的结果：读取时的位置、迟提交的空洞事件、位置之后连续的事件、本次跳过的序号
+     */
+    private static final class Batch {
+
+        private final long current;
+
+        private final List<OrderEvent> late;
+
+        private final List<OrderEvent> ready;
+
+        private final List<Long> skipped;
+
+        private Batch(long current, List<OrderEvent> late, List<OrderEvent> ready, List<Long> skipped) {
+            this.current = current;
+            this.late = late;
+            this.ready = ready;
+            this.skipped = skipped;
+        }
+
+        private boolean isEmpty() {
+            return late.isEmpty() && ready.isEmpty();
+        }
+
+        private long getNext() {
+            return ready.isEmpty() ? current : ready.get(ready.size() - 1).getId();
+        }
+
+        private List<OrderEvent> getEvents() {
+            List<OrderEvent> result = new ArrayList<>(late.size() + ready.size());
+            result.addAll(late);
+            result.addAll(ready);
+            return result;
+        }
+    }
+}
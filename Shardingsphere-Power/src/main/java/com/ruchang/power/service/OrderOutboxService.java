@@ -0,0 +1,63 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderEvent;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.entity.OrderTransition;
+import com.ruchang.power.repository.OrderOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单事件写入 outbox
+ * 事件与用户订单在同一个库，必须在订单写入所在的事务中执行（MANDATORY），订单写入回滚时事件一起回滚，
+ * 提交后由 OrderOutboxRelay 投递
+ */
+@Service
+public class OrderOutboxService {
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Value("${order.outbox.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 新建订单
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ordersCreated(List<Order> orders) {
+        if (!enabled) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(orders.size());
+        orders.forEach(each -> rows.add(new Object[]{OrderEvent.Type.CREATED.name(), each.getOrderId(),
+                each.getUserId(), now}));
+        orderOutboxRepository.append(rows);
+    }
+
+    /**
+     * 订单状态流转
+     *
+     * @param orders 订单ID -> 用户ID
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transitioned(OrderTransition transition, Map<Long, Long> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        String type = OrderEvent.Type.of(transition).name();
+        List<Object[]> rows = new ArrayList<>(orders.size());
+        orders.forEach((orderId, userId) -> rows.add(new Object[]{type, orderId, userId, now}));
+        orderOutboxRepository.append(rows);
+    }
+}
@@ -0,0 +1,250 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.sharding.OrderMonthlyTableShardingAlgorithm;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderTablePartition;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 订单按月分表的建表与登记
+ * 分表算法为 ORDER_TABLE_GENE_MONTHLY 时，启动时为每个持有槽位的订单表建好 start-month 到
+ * 当前月之后 months-ahead 个月的分区表（CREATE TABLE ... LIKE 槽位表），再加入 actual-data-nodes。
+ * 建表幂等，多实例各自建表、各自登记；分区表只为持有槽位的表创建，依赖 ReshardingService 先安装槽位布局。
+ *
+ * start-month 未配置时按库中已有数据推算：已有分区表时取最早的分区月份，否则取槽位表中最新订单的下一个月
+ * （槽位表为空时取当前月）；配置了 start-month 而槽位表中已有该月及之后的订单、或已有更早的分区表时启动失败，
+ * 避免这些订单按新的起始月份路由后查不到。
+ *
+ * 登记分区表要重建分片规则并重新加载元数据（alterRuleConfiguration + reloadDatabase），期间本实例正在执行的
+ * SQL 可能变慢或失败，所以启动时一次建好较多月份；每天的定时任务只在已登记的月份不足 min-months-ahead 个月时
+ * 才补建到 months-ahead 个月，平时不会触发重建
+ */
+@Slf4j
+@Service
+@DependsOn("reshardingService")
+public class OrderPartitionService {
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 提前创建当前月之后几个月的分区表
+     */
+    @Value("${order.partition.months-ahead:12}")
+    private int monthsAhead;
+
+    /**
+     * 已登记的分区表不足当前月之后几个月时，定时任务补建
+     */
+    @Value("${order.partition.min-months-ahead:2}")
+    private int minMonthsAhead;
+
+    /**
+     * 建表语句，参数依次为分区表、槽位表（可用 %1$s、%2$s 引用）；多条语句用 ; 分隔，按顺序执行
+     */
+    @Value("${order.partition.create-table-sql:CREATE TABLE IF NOT EXISTS %s LIKE %s}")
+    private String createTableSql;
+
+    /**
+     * 启动时（对外提供服务之前）确定起始月份，建好并登记分区表
+     */
+    @PostConstruct
+    public void init() {
+        OrderMonthlyTableShardingAlgorithm algorithm = orderShardRouter.getMonthlyTableAlgorithm();
+        if (algorithm == null) {
+            return;
+        }
+        if (minMonthsAhead < 0 || minMonthsAhead > monthsAhead) {
+            throw new IllegalArgumentException("order.partition.min-months-ahead 必须在 0 ~ months-ahead 之间: "
+                    + minMonthsAhead);
+        }
+        int startMonth = resolveStartMonth(algorithm.getStartMonth());
+        if (startMonth != algorithm.getStartMonth()) {
+            orderShardRouter.setTableAlgorithmProperty("start-month", String.valueOf(startMonth));
+            log.info("订单按月分表起始月份: {}（按库中已有数据推算）", startMonth);
+        }
+        ensurePartitions();
+    }
+
+    /**
+     * 定时检查已登记的分区表，不足 min-months-ahead 个月时补建
+     */
+    @Scheduled(cron = "${order.partition.cron:0 0 2 * * *}")
+    public void scheduledEnsure() {
+        if (orderShardRouter.getMonthlyTableAlgorithm() == null) {
+            return;
+        }
+        int required = OrderTablePartition.plusMonths(OrderTablePartition.monthOf(System.currentTimeMillis()),
+                minMonthsAhead);
+        if (getLastMonth() >= required) {
+            return;
+        }
+        try {
+            ensurePartitions();
+        } catch (RuntimeException e) {
+            log.error("创建订单分区表失败", e);
+        }
+    }
+
+    /**
+     * 创建并登记缺少的分区表，未按月分表时不做任何事
+     *
+     * @return 新登记的分区表数
+     */
+    public synchronized int ensurePartitions() {
+        OrderMonthlyTableShardingAlgorithm algorithm = orderShardRouter.getMonthlyTableAlgorithm();
+        if (algorithm == null) {
+            return 0;
+        }
+        int last = OrderTablePartition.plusMonths(OrderTablePartition.monthOf(System.currentTimeMillis()), monthsAhead);
+        Set<DataNode> registered = new HashSet<>(orderShardRouter.getAllTableDataNodes()
+                .getOrDefault(OrderShardRouter.LOGIC_TABLE, Collections.emptyList()));
+        List<DataNode> created = new ArrayList<>();
+        for (DataNode base : getSlotDataNodes()) {
+            JdbcTemplate template = new JdbcTemplate(orderShardRouter.getActualDataSource(base.getDataSourceName()));
+            for (int month = algorithm.getStartMonth(); month <= last; month = OrderTablePartition.plusMonths(month, 1)) {
+                DataNode node = new DataNode(base.getDataSourceName(),
+                        OrderTablePartition.tableOf(base.getTableName(), month));
+                if (!registered.contains(node)) {
+                    for (String each : createTableSql.split(";")) {
+                        if (!each.isBlank()) {
+                            template.execute(String.format(each.trim(), node.getTableName(), base.getTableName()));
+                        }
+                    }
+                    created.add(node);
+                }
+            }
+        }
+        if (!created.isEmpty()) {
+            orderShardRouter.addDataNodes(created);
+            log.info("订单分区表已登记: count={}, until={}", created.size(), last);
+        }
+        return created.size();
+    }
+
+    /**
+     * 确定起始月份并与库中已有数据核对
+     *
+     * @param configured 配置的 start-month，未配置时为 -1
+     */
+    private int resolveStartMonth(int configured) {
+        int firstPartition = Integer.MAX_VALUE;
+        long latest = -1;
+        for (DataNode base : getSlotDataNodes()) {
+            DataSource dataSource = orderShardRouter.getActualDataSource(base.getDataSourceName());
+            for (int each : findPartitionMonths(dataSource, base.getTableName())) {
+                firstPartition = Math.min(firstPartition, each);
+            }
+            Timestamp max = new JdbcTemplate(dataSource).queryForObject(
+                    "SELECT MAX(create_time) FROM " + base.getTableName(), Timestamp.class);
+            if (max != null) {
+                latest = Math.max(latest, max.getTime());
+            }
+        }
+        int latestMonth = latest < 0 ? -1 : OrderTablePartition.monthOf(latest);
+        int result = configured;
+        if (result < 0) {
+            result = firstPartition != Integer.MAX_VALUE ? firstPartition
+                    : latestMonth > 0 ? OrderTablePartition.plusMonths(latestMonth, 1)
+                    : OrderTablePartition.monthOf(System.currentTimeMillis());
+        }
+        if (firstPartition < result) {
+            throw new IllegalStateException("已有早于 start-month 的分区表: start-month=" + result
+                    + ", 最早分区月份=" + firstPartition);
+        }
+        if (latestMonth >= result) {
+            throw new IllegalStateException("槽位表中已有 start-month 及之后的订单，需要先迁入对应分区表或调整 start-month: "
+                    + "start-month=" + result + ", 最新订单时间=" + new Timestamp(latest));
+        }
+        return result;
+    }
+
+    /**
+     * 库中已存在的某个槽位表的分区表月份
+     */
+    private static List<Integer> findPartitionMonths(DataSource dataSource, String baseTable) {
+        List<Integer> result = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(connection.getCatalog(), null, baseTable + "%",
+                     new String[]{"TABLE"})) {
+            while (tables.next()) {
+                String name = tables.getString("TABLE_NAME");
+                int month = OrderTablePartition.monthOf(name);
+                if (month > 0 && OrderTablePartition.baseTableOf(name).equalsIgnoreCase(baseTable)) {
+                    result.add(month);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取分区表失败: " + baseTable, e);
+        }
+        return result;
+    }
+
+    /**
+     * 已登记的最后一个分区月份，没有分区表时为 -1
+     */
+    private int getLastMonth() {
+        int result = -1;
+        for (DataNode each : orderShardRouter.getAllDataNodes()) {
+            result = Math.max(result, OrderTablePartition.monthOf(each.getTableName()));
+        }
+        return result;
+    }
+
+    /**
+     * 分区概况：分区起始月份、已登记的月份
+     */
+    public Map<String, Object> getStatus() {
+        OrderMonthlyTableShardingAlgorithm algorithm = orderShardRouter.getMonthlyTableAlgorithm();
+        Set<Integer> months = new TreeSet<>();
+        for (DataNode each : orderShardRouter.getAllDataNodes()) {
+            int month = OrderTablePartition.monthOf(each.getTableName());
+            if (month > 0) {
+                months.add(month);
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", algorithm != null);
+        result.put("startMonth", algorithm == null ? null : algorithm.getStartMonth());
+        result.put("monthsAhead", monthsAhead);
+        result.put("minMonthsAhead", minMonthsAhead);
+        result.put("months", months);
+        result.put("dataNodes", orderShardRouter.getAllDataNodes().size());
+        return result;
+    }
+
+    /**
+     * 持有槽位的槽位表（不含分区表）
+     */
+    private List<DataNode> getSlotDataNodes() {
+        List<DataNode> result = new ArrayList<>();
+        for (DataNode each : orderShardRouter.getAllDataNodes()) {
+            if (OrderTablePartition.monthOf(each.getTableName()) < 0) {
+                result.add(each);
+            }
+        }
+        return result;
+    }
+}
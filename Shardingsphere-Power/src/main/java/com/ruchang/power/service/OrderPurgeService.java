@@ -0,0 +1,270 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.archive.OrderArchiveStore;
+import com.ruchang.power.repository.OrderBatchRepository;
+import com.ruchang.power.sharding.OrderShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 删除用户订单
+ * 在用户所在库的每个订单表上按状态逐块执行 DELETE ... WHERE user_id = ? AND status = ? LIMIT n，每块单独提交，
+ * 不加载实体，也不会长时间占用事务和连接；按状态删除可以拿到准确的各状态删除数，边删边修正订单统计。
+ * 大用户可提交为后台任务（返回任务ID查询进度），同一用户同时只有一个任务
+ */
+@Slf4j
+@Service
+public class OrderPurgeService {
+
+    /**
+     * 订单状态 1~4：待支付、已支付、已完成、已取消
+     */
+    private static final int STATUS_COUNT = 4;
+
+    @Autowired
+    private OrderBatchRepository orderBatchRepository;
+
+    @Autowired
+    private OrderArchiveStore orderArchiveStore;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private OrderStatsCounter orderStatsCounter;
+
+    @Autowired
+    private UserOrderSummaryService userOrderSummaryService;
+
+    @Autowired
+    private ReshardingService reshardingService;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private OrderNearCache orderNearCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 每个物理表每块删除的行数
+     */
+    @Value("${order.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * 后台任务每块之间的停顿，降低对在线请求和主从复制的影响
+     */
+    @Value("${order.purge.chunk-pause-ms:10}")
+    private long chunkPauseMs;
+
+    /**
+     * 同时执行的后台任务数
+     */
+    @Value("${order.purge.threads:2}")
+    private int threads;
+
+    /**
+     * 已结束的任务保留多久（之后查询不到）
+     */
+    @Value("${order.purge.job-retention-ms:3600000}")
+    private long jobRetentionMs;
+
+    private ExecutorService executor;
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 任务ID -> 任务
+     */
+    private final Map<String, PurgeJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 用户ID -> 进行中的任务
+     */
+    private final Map<Long, PurgeJob> runningJobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger sequence = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "order-purge-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 同步删除用户全部订单（含冷订单）
+     *
+     * @return 删除的订单数
+     */
+    public long purge(Long userId) {
+        reshardingService.checkWritable();
+        PurgeJob job = new PurgeJob(UUID.randomUUID().toString(), userId);
+        run(job, 0);
+        if (job.failure != null) {
+            throw job.failure;
+        }
+        return job.deleted.get();
+    }
+
+    /**
+     * 提交后台删除任务，该用户已有进行中的任务时返回该任务
+     *
+     * @return 任务ID
+     */
+    public String submit(Long userId) {
+        reshardingService.checkWritable();
+        evictFinished();
+        PurgeJob job = new PurgeJob(UUID.randomUUID().toString(), userId);
+        PurgeJob existing = runningJobs.putIfAbsent(userId, job);
+        if (existing != null) {
+            return existing.id;
+        }
+        jobs.put(job.id, job);
+        executor.execute(() -> {
+            try {
+                run(job, chunkPauseMs);
+            } finally {
+                runningJobs.remove(userId, job);
+            }
+        });
+        return job.id;
+    }
+
+    /**
+     * 任务进度，任务不存在（或已过保留期）时返回 null
+     */
+    public Map<String, Object> getJob(String jobId) {
+        PurgeJob job = jobs.get(jobId);
+        return job == null ? null : job.toMap();
+    }
+
+    private void run(PurgeJob job, long pauseMs) {
+        try {
+            for (DataNode each : orderShardRouter.getUserDataNodes(job.userId)) {
+                for (int status = 1; status <= STATUS_COUNT; status++) {
+                    purgeNode(job, each, status, pauseMs);
+                }
+            }
+            // 热数据删完后再屏蔽冷订单、删除汇总，期间中断时重新执行即可；
+            // 已归档订单数以汇总行为准（冷订单存储不一定在本实例），随汇总行一起删除并从统计中扣除
+            orderArchiveStore.deleteUser(job.userId);
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Integer, Long> archived = userOrderSummaryService.userDeleted(job.userId);
+                orderStatsCounter.deleted(archived);
+                archived.values().forEach(job.deleted::addAndGet);
+            });
+            reshardingService.userDeleted(job.userId);
+            readYourWritesTracker.written(job.userId);
+            job.state = "FINISHED";
+            log.info("删除用户订单: userId={}, count={}, chunks={}, cost={}ms", job.userId, job.deleted.get(),
+                    job.chunks.get(), System.currentTimeMillis() - job.startTime);
+        } catch (RuntimeException e) {
+            job.failure = e;
+            job.lastError = e.getMessage();
+            job.state = "FAILED";
+            log.error("删除用户订单失败: userId={}, deleted={}", job.userId, job.deleted.get(), e);
+        } finally {
+            // 中途失败时已删除的部分同样失效
+            orderNearCache.invalidateUser(job.userId);
+            job.finishTime = System.currentTimeMillis();
+        }
+    }
+
+    private void purgeNode(PurgeJob job, DataNode node, int status, long pauseMs) {
+        while (true) {
+            reshardingService.checkWritable();
+            int rows = orderBatchRepository.deleteChunk(node, job.userId, status, chunkSize);
+            if (rows > 0) {
+                orderStatsCounter.deleted(Map.of(status, (long) rows));
+                job.deleted.addAndGet(rows);
+                job.chunks.incrementAndGet();
+            }
+            if (rows < chunkSize) {
+                return;
+            }
+            if (pauseMs > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("删除任务被中断", e);
+                }
+            }
+        }
+    }
+
+    private void evictFinished() {
+        long expired = System.currentTimeMillis() - jobRetentionMs;
+        jobs.values().removeIf(each -> each.finishTime > 0 && each.finishTime < expired);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 删除任务
+     */
+    private static final class PurgeJob {
+
+        private final String id;
+
+        private final long userId;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final AtomicLong deleted = new AtomicLong();
+
+        private final AtomicLong chunks = new AtomicLong();
+
+        private volatile String state = "RUNNING";
+
+        private volatile long finishTime;
+
+        private volatile String lastError;
+
+        private volatile RuntimeException failure;
+
+        private PurgeJob(String id, long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("jobId", id);
+            result.put("userId", userId);
+            result.put("state", state);
+            result.put("deleted", deleted.get());
+            result.put("chunks", chunks.get());
+            result.put("startTime", startTime);
+            result.put("finishTime", finishTime);
+            result.put("lastError", lastError);
+            return result;
+        }
+    }
+}
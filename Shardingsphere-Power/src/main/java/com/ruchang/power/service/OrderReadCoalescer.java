@@ -0,0 +1,172 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.sharding.OrderKeyGenerator;
+import com.ruchang.power.sharding.OrderNoGene;
+import com.ruchang.power.sharding.ReadWriteRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 订单单条查询合并（single-flight）
+ * 同一订单ID / 订单号同时只有一个请求真正查库，期间到达的相同查询等待并共享这次的结果；查询结束即移除，不缓存结果。
+ *
+ * 写入提交后（见 ReadYourWritesTracker）递增该用户基因的写入代次，之后到达的查询不会再加入写入前发起的查询，
+ * 总能读到已提交的写入。读写事务内、主库查询范围内的查询（ReadWriteRouting.isPrimaryRequired）不合并
+ */
+@Component
+public class OrderReadCoalescer {
+
+    /**
+     * 旧主键、旧订单号取不到用户基因，使用任意写入都会递增的全局代次
+     */
+    private static final int ANY_GENE = OrderNoGene.GENE_SIZE;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${order.read-coalescing.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 查询键 -> 进行中的查询
+     */
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 用户基因 -> 写入代次，最后一个为全局代次
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(ANY_GENE + 1);
+
+    private Counter leaderCounter;
+
+    private Counter coalescedCounter;
+
+    private Counter bypassCounter;
+
+    @PostConstruct
+    public void init() {
+        leaderCounter = counter("leader", "实际查库的订单查询数");
+        coalescedCounter = counter("coalesced", "合并到进行中查询的订单查询数");
+        bypassCounter = counter("bypass", "事务内或必须走主库、未参与合并的订单查询数");
+        Gauge.builder("order.read.coalescing.ratio", this, OrderReadCoalescer::getCoalescingRatio)
+                .description("参与合并的订单查询中共享结果的比例")
+                .register(meterRegistry);
+        Gauge.builder("order.read.coalescing.in-flight", inFlight, Map::size)
+                .description("进行中的订单查询数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按订单ID查询
+     */
+    public <T> T readById(Long orderId, Supplier<T> query) {
+        return read("id:" + orderId, OrderKeyGenerator.userGene(orderId), query);
+    }
+
+    /**
+     * 按订单号查询
+     */
+    public <T> T readByNo(String orderNo, Supplier<T> query) {
+        return read("no:" + orderNo, OrderNoGene.userGene(orderNo), query);
+    }
+
+    /**
+     * 记录用户写入已提交
+     */
+    public void written(Long userId) {
+        generations.incrementAndGet((int) (userId & (OrderNoGene.GENE_SIZE - 1)));
+        generations.incrementAndGet(ANY_GENE);
+    }
+
+    /**
+     * 记录多个用户写入已提交
+     */
+    public void written(Collection<Long> userIds) {
+        userIds.forEach(this::written);
+    }
+
+    /**
+     * 共享结果的查询占参与合并查询的比例
+     */
+    public double getCoalescingRatio() {
+        double coalesced = coalescedCounter.count();
+        double total = coalesced + leaderCounter.count();
+        return total == 0 ? 0 : coalesced / total;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T read(String key, int userGene, Supplier<T> query) {
+        if (!enabled || ReadWriteRouting.isPrimaryRequired()) {
+            bypassCounter.increment();
+            return query.get();
+        }
+        long generation = generations.get(userGene < 0 ? ANY_GENE : userGene);
+        Flight created = new Flight(generation);
+        // 进行中的查询发起后有过写入提交时不再加入，由本次查询替换
+        Flight flight = inFlight.compute(key, (k, current) ->
+                current != null && current.generation == generation ? current : created);
+        if (flight != created) {
+            coalescedCounter.increment();
+            return (T) flight.await();
+        }
+        leaderCounter.increment();
+        try {
+            T result = query.get();
+            created.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            created.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private Counter counter(String result, String description) {
+        return Counter.builder("order.read.coalescing")
+                .description(description)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 进行中的查询
+     */
+    private static final class Flight {
+
+        private final long generation;
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Flight(long generation) {
+            this.generation = generation;
+        }
+
+        private Object await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -1,10 +1,26 @@
 package com.ruchang.power.service;
 
+import com.ruchang.power.archive.OrderArchiveStore;
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.dto.OrderCursorPage;
+import com.ruchang.power.dto.OrderStats;
+import com.ruchang.power.dto.OrderView;
 import com.ruchang.power.entity.Order;
+import com.ruchang.power.entity.OrderTransition;
+import com.ruchang.power.entity.UserOrderSummary;
+import com.ruchang.power.repository.OrderBatchRepository;
 import com.ruchang.power.repository.OrderRepository;
+import com.ruchang.power.sharding.OrderKeyGenerator;
+import com.ruchang.power.sharding.OrderMonthlyTableShardingAlgorithm;
+import com.ruchang.power.sharding.OrderNoGenerator;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderTablePartition;
+import com.ruchang.power.sharding.ReadWriteRouting;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -12,11 +28,16 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.ToLongFunction;
 
 /**
  * 订单服务实现
@@ -25,19 +46,72 @@ import java.util.UUID;
 @Service
 public class OrderService {
 
+    /**
+     * 按 create_time、order_id 倒序（与用户订单分页、游标分页的排序一致）
+     */
+    private static final Comparator<OrderView> NEWEST_FIRST = Comparator
+            .comparingLong(OrderView::getCreateTime)
+            .thenComparingLong(OrderView::getOrderId)
+            .reversed();
+
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderBatchRepository orderBatchRepository;
+
+    @Autowired
+    private OrderKeyGenerator orderKeyGenerator;
+
+    @Autowired
+    private OrderNoGenerator orderNoGenerator;
+
+    @Autowired
+    private OrderStatsCounter orderStatsCounter;
+
+    @Autowired
+    private UserOrderSummaryService userOrderSummaryService;
+
+    @Autowired
+    private ReshardingService reshardingService;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private OrderArchiveStore orderArchiveStore;
+
+    @Autowired
+    private OrderReadCoalescer orderReadCoalescer;
+
+    @Autowired
+    private OrderNearCache orderNearCache;
+
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 单次批量下单的最大订单数
+     */
+    @Value("${order.bulk.max-size:1000}")
+    private int bulkMaxSize;
+
     /**
      * 创建订单
      */
     @Transactional
     public Order createOrder(Long userId, String productName, BigDecimal amount) {
-        // 生成订单号
-        String orderNo = generateOrderNo();
+        reshardingService.checkWritable();
+        // 预先分配带用户基因的订单ID，再生成带分片基因的订单号
+        long orderId = orderKeyGenerator.nextOrderId(userId);
+        String orderNo = orderNoGenerator.generate(userId, orderId);
 
         // 构建订单对象
         Order order = Order.builder()
+                .orderId(orderId)
                 .orderNo(orderNo)
                 .userId(userId)
                 .productName(productName)
@@ -47,6 +121,11 @@ public class OrderService {
 
         // 保存订单
         Order savedOrder = orderRepository.save(order);
+        userOrderSummaryService.ordersCreated(List.of(savedOrder));
+        orderOutboxService.ordersCreated(List.of(savedOrder));
+        orderStatsCounter.created(1);
+        reshardingService.ordersChanged(Map.of(orderId, userId));
+        readYourWritesTracker.written(userId);
 //        // 等待一下确保ID已生成
 //        orderRepository.flush();
 //
@@ -54,12 +133,77 @@ public class OrderService {
 //        Order orderWithId = orderRepository.findByOrderNo(orderNo)
 //                .orElseThrow(() -> new RuntimeException("订单保存失败"));
 
-        // 打印分片路由信息
-        logShardingInfo(savedOrder);
-
         return savedOrder;
     }
 
+    /**
+     * 批量创建订单
+     * 预先分配主键，按物理分片分组后使用多行 INSERT 批量写入
+     */
+    @Transactional
+    public List<Order> createOrders(List<OrderCreateRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("订单列表不能为空");
+        }
+        if (requests.size() > bulkMaxSize) {
+            throw new IllegalArgumentException("单次最多创建 " + bulkMaxSize + " 个订单");
+        }
+        reshardingService.checkWritable();
+
+        Date now = new Date();
+        List<Order> orders = new ArrayList<>(requests.size());
+        for (OrderCreateRequest each : requests) {
+            if (each.getUserId() == null || !StringUtils.hasText(each.getProductName()) || each.getAmount() == null) {
+                throw new IllegalArgumentException("userId、productName、amount 不能为空");
+            }
+            orders.add(prepareOrder(each.getUserId(), each.getProductName(), each.getAmount(), now));
+        }
+
+        int rows = insertOrders(orders);
+        log.info("批量创建订单完成: count={}", rows);
+        return orders;
+    }
+
+    /**
+     * 分配带基因的订单ID和订单号，构建待写入的订单（不写库），创建时间截断到秒后再参与分区路由
+     */
+    public Order prepareOrder(Long userId, String productName, BigDecimal amount, Date now) {
+        long orderId = orderKeyGenerator.nextOrderId(userId);
+        Date time = Order.truncateToSeconds(now);
+        return Order.builder()
+                .orderId(orderId)
+                .orderNo(orderNoGenerator.generate(userId, orderId))
+                .userId(userId)
+                .productName(productName)
+                .amount(amount)
+                .status(1) // 待支付
+                .createTime(time)
+                .updateTime(time)
+                .newOrder(false)
+                .build();
+    }
+
+    /**
+     * 在一个事务中写入已由 prepareOrder 构建好的订单（异步下单的组提交）
+     */
+    @Transactional
+    public int saveOrders(List<Order> orders) {
+        reshardingService.checkWritable();
+        return insertOrders(orders);
+    }
+
+    private int insertOrders(List<Order> orders) {
+        int rows = orderBatchRepository.insertAll(orders);
+        userOrderSummaryService.ordersCreated(orders);
+        orderOutboxService.ordersCreated(orders);
+        orderStatsCounter.created(rows);
+        Map<Long, Long> created = new LinkedHashMap<>();
+        orders.forEach(each -> created.put(each.getOrderId(), each.getUserId()));
+        reshardingService.ordersChanged(created);
+        readYourWritesTracker.written(new LinkedHashSet<>(created.values()));
+        return rows;
+    }
+
     /**
      * 批量创建测试订单
      */
@@ -68,18 +212,19 @@ public class OrderService {
         String[] products = {"iPhone 15", "MacBook Pro", "iPad Air", "AirPods Pro", "Apple Watch"};
         int size = 2;
         log.info("开始批量创建测试订单...");
+        List<OrderCreateRequest> requests = new ArrayList<>(size);
         for (int i = 1; i <= size; i++) {
             Long userId = (long) i;
             String product = products[i % products.length];
             BigDecimal amount = new BigDecimal("5999.00").add(new BigDecimal(i * 100));
+            requests.add(new OrderCreateRequest(userId, product, amount));
+        }
 
-            Order order = createOrder(userId, product, amount);
-            log.info("创建订单成功: 订单ID={}, 用户ID={}, 订单号={}",
-                    order.getOrderId(), userId, order.getOrderNo());
-
-            // 模拟部分订单支付
+        List<Order> orders = createOrders(requests);
+        // 模拟部分订单支付
+        for (int i = 1; i <= orders.size(); i++) {
             if (i % 3 == 0) {
-                payOrder(order.getOrderId());
+                payOrder(orders.get(i - 1).getOrderId(), orders.get(i - 1).getUserId());
             }
         }
         log.info("批量创建测试订单完成，共{}条", size);
@@ -87,38 +232,209 @@ public class OrderService {
 
     /**
      * 根据ID查询订单
+     * 先查本地缓存（见 OrderNearCache）；查询不知道所属用户，先查从库，查不到（可能是刚创建、尚未复制到从库的订单）再查主库，
+     * 都查不到时查已归档的冷订单；同一订单的并发查询合并为一次（见 OrderReadCoalescer）
      */
     public Optional<Order> getOrderById(Long orderId) {
-        return orderRepository.findById(orderId);
+        return orderNearCache.getById(orderId, () -> orderReadCoalescer.readById(orderId,
+                () -> orderRepository.findById(orderId)
+                        .or(() -> ReadWriteRouting.primary(() -> orderRepository.findById(orderId)))
+                        .or(() -> orderArchiveStore.findByOrderId(orderId))));
     }
 
     /**
      * 根据订单号查询
+     * 先查本地缓存；新订单号按基因路由到单表，旧订单号退化为广播查询；从库查不到时再查主库，再查已归档的冷订单；
+     * 同一订单号的并发查询合并为一次
      */
     public Optional<Order> getOrderByNo(String orderNo) {
         if (!StringUtils.hasText(orderNo)) {
             return Optional.empty();
         }
-        return orderRepository.findByOrderNo(orderNo);
+        return orderNearCache.getByNo(orderNo, () -> orderReadCoalescer.readByNo(orderNo,
+                () -> orderRepository.findByOrderNo(orderNo)
+                        .or(() -> ReadWriteRouting.primary(() -> orderRepository.findByOrderNo(orderNo)))
+                        .or(() -> orderArchiveStore.findByOrderNo(orderNo))));
     }
 
     /**
-     * 查询用户订单
+     * 查询用户订单（含已归档的冷订单），返回只读视图
+     * 按月分表时会访问该用户所在库的全部分区表，订单较多的用户请使用 getUserOrdersScroll
      */
-    public List<Order> getUserOrders(Long userId) {
-        return orderRepository.findByUserId(userId);
+    @Transactional(readOnly = true)
+    public List<OrderView> getUserOrders(Long userId) {
+        List<OrderView> hot = readYourWritesTracker.read(userId, () -> orderRepository.findViewsByUserId(userId));
+        if (archivedCount(userId) == 0) {
+            return hot;
+        }
+        List<OrderView> cold = new ArrayList<>();
+        orderArchiveStore.findByUserId(userId).forEach(each -> cold.add(OrderView.of(each)));
+        return merge(hot, cold, OrderView::getOrderId);
     }
 
     /**
      * 分页查询用户订单
+     * offset 分页会被改写为每个分片 LIMIT 0, offset + size 并额外执行 count，深分页请使用 getUserOrdersScroll；
+     * 按月分表时没有 create_time 条件，会访问该用户所在库的全部分区表（每页最多 100 条）
      */
-    public Page<Order> getUserOrdersPage(Long userId, int page, int size) {
+    @Transactional(readOnly = true)
+    public Page<OrderView> getUserOrdersPage(Long userId, int page, int size) {
         PageRequest pageRequest = PageRequest.of(
                 Math.max(page, 0),
                 Math.min(size, 100),
                 Sort.by(Sort.Direction.DESC, "createTime")
         );
-        return orderRepository.findByUserId(userId, pageRequest);
+        long archived = archivedCount(userId);
+        if (archived == 0) {
+            return readYourWritesTracker.read(userId, () -> orderRepository.findViewsByUserId(userId, pageRequest));
+        }
+        // 有冷订单时热、冷各取前 (page + 1) * size 条合并排序后截取，冷订单总数取自用户汇总
+        int limit = (pageRequest.getPageNumber() + 1) * pageRequest.getPageSize();
+        PageRequest top = PageRequest.of(0, limit, pageRequest.getSort());
+        Page<OrderView> hot = readYourWritesTracker.read(userId, () -> orderRepository.findViewsByUserId(userId, top));
+        List<OrderView> merged = merge(hot.getContent(), findColdViews(userId, null, null, limit),
+                OrderView::getOrderId);
+        merged.sort(NEWEST_FIRST);
+        int from = Math.min((int) pageRequest.getOffset(), merged.size());
+        int to = Math.min(from + pageRequest.getPageSize(), merged.size());
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, to)), pageRequest,
+                hot.getTotalElements() + archived);
+    }
+
+    /**
+     * 游标分页查询用户订单（按 create_time、order_id 倒序）
+     * 与 getUserOrdersPage 相比没有 offset 和 count，翻到多深每个分片都只读 size + 1 行；
+     * 按月分表时从游标所在月份往前按 create_time 窗口逐段读取（见 findUserOrdersByMonth），不一次访问全部分区表
+     *
+     * @param after 上一页返回的 nextCursor，第一页传 null
+     */
+    @Transactional(readOnly = true)
+    public OrderCursorPage getUserOrdersScroll(Long userId, String after, int size) {
+        int pageSize = Math.max(1, Math.min(size, 100));
+        // 多取一条用来判断是否还有下一页
+        PageRequest limit = PageRequest.ofSize(pageSize + 1);
+
+        List<OrderView> orders;
+        Date afterTime = null;
+        Long afterOrderId = null;
+        if (StringUtils.hasText(after)) {
+            int separator = after.indexOf('_');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("游标格式错误: " + after);
+            }
+            try {
+                afterTime = new Date(Long.parseLong(after.substring(0, separator)));
+                afterOrderId = Long.parseLong(after.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("游标格式错误: " + after);
+            }
+        }
+        OrderMonthlyTableShardingAlgorithm monthly = orderShardRouter.getMonthlyTableAlgorithm();
+        if (monthly != null) {
+            orders = findUserOrdersByMonth(userId, afterTime, afterOrderId, pageSize + 1, monthly.getStartMonth());
+        } else if (afterTime != null) {
+            Date createTime = afterTime;
+            Long orderId = afterOrderId;
+            orders = readYourWritesTracker.read(userId,
+                    () -> orderRepository.findUserOrdersAfter(userId, createTime, orderId, limit));
+        } else {
+            orders = readYourWritesTracker.read(userId, () -> orderRepository.findUserOrdersFirst(userId, limit));
+        }
+        orders = mergeCold(orders, userId, afterTime, afterOrderId, pageSize + 1);
+
+        boolean hasMore = orders.size() > pageSize;
+        if (hasMore) {
+            orders = orders.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            OrderView last = orders.get(orders.size() - 1);
+            nextCursor = last.getCreateTime() + "_" + last.getOrderId();
+        }
+        return new OrderCursorPage(orders, nextCursor, hasMore);
+    }
+
+    /**
+     * 按月分表时的游标分页：从游标（第一页为当前时间）所在月份往前，按 [from, to) 的 create_time 窗口逐段读取，
+     * 读满 limit 条即停；窗口从一个月开始，每段没读满时翻倍，start-month 之前的订单最后从槽位表读取。
+     * 每段只访问窗口覆盖的分区表，最近的订单够一页时只访问一两个月的分区表
+     */
+    private List<OrderView> findUserOrdersByMonth(Long userId, Date afterTime, Long afterOrderId, int limit,
+                                                  int startMonth) {
+        long top = afterTime != null ? afterTime.getTime() : System.currentTimeMillis()
+                + OrderMonthlyTableShardingAlgorithm.CREATE_TIME_SKEW_MILLIS;
+        int month = OrderTablePartition.monthOf(top);
+        Date to = new Date(OrderTablePartition.startOf(OrderTablePartition.plusMonths(month, 1)));
+        List<OrderView> result = new ArrayList<>();
+        int span = 1;
+        boolean first = true;
+        while (result.size() < limit) {
+            boolean last = month < startMonth;
+            int fromMonth = last ? month : Math.max(startMonth, OrderTablePartition.plusMonths(month, 1 - span));
+            Date from = new Date(last ? 0 : OrderTablePartition.startOf(fromMonth));
+            Date windowTo = to;
+            PageRequest remaining = PageRequest.ofSize(limit - result.size());
+            // 游标只在第一段内起作用，之后的窗口都早于游标
+            if (first && afterTime != null) {
+                result.addAll(readYourWritesTracker.read(userId, () -> orderRepository.findUserOrdersAfterBetween(
+                        userId, from, windowTo, afterTime, afterOrderId, remaining)));
+            } else {
+                result.addAll(readYourWritesTracker.read(userId,
+                        () -> orderRepository.findUserOrdersFirstBetween(userId, from, windowTo, remaining)));
+            }
+            if (last) {
+                break;
+            }
+            to = from;
+            month = OrderTablePartition.plusMonths(fromMonth, -1);
+            span *= 2;
+            first = false;
+        }
+        return result;
+    }
+
+    /**
+     * 游标分页合并冷订单：取游标之后的前 limit 条冷订单与热数据合并排序，保留前 limit 条
+     */
+    private List<OrderView> mergeCold(List<OrderView> hot, Long userId, Date afterTime, Long afterOrderId,
+                                      int limit) {
+        if (archivedCount(userId) == 0) {
+            return hot;
+        }
+        List<OrderView> cold = findColdViews(userId, afterTime, afterOrderId, limit);
+        if (cold.isEmpty()) {
+            return hot;
+        }
+        List<OrderView> merged = merge(hot, cold, OrderView::getOrderId);
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * 用户已归档的订单数（读取用户汇总），为 0 时不读取冷订单存储
+     */
+    private long archivedCount(Long userId) {
+        return readYourWritesTracker.read(userId, () -> userOrderSummaryService.getArchivedCount(userId));
+    }
+
+    private List<OrderView> findColdViews(Long userId, Date beforeTime, Long beforeOrderId, int limit) {
+        List<Order> cold = orderArchiveStore.findByUserId(userId, beforeTime, beforeOrderId, limit);
+        List<OrderView> result = new ArrayList<>(cold.size());
+        cold.forEach(each -> result.add(OrderView.of(each)));
+        return result;
+    }
+
+    /**
+     * 合并热、冷订单，同一订单（归档中断重放期间可能两边都有）以热数据为准
+     */
+    private static <T> List<T> merge(List<T> hot, List<T> cold, ToLongFunction<T> orderId) {
+        if (cold.isEmpty()) {
+            return hot;
+        }
+        Map<Long, T> result = new LinkedHashMap<>();
+        hot.forEach(each -> result.put(orderId.applyAsLong(each), each));
+        cold.forEach(each -> result.putIfAbsent(orderId.applyAsLong(each), each));
+        return new ArrayList<>(result.values());
     }
 
     /**
@@ -126,17 +442,26 @@ public class OrderService {
      */
     @Transactional
     public boolean payOrder(Long orderId) {
-        return orderRepository.findById(orderId)
-                .map(order -> {
-                    if (order.pay()) {
-                        orderRepository.save(order);
-                        log.info("订单支付成功: orderId={}", orderId);
-                        return true;
-                    }
-                    log.warn("订单支付失败，状态异常: orderId={}, status={}", orderId, order.getStatus());
-                    return false;
-                })
-                .orElse(false);
+        return transition(orderId, null, OrderTransition.PAY);
+    }
+
+    /**
+     * 支付订单（已知用户ID时省去一次查询）
+     */
+    @Transactional
+    public boolean payOrder(Long orderId, Long userId) {
+        return transition(orderId, userId, OrderTransition.PAY);
+    }
+
+    /**
+     * 批量支付订单（支付网关批量回调）
+     * 按物理分片分组，每个分片一条条件 UPDATE，非待支付状态或不存在的订单会被跳过
+     *
+     * @return 实际支付成功的订单ID
+     */
+    @Transactional
+    public List<Long> payOrders(List<Long> orderIds) {
+        return transitionAll(orderIds, OrderTransition.PAY);
     }
 
     /**
@@ -144,92 +469,117 @@ public class OrderService {
      */
     @Transactional
     public boolean completeOrder(Long orderId) {
-        return orderRepository.findById(orderId)
-                .map(order -> {
-                    if (order.complete()) {
-                        orderRepository.save(order);
-                        log.info("订单完成成功: orderId={}", orderId);
-                        return true;
-                    }
-                    log.warn("订单完成失败，状态异常: orderId={}, status={}", orderId, order.getStatus());
-                    return false;
-                })
-                .orElse(false);
+        return transition(orderId, null, OrderTransition.COMPLETE);
     }
 
     /**
-     * 取消订单
+     * 完成订单（已知用户ID时省去一次查询）
      */
     @Transactional
-    public boolean cancelOrder(Long orderId) {
-        return orderRepository.findById(orderId)
-                .map(order -> {
-                    if (order.cancel()) {
-                        orderRepository.save(order);
-                        log.info("订单取消成功: orderId={}", orderId);
-                        return true;
-                    }
-                    log.warn("订单取消失败，状态异常: orderId={}, status={}", orderId, order.getStatus());
-                    return false;
-                })
-                .orElse(false);
+    public boolean completeOrder(Long orderId, Long userId) {
+        return transition(orderId, userId, OrderTransition.COMPLETE);
     }
 
     /**
-     * 统计用户消费总额
+     * 取消订单
      */
-    public BigDecimal getUserTotalAmount(Long userId) {
-        BigDecimal total = orderRepository.sumAmountByUserId(userId);
-        return total != null ? total : BigDecimal.ZERO;
+    @Transactional
+    public boolean cancelOrder(Long orderId) {
+        return transition(orderId, null, OrderTransition.CANCEL);
     }
 
     /**
-     * 删除用户订单
+     * 取消订单（已知用户ID时省去一次查询）
      */
     @Transactional
-    public long deleteUserOrders(Long userId) {
-        long count = orderRepository.deleteByUserId(userId);
-        log.info("删除用户订单: userId={}, count={}", userId, count);
-        return count;
+    public boolean cancelOrder(Long orderId, Long userId) {
+        return transition(orderId, userId, OrderTransition.CANCEL);
     }
 
     /**
-     * 查询时间范围内的订单
+     * 单条件 UPDATE 完成状态流转，不加载实体，并发回调时只有一个能成功
      */
-    public List<Order> getOrdersByTimeRange(Date start, Date end) {
-        return orderRepository.findByCreateTimeBetween(start, end);
+    private boolean transition(Long orderId, Long userId, OrderTransition transition) {
+        reshardingService.checkWritable();
+        Long owner = userId != null ? userId : orderRepository.findUserIdByOrderId(orderId).orElse(null);
+        if (owner == null) {
+            log.warn("订单{}失败，订单不存在: orderId={}", transition.getDescription(), orderId);
+            return false;
+        }
+        int rows = orderRepository.updateStatus(orderId, owner, transition.getFrom(), transition.getTo(), new Date());
+        if (rows == 0) {
+            log.warn("订单{}失败，订单不存在或状态异常: orderId={}, userId={}",
+                    transition.getDescription(), orderId, owner);
+            return false;
+        }
+        userOrderSummaryService.transitioned(owner, transition, 1);
+        orderOutboxService.transitioned(transition, Map.of(orderId, owner));
+        orderStatsCounter.transitioned(transition.getFrom(), transition.getTo(), 1);
+        reshardingService.ordersChanged(Map.of(orderId, owner));
+        readYourWritesTracker.written(owner);
+        orderNearCache.invalidate(orderId);
+        log.info("订单{}成功: orderId={}", transition.getDescription(), orderId);
+        return true;
+    }
+
+    private List<Long> transitionAll(List<Long> orderIds, OrderTransition transition) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            throw new IllegalArgumentException("订单列表不能为空");
+        }
+        if (orderIds.size() > bulkMaxSize) {
+            throw new IllegalArgumentException("单次最多处理 " + bulkMaxSize + " 个订单");
+        }
+        Set<Long> distinct = new LinkedHashSet<>(orderIds);
+        if (distinct.contains(null)) {
+            throw new IllegalArgumentException("订单ID不能为空");
+        }
+        reshardingService.checkWritable();
+
+        Map<Long, Long> updated = orderBatchRepository.updateStatusAll(distinct,
+                transition.getFrom(), transition.getTo());
+        Map<Long, Long> countByUser = new LinkedHashMap<>();
+        updated.values().forEach(each -> countByUser.merge(each, 1L, Long::sum));
+        countByUser.forEach((userId, count) -> userOrderSummaryService.transitioned(userId, transition, count));
+        orderOutboxService.transitioned(transition, updated);
+        orderStatsCounter.transitioned(transition.getFrom(), transition.getTo(), updated.size());
+        reshardingService.ordersChanged(updated);
+        readYourWritesTracker.written(countByUser.keySet());
+        orderNearCache.invalidate(updated.keySet());
+
+        log.info("批量{}订单完成: requested={}, updated={}", transition.getDescription(), distinct.size(), updated.size());
+        return new ArrayList<>(updated.keySet());
     }
 
     /**
-     * 生成订单号
+     * 统计用户消费总额
+     * 读取用户汇总，汇总尚未回填时按订单聚合
      */
-    private String generateOrderNo() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-        String timeStr = sdf.format(new Date());
-        String randomStr = UUID.randomUUID().toString().replace("-", "").substring(0, 8).toUpperCase();
-        return "ORD" + timeStr + randomStr;
+    @Transactional(readOnly = true)
+    public BigDecimal getUserTotalAmount(Long userId) {
+        return getUserSummary(userId).map(UserOrderSummary::getTotalAmount).orElse(BigDecimal.ZERO);
     }
 
     /**
-     * 打印分片路由信息
+     * 查询用户订单汇总，汇总行缺失时按订单聚合
      */
-    private void logShardingInfo(Order order) {
-        long dbIndex = order.getUserId() % 2;
-        long tableIndex = order.getOrderId() % 2;
-        log.info("订单路由信息: orderId={}, userId={}, 路由到: 库ds{}, 表t_order_{}",
-                order.getOrderId(), order.getUserId(), dbIndex, tableIndex);
+    @Transactional(readOnly = true)
+    public Optional<UserOrderSummary> getUserSummary(Long userId) {
+        return readYourWritesTracker.read(userId, () -> userOrderSummaryService.getSummary(userId));
     }
 
     /**
-     * 获取系统统计信息
+     * 查询时间范围内的订单（热数据查从库，冷订单只读取覆盖的月份分区）
      */
-    public String getSystemStats() {
-        long totalOrders = orderRepository.count();
-        long pendingOrders = orderRepository.countByStatus(1);
-        long paidOrders = orderRepository.countByStatus(2);
-        long completedOrders = orderRepository.countByStatus(3);
+    @Transactional(readOnly = true)
+    public List<Order> getOrdersByTimeRange(Date start, Date end) {
+        return merge(orderRepository.findByCreateTimeBetween(start, end),
+                orderArchiveStore.findByCreateTimeBetween(start, end), Order::getOrderId);
+    }
 
-        return String.format("系统统计: 总订单=%d, 待支付=%d, 已支付=%d, 已完成=%d",
-                totalOrders, pendingOrders, paidOrders, completedOrders);
+    /**
+     * 获取系统统计信息（内存计数，定时与数据库校准）
+     */
+    public OrderStats getSystemStats() {
+        return orderStatsCounter.snapshot();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderStats;
+import com.ruchang.power.repository.OrderRepository;
+import com.ruchang.power.repository.UserOrderSummaryRepository;
+import com.ruchang.power.sharding.ReadWriteRouting;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 订单状态计数器
+ * 各状态的订单数保存在内存 LongAdder 中，随创建、状态流转、删除增量更新（事务提交后生效），
+ * 统计接口不再访问数据库；定时按状态 GROUP BY 一次与数据库校准，修正多实例或异常导致的偏差。
+ * 已归档的订单按各用户汇总行中的 archived_* 列计入（与热表在同一数据库中一致），不读取可能只在本地的冷订单存储
+ */
+@Slf4j
+@Component
+@DependsOn("reshardingService") // 加载统计前先安装分片布局
+public class OrderStatsCounter {
+
+    /**
+     * 状态码 1~4：待支付、已支付、已完成、已取消
+     */
+    private static final int STATUS_COUNT = 4;
+
+    private final LongAdder[] counters = new LongAdder[STATUS_COUNT + 1];
+
+    /**
+     * 已开始提交、增量尚未计入的事务，提交与校准查询的先后不确定
+     */
+    private final Set<Delta> committing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 计入增量时持读锁（相互不阻塞），开始、结束校准窗口时持写锁
+     */
+    private final ReadWriteLock windowLock = new ReentrantReadWriteLock();
+
+    /**
+     * 校准查询期间可能已提交的本实例增量，不在校准时为 null，由 windowLock 保护
+     */
+    private Window window;
+
+    private volatile long reconciledAt;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserOrderSummaryRepository userOrderSummaryRepository;
+
+    public OrderStatsCounter() {
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 新建订单（待支付）
+     */
+    public void created(int count) {
+        afterCommit(new Delta().add(1, count));
+    }
+
+    /**
+     * 订单状态流转
+     */
+    public void transitioned(int from, int to, long count) {
+        afterCommit(new Delta().add(from, -count).add(to, count));
+    }
+
+    /**
+     * 删除订单
+     *
+     * @param countByStatus 各状态被删除的订单数
+     */
+    public void deleted(Map<Integer, Long> countByStatus) {
+        Delta delta = new Delta();
+        countByStatus.forEach((status, count) -> delta.add(status, -count));
+        afterCommit(delta);
+    }
+
+    /**
+     * 订单在热表与冷订单存储之间移动（归档），总数不变；热表和汇总行分两条语句统计，
+     * 与之并发的校准可能只看到其中一边，按移动数放宽该状态的修正范围
+     *
+     * @param countByStatus 各状态移动的订单数
+     */
+    public void moved(Map<Integer, Long> countByStatus) {
+        Delta delta = new Delta();
+        countByStatus.forEach(delta::move);
+        afterCommit(delta);
+    }
+
+    /**
+     * 当前统计
+     */
+    public OrderStats snapshot() {
+        long pending = counter(1).sum();
+        long paid = counter(2).sum();
+        long completed = counter(3).sum();
+        long cancelled = counter(4).sum();
+        return new OrderStats(pending + paid + completed + cancelled, pending, paid, completed, cancelled,
+                reconciledAt);
+    }
+
+    /**
+     * 初始化时（对外提供服务之前）从数据库加载初始值
+     */
+    @PostConstruct
+    public void load() {
+        long[] actual = countFromDatabase();
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            counters[i].add(actual[i]);
+        }
+        reconciledAt = System.currentTimeMillis();
+        log.info("订单统计加载完成: {}", snapshot());
+    }
+
+    /**
+     * 定时与数据库校准
+     * 查询前取内存计数快照 before，偏差为 数据库 - before，只修正到快照为止，快照之后计入的增量原样保留。
+     * 查询期间（含查询开始时已在提交中）本实例提交的事务可能已被数据库统计，也可能没有，
+     * 只修正超出这部分增量的偏差：不会多修正，持续写入时也每轮校准，剩余的偏差不超过查询期间本实例的提交量，
+     * 写入较少的一轮即可完全修正
+     */
+    @Scheduled(initialDelayString = "${order.stats.reconcile-interval-ms:60000}",
+            fixedDelayString = "${order.stats.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        Window current = new Window();
+        long[] before;
+        windowLock.writeLock().lock();
+        try {
+            before = sums();
+            committing.forEach(current::add);
+            window = current;
+        } finally {
+            windowLock.writeLock().unlock();
+        }
+        long[] actual;
+        try {
+            actual = countFromDatabase();
+        } finally {
+            windowLock.writeLock().lock();
+            try {
+                committing.forEach(current::add);
+                window = null;
+            } finally {
+                windowLock.writeLock().unlock();
+            }
+        }
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            long drift = actual[i] - before[i];
+            long correction = drift > current.up[i] ? drift - current.up[i]
+                    : drift < -current.down[i] ? drift + current.down[i] : 0;
+            if (correction != 0) {
+                log.warn("订单统计偏差已修正: status={}, memory={}, database={}, correction={}", i, before[i],
+                        actual[i], correction);
+                counters[i].add(correction);
+            } else if (drift != 0) {
+                log.debug("订单统计偏差在查询期间的提交范围内，暂不修正: status={}, drift={}", i, drift);
+            }
+        }
+        reconciledAt = System.currentTimeMillis();
+    }
+
+    private long[] countFromDatabase() {
+        long[] result = new long[STATUS_COUNT + 1];
+        // 校准基准必须包含所有已提交的写入，不能读有复制延迟的从库
+        List<Object[]> rows = ReadWriteRouting.primary(orderRepository::countGroupByStatus);
+        for (Object[] each : rows) {
+            int status = ((Number) each[0]).intValue();
+            if (status >= 1 && status <= STATUS_COUNT) {
+                result[status] = ((Number) each[1]).longValue();
+            }
+        }
+        // 已归档的订单：各库汇总行中的 archived_* 列
+        for (Object[] each : ReadWriteRouting.primary(userOrderSummaryRepository::sumArchivedCounts)) {
+            result[3] += each[0] == null ? 0 : ((Number) each[0]).longValue();
+            result[4] += each[1] == null ? 0 : ((Number) each[1]).longValue();
+        }
+        return result;
+    }
+
+    private long[] sums() {
+        long[] result = new long[STATUS_COUNT + 1];
+        for (int i = 1; i <= STATUS_COUNT; i++) {
+            result[i] = counters[i].sum();
+        }
+        return result;
+    }
+
+    private LongAdder counter(int status) {
+        checkStatus(status);
+        return counters[status];
+    }
+
+    private static void checkStatus(int status) {
+        if (status < 1 || status > STATUS_COUNT) {
+            throw new IllegalArgumentException("未知订单状态: " + status);
+        }
+    }
+
+    private void afterCommit(Delta delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    committing.add(delta);
+                }
+
+                @Override
+                public void afterCommit() {
+                    apply(delta);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    committing.remove(delta);
+                }
+            });
+        } else {
+            apply(delta);
+        }
+    }
+
+    /**
+     * 计入增量，正在校准时同时记入校准窗口
+     */
+    private void apply(Delta delta) {
+        windowLock.readLock().lock();
+        try {
+            for (int i = 1; i <= STATUS_COUNT; i++) {
+                if (delta.values[i] != 0) {
+                    counters[i].add(delta.values[i]);
+                }
+            }
+            Window current = window;
+            if (current != null) {
+                current.add(delta);
+            }
+            committing.remove(delta);
+        } finally {
+            windowLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 一个事务的计数增量，以及它使数据库统计可能偏大（up）、偏小（down）的范围
+     */
+    private static final class Delta {
+
+        private final long[] values = new long[STATUS_COUNT + 1];
+
+        private final long[] up = new long[STATUS_COUNT + 1];
+
+        private final long[] down = new long[STATUS_COUNT + 1];
+
+        private Delta add(int status, long count) {
+            checkStatus(status);
+            values[status] += count;
+            if (count > 0) {
+                up[status] += count;
+            } else {
+                down[status] -= count;
+            }
+            return this;
+        }
+
+        private void move(int status, long count) {
+            checkStatus(status);
+            up[status] += count;
+            down[status] += count;
+        }
+    }
+
+    /**
+     * 一次校准查询期间可能已被数据库统计的增量范围
+     */
+    private static final class Window {
+
+        private final long[] up = new long[STATUS_COUNT + 1];
+
+        private final long[] down = new long[STATUS_COUNT + 1];
+
+        private synchronized void add(Delta delta) {
+            for (int i = 1; i <= STATUS_COUNT; i++) {
+                up[i] += delta.up[i];
+                down[i] += delta.down[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderEvent;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.repository.PointAwardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 支付成功后给用户加积分（order.outbox.points.enabled=true 时生效）
+ * 调用 point-service 的 POST /point/add（请求体与 Nacos-Power 的 OrderTemp 一致：id 为订单ID），
+ * 由 outbox 中继在下单、支付请求之外异步调用，point-service 不可用时整批稍后重试，不影响订单接口。
+ *
+ * point-service 的 /point/add 不幂等，按订单ID去重：调用前在订单所在库的 t_order_point_award 中占用该订单（INSERT IGNORE），
+ * 已有记录的订单不再调用（重复投递、多个实例同时投递同一批）；成功后标记为已加积分。
+ * 连接失败、point-service 返回错误时确定没有加上，释放占用后整批重试；读超时等结果未知时保留占用、不自动重试，
+ * 留给人工按 status=0 的记录核对（宁可漏加也不重复加）。请求头带 Idempotency-Key（point-award:订单ID），point-service 支持时可自行去重
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "order.outbox.points.enabled", havingValue = "true")
+public class PointAwardConsumer implements OrderEventConsumer {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PointAwardRepository pointAwardRepository;
+
+    @Autowired
+    private RestTemplateBuilder restTemplateBuilder;
+
+    @Value("${order.outbox.points.url}")
+    private String url;
+
+    @Value("${order.outbox.points.timeout-ms:3000}")
+    private long timeoutMs;
+
+    private RestTemplate restTemplate;
+
+    @PostConstruct
+    public void init() {
+        restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(timeoutMs))
+                .setReadTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return "point-award";
+    }
+
+    @Override
+    public void accept(List<OrderEvent> events) {
+        for (OrderEvent each : events) {
+            if (each.getType() != OrderEvent.Type.PAID) {
+                continue;
+            }
+            Optional<Order> order = orderService.getOrderById(each.getOrderId());
+            if (order.isEmpty()) {
+                log.warn("订单不存在（可能已删除），跳过加积分: orderId={}", each.getOrderId());
+                continue;
+            }
+            if (!pointAwardRepository.claim(each.getDataSourceName(), each.getOrderId(), each.getUserId())) {
+                skipClaimed(each);
+                continue;
+            }
+            award(each, order.get());
+        }
+    }
+
+    private void award(OrderEvent event, Order order) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("id", String.valueOf(event.getOrderId()));
+        request.put("productName", order.getProductName());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", "point-award:" + event.getOrderId());
+        String response;
+        try {
+            response = restTemplate.postForObject(url, new HttpEntity<>(request, headers), String.class);
+        } catch (HttpStatusCodeException e) {
+            pointAwardRepository.release(event.getDataSourceName(), event.getOrderId());
+            throw e;
+        } catch (ResourceAccessException e) {
+            if (e.getCause() instanceof ConnectException) {
+                pointAwardRepository.release(event.getDataSourceName(), event.getOrderId());
+            } else {
+                log.warn("加积分结果未知，不再自动重试，需要人工核对: orderId={}, userId={}",
+                        event.getOrderId(), event.getUserId());
+            }
+            throw e;
+        }
+        pointAwardRepository.markAwarded(event.getDataSourceName(), event.getOrderId());
+        log.debug("加积分完成: orderId={}, userId={}, response={}", event.getOrderId(), event.getUserId(), response);
+    }
+
+    private void skipClaimed(OrderEvent event) {
+        Integer status = pointAwardRepository.getStatus(event.getDataSourceName(), event.getOrderId());
+        if (status != null && status == PointAwardRepository.STATUS_CLAIMED) {
+            log.warn("订单加积分结果未知或正在由其他实例处理，跳过: orderId={}, userId={}",
+                    event.getOrderId(), event.getUserId());
+        } else {
+            log.debug("订单已加过积分，跳过重复投递: orderId={}, eventId={}", event.getOrderId(), event.getEventId());
+        }
+    }
+}
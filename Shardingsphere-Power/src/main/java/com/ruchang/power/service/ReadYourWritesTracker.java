@@ -0,0 +1,89 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.sharding.ReadWriteRouting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 读己之写
+ * 记录每个用户最近一次写入的提交时间，窗口期（覆盖主从复制延迟）内该用户的查询走主库，之后回到从库。
+ * 记录保存在本实例内存中，同一用户的读写需要落在同一实例（或由网关按用户粘滞）。
+ * 提交时同时通知 OrderReadCoalescer，之后的单条查询不会共享写入前发起的查询结果
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    @Autowired
+    private OrderReadCoalescer orderReadCoalescer;
+
+    @Value("${order.read-write-splitting.sticky-window-ms:1000}")
+    private long stickyWindowMs;
+
+    /**
+     * 用户ID -> 主库粘滞截止时间（毫秒）
+     */
+    private final Map<Long, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    /**
+     * 记录用户写入，事务提交后开始计时
+     */
+    public void written(Long userId) {
+        afterCommit(() -> {
+            stickyUntil.put(userId, System.currentTimeMillis() + stickyWindowMs);
+            orderReadCoalescer.written(userId);
+        });
+    }
+
+    /**
+     * 记录多个用户写入
+     */
+    public void written(Collection<Long> userIds) {
+        afterCommit(() -> {
+            long until = System.currentTimeMillis() + stickyWindowMs;
+            userIds.forEach(each -> stickyUntil.put(each, until));
+            orderReadCoalescer.written(userIds);
+        });
+    }
+
+    /**
+     * 执行用户维度的查询，用户刚写入过时走主库
+     */
+    public <T> T read(Long userId, Supplier<T> query) {
+        Long until = stickyUntil.get(userId);
+        if (until != null && until > System.currentTimeMillis()) {
+            return ReadWriteRouting.primary(query);
+        }
+        return query.get();
+    }
+
+    /**
+     * 清理已过期的记录
+     */
+    @Scheduled(fixedDelayString = "${order.read-write-splitting.sticky-window-ms:1000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(each -> each <= now);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
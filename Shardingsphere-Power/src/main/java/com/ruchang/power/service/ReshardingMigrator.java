@@ -0,0 +1,340 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.repository.ReshardingRepository;
+import com.ruchang.power.repository.ReshardingRepository.Table;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderSlotLayout;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 扩容数据迁移
+ * - copy：按主键分批扫描源布局下的每个物理节点，把槽位被移走的行 INSERT IGNORE 到目标节点
+ * - verify：对比源行与目标行的校验和，修复缺失或不一致的目标行，删除源中已不存在的目标行
+ * - cleanup：删除不属于所在节点的行（切换后源节点上的旧数据，或放弃迁移时已复制到目标节点的数据）
+ * - sync*：双写，把一次写入涉及的行从源节点同步到目标节点
+ *
+ * 所有读写都直接访问物理节点，每批最多 chunk-size 行，不会长时间持有锁
+ */
+@Slf4j
+@Component
+public class ReshardingMigrator {
+
+    @Autowired
+    private ReshardingRepository reshardingRepository;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 每批扫描的行数
+     */
+    @Value("${order.resharding.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 复制：源布局下每个节点中需要移动的行写入目标节点，目标中已存在的行（双写写入的）不覆盖
+     *
+     * @param copied 已复制行数，实时更新
+     */
+    public void copy(OrderSlotLayout source, OrderSlotLayout target, AtomicLong copied) {
+        for (Table table : Table.values()) {
+            for (DataNode node : ownedNodes(table, source)) {
+                scan(table, node, rows -> {
+                    for (Map.Entry<DataNode, List<Object[]>> entry : groupMoved(table, node, rows, target).entrySet()) {
+                        reshardingRepository.insertIgnore(table, entry.getKey(), entry.getValue());
+                        copied.addAndGet(entry.getValue().size());
+                    }
+                });
+                log.info("分片迁移复制完成: table={}, node={}, copied={}", table.getLogicTable(), node.format(),
+                        copied.get());
+            }
+        }
+    }
+
+    /**
+     * 校验并修复
+     * 先从源节点出发，目标行缺失或校验和不一致（且不比源行新）时用源行覆盖；
+     * 再从目标节点出发，删除源节点中已不存在的行（复制后源行被删除）
+     *
+     * @param checked 已校验行数，实时更新
+     */
+    public VerifyResult verify(OrderSlotLayout source, OrderSlotLayout target, AtomicLong checked) {
+        VerifyResult result = new VerifyResult();
+        for (Table table : Table.values()) {
+            for (DataNode node : ownedNodes(table, source)) {
+                scan(table, node, rows -> {
+                    for (Map.Entry<DataNode, List<Object[]>> entry : groupMoved(table, node, rows, target).entrySet()) {
+                        repair(table, entry.getKey(), entry.getValue(), result);
+                        checked.addAndGet(entry.getValue().size());
+                    }
+                });
+            }
+            for (DataNode node : ownedNodes(table, target)) {
+                // 扩容时移入的行只会落在源布局下未被路由到的节点（见 ReshardingService 的计划校验）
+                if (table.isOwned(node, source)) {
+                    continue;
+                }
+                scan(table, node, rows -> {
+                    // 目标节点中从其它节点移入的行，按源节点分组核对
+                    Map<DataNode, List<Object[]>> bySource = new LinkedHashMap<>();
+                    for (Object[] each : rows) {
+                        DataNode from = table.nodeOf(each, source);
+                        if (table.nodeOf(each, target).equals(node) && !from.equals(node)) {
+                            bySource.computeIfAbsent(from, key -> new ArrayList<>()).add(each);
+                        }
+                    }
+                    bySource.forEach((from, moved) -> removeOrphans(table, node, from, moved, result));
+                });
+            }
+        }
+        log.info("分片迁移校验完成: {}", result);
+        return result;
+    }
+
+    /**
+     * 清理：删除所有配置节点中不属于该节点的行
+     * 写入时间晚于 lateWriteAfter 的行视为切换时尚未刷新布局的实例写入的数据，先同步到新节点再删除
+     *
+     * @param deleted 已删除行数，实时更新
+     */
+    public void cleanup(OrderSlotLayout owner, long lateWriteAfter, AtomicLong deleted) {
+        for (Table table : Table.values()) {
+            for (DataNode node : allNodes(table)) {
+                scan(table, node, rows -> {
+                    Map<DataNode, List<Object[]>> strays = new LinkedHashMap<>();
+                    for (Object[] each : rows) {
+                        DataNode belongs = table.nodeOf(each, owner);
+                        if (!belongs.equals(node)) {
+                            strays.computeIfAbsent(belongs, key -> new ArrayList<>()).add(each);
+                        }
+                    }
+                    strays.forEach((belongs, group) -> {
+                        syncLateWrites(table, belongs, group, lateWriteAfter);
+                        deleted.addAndGet(reshardingRepository.deleteByKeys(table, node, keys(table, group)));
+                    });
+                });
+                log.info("分片迁移清理完成: table={}, node={}, deleted={}", table.getLogicTable(), node.format(),
+                        deleted.get());
+            }
+        }
+    }
+
+    /**
+     * 双写：把订单当前的行从源节点同步到目标节点（源中已删除的在目标中也删除）
+     *
+     * @param orders 订单ID -> 用户ID
+     */
+    public void syncOrders(OrderSlotLayout source, OrderSlotLayout target, Map<Long, Long> orders) {
+        Map<DataNode, Map<DataNode, List<Long>>> groups = new LinkedHashMap<>();
+        orders.forEach((orderId, userId) -> {
+            DataNode from = source.orderNodeOf(userId, orderId);
+            DataNode to = target.orderNodeOf(userId, orderId);
+            if (!from.equals(to)) {
+                groups.computeIfAbsent(from, key -> new LinkedHashMap<>())
+                        .computeIfAbsent(to, key -> new ArrayList<>()).add(orderId);
+            }
+        });
+        groups.forEach((from, byTarget) -> byTarget.forEach((to, ids) -> sync(Table.ORDER, from, to, ids)));
+    }
+
+    /**
+     * 双写：同步用户汇总
+     */
+    public void syncUsers(OrderSlotLayout source, OrderSlotLayout target, Collection<Long> userIds) {
+        for (Long each : userIds) {
+            DataNode from = new DataNode(source.databaseOf(each), Table.USER_ORDER_SUMMARY.getLogicTable());
+            DataNode to = new DataNode(target.databaseOf(each), Table.USER_ORDER_SUMMARY.getLogicTable());
+            if (!from.equals(to)) {
+                sync(Table.USER_ORDER_SUMMARY, from, to, Collections.singletonList(each));
+            }
+        }
+    }
+
+    /**
+     * 双写：用户订单已全部删除，删除目标节点中该用户移入的订单和汇总
+     * 扩容时目标节点在源布局下不会被路由到，其中该用户的行都是迁移写入的
+     */
+    public void userDeleted(OrderSlotLayout source, OrderSlotLayout target, long userId) {
+        String database = target.databaseOf(userId);
+        for (DataNode each : allNodes(Table.ORDER)) {
+            if (each.getDataSourceName().equals(database) && target.owns(each) && !source.owns(each)) {
+                reshardingRepository.deleteByUserId(Table.ORDER, each, userId);
+            }
+        }
+        syncUsers(source, target, Collections.singletonList(userId));
+    }
+
+    private void sync(Table table, DataNode from, DataNode to, List<Long> keys) {
+        Map<Long, Object[]> rows = reshardingRepository.findByKeys(table, from, keys);
+        reshardingRepository.upsert(table, to, new ArrayList<>(rows.values()));
+        List<Long> missing = new ArrayList<>(keys);
+        missing.removeAll(rows.keySet());
+        reshardingRepository.deleteByKeys(table, to, missing);
+    }
+
+    private void repair(Table table, DataNode to, List<Object[]> sourceRows, VerifyResult result) {
+        Map<Long, Object[]> targetRows = reshardingRepository.findByKeys(table, to, keys(table, sourceRows));
+        List<Object[]> repairs = new ArrayList<>();
+        for (Object[] each : sourceRows) {
+            long checksum = ReshardingRepository.checksum(each);
+            result.sourceChecksum += checksum;
+            result.checked++;
+            Object[] current = targetRows.get(table.keyOf(each));
+            if (current == null) {
+                result.missing++;
+                repairs.add(each);
+            } else if (ReshardingRepository.checksum(current) != checksum) {
+                result.mismatched++;
+                // 目标行更新（双写已写入更新的数据）时不回退，留给下一轮校验
+                if (table.updateTimeOf(current) <= table.updateTimeOf(each)) {
+                    repairs.add(each);
+                }
+            }
+        }
+        reshardingRepository.upsert(table, to, repairs);
+    }
+
+    private void removeOrphans(Table table, DataNode node, DataNode from, List<Object[]> moved, VerifyResult result) {
+        Map<Long, Object[]> sourceRows = reshardingRepository.findByKeys(table, from, keys(table, moved));
+        List<Long> orphans = new ArrayList<>();
+        for (Object[] each : moved) {
+            if (sourceRows.containsKey(table.keyOf(each))) {
+                result.targetChecksum += ReshardingRepository.checksum(each);
+            } else {
+                orphans.add(table.keyOf(each));
+            }
+        }
+        result.orphans += reshardingRepository.deleteByKeys(table, node, orphans);
+    }
+
+    private void syncLateWrites(Table table, DataNode belongs, List<Object[]> strays, long lateWriteAfter) {
+        List<Object[]> late = new ArrayList<>();
+        for (Object[] each : strays) {
+            if (table.updateTimeOf(each) > lateWriteAfter) {
+                late.add(each);
+            }
+        }
+        if (late.isEmpty()) {
+            return;
+        }
+        Map<Long, Object[]> current = reshardingRepository.findByKeys(table, belongs, keys(table, late));
+        List<Object[]> newer = new ArrayList<>();
+        for (Object[] each : late) {
+            Object[] existing = current.get(table.keyOf(each));
+            if (existing == null || table.updateTimeOf(existing) < table.updateTimeOf(each)) {
+                newer.add(each);
+            }
+        }
+        if (!newer.isEmpty()) {
+            log.warn("分片迁移清理发现切换后写入旧节点的数据，已同步到新节点: table={}, node={}, rows={}",
+                    table.getLogicTable(), belongs.format(), newer.size());
+            reshardingRepository.upsert(table, belongs, newer);
+        }
+    }
+
+    private static Map<DataNode, List<Object[]>> groupMoved(Table table, DataNode node, List<Object[]> rows,
+                                                            OrderSlotLayout target) {
+        Map<DataNode, List<Object[]>> result = new LinkedHashMap<>();
+        for (Object[] each : rows) {
+            DataNode to = table.nodeOf(each, target);
+            if (!to.equals(node)) {
+                result.computeIfAbsent(to, key -> new ArrayList<>()).add(each);
+            }
+        }
+        return result;
+    }
+
+    private void scan(Table table, DataNode node, ChunkHandler handler) {
+        long after = Long.MIN_VALUE;
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("分片迁移已中断");
+            }
+            List<Object[]> rows = reshardingRepository.scan(table, node, after, chunkSize);
+            if (rows.isEmpty()) {
+                return;
+            }
+            handler.handle(rows);
+            if (rows.size() < chunkSize) {
+                return;
+            }
+            after = table.keyOf(rows.get(rows.size() - 1));
+        }
+    }
+
+    private List<DataNode> ownedNodes(Table table, OrderSlotLayout layout) {
+        List<DataNode> result = new ArrayList<>();
+        for (DataNode each : allNodes(table)) {
+            if (table.isOwned(each, layout)) {
+                result.add(each);
+            }
+        }
+        return result;
+    }
+
+    private List<DataNode> allNodes(Table table) {
+        return orderShardRouter.getAllTableDataNodes().getOrDefault(table.getLogicTable(), Collections.emptyList());
+    }
+
+    private static List<Long> keys(Table table, List<Object[]> rows) {
+        List<Long> result = new ArrayList<>(rows.size());
+        for (Object[] each : rows) {
+            result.add(table.keyOf(each));
+        }
+        return result;
+    }
+
+    private interface ChunkHandler {
+
+        void handle(List<Object[]> rows);
+    }
+
+    /**
+     * 校验结果
+     * sourceChecksum 为源节点中需要移动的行的校验和之和，targetChecksum 为目标节点中移入行的校验和之和，
+     * 没有并发写入时两者相等
+     */
+    @Getter
+    public static class VerifyResult {
+
+        private long checked;
+
+        private long missing;
+
+        private long mismatched;
+
+        private long orphans;
+
+        private long sourceChecksum;
+
+        private long targetChecksum;
+
+        /**
+         * 本轮是否完全一致（没有任何修复）
+         */
+        public boolean isConsistent() {
+            return missing == 0 && mismatched == 0 && orphans == 0 && sourceChecksum == targetChecksum;
+        }
+
+        @Override
+        public String toString() {
+            return "checked=" + checked + ", missing=" + missing + ", mismatched=" + mismatched
+                    + ", orphans=" + orphans + ", sourceChecksum=" + sourceChecksum
+                    + ", targetChecksum=" + targetChecksum;
+        }
+    }
+}
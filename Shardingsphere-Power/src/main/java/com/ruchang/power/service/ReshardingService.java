@@ -0,0 +1,466 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.repository.OrderOutboxRepository;
+import com.ruchang.power.repository.ReshardingRepository;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderSlotLayout;
+import com.ruchang.power.sharding.ReshardingState;
+import com.ruchang.power.sharding.ReshardingState.Phase;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线扩容（2×2 -> N×M）
+ * 订单按 16 个分库槽位 × 16 个分表槽位路由（见 OrderSlotLayout），扩容即把部分槽位移到新节点：
+ *
+ * 1. start：按新的库、表列表生成目标布局（已有节点保留尽量多的槽位），进入 MIGRATING；
+ *    后台复制被移动槽位的数据并校验，期间 OrderService 的每次写入提交后同步到目标节点（双写）
+ * 2. verify：可重复执行的校验修复，直到源与目标一致
+ * 3. cutover：进入 CUTOVER 暂停订单写入，等待其它实例刷新状态、在途事务结束后做最终校验，
+ *    一致后在元数据表中原子切换为目标布局（版本号 +1），所有实例在下一次刷新时生效
+ * 4. cleanup：切换后删除源节点上已被移走的数据；放弃迁移（abort）时删除已复制到目标节点的数据
+ *
+ * 新节点需先在 actual-data-nodes 中预留（并建好表），ShardingSphere 5.2 单机模式不支持运行时增加数据源；
+ * 预留节点在切换前不持有槽位，不会被路由到。只支持扩容：移动的数据只能写入源布局下未使用的节点。
+ * 清理完成前，不带分片键的广播查询可能读到源节点上尚未删除的旧数据。
+ * 迁移按槽位表复制数据，订单表按月分表（ORDER_TABLE_GENE_MONTHLY）时不能发起扩容
+ */
+@Slf4j
+@Service
+public class ReshardingService {
+
+    @Autowired
+    private ReshardingRepository reshardingRepository;
+
+    @Autowired
+    private ReshardingMigrator reshardingMigrator;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 迁移状态表所在的数据源
+     */
+    @Value("${order.resharding.meta-data-source:ds0}")
+    private String metaDataSource;
+
+    /**
+     * 元数据表中还没有布局时使用的初始库、表（与原来的取模规则一致）
+     */
+    @Value("${order.resharding.initial-databases:ds0,ds1}")
+    private List<String> initialDatabases;
+
+    @Value("${order.resharding.initial-tables:t_order_0,t_order_1}")
+    private List<String> initialTables;
+
+    /**
+     * 各实例刷新迁移状态的间隔，切换时据此等待其它实例暂停写入、切换布局
+     */
+    @Value("${order.resharding.refresh-interval-ms:5000}")
+    private long refreshIntervalMillis;
+
+    /**
+     * 切换时最多校验的轮数，超过仍不一致则放弃本次切换，恢复写入
+     */
+    @Value("${order.resharding.cutover-verify-rounds:3}")
+    private int cutoverVerifyRounds;
+
+    private volatile ReshardingState state;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-resharding");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong copied = new AtomicLong();
+
+    private final AtomicLong checked = new AtomicLong();
+
+    private final AtomicLong deleted = new AtomicLong();
+
+    private volatile String task;
+
+    private volatile long startTime;
+
+    private volatile long finishTime;
+
+    private volatile String lastError;
+
+    private volatile ReshardingMigrator.VerifyResult lastVerify;
+
+    /**
+     * 启动时（对外提供服务之前）加载并安装当前布局
+     */
+    @PostConstruct
+    public void load() {
+        state = reshardingRepository.loadState(metaDataSource,
+                OrderSlotLayout.modulo(1, initialDatabases, initialTables));
+        OrderSlotLayout.install(state.getCurrent());
+        log.info("订单分片布局加载完成: phase={}, current={}, target={}", state.getPhase(), state.getCurrent(),
+                state.getTarget());
+    }
+
+    /**
+     * 定时刷新迁移状态，其它实例发起的迁移、切换在这里生效
+     */
+    @Scheduled(initialDelayString = "${order.resharding.refresh-interval-ms:5000}",
+            fixedDelayString = "${order.resharding.refresh-interval-ms:5000}")
+    public void refresh() {
+        ReshardingState loaded = reshardingRepository.loadState(metaDataSource, state.getCurrent());
+        apply(loaded);
+    }
+
+    /**
+     * 订单写入前检查，切换期间拒绝写入
+     */
+    public void checkWritable() {
+        if (state.getPhase() == Phase.CUTOVER) {
+            throw new IllegalStateException("订单分片切换中，请稍后重试");
+        }
+    }
+
+    /**
+     * 是否没有进行中的迁移（直接读写物理表的后台任务据此避让）
+     */
+    public boolean isIdle() {
+        return state.getPhase() == Phase.IDLE;
+    }
+
+    /**
+     * 订单写入（新建、状态变更），迁移期间事务提交后同步到目标节点
+     *
+     * @param orders 订单ID -> 用户ID
+     */
+    public void ordersChanged(Map<Long, Long> orders) {
+        if (!state.isDualWriting() || orders.isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = new HashSet<>(orders.values());
+        afterCommit(() -> {
+            ReshardingState current = state;
+            if (current.isDualWriting()) {
+                reshardingMigrator.syncOrders(current.getCurrent(), current.getTarget(), orders);
+                reshardingMigrator.syncUsers(current.getCurrent(), current.getTarget(), userIds);
+            }
+        });
+    }
+
+    /**
+     * 用户订单全部删除，迁移期间事务提交后同步删除目标节点中的数据
+     */
+    public void userDeleted(long userId) {
+        if (!state.isDualWriting()) {
+            return;
+        }
+        afterCommit(() -> {
+            ReshardingState current = state;
+            if (current.isDualWriting()) {
+                reshardingMigrator.userDeleted(current.getCurrent(), current.getTarget(), userId);
+            }
+        });
+    }
+
+    /**
+     * 开始扩容：生成目标布局，后台复制并校验
+     * 已在 MIGRATING 阶段时按已有目标布局重新复制（例如进程重启后继续）
+     *
+     * @param databases 扩容后的全部库
+     * @param tables    扩容后每个库中的全部订单表
+     */
+    public synchronized ReshardingState start(List<String> databases, List<String> tables) {
+        if (running.get()) {
+            throw new IllegalStateException("分片迁移任务正在运行: " + task);
+        }
+        ReshardingState current = reload();
+        if (current.getPhase() == Phase.MIGRATING) {
+            runAsync("copy", () -> copyAndVerify(current));
+            return current;
+        }
+        if (current.getPhase() != Phase.IDLE) {
+            throw new IllegalStateException("当前阶段不能开始扩容: " + current.getPhase());
+        }
+        if (orderShardRouter.getMonthlyTableAlgorithm() != null) {
+            throw new IllegalStateException("订单表已按月分表，暂不支持在线扩容");
+        }
+        OrderSlotLayout target = current.getCurrent().rebalance(databases, tables);
+        validate(current.getCurrent(), target);
+
+        ReshardingState migrating = new ReshardingState(Phase.MIGRATING, current.getCurrent(), target);
+        save(current, migrating);
+        log.info("开始分片扩容: source={}, target={}", current.getCurrent(), target);
+        runAsync("copy", () -> copyAndVerify(migrating));
+        return migrating;
+    }
+
+    /**
+     * 重新校验并修复
+     */
+    public synchronized void verify() {
+        ReshardingState current = requirePhase(Phase.MIGRATING);
+        runAsync("verify", () -> lastVerify = reshardingMigrator.verify(current.getCurrent(), current.getTarget(),
+                checked));
+    }
+
+    /**
+     * 切换到目标布局，切换后在后台清理旧数据
+     */
+    public synchronized void cutover() {
+        ReshardingState current = requirePhase(Phase.MIGRATING);
+        runAsync("cutover", () -> doCutover(current));
+    }
+
+    /**
+     * 放弃扩容，删除已复制到目标节点的数据
+     */
+    public synchronized void abort() {
+        ReshardingState current = requirePhase(Phase.MIGRATING);
+        runAsync("abort", () -> {
+            ReshardingState cleaning = new ReshardingState(Phase.CLEANING, current.getCurrent(), null);
+            save(current, cleaning);
+            doCleanup(cleaning, Long.MAX_VALUE);
+        });
+    }
+
+    /**
+     * 继续未完成的清理（例如清理过程中进程重启）
+     */
+    public synchronized void cleanup() {
+        ReshardingState current = requirePhase(Phase.CLEANING);
+        runAsync("cleanup", () -> doCleanup(current, Long.MAX_VALUE));
+    }
+
+    /**
+     * 当前状态与后台任务进度
+     */
+    public Map<String, Object> getStatus() {
+        ReshardingState current = state;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("phase", current.getPhase());
+        result.put("current", describe(current.getCurrent()));
+        result.put("target", current.getTarget() == null ? null : describe(current.getTarget()));
+        result.put("running", running.get());
+        result.put("task", task);
+        result.put("copiedRows", copied.get());
+        result.put("checkedRows", checked.get());
+        result.put("deletedRows", deleted.get());
+        result.put("lastVerify", lastVerify);
+        result.put("startTime", startTime);
+        result.put("finishTime", finishTime);
+        result.put("lastError", lastError);
+        return result;
+    }
+
+    private void copyAndVerify(ReshardingState migrating) {
+        reshardingMigrator.copy(migrating.getCurrent(), migrating.getTarget(), copied);
+        lastVerify = reshardingMigrator.verify(migrating.getCurrent(), migrating.getTarget(), checked);
+    }
+
+    private void doCutover(ReshardingState migrating) {
+        ReshardingState frozen = new ReshardingState(Phase.CUTOVER, migrating.getCurrent(), migrating.getTarget());
+        save(migrating, frozen);
+        try {
+            // 等待其它实例刷新到 CUTOVER 并停止写入，在途事务提交并完成双写
+            sleep(refreshIntervalMillis + 1000);
+            ReshardingMigrator.VerifyResult result = null;
+            for (int i = 0; i < cutoverVerifyRounds; i++) {
+                result = reshardingMigrator.verify(frozen.getCurrent(), frozen.getTarget(), checked);
+                lastVerify = result;
+                if (result.isConsistent()) {
+                    break;
+                }
+            }
+            if (result == null || !result.isConsistent()) {
+                throw new IllegalStateException("切换前校验仍不一致，已放弃本次切换: " + result);
+            }
+        } catch (RuntimeException e) {
+            save(frozen, migrating);
+            throw e;
+        }
+
+        long cutoverAt = System.currentTimeMillis();
+        ReshardingState cleaning = new ReshardingState(Phase.CLEANING, frozen.getTarget(), null);
+        save(frozen, cleaning);
+        log.info("分片布局已切换: {}", cleaning.getCurrent());
+
+        // 等待其它实例刷新到新布局后再清理，期间旧实例写入旧节点的数据在清理时同步到新节点
+        sleep(refreshIntervalMillis + 1000);
+        doCleanup(cleaning, cutoverAt);
+    }
+
+    private void doCleanup(ReshardingState cleaning, long lateWriteAfter) {
+        reshardingMigrator.cleanup(cleaning.getCurrent(), lateWriteAfter, deleted);
+        save(cleaning, new ReshardingState(Phase.IDLE, cleaning.getCurrent(), null));
+    }
+
+    /**
+     * 扩容计划校验：目标节点都已配置；被移动的数据只写入源布局下未使用的节点，迁移期间不会被读到
+     */
+    private void validate(OrderSlotLayout source, OrderSlotLayout target) {
+        Map<String, List<DataNode>> nodes = orderShardRouter.getAllTableDataNodes();
+        Set<DataNode> orderNodes = new HashSet<>(nodes.getOrDefault(OrderShardRouter.LOGIC_TABLE,
+                Collections.emptyList()));
+        Set<String> summaryDatabases = new HashSet<>();
+        for (DataNode each : nodes.getOrDefault(ReshardingRepository.Table.USER_ORDER_SUMMARY.getLogicTable(),
+                Collections.emptyList())) {
+            summaryDatabases.add(each.getDataSourceName());
+        }
+        Set<String> outboxDatabases = new HashSet<>();
+        for (DataNode each : nodes.getOrDefault(OrderOutboxRepository.LOGIC_TABLE, Collections.emptyList())) {
+            outboxDatabases.add(each.getDataSourceName());
+        }
+        for (String database : target.getDatabases()) {
+            if (!summaryDatabases.contains(database)) {
+                throw new IllegalArgumentException("用户汇总表未配置数据源: " + database);
+            }
+            if (!outboxDatabases.contains(database)) {
+                throw new IllegalArgumentException("订单事件 outbox 表未配置数据源: " + database);
+            }
+            for (String table : target.getTables()) {
+                if (!orderNodes.contains(new DataNode(database, table))) {
+                    throw new IllegalArgumentException("订单表未配置物理节点: " + database + "." + table);
+                }
+            }
+        }
+        for (int db = 0; db < OrderSlotLayout.SLOT_COUNT; db++) {
+            String from = source.getDatabase(db);
+            String to = target.getDatabase(db);
+            if (!from.equals(to) && source.getDatabases().contains(to)) {
+                throw new IllegalArgumentException("只支持扩容，槽位 " + db + " 不能从 " + from + " 移到已使用的 " + to);
+            }
+            for (int tb = 0; tb < OrderSlotLayout.SLOT_COUNT; tb++) {
+                DataNode toNode = new DataNode(to, target.getTable(tb));
+                if (!toNode.equals(new DataNode(from, source.getTable(tb))) && source.owns(toNode)) {
+                    throw new IllegalArgumentException("只支持扩容，数据不能移到已使用的节点 " + toNode.format());
+                }
+            }
+        }
+        if (source.databasesAsString().equals(target.databasesAsString())
+                && source.tablesAsString().equals(target.tablesAsString())) {
+            throw new IllegalArgumentException("目标布局与当前布局相同");
+        }
+    }
+
+    private synchronized void runAsync(String name, Runnable action) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("分片迁移任务正在运行: " + task);
+        }
+        task = name;
+        copied.set(0);
+        checked.set(0);
+        deleted.set(0);
+        startTime = System.currentTimeMillis();
+        finishTime = 0;
+        lastError = null;
+        executor.execute(() -> {
+            try {
+                action.run();
+                log.info("分片迁移任务完成: task={}, cost={}ms", name, System.currentTimeMillis() - startTime);
+            } catch (RuntimeException e) {
+                lastError = e.getMessage();
+                log.error("分片迁移任务失败: task={}", name, e);
+            } finally {
+                finishTime = System.currentTimeMillis();
+                running.set(false);
+            }
+        });
+    }
+
+    private ReshardingState requirePhase(Phase phase) {
+        ReshardingState current = reload();
+        if (current.getPhase() != phase) {
+            throw new IllegalStateException("当前阶段为 " + current.getPhase() + "，需要 " + phase);
+        }
+        return current;
+    }
+
+    private ReshardingState reload() {
+        apply(reshardingRepository.loadState(metaDataSource, state.getCurrent()));
+        return state;
+    }
+
+    private void save(ReshardingState expected, ReshardingState next) {
+        if (!reshardingRepository.saveState(metaDataSource, expected, next)) {
+            throw new IllegalStateException("迁移状态已被其它实例修改，请刷新后重试");
+        }
+        apply(next);
+    }
+
+    private synchronized void apply(ReshardingState loaded) {
+        ReshardingState previous = state;
+        state = loaded;
+        if (previous == null || previous.getCurrent().getVersion() != loaded.getCurrent().getVersion()) {
+            OrderSlotLayout.install(loaded.getCurrent());
+            log.info("订单分片布局已更新: {}", loaded.getCurrent());
+        }
+        if (previous != null && previous.getPhase() != loaded.getPhase()) {
+            log.info("订单分片迁移阶段: {} -> {}", previous.getPhase(), loaded.getPhase());
+        }
+    }
+
+    private static Map<String, Object> describe(OrderSlotLayout layout) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", layout.getVersion());
+        result.put("databases", layout.databasesAsString().split(","));
+        result.put("tables", layout.tablesAsString().split(","));
+        return result;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分片迁移已中断", e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        Runnable safe = () -> {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // 双写失败不影响本次写入，由校验修复
+                log.warn("分片迁移双写失败，将在校验时修复", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+                @Override
+                public void afterCommit() {
+                    safe.run();
+                }
+            });
+        } else {
+            safe.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
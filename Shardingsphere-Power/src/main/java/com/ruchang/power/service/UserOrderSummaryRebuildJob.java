@@ -0,0 +1,112 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户订单汇总重建任务（上线回填或修复数据时使用）
+ * 在后台线程中按 user_id 升序分批遍历所有有订单的用户，逐个用户单独事务重建，同一时间只运行一个
+ */
+@Slf4j
+@Component
+public class UserOrderSummaryRebuildJob {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserOrderSummaryService userOrderSummaryService;
+
+    /**
+     * 每批读取的用户数
+     */
+    @Value("${order.summary.rebuild-batch-size:500}")
+    private int batchSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-summary-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong rebuiltUsers = new AtomicLong();
+
+    private volatile long startTime;
+
+    private volatile long finishTime;
+
+    private volatile String lastError;
+
+    /**
+     * 启动重建，已在运行时返回 false
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuiltUsers.set(0);
+        startTime = System.currentTimeMillis();
+        finishTime = 0;
+        lastError = null;
+        executor.execute(this::run);
+        return true;
+    }
+
+    /**
+     * 当前进度
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", running.get());
+        result.put("rebuiltUsers", rebuiltUsers.get());
+        result.put("startTime", startTime);
+        result.put("finishTime", finishTime);
+        result.put("lastError", lastError);
+        return result;
+    }
+
+    private void run() {
+        try {
+            long after = Long.MIN_VALUE;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> userIds = orderRepository.findUserIdsAfter(after, PageRequest.ofSize(batchSize));
+                for (Long each : userIds) {
+                    userOrderSummaryService.rebuild(each);
+                    rebuiltUsers.incrementAndGet();
+                }
+                if (userIds.size() < batchSize) {
+                    break;
+                }
+                after = userIds.get(userIds.size() - 1);
+            }
+            log.info("用户订单汇总重建完成: users={}, cost={}ms", rebuiltUsers.get(),
+                    System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            log.error("用户订单汇总重建失败: rebuiltUsers={}", rebuiltUsers.get(), e);
+        } finally {
+            finishTime = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,277 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.entity.OrderTransition;
+import com.ruchang.power.entity.UserOrderSummary;
+import com.ruchang.power.repository.OrderRepository;
+import com.ruchang.power.repository.UserOrderSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 用户订单汇总维护
+ * 汇总行与用户订单在同一个库，增量更新必须在订单写入所在的事务中执行（MANDATORY），
+ * 订单写入回滚时汇总一起回滚。
+ * 汇总行缺失（尚未回填）时不按增量新建，而是在同一事务中按订单聚合整体写入，避免只包含新订单的残缺汇总；
+ * 查询时汇总行缺失直接按订单聚合。
+ * 已归档的订单只在归档时计入汇总行的 archived_* 列（见 OrderArchiveService），按订单聚合时热表部分重新计算、
+ * 已归档部分沿用汇总行中的值，不读取冷订单存储（冷订单存储可能只在归档实例本地，各实例看到的不一致）
+ */
+@Slf4j
+@Service
+public class UserOrderSummaryService {
+
+    private static final String CREATED_SQL = "UPDATE t_user_order_summary SET total_amount = total_amount + ?, "
+            + "order_count = order_count + ?, pending_count = pending_count + ?, "
+            + "last_order_time = GREATEST(COALESCE(last_order_time, ?), ?), update_time = ? WHERE user_id = ?";
+
+    private static final String LOCK_EXISTING_SQL = "SELECT user_id FROM t_user_order_summary WHERE user_id IN (%s) FOR UPDATE";
+
+    private static final String LOCK_ARCHIVED_SQL = "SELECT archived_completed_count, archived_cancelled_count "
+            + "FROM t_user_order_summary WHERE user_id = ? FOR UPDATE";
+
+    private static final String INIT_SQL = "INSERT INTO t_user_order_summary "
+            + "(user_id, total_amount, order_count, pending_count, paid_count, completed_count, cancelled_count, "
+            + "update_time) VALUES (?, 0, 0, 0, 0, 0, 0, ?) ON DUPLICATE KEY UPDATE update_time = ?";
+
+    @Autowired
+    private UserOrderSummaryRepository userOrderSummaryRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 查询用户汇总，汇总行缺失时按订单聚合（不写入），用户没有订单时返回空
+     */
+    public Optional<UserOrderSummary> getSummary(Long userId) {
+        return userOrderSummaryRepository.findById(userId).or(() -> aggregate(userId, null));
+    }
+
+    /**
+     * 用户已归档的订单数（汇总行缺失时为 0），为 0 时查询用户订单不需要读取冷订单存储
+     */
+    public long getArchivedCount(Long userId) {
+        return userOrderSummaryRepository.findById(userId)
+                .map(each -> each.getArchivedCompletedCount() + each.getArchivedCancelledCount())
+                .orElse(0L);
+    }
+
+    /**
+     * 新建订单（待支付），同一用户的多笔订单合并为一次增量更新
+     * 汇总行是否缺失不从批量更新的返回值推断（rewriteBatchedStatements 时为 SUCCESS_NO_INFO，各驱动、H2 也不一致）：
+     * 单个用户时增量更新总会修改 order_count，返回 0 即说明行不存在；多个用户时先锁住已有的汇总行，只对这些行批量更新
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ordersCreated(List<Order> orders) {
+        Map<Long, Delta> deltas = new LinkedHashMap<>();
+        for (Order each : orders) {
+            deltas.computeIfAbsent(each.getUserId(), key -> new Delta()).add(each);
+        }
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        deltas.forEach((userId, delta) -> {
+            Timestamp lastOrderTime = new Timestamp(delta.lastOrderTime);
+            args.add(new Object[]{delta.amount, delta.count, delta.count, lastOrderTime, lastOrderTime, now, userId});
+        });
+        Set<Long> missing = new LinkedHashSet<>(deltas.keySet());
+        if (deltas.size() == 1) {
+            if (jdbcTemplate.update(CREATED_SQL, args.get(0)) > 0) {
+                missing.clear();
+            }
+        } else {
+            String placeholders = String.join(", ", Collections.nCopies(deltas.size(), "?"));
+            Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(String.format(LOCK_EXISTING_SQL,
+                    placeholders), Long.class, deltas.keySet().toArray()));
+            List<Object[]> updates = new ArrayList<>(existing.size());
+            for (Object[] each : args) {
+                if (existing.contains((Long) each[6])) {
+                    updates.add(each);
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(CREATED_SQL, updates);
+            }
+            missing.removeAll(existing);
+        }
+        // 汇总行缺失：按订单（已包含本事务写入的订单）聚合建立
+        for (Long each : missing) {
+            jdbcTemplate.update(INIT_SQL, each, now, now);
+            overwrite(each, now);
+            log.debug("用户订单汇总缺失，已按订单聚合建立: userId={}", each);
+        }
+    }
+
+    /**
+     * 订单状态流转
+     *
+     * @param count 该用户本次流转的订单数
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transitioned(Long userId, OrderTransition transition, long count) {
+        Date now = new Date();
+        int rows;
+        switch (transition) {
+            case PAY:
+                rows = userOrderSummaryRepository.markPaid(userId, count, now);
+                break;
+            case COMPLETE:
+                rows = userOrderSummaryRepository.markCompleted(userId, count, now);
+                break;
+            case CANCEL:
+                rows = userOrderSummaryRepository.markCancelled(userId, count, now);
+                break;
+            default:
+                throw new IllegalStateException("不支持的订单状态流转: " + transition);
+        }
+        if (rows == 0) {
+            // 汇总行缺失：订单状态已在本事务中更新，直接按订单聚合建立汇总
+            Timestamp time = new Timestamp(now.getTime());
+            jdbcTemplate.update(INIT_SQL, userId, time, time);
+            overwrite(userId, time);
+            log.info("用户订单汇总缺失，已按订单聚合建立: userId={}", userId);
+        }
+    }
+
+    /**
+     * 用户订单已全部删除
+     *
+     * @return 汇总行中已归档的订单按状态计数（状态 -> 订单数），这部分订单不在热表中，由调用方从订单统计中扣除
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Integer, Long> userDeleted(Long userId) {
+        Map<Integer, Long> archived = new LinkedHashMap<>();
+        jdbcTemplate.query(LOCK_ARCHIVED_SQL, rs -> {
+            archived.put(3, rs.getLong(1));
+            archived.put(4, rs.getLong(2));
+        }, userId);
+        userOrderSummaryRepository.deleteByUserId(userId);
+        return archived;
+    }
+
+    /**
+     * 按订单表重新计算单个用户的汇总（已归档部分沿用汇总行中的 archived_* 列）
+     * 先 upsert 汇总行将其锁住，与并发的增量更新、归档串行，再聚合订单并整体覆盖
+     *
+     * @return 用户订单数
+     */
+    @Transactional
+    public long rebuild(Long userId) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update(INIT_SQL, userId, now, now);
+        return overwrite(userId, now);
+    }
+
+    /**
+     * 按订单聚合覆盖已存在（且已被本事务锁住）的汇总行，用户没有订单时删除汇总行
+     *
+     * @return 用户订单数
+     */
+    private long overwrite(Long userId, Timestamp now) {
+        UserOrderSummary existing = userOrderSummaryRepository.findById(userId).orElse(null);
+        Optional<UserOrderSummary> summary = aggregate(userId, existing);
+        if (summary.isEmpty()) {
+            userOrderSummaryRepository.deleteByUserId(userId);
+            return 0;
+        }
+        UserOrderSummary each = summary.get();
+        userOrderSummaryRepository.overwrite(userId, each.getTotalAmount(), each.getOrderCount(),
+                each.getPendingCount(), each.getPaidCount(), each.getCompletedCount(), each.getCancelledCount(),
+                each.getLastOrderTime(), now);
+        return each.getOrderCount();
+    }
+
+    /**
+     * 按订单表计算用户汇总，加上现有汇总行中已归档的部分，不写入；用户没有订单时返回空
+     *
+     * @param existing 现有汇总行，没有时为 null
+     */
+    private Optional<UserOrderSummary> aggregate(Long userId, UserOrderSummary existing) {
+        long[] counts = new long[5];
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        Date lastOrderTime = null;
+        for (Object[] each : orderRepository.summarizeByUserId(userId)) {
+            int status = ((Number) each[0]).intValue();
+            if (status >= 1 && status <= 4) {
+                counts[status] = ((Number) each[1]).longValue();
+            }
+            totalAmount = totalAmount.add((BigDecimal) each[2]);
+            Date time = (Date) each[3];
+            if (lastOrderTime == null || time.after(lastOrderTime)) {
+                lastOrderTime = time;
+            }
+        }
+        long archivedCompleted = 0;
+        long archivedCancelled = 0;
+        BigDecimal archivedAmount = BigDecimal.ZERO;
+        if (existing != null && existing.getArchivedCompletedCount() + existing.getArchivedCancelledCount() > 0) {
+            archivedCompleted = existing.getArchivedCompletedCount();
+            archivedCancelled = existing.getArchivedCancelledCount();
+            archivedAmount = existing.getArchivedAmount();
+            counts[3] += archivedCompleted;
+            counts[4] += archivedCancelled;
+            totalAmount = totalAmount.add(archivedAmount);
+            // 最近下单的订单可能已归档，热表中只有更早的订单
+            Date time = existing.getLastOrderTime();
+            if (time != null && (lastOrderTime == null || time.after(lastOrderTime))) {
+                lastOrderTime = time;
+            }
+        }
+        long orderCount = counts[1] + counts[2] + counts[3] + counts[4];
+        if (orderCount == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(UserOrderSummary.builder()
+                .userId(userId)
+                .totalAmount(totalAmount)
+                .orderCount(orderCount)
+                .pendingCount(counts[1])
+                .paidCount(counts[2])
+                .completedCount(counts[3])
+                .cancelledCount(counts[4])
+                .archivedCompletedCount(archivedCompleted)
+                .archivedCancelledCount(archivedCancelled)
+                .archivedAmount(archivedAmount)
+                .lastOrderTime(lastOrderTime)
+                .updateTime(new Date())
+                .build());
+    }
+
+    /**
+     * 单个用户的新增量
+     */
+    private static final class Delta {
+
+        private long count;
+
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        private long lastOrderTime;
+
+        private void add(Order order) {
+            count++;
+            amount = amount.add(order.getAmount());
+            long createTime = order.getCreateTime() != null ? order.getCreateTime().getTime() : System.currentTimeMillis();
+            lastOrderTime = Math.max(lastOrderTime, createTime);
+        }
+    }
+}
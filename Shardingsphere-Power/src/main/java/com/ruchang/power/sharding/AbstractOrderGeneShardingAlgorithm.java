@@ -0,0 +1,167 @@
+package com.ruchang.power.sharding;
+
+import lombok.Getter;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.apache.shardingsphere.sharding.exception.ShardingPluginException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * 基于分片基因的复合分片算法基类
+ * 优先使用分片键本身路由，其次解析其它列中的基因；都取不到时返回全部目标（广播）
+ * 已安装槽位布局（OrderSlotLayout）时按槽位查找目标，广播只包含持有槽位的目标；否则按目标数量取模
+ */
+public abstract class AbstractOrderGeneShardingAlgorithm implements ComplexKeysShardingAlgorithm<Comparable<?>> {
+
+    protected static final String ORDER_ID_COLUMN = "order_id";
+
+    protected static final String ORDER_NO_COLUMN = "order_no";
+
+    @Getter
+    private Properties props;
+
+    @Override
+    public void init(Properties props) {
+        this.props = props;
+    }
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames,
+                                         ComplexKeysShardingValue<Comparable<?>> shardingValue) {
+        Map<String, Collection<Comparable<?>>> columnValues = shardingValue.getColumnNameAndShardingValuesMap();
+        OrderSlotLayout layout = OrderSlotLayout.current();
+        if (layout != null) {
+            return doSharding(availableTargetNames, columnValues, layout);
+        }
+        int shardingCount = availableTargetNames.size();
+
+        Collection<Comparable<?>> keys = columnValues.get(getShardingColumn());
+        if (keys != null && !keys.isEmpty()) {
+            Set<String> result = new LinkedHashSet<>();
+            for (Comparable<?> each : keys) {
+                result.add(findTarget(availableTargetNames, Math.floorMod(toLong(each), shardingCount)));
+            }
+            return result;
+        }
+
+        // 基因只有低4位，分片数必须能整除16才能保证与取模结果一致
+        if (OrderNoGene.GENE_SIZE % shardingCount != 0) {
+            return availableTargetNames;
+        }
+        Set<Integer> genes = findGenes(columnValues);
+        if (genes.isEmpty()) {
+            return availableTargetNames;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (int each : genes) {
+            result.add(findTarget(availableTargetNames, each % shardingCount));
+        }
+        return result;
+    }
+
+    private Collection<String> doSharding(Collection<String> availableTargetNames,
+                                          Map<String, Collection<Comparable<?>>> columnValues,
+                                          OrderSlotLayout layout) {
+        Set<Integer> slots = new LinkedHashSet<>();
+        Collection<Comparable<?>> keys = columnValues.get(getShardingColumn());
+        if (keys != null && !keys.isEmpty()) {
+            for (Comparable<?> each : keys) {
+                slots.add(OrderSlotLayout.slotOf(toLong(each)));
+            }
+        } else {
+            slots = findGenes(columnValues);
+        }
+        if (slots.isEmpty()) {
+            Set<String> result = new LinkedHashSet<>(availableTargetNames);
+            result.retainAll(getTargets(layout));
+            return result;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (int each : slots) {
+            String target = getTarget(layout, each);
+            if (!availableTargetNames.contains(target)) {
+                throw new ShardingPluginException("Slot `%s` target `%s` is not in %s", each, target,
+                        availableTargetNames);
+            }
+            result.add(target);
+        }
+        return result;
+    }
+
+    /**
+     * 直接取模的分片列
+     */
+    protected abstract String getShardingColumn();
+
+    /**
+     * 槽位布局中该槽位对应的目标
+     */
+    protected abstract String getTarget(OrderSlotLayout layout, int slot);
+
+    /**
+     * 槽位布局中持有槽位的全部目标
+     */
+    protected abstract Set<String> getTargets(OrderSlotLayout layout);
+
+    /**
+     * 从订单号中解析出对应分片列的基因，没有基因返回 -1
+     */
+    protected abstract int getGene(String orderNo);
+
+    /**
+     * 从分片键以外的列中解析基因，解析不出返回空集合
+     */
+    protected Set<Integer> findGenes(Map<String, Collection<Comparable<?>>> columnValues) {
+        return collectGenes(columnValues.get(ORDER_NO_COLUMN), each -> getGene(String.valueOf(each)));
+    }
+
+    /**
+     * 收集一列所有取值的基因，只要有一个取值没有基因（旧数据）就返回空集合
+     */
+    protected static Set<Integer> collectGenes(Collection<Comparable<?>> values,
+                                               ToIntFunction<Comparable<?>> geneFunction) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Integer> result = new LinkedHashSet<>();
+        for (Comparable<?> each : values) {
+            int gene = geneFunction.applyAsInt(each);
+            if (gene < 0) {
+                return Collections.emptySet();
+            }
+            result.add(gene);
+        }
+        return result;
+    }
+
+    protected static long toLong(Comparable<?> value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+
+    /**
+     * 按名称末尾的数字后缀匹配目标，例如 ds1、t_order_1
+     */
+    protected static String findTarget(Collection<String> availableTargetNames, long index) {
+        for (String each : availableTargetNames) {
+            if (suffixOf(each) == index) {
+                return each;
+            }
+        }
+        throw new ShardingPluginException("No sharding target with suffix `%s` in %s", index, availableTargetNames);
+    }
+
+    private static long suffixOf(String targetName) {
+        int start = targetName.length();
+        while (start > 0 && Character.isDigit(targetName.charAt(start - 1))) {
+            start--;
+        }
+        return start == targetName.length() ? -1 : Long.parseLong(targetName.substring(start));
+    }
+}
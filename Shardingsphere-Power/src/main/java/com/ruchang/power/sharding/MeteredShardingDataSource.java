@@ -0,0 +1,102 @@
+package com.ruchang.power.sharding;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 包装 ShardingSphere 数据源，在每条逻辑 SQL 执行前后通知 ShardingMetrics，用于统计单条 SQL 的扇出和路由追踪
+ * 只代理 Connection / Statement 的 execute* 方法，其余调用（包括 unwrap）原样转发；
+ * prepareStatement / prepareCall 的 SQL 记在对应 Statement 上，作为逻辑 SQL
+ */
+public class MeteredShardingDataSource extends DelegatingDataSource {
+
+    public MeteredShardingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, super.getConnection(), null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(Connection.class, super.getConnection(username, password), null);
+    }
+
+    private static <T> T wrap(Class<T> type, T target, String sql) {
+        return type.cast(Proxy.newProxyInstance(MeteredShardingDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, new Handler(target, sql)));
+    }
+
+    private static final class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        /**
+         * 预编译语句的 SQL，普通 Statement 为 null
+         */
+        private final String sql;
+
+        private Handler(Object target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("equals".equals(name) && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            if (target instanceof Statement && name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            Object result = invokeTarget(method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String preparedSql = name.startsWith("prepare") && args != null && args[0] instanceof String
+                        ? (String) args[0] : null;
+                return wrap(statementType(method.getReturnType()), (Statement) result, preparedSql);
+            }
+            return result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            ShardingMetrics metrics = ShardingMetrics.current();
+            if (metrics == null) {
+                return invokeTarget(method, args);
+            }
+            String logicSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            ShardingMetrics.RouteContext context = metrics.beginStatement(logicSql);
+            try {
+                return invokeTarget(method, args);
+            } finally {
+                metrics.endStatement(context);
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Class<Statement> statementType(Class<?> returnType) {
+            return (Class<Statement>) returnType;
+        }
+    }
+}
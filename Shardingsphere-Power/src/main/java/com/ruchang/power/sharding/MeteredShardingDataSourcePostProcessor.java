@@ -0,0 +1,20 @@
+package com.ruchang.power.sharding;
+
+import org.apache.shardingsphere.driver.jdbc.core.datasource.ShardingSphereDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 将 ShardingSphere 数据源替换为 MeteredShardingDataSource
+ */
+@Component
+public class MeteredShardingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ShardingSphereDataSource) {
+            return new MeteredShardingDataSource((ShardingSphereDataSource) bean);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ruchang.power.sharding;
+
+import org.apache.shardingsphere.infra.database.metadata.DataSourceMetaData;
+import org.apache.shardingsphere.infra.executor.sql.hook.SQLExecutionHook;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ShardingSphere SQL 执行钩子（SPI，每个物理执行单元一个实例），把耗时上报给 ShardingMetrics
+ */
+public final class MetricsSQLExecutionHook implements SQLExecutionHook {
+
+    private ShardingMetrics metrics;
+
+    private String dataSourceName;
+
+    private String sql;
+
+    private Map<String, Object> dataMap;
+
+    private long startNanos;
+
+    @Override
+    public void start(String dataSourceName, String sql, List<Object> params, DataSourceMetaData dataSourceMetaData,
+                      boolean isTrunkThread, Map<String, Object> shardingExecuteDataMap) {
+        this.metrics = ShardingMetrics.current();
+        if (metrics == null) {
+            return;
+        }
+        this.dataSourceName = dataSourceName;
+        this.sql = sql;
+        this.dataMap = shardingExecuteDataMap;
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void finishSuccess() {
+        finish(true);
+    }
+
+    @Override
+    public void finishFailure(Exception cause) {
+        finish(false);
+    }
+
+    private void finish(boolean success) {
+        if (metrics != null) {
+            metrics.recordExecution(dataSourceName, sql, dataMap, System.nanoTime() - startNanos, success);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ruchang.power.sharding;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单分库算法
+ * 分片列：user_id, order_id, order_no
+ * user_id % 库数量（或按 user_id 低4位查槽位布局）；没有 user_id 时依次取 order_id、订单号中的用户基因
+ */
+public final class OrderDatabaseShardingAlgorithm extends AbstractOrderGeneShardingAlgorithm {
+
+    @Override
+    protected String getShardingColumn() {
+        return "user_id";
+    }
+
+    @Override
+    protected String getTarget(OrderSlotLayout layout, int slot) {
+        return layout.getDatabase(slot);
+    }
+
+    @Override
+    protected Set<String> getTargets(OrderSlotLayout layout) {
+        return layout.getDatabases();
+    }
+
+    @Override
+    protected int getGene(String orderNo) {
+        return OrderNoGene.userGene(orderNo);
+    }
+
+    @Override
+    protected Set<Integer> findGenes(Map<String, Collection<Comparable<?>>> columnValues) {
+        Set<Integer> result = collectGenes(columnValues.get(ORDER_ID_COLUMN),
+                each -> OrderKeyGenerator.userGene(toLong(each)));
+        return result.isEmpty() ? super.findGenes(columnValues) : result;
+    }
+
+    @Override
+    public String getType() {
+        return "ORDER_DATABASE_GENE";
+    }
+}
@@ -0,0 +1,144 @@
+package com.ruchang.power.sharding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 订单主键生成器（带用户基因的雪花算法），替代 ShardingSphere 自带的 SNOWFLAKE
+ * 在应用侧预先分配 order_id，订单号生成时才能带上 order_id 的路由基因
+ *
+ * 位布局（共63位）：
+ * 1位基因标记 | 40位毫秒时间戳 | 8位节点号 | 4位用户基因 | 10位序列号
+ *
+ * - 基因标记恒为1，旧的 SNOWFLAKE 主键在2051年前该位都是0，据此区分新旧主键
+ * - 用户基因为 user_id 低4位，只凭 order_id 也能算出 user_id % 库数量，单库查询
+ * - 序列号放在最低位，order_id % 表数量 仍然均匀；每毫秒起始值在0/1间抖动，低并发时也不会全落在偶数表
+ */
+@Component
+public class OrderKeyGenerator {
+
+    /**
+     * 起始时间 2025-01-01 00:00:00 UTC
+     */
+    public static final long EPOCH = 1735689600000L;
+
+    private static final int SEQUENCE_BITS = 10;
+
+    private static final int GENE_BITS = 4;
+
+    private static final int WORKER_BITS = 8;
+
+    private static final int TIMESTAMP_BITS = 40;
+
+    private static final int GENE_SHIFT = SEQUENCE_BITS;
+
+    private static final int WORKER_SHIFT = GENE_SHIFT + GENE_BITS;
+
+    private static final int TIMESTAMP_SHIFT = WORKER_SHIFT + WORKER_BITS;
+
+    private static final int FLAG_SHIFT = TIMESTAMP_SHIFT + TIMESTAMP_BITS;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long GENE_MASK = (1L << GENE_BITS) - 1;
+
+    private static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+
+    /**
+     * 可容忍的时钟回拨毫秒数，超过直接报错
+     */
+    private static final long MAX_TOLERATE_BACKWARD_MILLIS = 10;
+
+    private final long workerId;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long lastTimestamp = -1L;
+
+    private long sequence;
+
+    private long sequenceOffset;
+
+    public OrderKeyGenerator(@Value("${order.key-generator.worker-id:0}") long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("worker-id 取值范围为 0~" + MAX_WORKER_ID + "，当前为 " + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    /**
+     * 生成订单ID，低位带上用户基因
+     */
+    public long nextOrderId(long userId) {
+        lock.lock();
+        try {
+            long timestamp = currentTimestamp();
+            if (timestamp == lastTimestamp) {
+                sequence = (sequence + 1) & SEQUENCE_MASK;
+                if (sequence == 0) {
+                    timestamp = waitUntilNextMillis(lastTimestamp);
+                    sequence = vibrateSequenceOffset();
+                }
+            } else {
+                sequence = vibrateSequenceOffset();
+            }
+            lastTimestamp = timestamp;
+            return (1L << FLAG_SHIFT)
+                    | ((timestamp - EPOCH) << TIMESTAMP_SHIFT)
+                    | (workerId << WORKER_SHIFT)
+                    | ((userId & GENE_MASK) << GENE_SHIFT)
+                    | sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 判断是否为带基因的主键
+     */
+    public static boolean hasGene(long orderId) {
+        return (orderId >>> FLAG_SHIFT) == 1;
+    }
+
+    /**
+     * 取出主键中的用户基因，旧主键返回 -1
+     */
+    public static int userGene(long orderId) {
+        return hasGene(orderId) ? (int) ((orderId >>> GENE_SHIFT) & GENE_MASK) : -1;
+    }
+
+    /**
+     * 取出主键中的生成时间（毫秒），旧主键返回 -1
+     */
+    public static long timestampOf(long orderId) {
+        return hasGene(orderId) ? (orderId >>> TIMESTAMP_SHIFT & ((1L << TIMESTAMP_BITS) - 1)) + EPOCH : -1;
+    }
+
+    private long currentTimestamp() {
+        long timestamp = System.currentTimeMillis();
+        if (timestamp < lastTimestamp) {
+            long backward = lastTimestamp - timestamp;
+            if (backward > MAX_TOLERATE_BACKWARD_MILLIS) {
+                throw new IllegalStateException("时钟回拨 " + backward + "ms，拒绝生成订单ID");
+            }
+            timestamp = waitUntilNextMillis(lastTimestamp - 1);
+        }
+        return timestamp;
+    }
+
+    private long waitUntilNextMillis(long timestamp) {
+        long result = System.currentTimeMillis();
+        while (result <= timestamp) {
+            Thread.onSpinWait();
+            result = System.currentTimeMillis();
+        }
+        return result;
+    }
+
+    private long vibrateSequenceOffset() {
+        sequenceOffset = sequenceOffset == 0 ? 1 : 0;
+        return sequenceOffset;
+    }
+}
@@ -0,0 +1,195 @@
+package com.ruchang.power.sharding;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import lombok.Getter;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.apache.shardingsphere.sharding.exception.ShardingPluginException;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单按月分表算法
+ * 分片列：order_id, order_no, create_time
+ * 先按 OrderTableShardingAlgorithm 选出槽位表，再按 create_time 所在月份选出分区表 {槽位表}_{yyyyMM}；
+ * start-month 之前的月份仍在槽位表本身中，已有数据不用迁移；
+ * 不配置 start-month 时由 OrderPartitionService 启动时按已有分区表、槽位表中的数据推算后写入，推算出之前全部路由到槽位表
+ *
+ * - create_time 为精确值（写入）时路由到所在月份，分区表未登记直接报错
+ * - create_time 为范围（BETWEEN、>、<）时只路由到覆盖的月份
+ * - 没有 create_time 时取 order_id 中的时间戳、订单号中的时间前后 CREATE_TIME_SKEW_MILLIS 内的月份
+ *   （主键、订单号和 create_time 不是同一时刻生成，月初月末可能相差一个月），都取不到时路由到全部月份
+ *
+ * 分区表由 OrderPartitionService 提前建好并加入 actual-data-nodes，路由只会落在已登记的表上
+ */
+public final class OrderMonthlyTableShardingAlgorithm implements ComplexKeysShardingAlgorithm<Comparable<?>> {
+
+    private static final String CREATE_TIME_COLUMN = "create_time";
+
+    /**
+     * 主键、订单号中的时间与 create_time、各实例时钟之间允许的偏差
+     */
+    public static final long CREATE_TIME_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final OrderTableShardingAlgorithm slotAlgorithm = new OrderTableShardingAlgorithm();
+
+    @Getter
+    private Properties props;
+
+    /**
+     * 从哪个月（yyyyMM）开始按月分表，未配置、尚未推算时为 -1
+     */
+    @Getter
+    private int startMonth;
+
+    @Override
+    public void init(Properties props) {
+        this.props = props;
+        slotAlgorithm.init(props);
+        String value = props.getProperty("start-month", "").trim();
+        startMonth = value.matches("\\d{6}") ? Integer.parseInt(value) : -1;
+        if (!value.isEmpty() && !OrderTablePartition.isMonth(startMonth)) {
+            throw new ShardingPluginException("Property `start-month` must be yyyyMM, but was `%s`", value);
+        }
+    }
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames,
+                                         ComplexKeysShardingValue<Comparable<?>> shardingValue) {
+        // 槽位表 -> 已登记的分区（槽位表本身代表 start-month 之前的月份）
+        Map<String, List<String>> partitions = new LinkedHashMap<>();
+        for (String each : availableTargetNames) {
+            partitions.computeIfAbsent(OrderTablePartition.baseTableOf(each), key -> new ArrayList<>()).add(each);
+        }
+        Collection<String> tables = slotAlgorithm.doSharding(partitions.keySet(), shardingValue);
+
+        Map<String, Collection<Comparable<?>>> columnValues = shardingValue.getColumnNameAndShardingValuesMap();
+        Collection<Comparable<?>> createTimes = columnValues.get(CREATE_TIME_COLUMN);
+        Set<String> result = new LinkedHashSet<>();
+        if (createTimes != null && !createTimes.isEmpty()) {
+            for (String table : tables) {
+                for (Comparable<?> each : createTimes) {
+                    String target = partitionOf(table, OrderTablePartition.monthOf(toMillis(each)));
+                    if (!partitions.get(table).contains(target)) {
+                        throw new ShardingPluginException("Partition `%s` for create_time `%s` is not in %s", target,
+                                each, partitions.get(table));
+                    }
+                    result.add(target);
+                }
+            }
+            return result;
+        }
+
+        Range<Comparable<?>> range = shardingValue.getColumnNameAndRangeValuesMap().get(CREATE_TIME_COLUMN);
+        Set<Integer> months = range == null ? findMonths(columnValues) : null;
+        for (String table : tables) {
+            for (String each : partitions.get(table)) {
+                if (range != null ? overlaps(each, range) : months == null || matches(table, each, months)) {
+                    result.add(each);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 槽位表在某个月的分区
+     */
+    public String partitionOf(String table, int month) {
+        return startMonth < 0 || month < startMonth ? table : OrderTablePartition.tableOf(table, month);
+    }
+
+    /**
+     * 按 order_id、订单号中的时间推算可能的月份，有一个取值推算不出时返回 null
+     */
+    private static Set<Integer> findMonths(Map<String, Collection<Comparable<?>>> columnValues) {
+        Collection<Comparable<?>> orderIds = columnValues.get("order_id");
+        Collection<Comparable<?>> orderNos = columnValues.get("order_no");
+        Collection<Comparable<?>> values = orderIds != null && !orderIds.isEmpty() ? orderIds : orderNos;
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Set<Integer> result = new LinkedHashSet<>();
+        for (Comparable<?> each : values) {
+            long time = values == orderIds ? OrderKeyGenerator.timestampOf(toLong(each))
+                    : OrderNoGene.timeOf(String.valueOf(each));
+            if (time < 0) {
+                return null;
+            }
+            result.add(OrderTablePartition.monthOf(time - CREATE_TIME_SKEW_MILLIS));
+            result.add(OrderTablePartition.monthOf(time + CREATE_TIME_SKEW_MILLIS));
+        }
+        return result;
+    }
+
+    private boolean matches(String table, String partition, Set<Integer> months) {
+        for (int each : months) {
+            if (partitionOf(table, each).equals(partition)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分区覆盖的月份与 create_time 范围是否相交（按整月判断，create_time < 月初不包含该月）
+     */
+    private boolean overlaps(String partition, Range<Comparable<?>> range) {
+        int month = OrderTablePartition.monthOf(partition);
+        int from = month < 0 ? Integer.MIN_VALUE : month;
+        int to = month >= 0 ? month
+                : startMonth < 0 ? Integer.MAX_VALUE : OrderTablePartition.plusMonths(startMonth, -1);
+        if (range.hasLowerBound() && to < OrderTablePartition.monthOf(toMillis(range.lowerEndpoint()))) {
+            return false;
+        }
+        if (!range.hasUpperBound()) {
+            return true;
+        }
+        long upper = toMillis(range.upperEndpoint()) - (range.upperBoundType() == BoundType.OPEN ? 1 : 0);
+        return from <= OrderTablePartition.monthOf(upper);
+    }
+
+    private static long toMillis(Comparable<?> value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        String text = String.valueOf(value).trim();
+        try {
+            return text.length() == 10 ? java.sql.Date.valueOf(text).getTime() : Timestamp.valueOf(text).getTime();
+        } catch (IllegalArgumentException e) {
+            throw new ShardingPluginException("Unsupported create_time value `%s`", value);
+        }
+    }
+
+    private static long toLong(Comparable<?> value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+
+    @Override
+    public String getType() {
+        return "ORDER_TABLE_GENE_MONTHLY";
+    }
+}
@@ -0,0 +1,92 @@
+package com.ruchang.power.sharding;
+
+import org.springframework.util.StringUtils;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 订单号分片基因
+ * 新订单号（见 OrderNoGenerator）共27位，最后2位为基因：
+ * user_id、order_id 各自低4位的十六进制字符，只要分片数能整除16，
+ * 基因取模结果就与 user_id % n、order_id % n 一致，按订单号查询即可直接定位到单个物理表
+ * 旧订单号（不带基因）长度为25位，路由时退化为广播查询
+ */
+public final class OrderNoGene {
+
+    /**
+     * 订单号前缀
+     */
+    public static final String PREFIX = "ORD";
+
+    /**
+     * 基因覆盖的取值个数（低4位）
+     */
+    public static final int GENE_SIZE = 16;
+
+    /**
+     * 带基因的订单号长度
+     */
+    public static final int LENGTH = 27;
+
+    /**
+     * 前缀后的时间 yyyyMMddHHmmss 长度
+     */
+    private static final int TIME_LENGTH = 14;
+
+    private OrderNoGene() {
+    }
+
+    /**
+     * 取出用户基因，旧订单号返回 -1
+     */
+    public static int userGene(String orderNo) {
+        return hasGene(orderNo) ? Character.digit(orderNo.charAt(LENGTH - 2), 16) : -1;
+    }
+
+    /**
+     * 取出订单ID基因，旧订单号返回 -1
+     */
+    public static int orderGene(String orderNo) {
+        return hasGene(orderNo) ? Character.digit(orderNo.charAt(LENGTH - 1), 16) : -1;
+    }
+
+    /**
+     * 取出订单号中的生成时间（毫秒，精确到秒，系统时区），旧订单号返回 -1
+     */
+    public static long timeOf(String orderNo) {
+        if (!hasGene(orderNo)) {
+            return -1;
+        }
+        int index = PREFIX.length();
+        for (int i = index; i < index + TIME_LENGTH; i++) {
+            if (!Character.isDigit(orderNo.charAt(i))) {
+                return -1;
+            }
+        }
+        try {
+            return LocalDateTime.of(digits(orderNo, index, 4), digits(orderNo, index + 4, 2),
+                            digits(orderNo, index + 6, 2), digits(orderNo, index + 8, 2),
+                            digits(orderNo, index + 10, 2), digits(orderNo, index + 12, 2))
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 判断订单号是否携带基因
+     */
+    public static boolean hasGene(String orderNo) {
+        return StringUtils.hasText(orderNo)
+                && orderNo.length() == LENGTH
+                && orderNo.startsWith(PREFIX)
+                && Character.digit(orderNo.charAt(LENGTH - 2), 16) >= 0
+                && Character.digit(orderNo.charAt(LENGTH - 1), 16) >= 0;
+    }
+
+    private static int digits(String value, int index, int length) {
+        return Integer.parseInt(value.substring(index, index + length));
+    }
+}
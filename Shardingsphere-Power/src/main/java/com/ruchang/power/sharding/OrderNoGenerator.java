@@ -0,0 +1,181 @@
+package com.ruchang.power.sharding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单号生成器（无锁、低分配）
+ * 格式：ORD + yyyyMMddHHmmss + 2位节点号 + 5位序列号 + 1位随机 + 2位分片基因，共27位
+ *
+ * 唯一性保证：
+ * - 节点号取 order.key-generator.worker-id，集群内每个实例必须不同
+ * - 同一节点同一秒内序列号由 CAS 递增，每秒最多 1048576 个；用尽后借用下一秒，不会阻塞也不会重复
+ * - 时钟回拨时沿用上次的逻辑秒继续递增，不会重复
+ * - 序列号扰动只由节点号和 order.key-generator.sequence-salt 决定，重启前后不变，
+ *   同一节点上“逻辑秒 + 秒内序号”不重复则订单号不重复
+ * - 重启后从当前时钟秒重新开始：重启前借用过的未来秒、或跨重启的时钟回拨，可能与重启前的逻辑秒重叠，
+ *   此时会生成重复的订单号，由数据库 uk_order_no 唯一索引拒绝（下单失败，不会写入重复数据）
+ *
+ * 性能要点：格式化后的时间按秒缓存；序列号是单个 AtomicLong；随机位使用 ThreadLocalRandom，
+ * 避免 UUID.randomUUID 的 SecureRandom 竞争；字符写入线程内复用的缓冲区，每次只分配最终的 String
+ */
+@Component
+public class OrderNoGenerator {
+
+    private static final int SEQUENCE_BITS = 20;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int TIME_LENGTH = 14;
+
+    private static final int TIME_INDEX = OrderNoGene.PREFIX.length();
+
+    private static final int WORKER_INDEX = TIME_INDEX + TIME_LENGTH;
+
+    private static final int SEQUENCE_INDEX = WORKER_INDEX + 2;
+
+    private static final int RANDOM_INDEX = SEQUENCE_INDEX + 5;
+
+    private static final int GENE_INDEX = RANDOM_INDEX + 1;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> {
+        byte[] result = new byte[OrderNoGene.LENGTH];
+        byte[] prefix = OrderNoGene.PREFIX.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(prefix, 0, result, 0, prefix.length);
+        return result;
+    });
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private final byte workerHigh;
+
+    private final byte workerLow;
+
+    /**
+     * 每秒序列号起始偏移的扰动因子，避免订单号可以按序枚举；由配置和节点号推导，重启后不变
+     */
+    private final long sequenceSalt;
+
+    /**
+     * 高44位为逻辑秒，低20位为该秒内已分配的序号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    private volatile FormattedSecond formattedSecond = new FormattedSecond(-1, new byte[TIME_LENGTH]);
+
+    public OrderNoGenerator(@Value("${order.key-generator.worker-id:0}") int workerId,
+                            @Value("${order.key-generator.sequence-salt:0}") long salt) {
+        if (workerId < 0 || workerId > 0xFF) {
+            throw new IllegalArgumentException("worker-id 取值范围为 0~255，当前为 " + workerId);
+        }
+        this.sequenceSalt = (salt ^ workerId) * 0xC2B2AE3D27D4EB4FL;
+        this.workerHigh = HEX[workerId >>> 4];
+        this.workerLow = HEX[workerId & 0xF];
+    }
+
+    /**
+     * 生成订单号，末尾两位为 user_id、order_id 的分片基因
+     */
+    public String generate(long userId, long orderId) {
+        return generate(userId, orderId, System.currentTimeMillis());
+    }
+
+    /**
+     * 按给定的当前时间生成（测试时模拟时钟回拨、同一秒内序列号用尽）
+     */
+    String generate(long userId, long orderId, long currentTimeMillis) {
+        long next = nextState(Math.floorDiv(currentTimeMillis, 1000));
+        long second = next >>> SEQUENCE_BITS;
+        long sequence = ((next & SEQUENCE_MASK) + mix(second)) & SEQUENCE_MASK;
+
+        byte[] buffer = BUFFER.get();
+        System.arraycopy(format(second), 0, buffer, TIME_INDEX, TIME_LENGTH);
+        buffer[WORKER_INDEX] = workerHigh;
+        buffer[WORKER_INDEX + 1] = workerLow;
+        for (int i = 0; i < 5; i++) {
+            buffer[SEQUENCE_INDEX + i] = HEX[(int) (sequence >>> (16 - 4 * i)) & 0xF];
+        }
+        buffer[RANDOM_INDEX] = HEX[ThreadLocalRandom.current().nextInt(16)];
+        buffer[GENE_INDEX] = HEX[(int) (userId & (OrderNoGene.GENE_SIZE - 1))];
+        buffer[GENE_INDEX + 1] = HEX[(int) (orderId & (OrderNoGene.GENE_SIZE - 1))];
+        return new String(buffer, 0, OrderNoGene.LENGTH, StandardCharsets.ISO_8859_1);
+    }
+
+    private long nextState(long now) {
+        while (true) {
+            long current = state.get();
+            long currentSecond = current >>> SEQUENCE_BITS;
+            long next;
+            if (now > currentSecond) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = current + 1;
+            } else {
+                // 本秒序列号已用尽，借用下一秒
+                next = (currentSecond + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private long mix(long second) {
+        long result = (second ^ sequenceSalt) * 0x9E3779B97F4A7C15L;
+        return result ^ (result >>> 32);
+    }
+
+    private byte[] format(long second) {
+        FormattedSecond cached = formattedSecond;
+        if (cached.second != second) {
+            cached = new FormattedSecond(second, toDigits(second));
+            formattedSecond = cached;
+        }
+        return cached.digits;
+    }
+
+    private byte[] toDigits(long second) {
+        ZoneOffset offset = zoneId.getRules().getOffset(Instant.ofEpochSecond(second));
+        LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, offset);
+        byte[] result = new byte[TIME_LENGTH];
+        writeDigits(result, 0, time.getYear(), 4);
+        writeDigits(result, 4, time.getMonthValue(), 2);
+        writeDigits(result, 6, time.getDayOfMonth(), 2);
+        writeDigits(result, 8, time.getHour(), 2);
+        writeDigits(result, 10, time.getMinute(), 2);
+        writeDigits(result, 12, time.getSecond(), 2);
+        return result;
+    }
+
+    private static void writeDigits(byte[] target, int index, int value, int width) {
+        for (int i = index + width - 1; i >= index; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * 按秒缓存的格式化时间，整体不可变，通过 volatile 引用安全发布
+     */
+    private static final class FormattedSecond {
+
+        private final long second;
+
+        private final byte[] digits;
+
+        private FormattedSecond(long second, byte[] digits) {
+            this.second = second;
+            this.digits = digits;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ruchang.power.sharding;
+
+import lombok.Getter;
+import org.apache.shardingsphere.infra.context.transaction.TransactionConnectionContext;
+import org.apache.shardingsphere.readwritesplitting.spi.ReadQueryLoadBalanceAlgorithm;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 订单读库负载均衡算法
+ * ReadWriteRouting 要求走主库时返回主库，否则在从库间轮询。
+ * 内置的 ROUND_ROBIN 只要连接处于事务中就走主库，而 JPA 的 readOnly 事务也会关闭自动提交，
+ * 会让所有仓库查询都落到主库，这里改为按 Spring 事务是否只读判断
+ */
+public final class OrderReadQueryLoadBalanceAlgorithm implements ReadQueryLoadBalanceAlgorithm {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Getter
+    private Properties props;
+
+    @Override
+    public void init(Properties props) {
+        this.props = props;
+    }
+
+    @Override
+    public String getDataSource(String name, String writeDataSourceName, List<String> readDataSourceNames,
+                                TransactionConnectionContext context) {
+        if (ReadWriteRouting.isPrimaryRequired()) {
+            return writeDataSourceName;
+        }
+        return readDataSourceNames.get(Math.floorMod(count.getAndIncrement(), readDataSourceNames.size()));
+    }
+
+    @Override
+    public String getType() {
+        return "ORDER_READ_QUERY";
+    }
+}
@@ -0,0 +1,315 @@
+package com.ruchang.power.sharding;
+
+import com.ruchang.power.entity.Order;
+import org.apache.shardingsphere.driver.jdbc.core.connection.ShardingSphereConnection;
+import org.apache.shardingsphere.infra.config.algorithm.AlgorithmConfiguration;
+import org.apache.shardingsphere.infra.config.props.ConfigurationProperties;
+import org.apache.shardingsphere.infra.config.props.ConfigurationPropertyKey;
+import org.apache.shardingsphere.infra.config.rule.RuleConfiguration;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.apache.shardingsphere.infra.metadata.database.ShardingSphereDatabase;
+import org.apache.shardingsphere.mode.manager.ContextManager;
+import org.apache.shardingsphere.readwritesplitting.rule.ReadwriteSplittingDataSourceRule;
+import org.apache.shardingsphere.readwritesplitting.rule.ReadwriteSplittingRule;
+import org.apache.shardingsphere.sharding.api.config.ShardingRuleConfiguration;
+import org.apache.shardingsphere.sharding.api.config.rule.ShardingTableRuleConfiguration;
+import org.apache.shardingsphere.sharding.api.config.strategy.sharding.ShardingStrategyConfiguration;
+import org.apache.shardingsphere.sharding.route.engine.condition.value.ListShardingConditionValue;
+import org.apache.shardingsphere.sharding.route.engine.condition.value.ShardingConditionValue;
+import org.apache.shardingsphere.sharding.route.strategy.ShardingStrategy;
+import org.apache.shardingsphere.sharding.route.strategy.ShardingStrategyFactory;
+import org.apache.shardingsphere.sharding.spi.ShardingAlgorithm;
+import org.apache.shardingsphere.sharding.rule.ShardingRule;
+import org.apache.shardingsphere.sharding.rule.TableRule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 订单分片路由器
+ * 直接复用 ShardingSphere 当前生效的分片规则计算一行订单落在哪个物理节点，
+ * 供批量写入等需要按分片分组的场景使用，规则变更后无需同步修改
+ */
+@Component
+public class OrderShardRouter {
+
+    public static final String LOGIC_TABLE = "t_order";
+
+    @Autowired
+    private DataSource dataSource;
+
+    private volatile ContextManager contextManager;
+
+    private volatile String databaseName;
+
+    /**
+     * 本实例重建分片规则的次数，缓存了物理节点的组件据此判断是否需要重新加载
+     */
+    private final AtomicLong ruleVersion = new AtomicLong();
+
+    /**
+     * 计算订单所在的物理节点
+     */
+    public DataNode route(Order order) {
+        List<ShardingConditionValue> conditions = new ArrayList<>(3);
+        conditions.add(condition("user_id", order.getUserId()));
+        conditions.add(condition("order_id", order.getOrderId()));
+        if (order.getOrderNo() != null) {
+            conditions.add(condition("order_no", order.getOrderNo()));
+        }
+        if (order.getCreateTime() != null) {
+            conditions.add(condition("create_time", order.getCreateTime()));
+        }
+        return route(conditions);
+    }
+
+    /**
+     * 仅凭订单ID计算物理节点（依赖主键中的用户基因），旧订单ID、按月分表时月初月末无法唯一定位时返回 null
+     */
+    public DataNode routeByOrderId(long orderId) {
+        if (!OrderKeyGenerator.hasGene(orderId)) {
+            return null;
+        }
+        List<ShardingConditionValue> conditions = Collections.singletonList(condition("order_id", orderId));
+        String dataSourceName = routeDataSource(conditions);
+        Collection<String> tableNames = routeTables(dataSourceName, conditions);
+        return tableNames.size() == 1 ? new DataNode(dataSourceName, tableNames.iterator().next()) : null;
+    }
+
+    /**
+     * 用户订单可能所在的物理节点：用户所在库中当前生效的全部订单表
+     */
+    public List<DataNode> getUserDataNodes(long userId) {
+        List<ShardingConditionValue> conditions = Collections.singletonList(condition("user_id", userId));
+        String dataSourceName = routeDataSource(conditions);
+        return getAllDataNodes().stream()
+                .filter(each -> each.getDataSourceName().equals(dataSourceName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 逻辑表当前生效的全部物理节点
+     * 已安装槽位布局时只包含持有槽位的节点，扩容预留、尚未切换的节点不会被读到
+     */
+    public List<DataNode> getAllDataNodes() {
+        List<DataNode> result = getTableRule(getShardingRule()).getActualDataNodes();
+        OrderSlotLayout layout = OrderSlotLayout.current();
+        return layout == null ? result : result.stream().filter(layout::owns).collect(Collectors.toList());
+    }
+
+    /**
+     * 分片规则中所有逻辑表配置的物理节点（逻辑表 -> 物理节点），包含扩容预留的节点
+     */
+    public Map<String, List<DataNode>> getAllTableDataNodes() {
+        Map<String, List<DataNode>> result = new LinkedHashMap<>();
+        getShardingRule().getTableRules().forEach((logicTable, tableRule) ->
+                result.put(logicTable, tableRule.getActualDataNodes()));
+        return result;
+    }
+
+    /**
+     * 订单表按月分表时的分表算法，未按月分表时返回 null
+     */
+    public OrderMonthlyTableShardingAlgorithm getMonthlyTableAlgorithm() {
+        ShardingRule rule = getShardingRule();
+        ShardingStrategyConfiguration config = rule.getTableShardingStrategyConfiguration(getTableRule(rule));
+        ShardingAlgorithm algorithm = config == null ? null
+                : rule.getShardingAlgorithms().get(config.getShardingAlgorithmName());
+        return algorithm instanceof OrderMonthlyTableShardingAlgorithm
+                ? (OrderMonthlyTableShardingAlgorithm) algorithm : null;
+    }
+
+    /**
+     * 设置订单表分表算法的属性（例如按月分表启动时推算出的 start-month）
+     * 同时写入规则配置和当前生效的算法实例，之后 addDataNodes 重建规则时沿用
+     */
+    public synchronized void setTableAlgorithmProperty(String key, String value) {
+        ShardingRule rule = getShardingRule();
+        ShardingStrategyConfiguration strategy = rule.getTableShardingStrategyConfiguration(getTableRule(rule));
+        if (strategy == null) {
+            throw new IllegalStateException("订单表未配置分表策略");
+        }
+        for (RuleConfiguration each : getDatabase().getRuleMetaData().getConfigurations()) {
+            AlgorithmConfiguration config = each instanceof ShardingRuleConfiguration
+                    ? ((ShardingRuleConfiguration) each).getShardingAlgorithms().get(strategy.getShardingAlgorithmName())
+                    : null;
+            if (config != null) {
+                config.getProps().setProperty(key, value);
+            }
+        }
+        ShardingAlgorithm algorithm = rule.getShardingAlgorithms().get(strategy.getShardingAlgorithmName());
+        algorithm.getProps().setProperty(key, value);
+        algorithm.init(algorithm.getProps());
+    }
+
+    /**
+     * 把已建好的物理表加入订单逻辑表的 actual-data-nodes
+     * 通过 ContextManager 在内存中重建分片规则（单机模式，不持久化），只对当前实例生效，重启后需要重新登记
+     */
+    public synchronized void addDataNodes(Collection<DataNode> nodes) {
+        Collection<RuleConfiguration> configs = new ArrayList<>();
+        for (RuleConfiguration each : getDatabase().getRuleMetaData().getConfigurations()) {
+            configs.add(each instanceof ShardingRuleConfiguration
+                    ? withDataNodes((ShardingRuleConfiguration) each, nodes) : each);
+        }
+        getContextManager().alterRuleConfiguration(databaseName, configs);
+        // 重建后的库不带表结构元数据，按新规则重新加载
+        getContextManager().reloadDatabase(databaseName);
+        ruleVersion.incrementAndGet();
+        // alterRuleConfiguration 失败时只打日志，这里确认新规则已生效
+        if (!getTableRule(getShardingRule()).getActualDataNodes().containsAll(nodes)) {
+            throw new IllegalStateException("登记订单物理表失败: " + nodes);
+        }
+    }
+
+    /**
+     * 分片规则版本，每次 addDataNodes 重建规则后递增
+     */
+    public long getRuleVersion() {
+        return ruleVersion.get();
+    }
+
+    /**
+     * 物理数据源，供需要绕过 ShardingSphere 归并、直接逐个分片读取的场景使用
+     * 分片节点中的数据源是读写分离的逻辑数据源，返回其主库
+     */
+    public DataSource getActualDataSource(String dataSourceName) {
+        String actualName = getDatabase().getRuleMetaData().findSingleRule(ReadwriteSplittingRule.class)
+                .flatMap(each -> each.findDataSourceRule(dataSourceName))
+                .map(ReadwriteSplittingDataSourceRule::getWriteDataSource)
+                .orElse(dataSourceName);
+        DataSource result = getContextManager().getDataSourceMap(databaseName).get(actualName);
+        if (result == null) {
+            throw new IllegalStateException("数据源不存在: " + dataSourceName);
+        }
+        return result;
+    }
+
+    /**
+     * 全部物理数据源（实际数据源名 -> 连接池），包含读写分离的主库和从库
+     */
+    public Map<String, DataSource> getActualDataSources() {
+        return getContextManager().getDataSourceMap(databaseName);
+    }
+
+    /**
+     * 一条逻辑 SQL 在每个数据源上最多使用的连接数（max-connections-size-per-query）
+     */
+    public int getMaxConnectionsSizePerQuery() {
+        return getProps().getValue(ConfigurationPropertyKey.MAX_CONNECTIONS_SIZE_PER_QUERY);
+    }
+
+    private DataNode route(Collection<ShardingConditionValue> conditions) {
+        String dataSourceName = routeDataSource(conditions);
+        return new DataNode(dataSourceName, single(routeTables(dataSourceName, conditions), conditions));
+    }
+
+    private String routeDataSource(Collection<ShardingConditionValue> conditions) {
+        ShardingRule rule = getShardingRule();
+        TableRule tableRule = getTableRule(rule);
+        ShardingStrategy databaseStrategy = createStrategy(rule, rule.getDatabaseShardingStrategyConfiguration(tableRule));
+        return single(databaseStrategy.doSharding(tableRule.getActualDataSourceNames(), conditions,
+                tableRule.getDataSourceDataNode(), getProps()), conditions);
+    }
+
+    private Collection<String> routeTables(String dataSourceName, Collection<ShardingConditionValue> conditions) {
+        ShardingRule rule = getShardingRule();
+        TableRule tableRule = getTableRule(rule);
+        ShardingStrategy tableStrategy = createStrategy(rule, rule.getTableShardingStrategyConfiguration(tableRule));
+        return tableStrategy.doSharding(tableRule.getActualTableNames(dataSourceName), conditions,
+                tableRule.getTableDataNode(), getProps());
+    }
+
+    private ConfigurationProperties getProps() {
+        return getContextManager().getMetaDataContexts().getMetaData().getProps();
+    }
+
+    private ShardingRule getShardingRule() {
+        return getDatabase().getRuleMetaData().getSingleRule(ShardingRule.class);
+    }
+
+    private ShardingSphereDatabase getDatabase() {
+        return getContextManager().getMetaDataContexts().getMetaData().getDatabase(databaseName);
+    }
+
+    private TableRule getTableRule(ShardingRule rule) {
+        return rule.getTableRule(LOGIC_TABLE);
+    }
+
+    private ContextManager getContextManager() {
+        if (contextManager == null) {
+            synchronized (this) {
+                if (contextManager == null) {
+                    try (Connection connection = dataSource.getConnection()) {
+                        ShardingSphereConnection shardingConnection = connection.unwrap(ShardingSphereConnection.class);
+                        databaseName = shardingConnection.getDatabaseName();
+                        contextManager = shardingConnection.getContextManager();
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("获取 ShardingSphere 上下文失败", e);
+                    }
+                }
+            }
+        }
+        return contextManager;
+    }
+
+    private static ShardingRuleConfiguration withDataNodes(ShardingRuleConfiguration config,
+                                                           Collection<DataNode> nodes) {
+        ShardingRuleConfiguration result = new ShardingRuleConfiguration();
+        for (ShardingTableRuleConfiguration each : config.getTables()) {
+            if (!LOGIC_TABLE.equalsIgnoreCase(each.getLogicTable())) {
+                result.getTables().add(each);
+                continue;
+            }
+            StringBuilder actualDataNodes = new StringBuilder(each.getActualDataNodes());
+            nodes.forEach(node -> actualDataNodes.append(',').append(node.format()));
+            ShardingTableRuleConfiguration table = new ShardingTableRuleConfiguration(each.getLogicTable(),
+                    actualDataNodes.toString());
+            table.setDatabaseShardingStrategy(each.getDatabaseShardingStrategy());
+            table.setTableShardingStrategy(each.getTableShardingStrategy());
+            table.setKeyGenerateStrategy(each.getKeyGenerateStrategy());
+            table.setAuditStrategy(each.getAuditStrategy());
+            result.getTables().add(table);
+        }
+        result.setAutoTables(config.getAutoTables());
+        result.setBindingTableGroups(config.getBindingTableGroups());
+        result.setBroadcastTables(config.getBroadcastTables());
+        result.setDefaultDatabaseShardingStrategy(config.getDefaultDatabaseShardingStrategy());
+        result.setDefaultTableShardingStrategy(config.getDefaultTableShardingStrategy());
+        result.setDefaultKeyGenerateStrategy(config.getDefaultKeyGenerateStrategy());
+        result.setDefaultAuditStrategy(config.getDefaultAuditStrategy());
+        result.setDefaultShardingColumn(config.getDefaultShardingColumn());
+        result.setShardingAlgorithms(config.getShardingAlgorithms());
+        result.setKeyGenerators(config.getKeyGenerators());
+        result.setAuditors(config.getAuditors());
+        return result;
+    }
+
+    private static ShardingStrategy createStrategy(ShardingRule rule, ShardingStrategyConfiguration config) {
+        return ShardingStrategyFactory.newInstance(config,
+                null == config ? null : rule.getShardingAlgorithms().get(config.getShardingAlgorithmName()),
+                rule.getDefaultShardingColumn());
+    }
+
+    private static ShardingConditionValue condition(String column, Comparable<?> value) {
+        return new ListShardingConditionValue<>(column, LOGIC_TABLE, Collections.singletonList(value));
+    }
+
+    private static String single(Collection<String> targets, Collection<ShardingConditionValue> conditions) {
+        if (targets.size() != 1) {
+            throw new IllegalStateException("订单无法路由到唯一分片: " + conditions + " -> " + targets);
+        }
+        return targets.iterator().next();
+    }
+}
@@ -0,0 +1,219 @@
+package com.ruchang.power.sharding;
+
+import org.apache.shardingsphere.infra.datanode.DataNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单分片槽位布局（不可变）
+ * 分库、分表各 16 个槽位，与分片基因一一对应：分库槽位 = user_id 低4位，分表槽位 = order_id 低4位，
+ * 每个槽位映射到一个库名 / 表名。按订单号、order_id 中的基因仍然可以直接算出槽位，单表路由不受影响
+ *
+ * 扩容只需把一部分槽位改为指向新节点（见 rebalance），其余槽位保持不动，只有被移动槽位中的数据需要迁移；
+ * 库数、表数不再要求能整除 16，最多各 16 个
+ *
+ * 当前生效的布局由 ReshardingService 加载并通过 install 原子替换，分片算法（SPI 实例，不在 Spring 容器中）
+ * 通过 current 读取；尚未安装时分片算法按原来的取模规则路由
+ */
+public final class OrderSlotLayout {
+
+    public static final int SLOT_COUNT = OrderNoGene.GENE_SIZE;
+
+    private static volatile OrderSlotLayout current;
+
+    private final long version;
+
+    private final String[] databases;
+
+    private final String[] tables;
+
+    private final Set<String> databaseSet;
+
+    private final Set<String> tableSet;
+
+    public OrderSlotLayout(long version, String[] databases, String[] tables) {
+        if (databases.length != SLOT_COUNT || tables.length != SLOT_COUNT) {
+            throw new IllegalArgumentException("分库、分表槽位数必须为 " + SLOT_COUNT);
+        }
+        this.version = version;
+        this.databases = databases.clone();
+        this.tables = tables.clone();
+        this.databaseSet = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(databases)));
+        this.tableSet = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(tables)));
+    }
+
+    /**
+     * 当前生效的布局，未安装时为 null
+     */
+    public static OrderSlotLayout current() {
+        return current;
+    }
+
+    /**
+     * 切换生效的布局
+     */
+    public static void install(OrderSlotLayout layout) {
+        current = layout;
+    }
+
+    /**
+     * 按取模规则生成布局，槽位 i 指向第 i % n 个库 / 表，与原来的 user_id % 库数、order_id % 表数一致
+     */
+    public static OrderSlotLayout modulo(long version, List<String> databaseNames, List<String> tableNames) {
+        return new OrderSlotLayout(version, modulo(databaseNames), modulo(tableNames));
+    }
+
+    /**
+     * 以当前布局为基础生成扩容后的布局：每个节点分到的槽位数尽量平均，
+     * 已有节点保留的槽位不动，只把超出配额的槽位分给新节点，迁移量最小
+     */
+    public OrderSlotLayout rebalance(List<String> databaseNames, List<String> tableNames) {
+        return new OrderSlotLayout(version + 1, rebalance(databases, databaseNames),
+                rebalance(tables, tableNames));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getDatabase(int slot) {
+        return databases[slot];
+    }
+
+    public String getTable(int slot) {
+        return tables[slot];
+    }
+
+    /**
+     * 持有槽位的库（去重，按槽位顺序）
+     */
+    public Set<String> getDatabases() {
+        return databaseSet;
+    }
+
+    /**
+     * 持有槽位的表（去重，按槽位顺序）
+     */
+    public Set<String> getTables() {
+        return tableSet;
+    }
+
+    /**
+     * 用户所在的库
+     */
+    public String databaseOf(long userId) {
+        return databases[slotOf(userId)];
+    }
+
+    /**
+     * 订单所在的物理节点
+     */
+    public DataNode orderNodeOf(long userId, long orderId) {
+        return new DataNode(databaseOf(userId), tables[slotOf(orderId)]);
+    }
+
+    /**
+     * 物理节点是否持有槽位（即在该布局下会被路由到），按月分区表（见 OrderTablePartition）按所属槽位表判断
+     */
+    public boolean owns(DataNode node) {
+        return databaseSet.contains(node.getDataSourceName())
+                && tableSet.contains(OrderTablePartition.baseTableOf(node.getTableName()));
+    }
+
+    /**
+     * 分片键取值对应的槽位
+     */
+    public static int slotOf(long value) {
+        return (int) Math.floorMod(value, (long) SLOT_COUNT);
+    }
+
+    /**
+     * 序列化为逗号分隔的 16 个槽位
+     */
+    public String databasesAsString() {
+        return String.join(",", databases);
+    }
+
+    public String tablesAsString() {
+        return String.join(",", tables);
+    }
+
+    public static OrderSlotLayout parse(long version, String databases, String tables) {
+        return new OrderSlotLayout(version, split(databases), split(tables));
+    }
+
+    private static String[] split(String value) {
+        String[] result = value.split(",");
+        for (int i = 0; i < result.length; i++) {
+            result[i] = result[i].trim();
+        }
+        return result;
+    }
+
+    private static String[] modulo(List<String> names) {
+        checkNames(names);
+        String[] result = new String[SLOT_COUNT];
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            result[i] = names.get(i % names.size());
+        }
+        return result;
+    }
+
+    private static String[] rebalance(String[] slots, List<String> names) {
+        checkNames(names);
+        // 配额：SLOT_COUNT / n，余数优先分给已有节点，它们可以少迁出一个槽位
+        Map<String, Integer> quotas = new LinkedHashMap<>();
+        List<String> ordered = new ArrayList<>();
+        Set<String> existing = new LinkedHashSet<>(Arrays.asList(slots));
+        names.stream().filter(existing::contains).forEach(ordered::add);
+        names.stream().filter(each -> !existing.contains(each)).forEach(ordered::add);
+        for (int i = 0; i < ordered.size(); i++) {
+            quotas.put(ordered.get(i), SLOT_COUNT / names.size() + (i < SLOT_COUNT % names.size() ? 1 : 0));
+        }
+
+        String[] result = new String[SLOT_COUNT];
+        List<Integer> released = new ArrayList<>();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            Integer quota = quotas.get(slots[i]);
+            if (quota != null && quota > 0) {
+                result[i] = slots[i];
+                quotas.put(slots[i], quota - 1);
+            } else {
+                released.add(i);
+            }
+        }
+        for (int slot : released) {
+            for (Map.Entry<String, Integer> entry : quotas.entrySet()) {
+                if (entry.getValue() > 0) {
+                    result[slot] = entry.getKey();
+                    entry.setValue(entry.getValue() - 1);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void checkNames(Collection<String> names) {
+        if (names == null || names.isEmpty() || names.size() > SLOT_COUNT) {
+            throw new IllegalArgumentException("节点数量必须在 1~" + SLOT_COUNT + " 之间");
+        }
+        if (new LinkedHashSet<>(names).size() != names.size() || names.contains(null)) {
+            throw new IllegalArgumentException("节点名称不能为空或重复: " + names);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSlotLayout{version=" + version + ", databases=" + databasesAsString()
+                + ", tables=" + tablesAsString() + '}';
+    }
+}
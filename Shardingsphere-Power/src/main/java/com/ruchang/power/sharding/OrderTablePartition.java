@@ -0,0 +1,81 @@
+package com.ruchang.power.sharding;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * 订单表按月分区的命名与月份换算
+ * 月分区表名为 {分表槽位表}_{yyyyMM}，例如 t_order_0_202611；月份按系统时区计算，与订单号中的时间、冷订单分区一致
+ */
+public final class OrderTablePartition {
+
+    private static final int MONTH_LENGTH = 6;
+
+    private OrderTablePartition() {
+    }
+
+    /**
+     * 槽位表在某个月的分区表名
+     */
+    public static String tableOf(String baseTable, int month) {
+        return baseTable + '_' + month;
+    }
+
+    /**
+     * 分区表所属的槽位表，不是分区表时返回原名
+     */
+    public static String baseTableOf(String table) {
+        return monthOf(table) < 0 ? table : table.substring(0, table.length() - MONTH_LENGTH - 1);
+    }
+
+    /**
+     * 分区表的月份（yyyyMM），不是分区表时返回 -1
+     */
+    public static int monthOf(String table) {
+        int index = table.length() - MONTH_LENGTH - 1;
+        if (index <= 0 || table.charAt(index) != '_') {
+            return -1;
+        }
+        for (int i = index + 1; i < table.length(); i++) {
+            if (!Character.isDigit(table.charAt(i))) {
+                return -1;
+            }
+        }
+        int result = Integer.parseInt(table.substring(index + 1));
+        return isMonth(result) ? result : -1;
+    }
+
+    /**
+     * 时间戳所在的月份（yyyyMM）
+     */
+    public static int monthOf(long millis) {
+        ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault());
+        return time.getYear() * 100 + time.getMonthValue();
+    }
+
+    /**
+     * 月份第一天零点的时间戳
+     */
+    public static long startOf(int month) {
+        return LocalDate.of(month / 100, month % 100, 1).atStartOfDay(ZoneId.systemDefault())
+                .toInstant().toEpochMilli();
+    }
+
+    /**
+     * 月份加减
+     */
+    public static int plusMonths(int month, int months) {
+        int index = month / 100 * 12 + month % 100 - 1 + months;
+        return index / 12 * 100 + index % 12 + 1;
+    }
+
+    /**
+     * 是否为合法的 yyyyMM
+     */
+    public static boolean isMonth(int value) {
+        int month = value % 100;
+        return value >= 100_001 && value <= 999_912 && month >= 1 && month <= 12;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ruchang.power.sharding;
+
+import java.util.Set;
+
+/**
+ * 订单分表算法
+ * 分片列：order_id, order_no
+ * order_id % 表数量（或按 order_id 低4位查槽位布局）；只有订单号时取订单号中的订单ID基因
+ */
+public final class OrderTableShardingAlgorithm extends AbstractOrderGeneShardingAlgorithm {
+
+    @Override
+    protected String getShardingColumn() {
+        return "order_id";
+    }
+
+    @Override
+    protected String getTarget(OrderSlotLayout layout, int slot) {
+        return layout.getTable(slot);
+    }
+
+    @Override
+    protected Set<String> getTargets(OrderSlotLayout layout) {
+        return layout.getTables();
+    }
+
+    @Override
+    protected int getGene(String orderNo) {
+        return OrderNoGene.orderGene(orderNo);
+    }
+
+    @Override
+    public String getType() {
+        return "ORDER_TABLE_GENE";
+    }
+}
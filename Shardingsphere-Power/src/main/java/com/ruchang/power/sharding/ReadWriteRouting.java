@@ -0,0 +1,43 @@
+package com.ruchang.power.sharding;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 读写分离的主从选择
+ * 以下查询走主库，其余查询走从库：
+ * 1. 读写事务内（Spring 事务未标记 readOnly），保证事务内读到自己的写入；
+ * 2. primary(...) 范围内，用于刚写入过的用户（见 ReadYourWritesTracker）和需要读到最新数据的后台任务。
+ * 写入 SQL 由 ShardingSphere 直接路由到主库，不经过这里
+ */
+public final class ReadWriteRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReadWriteRouting() {
+    }
+
+    /**
+     * 在主库上执行查询
+     */
+    public static <T> T primary(Supplier<T> query) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            }
+        }
+    }
+
+    /**
+     * 当前线程的查询是否必须走主库
+     */
+    public static boolean isPrimaryRequired() {
+        return PRIMARY.get() != null || TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
@@ -0,0 +1,42 @@
+package com.ruchang.power.sharding;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 扩容迁移状态（持久化在 t_order_resharding 中，所有实例共享）
+ */
+@Getter
+@AllArgsConstructor
+public class ReshardingState {
+
+    /**
+     * 迁移阶段
+     * IDLE      - 未迁移
+     * MIGRATING - 已确定目标布局：后台复制、校验，写入同步双写到目标节点，读写仍按当前布局路由
+     * CUTOVER   - 切换中：暂停订单写入，最终校验通过后原子切换为目标布局
+     * CLEANING  - 已切换（或已放弃）：清理不再属于所在节点的旧数据
+     */
+    public enum Phase {
+        IDLE, MIGRATING, CUTOVER, CLEANING
+    }
+
+    private final Phase phase;
+
+    /**
+     * 当前生效的布局
+     */
+    private final OrderSlotLayout current;
+
+    /**
+     * 目标布局，仅 MIGRATING / CUTOVER 阶段有值
+     */
+    private final OrderSlotLayout target;
+
+    /**
+     * 是否需要把写入同步到目标节点（MIGRATING / CUTOVER）
+     */
+    public boolean isDualWriting() {
+        return target != null;
+    }
+}
@@ -0,0 +1,177 @@
+package com.ruchang.power.sharding;
+
+import com.ruchang.power.dto.SQLRouteTrace;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * SQL 路由追踪（替代 sql-show 全量打印到控制台）
+ * 按采样率记录逻辑 SQL 到实际 SQL 的路由结果，超过慢 SQL 阈值的语句总会被记录
+ *
+ * 存储为定长环形缓冲区：写入只有一次 AtomicLong 自增和一次数组槽位的 volatile 写，无锁，
+ * 写满后覆盖最旧的记录；读取时按序号从新到旧遍历，槽位中序号不符的记录说明已被覆盖，直接跳过
+ */
+@Component
+public class SQLRouteTracer {
+
+    /**
+     * 记录中 SQL 的最大长度，批量 INSERT 的 VALUES 可能很长
+     */
+    private static final int MAX_SQL_LENGTH = 2048;
+
+    private static final ThreadLocal<Boolean> FORCED = new ThreadLocal<>();
+
+    private final AtomicReferenceArray<SQLRouteTrace> buffer;
+
+    private final int mask;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final double sampleRate;
+
+    private final long slowThresholdNanos;
+
+    public SQLRouteTracer(@Value("${order.sql-trace.capacity:1024}") int capacity,
+                          @Value("${order.sql-trace.sample-rate:0.01}") double sampleRate,
+                          @Value("${order.sql-trace.slow-threshold-ms:200}") long slowThresholdMs) {
+        if (capacity <= 0 || capacity > (1 << 20)) {
+            throw new IllegalArgumentException("sql-trace.capacity 取值范围为 1~1048576，当前为 " + capacity);
+        }
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sql-trace.sample-rate 取值范围为 0~1，当前为 " + sampleRate);
+        }
+        // 容量取不小于配置值的 2 的幂，槽位用位运算计算
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdMs <= 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+    }
+
+    /**
+     * 逻辑 SQL 开始时决定是否采样
+     */
+    boolean sample() {
+        return Boolean.TRUE.equals(FORCED.get())
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * 是否慢 SQL
+     */
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= slowThresholdNanos;
+    }
+
+    /**
+     * 写入环形缓冲区
+     */
+    void record(SQLRouteTrace trace) {
+        long next = sequence.getAndIncrement();
+        trace.setSequence(next);
+        buffer.set((int) (next & mask), trace);
+    }
+
+    /**
+     * 在当前线程执行 action，期间的 SQL 全部记录，不受采样率限制（供调试接口使用）
+     */
+    public <T> T traceAll(Supplier<T> action) {
+        Boolean previous = FORCED.get();
+        FORCED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                FORCED.remove();
+            } else {
+                FORCED.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 按条件查询最近的记录，从新到旧
+     *
+     * @param table      逻辑表或实际表，为空不过滤
+     * @param dataSource 实际数据源，为空不过滤
+     * @param slowOnly   只看慢 SQL
+     * @param limit      最多返回条数
+     */
+    public List<SQLRouteTrace> find(String table, String dataSource, boolean slowOnly, int limit) {
+        List<SQLRouteTrace> result = new ArrayList<>();
+        long last = sequence.get() - 1;
+        long first = Math.max(0, last - mask);
+        for (long i = last; i >= first && result.size() < limit; i--) {
+            SQLRouteTrace trace = buffer.get((int) (i & mask));
+            // 槽位尚未写入，或读取期间已被更新的记录覆盖
+            if (trace == null || trace.getSequence() != i) {
+                continue;
+            }
+            if ((slowOnly && !trace.isSlow()) || !matchesTable(trace, table) || !matchesDataSource(trace, dataSource)) {
+                continue;
+            }
+            result.add(trace);
+        }
+        return result;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    /**
+     * 累计写入的记录数（包含已被覆盖的）
+     */
+    public long getRecorded() {
+        return sequence.get();
+    }
+
+    static String truncate(String sql) {
+        return sql == null || sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    private static boolean matchesTable(SQLRouteTrace trace, String table) {
+        if (table == null || table.isEmpty() || table.equalsIgnoreCase(trace.getLogicTable())) {
+            return true;
+        }
+        for (SQLRouteTrace.Unit each : trace.getUnits()) {
+            for (String actualTable : each.getActualTables()) {
+                if (table.equalsIgnoreCase(actualTable)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesDataSource(SQLRouteTrace trace, String dataSource) {
+        if (dataSource == null || dataSource.isEmpty()) {
+            return true;
+        }
+        for (SQLRouteTrace.Unit each : trace.getUnits()) {
+            if (dataSource.equalsIgnoreCase(each.getDataSource())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,291 @@
+package com.ruchang.power.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * 各分片连接池的监控与自适应扩缩容
+ * 启动后给每个物理数据源的 HikariCP 连接池接上 Micrometer（hikaricp.connections.*，pool 标签为 HikariPool-N，
+ * ShardingSphere 不允许配置 pool-name），并按实际数据源名（data_source 标签）导出：
+ * order.pool.wait 上一周期获取连接的平均等待耗时、order.pool.active / idle / pending / size 连接数、
+ * order.pool.timeouts 获取连接超时次数。
+ *
+ * 每 adjust-interval-ms 按上一周期的平均等待耗时调整 maximum-pool-size（限制在 min-size ~ max-size 之间）：
+ * - 平均等待超过 target-wait-ms、出现获取超时或仍有线程在等待时扩容 step 个；
+ * - 连续 shrink-after 个周期等待很低（不到目标的 1/4）且活跃连接不到一半时缩容 1 个，多出的连接空闲超时后才会关闭。
+ * 调整只在本实例内存中生效，重启后恢复配置值
+ */
+@Slf4j
+@Component
+public class ShardPoolController {
+
+    /**
+     * 同一数据源的连接严格模式日志最短间隔
+     */
+    private static final long STRICT_LOG_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${order.pool.adaptive:true}")
+    private boolean adaptive;
+
+    @Value("${order.pool.min-size:5}")
+    private int minSize;
+
+    @Value("${order.pool.max-size:50}")
+    private int maxSize;
+
+    @Value("${order.pool.target-wait-ms:10}")
+    private double targetWaitMs;
+
+    @Value("${order.pool.step:2}")
+    private int step;
+
+    @Value("${order.pool.shrink-after:6}")
+    private int shrinkAfter;
+
+    /**
+     * 实际数据源名 -> 连接池状态，启动完成后才有值
+     */
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * 实际数据源名 -> 连接严格模式的逻辑 SQL 数
+     */
+    private final Map<String, StrictMode> strictModes = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindPools() {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("order.pool.min-size / max-size 配置错误: " + minSize + " / " + maxSize);
+        }
+        orderShardRouter.getActualDataSources().forEach((name, dataSource) -> {
+            if (dataSource instanceof HikariDataSource) {
+                pools.put(name, new Pool(name, (HikariDataSource) dataSource));
+            }
+        });
+        log.info("分片连接池监控已启动: pools={}, adaptive={}, size={}~{}", pools.keySet(), adaptive, minSize, maxSize);
+    }
+
+    /**
+     * 按上一周期的等待耗时调整各连接池大小
+     */
+    @Scheduled(fixedDelayString = "${order.pool.adjust-interval-ms:5000}")
+    public void adjust() {
+        for (Pool each : pools.values()) {
+            each.sample();
+            if (adaptive) {
+                each.resize();
+            }
+        }
+    }
+
+    /**
+     * 一条逻辑 SQL 在各数据源上的执行单元数（由 ShardingMetrics 上报）
+     * 超过 max-connections-size-per-query 时 ShardingSphere 使用连接严格模式：该数据源只占用有限的连接、
+     * 执行单元串行执行并把结果集读入内存，扇出很大的查询会明显变慢
+     */
+    public void statementExecuted(Map<String, Integer> unitsByDataSource) {
+        int limit = orderShardRouter.getMaxConnectionsSizePerQuery();
+        unitsByDataSource.forEach((dataSourceName, units) -> {
+            if (units > limit) {
+                strictModes.computeIfAbsent(dataSourceName, StrictMode::new).record(units, limit);
+            }
+        });
+    }
+
+    /**
+     * 各连接池当前状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("adaptive", adaptive);
+        result.put("minSize", minSize);
+        result.put("maxSize", maxSize);
+        result.put("targetWaitMs", targetWaitMs);
+        result.put("maxConnectionsSizePerQuery", orderShardRouter.getMaxConnectionsSizePerQuery());
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (Pool each : pools.values()) {
+            details.put(each.name, each.toStatus());
+        }
+        result.put("pools", details);
+        return result;
+    }
+
+    /**
+     * 一个物理数据源的连接池
+     */
+    private final class Pool {
+
+        private final String name;
+
+        private final HikariDataSource dataSource;
+
+        private Timer acquireTimer;
+
+        private Counter timeoutCounter;
+
+        private long lastCount;
+
+        private double lastTotalNanos;
+
+        private double lastTimeouts;
+
+        private volatile double waitMs;
+
+        private volatile long timeouts;
+
+        private int quietIntervals;
+
+        private Pool(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            if (dataSource.getMetricsTrackerFactory() == null && dataSource.getMetricRegistry() == null) {
+                dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            }
+            gauge("order.pool.wait", "上一调整周期获取连接的平均等待耗时（毫秒）", each -> each.waitMs);
+            gauge("order.pool.active", "使用中的连接数", each -> each.poolValue(HikariPoolMXBean::getActiveConnections));
+            gauge("order.pool.idle", "空闲连接数", each -> each.poolValue(HikariPoolMXBean::getIdleConnections));
+            gauge("order.pool.pending", "等待连接的线程数",
+                    each -> each.poolValue(HikariPoolMXBean::getThreadsAwaitingConnection));
+            gauge("order.pool.size", "连接池大小（maximum-pool-size）", each -> each.dataSource.getMaximumPoolSize());
+            FunctionCounter.builder("order.pool.timeouts", this,
+                            each -> each.timeoutCounter == null ? 0 : each.timeoutCounter.count())
+                    .description("获取连接超时次数")
+                    .tag("data_source", name)
+                    .register(meterRegistry);
+        }
+
+        private void gauge(String meterName, String description, ToDoubleFunction<Pool> value) {
+            Gauge.builder(meterName, this, value)
+                    .description(description)
+                    .tag("data_source", name)
+                    .register(meterRegistry);
+        }
+
+        private int poolValue(ToIntFunction<HikariPoolMXBean> getter) {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? 0 : getter.applyAsInt(pool);
+        }
+
+        private void sample() {
+            // 连接池首次获取连接时才启动，启动后才有 hikaricp 指标
+            if (acquireTimer == null) {
+                acquireTimer = meterRegistry.find("hikaricp.connections.acquire")
+                        .tag("pool", dataSource.getPoolName()).timer();
+                timeoutCounter = meterRegistry.find("hikaricp.connections.timeout")
+                        .tag("pool", dataSource.getPoolName()).counter();
+            }
+            long count = acquireTimer == null ? 0 : acquireTimer.count();
+            double totalNanos = acquireTimer == null ? 0 : acquireTimer.totalTime(TimeUnit.NANOSECONDS);
+            double timeoutCount = timeoutCounter == null ? 0 : timeoutCounter.count();
+            waitMs = count > lastCount ? (totalNanos - lastTotalNanos) / (count - lastCount) / 1_000_000 : 0;
+            timeouts = (long) (timeoutCount - lastTimeouts);
+            lastCount = count;
+            lastTotalNanos = totalNanos;
+            lastTimeouts = timeoutCount;
+        }
+
+        private void resize() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool == null) {
+                return;
+            }
+            int size = dataSource.getMaximumPoolSize();
+            int pending = pool.getThreadsAwaitingConnection();
+            int target = size;
+            if (waitMs > targetWaitMs || timeouts > 0 || pending > 0) {
+                quietIntervals = 0;
+                target = Math.min(maxSize, size + step);
+            } else if (waitMs < targetWaitMs / 4 && pool.getActiveConnections() * 2 < size
+                    && ++quietIntervals >= shrinkAfter) {
+                quietIntervals = 0;
+                target = Math.max(minSize, size - 1);
+            }
+            target = Math.min(maxSize, Math.max(minSize, target));
+            if (target != size) {
+                if (dataSource.getMinimumIdle() > target) {
+                    dataSource.getHikariConfigMXBean().setMinimumIdle(target);
+                }
+                dataSource.getHikariConfigMXBean().setMaximumPoolSize(target);
+                log.info("调整连接池大小: pool={}, {} -> {}, wait={}ms, timeouts={}, pending={}",
+                        name, size, target, String.format("%.2f", waitMs), timeouts, pending);
+            }
+        }
+
+        private Map<String, Object> toStatus() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("poolName", dataSource.getPoolName());
+            result.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+            result.put("minimumIdle", dataSource.getMinimumIdle());
+            result.put("active", poolValue(HikariPoolMXBean::getActiveConnections));
+            result.put("idle", poolValue(HikariPoolMXBean::getIdleConnections));
+            result.put("pending", poolValue(HikariPoolMXBean::getThreadsAwaitingConnection));
+            result.put("waitMs", waitMs);
+            result.put("timeouts", timeouts);
+            StrictMode strictMode = strictModes.get(name);
+            result.put("connectionStrictly", strictMode == null ? 0 : (long) strictMode.counter.count());
+            return result;
+        }
+    }
+
+    /**
+     * 一个数据源上的连接严格模式统计，日志按间隔合并输出
+     */
+    private final class StrictMode {
+
+        private final String dataSourceName;
+
+        private final Counter counter;
+
+        private final AtomicLong sinceLastLog = new AtomicLong();
+
+        private final AtomicLong lastLogMillis = new AtomicLong();
+
+        private StrictMode(String dataSourceName) {
+            this.dataSourceName = dataSourceName;
+            counter = Counter.builder("shardingsphere.connection.strictly")
+                    .description("超过 max-connections-size-per-query、以连接严格模式执行的逻辑 SQL 数")
+                    .tag("data_source", dataSourceName)
+                    .register(meterRegistry);
+        }
+
+        private void record(int units, int limit) {
+            counter.increment();
+            long pending = sinceLastLog.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long last = lastLogMillis.get();
+            if (now - last >= STRICT_LOG_INTERVAL_MILLIS && lastLogMillis.compareAndSet(last, now)) {
+                sinceLastLog.addAndGet(-pending);
+                log.warn("逻辑 SQL 在数据源 {} 上有 {} 个执行单元，超过 max-connections-size-per-query={}，"
+                                + "ShardingSphere 以连接严格模式串行执行（最近 {} 条）",
+                        dataSourceName, units, limit, pending);
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.ruchang.power.sharding;
+
+import com.ruchang.power.dto.SQLRouteTrace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.infra.datanode.DataNode;
+import org.apache.shardingsphere.infra.executor.kernel.model.ExecutorDataMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片执行指标
+ * - shardingsphere.sql.execution：每个物理执行单元的耗时，按逻辑表、实际数据源、实际表、SQL 类型、结果打标签
+ *   （同库多表的查询会被 ShardingSphere 改写为一条 UNION ALL，此时 actual_table 为逗号分隔的多个表）
+ * - shardingsphere.sql.route：每条逻辑 SQL 的路由方式（single 单节点 / multi 部分节点 / broadcast 全部节点）
+ * - shardingsphere.sql.route.nodes：每条逻辑 SQL 实际访问的物理节点（库.表）数
+ * 每条逻辑 SQL 在各数据源上的执行单元数交给 ShardPoolController 判断是否进入了连接严格模式。
+ *
+ * 物理执行单元由 ShardingSphere 的 SQLExecutionHook（MetricsSQLExecutionHook）上报，
+ * 逻辑 SQL 的边界由 MeteredShardingDataSource 标记；实际表与逻辑表的对应关系直接取自当前分片规则，
+ * 分片规则重建（登记按月分表）或切换槽位布局（扩容切换）后自动重新加载。
+ * 被采样或超过慢 SQL 阈值的逻辑 SQL 连同各执行单元的实际 SQL 写入 SQLRouteTracer
+ */
+@Slf4j
+@Component
+public class ShardingMetrics {
+
+    private static final String ROUTE_CONTEXT_KEY = ShardingMetrics.class.getName() + ".route";
+
+    private static final String NONE = "none";
+
+    /**
+     * 解析结果缓存上限，批量 INSERT / IN 列表长度不同会产生不同的 SQL
+     */
+    private static final int SQL_CACHE_SIZE = 4096;
+
+    private static volatile ShardingMetrics instance;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Autowired
+    private SQLRouteTracer tracer;
+
+    @Autowired
+    private ShardPoolController shardPoolController;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> routeCounters = new ConcurrentHashMap<>();
+
+    private final Map<String, DistributionSummary> routeNodes = new ConcurrentHashMap<>();
+
+    private final Map<String, SQLInfo> sqlInfos = new ConcurrentHashMap<>();
+
+    /**
+     * 实际表名 -> 逻辑表名、逻辑表 -> 生效的物理节点数，首次使用及规则、布局变化后从分片规则加载
+     */
+    private volatile DataNodes dataNodes;
+
+    /**
+     * 当前实例，Spring 容器外（SPI 加载的 Hook）通过它上报，容器未就绪时为 null
+     */
+    public static ShardingMetrics current() {
+        return instance;
+    }
+
+    @PostConstruct
+    public void register() {
+        instance = this;
+    }
+
+    @PreDestroy
+    public void unregister() {
+        instance = null;
+    }
+
+    /**
+     * 逻辑 SQL 开始执行，放入 ShardingSphere 的 ExecutorDataMap，异步执行单元也能拿到同一个上下文
+     */
+    public RouteContext beginStatement(String logicSql) {
+        RouteContext result = new RouteContext(logicSql, tracer.sample());
+        ExecutorDataMap.getValue().put(ROUTE_CONTEXT_KEY, result);
+        return result;
+    }
+
+    /**
+     * 逻辑 SQL 执行结束，按实际扇出的物理节点数记录路由方式，需要时写入路由追踪
+     */
+    public void endStatement(RouteContext context) {
+        ExecutorDataMap.getValue().remove(ROUTE_CONTEXT_KEY);
+        long elapsedNanos = System.nanoTime() - context.startNanos;
+        int nodes = context.dataNodes.size();
+        if (nodes == 0) {
+            return;
+        }
+        String logicTable = context.logicTable;
+        String sqlType = context.sqlType;
+        String route = logicTable == null ? NONE : recordRoute(logicTable, sqlType, nodes);
+        if (nodes > 1) {
+            Map<String, Integer> unitsByDataSource = new HashMap<>();
+            context.units.forEach(each -> unitsByDataSource.merge(each.getDataSource(), 1, Integer::sum));
+            shardPoolController.statementExecuted(unitsByDataSource);
+        }
+
+        boolean slow = tracer.isSlow(elapsedNanos);
+        if (context.sampled || slow) {
+            tracer.record(new SQLRouteTrace(0, new Date(), SQLRouteTracer.truncate(context.logicSql), sqlType,
+                    logicTable == null ? NONE : logicTable, route, toMillis(elapsedNanos), slow,
+                    new ArrayList<>(context.units)));
+        }
+    }
+
+    private String recordRoute(String logicTable, String sqlType, int nodes) {
+        Integer dataNodeCount = getDataNodeCounts().get(logicTable);
+        String route = nodes == 1 ? "single" : (dataNodeCount != null && nodes >= dataNodeCount ? "broadcast" : "multi");
+
+        routeCounters.computeIfAbsent(logicTable + '|' + sqlType + '|' + route, key -> Counter
+                .builder("shardingsphere.sql.route")
+                .description("逻辑 SQL 的路由方式")
+                .tag("logic_table", logicTable)
+                .tag("sql_type", sqlType)
+                .tag("route", route)
+                .register(meterRegistry)).increment();
+        routeNodes.computeIfAbsent(logicTable + '|' + sqlType, key -> DistributionSummary
+                .builder("shardingsphere.sql.route.nodes")
+                .description("每条逻辑 SQL 访问的物理节点数")
+                .tag("logic_table", logicTable)
+                .tag("sql_type", sqlType)
+                .register(meterRegistry)).record(nodes);
+        return route;
+    }
+
+    /**
+     * 物理执行单元结束
+     */
+    void recordExecution(String dataSourceName, String sql, Map<String, Object> dataMap, long nanos, boolean success) {
+        SQLInfo info = getSQLInfo(sql);
+        String outcome = success ? "success" : "error";
+        timers.computeIfAbsent(dataSourceName + '|' + info.actualTable + '|' + info.sqlType + '|' + outcome,
+                key -> Timer.builder("shardingsphere.sql.execution")
+                        .description("物理执行单元耗时")
+                        .tag("logic_table", info.logicTable)
+                        .tag("data_source", dataSourceName)
+                        .tag("actual_table", info.actualTable)
+                        .tag("sql_type", info.sqlType)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        Object context = dataMap == null ? null : dataMap.get(ROUTE_CONTEXT_KEY);
+        if (context instanceof RouteContext) {
+            RouteContext routeContext = (RouteContext) context;
+            for (String each : info.actualTables) {
+                routeContext.dataNodes.add(dataSourceName + '.' + each);
+            }
+            if (!NONE.equals(info.logicTable)) {
+                routeContext.logicTable = info.logicTable;
+            }
+            routeContext.sqlType = info.sqlType;
+            routeContext.units.add(new SQLRouteTrace.Unit(dataSourceName, new ArrayList<>(info.actualTables),
+                    SQLRouteTracer.truncate(sql), toMillis(nanos), success));
+        }
+    }
+
+    private SQLInfo getSQLInfo(String sql) {
+        SQLInfo result = sqlInfos.get(sql);
+        if (result == null) {
+            result = parse(sql);
+            if (sqlInfos.size() < SQL_CACHE_SIZE) {
+                sqlInfos.put(sql, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 取首个关键字作为 SQL 类型，属于分片规则的实际表名作为实际表，逻辑表取第一个命中的
+     */
+    private SQLInfo parse(String sql) {
+        Map<String, String> tables = getLogicTables();
+        String sqlType = null;
+        String logicTable = null;
+        Set<String> actualTables = new LinkedHashSet<>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (!isIdentifierPart(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isIdentifierPart(sql.charAt(i))) {
+                i++;
+            }
+            String token = sql.substring(start, i).toLowerCase(Locale.ROOT);
+            if (sqlType == null) {
+                sqlType = token.toUpperCase(Locale.ROOT);
+                continue;
+            }
+            String matched = tables.get(token);
+            if (matched != null) {
+                actualTables.add(token);
+                if (logicTable == null) {
+                    logicTable = matched;
+                }
+            }
+        }
+        return new SQLInfo(sqlType == null ? NONE : sqlType, logicTable == null ? NONE : logicTable, actualTables);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private Map<String, String> getLogicTables() {
+        return getDataNodes().logicTables;
+    }
+
+    private Map<String, Integer> getDataNodeCounts() {
+        return getDataNodes().counts;
+    }
+
+    private DataNodes getDataNodes() {
+        DataNodes result = dataNodes;
+        long ruleVersion = orderShardRouter.getRuleVersion();
+        OrderSlotLayout layout = OrderSlotLayout.current();
+        if (result == null || result.ruleVersion != ruleVersion || result.layout != layout) {
+            result = loadDataNodes(ruleVersion, layout);
+        }
+        return result;
+    }
+
+    private synchronized DataNodes loadDataNodes(long ruleVersion, OrderSlotLayout layout) {
+        DataNodes current = dataNodes;
+        if (current != null && current.ruleVersion == ruleVersion && current.layout == layout) {
+            return current;
+        }
+        Map<String, String> tables = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, List<DataNode>> entry : orderShardRouter.getAllTableDataNodes().entrySet()) {
+            int count = 0;
+            for (DataNode each : entry.getValue()) {
+                tables.put(each.getTableName().toLowerCase(Locale.ROOT), entry.getKey());
+                if (isActive(entry.getKey(), each, layout)) {
+                    count++;
+                }
+            }
+            counts.put(entry.getKey(), count);
+        }
+        DataNodes result = new DataNodes(ruleVersion, layout, tables, counts);
+        dataNodes = result;
+        // 实际表与逻辑表的对应关系可能变化，已解析的 SQL 重新解析
+        sqlInfos.clear();
+        log.info("分片指标已加载物理节点: ruleVersion={}, layoutVersion={}, dataNodes={}", ruleVersion,
+                layout == null ? null : layout.getVersion(), counts);
+        return result;
+    }
+
+    /**
+     * 物理节点在当前布局下是否会被路由到（扩容预留、尚未切换的节点不计入广播判断）
+     */
+    private static boolean isActive(String logicTable, DataNode node, OrderSlotLayout layout) {
+        if (layout == null) {
+            return true;
+        }
+        return OrderShardRouter.LOGIC_TABLE.equals(logicTable) ? layout.owns(node)
+                : layout.getDatabases().contains(node.getDataSourceName());
+    }
+
+    private static final class DataNodes {
+
+        private final long ruleVersion;
+
+        private final OrderSlotLayout layout;
+
+        private final Map<String, String> logicTables;
+
+        private final Map<String, Integer> counts;
+
+        private DataNodes(long ruleVersion, OrderSlotLayout layout, Map<String, String> logicTables,
+                          Map<String, Integer> counts) {
+            this.ruleVersion = ruleVersion;
+            this.layout = layout;
+            this.logicTables = logicTables;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * 一条逻辑 SQL 的路由统计
+     */
+    public static final class RouteContext {
+
+        private final String logicSql;
+
+        private final boolean sampled;
+
+        private final long startNanos = System.nanoTime();
+
+        private final Set<String> dataNodes = ConcurrentHashMap.newKeySet();
+
+        private final Queue<SQLRouteTrace.Unit> units = new ConcurrentLinkedQueue<>();
+
+        private volatile String logicTable;
+
+        private volatile String sqlType;
+
+        private RouteContext(String logicSql, boolean sampled) {
+            this.logicSql = logicSql;
+            this.sampled = sampled;
+        }
+    }
+
+    private static final class SQLInfo {
+
+        private final String sqlType;
+
+        private final String logicTable;
+
+        private final Set<String> actualTables;
+
+        private final String actualTable;
+
+        private SQLInfo(String sqlType, String logicTable, Set<String> actualTables) {
+            this.sqlType = sqlType;
+            this.logicTable = logicTable;
+            this.actualTables = actualTables;
+            this.actualTable = actualTables.isEmpty() ? NONE : String.join(",", actualTables);
+        }
+    }
+}
@@ -46,6 +46,12 @@ CREATE TABLE IF NOT EXISTS t_order_0
     KEY idx_user_id
 (
     user_id
+),
+    KEY idx_user_create_time
+(
+    user_id,
+    create_time,
+    order_id
 ),
     KEY idx_create_time
 (
@@ -95,6 +101,12 @@ CREATE TABLE IF NOT EXISTS t_order_1
     KEY idx_user_id
 (
     user_id
+),
+    KEY idx_user_create_time
+(
+    user_id,
+    create_time,
+    order_id
 ),
     KEY idx_create_time
 (
@@ -106,6 +118,85 @@ CREATE TABLE IF NOT EXISTS t_order_1
 )
     ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单表1';
 
+-- 创建用户订单汇总表（按 user_id 分库，与用户订单同库）
+-- 已有的汇总表升级（每个库执行一次）：
+-- ALTER TABLE t_user_order_summary ADD COLUMN archived_completed_count BIGINT NOT NULL DEFAULT 0,
+--     ADD COLUMN archived_cancelled_count BIGINT NOT NULL DEFAULT 0, ADD COLUMN archived_amount DECIMAL(15, 2) NOT NULL DEFAULT 0.00;
+CREATE TABLE IF NOT EXISTS t_user_order_summary
+(
+    user_id         BIGINT         NOT NULL COMMENT '用户ID',
+    total_amount    DECIMAL(15, 2) NOT NULL DEFAULT 0.00 COMMENT '订单总金额',
+    order_count     BIGINT         NOT NULL DEFAULT 0 COMMENT '订单总数',
+    pending_count   BIGINT         NOT NULL DEFAULT 0 COMMENT '待支付订单数',
+    paid_count      BIGINT         NOT NULL DEFAULT 0 COMMENT '已支付订单数',
+    completed_count BIGINT         NOT NULL DEFAULT 0 COMMENT '已完成订单数',
+    cancelled_count BIGINT         NOT NULL DEFAULT 0 COMMENT '已取消订单数',
+    archived_completed_count BIGINT NOT NULL DEFAULT 0 COMMENT '已归档的已完成订单数（计入 completed_count）',
+    archived_cancelled_count BIGINT NOT NULL DEFAULT 0 COMMENT '已归档的已取消订单数（计入 cancelled_count）',
+    archived_amount DECIMAL(15, 2) NOT NULL DEFAULT 0.00 COMMENT '已归档订单的总金额（计入 total_amount）',
+    last_order_time DATETIME COMMENT '最近下单时间',
+    update_time     DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='用户订单汇总表';
+
+-- 创建订单事件 outbox 表（按 user_id 分库，与用户订单同库，在订单写入的本地事务中追加）
+CREATE TABLE IF NOT EXISTS t_order_outbox
+(
+    id          BIGINT      NOT NULL AUTO_INCREMENT COMMENT '事件序号（本库内递增）',
+    event_type  VARCHAR(16) NOT NULL COMMENT '事件类型：CREATED / PAID / COMPLETED / CANCELLED',
+    order_id    BIGINT      NOT NULL COMMENT '订单ID',
+    user_id     BIGINT      NOT NULL COMMENT '用户ID',
+    create_time DATETIME(3) NOT NULL COMMENT '事件时间',
+    PRIMARY KEY (id),
+    KEY idx_create_time (create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单事件outbox表';
+
+-- 创建订单事件投递位置表（每库一张，记录各消费者在本库 outbox 中已投递到的序号）
+CREATE TABLE IF NOT EXISTS t_order_outbox_position
+(
+    consumer    VARCHAR(64) NOT NULL COMMENT '消费者名称',
+    position    BIGINT      NOT NULL DEFAULT 0 COMMENT '已投递的最大事件序号',
+    update_time DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (consumer)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单事件投递位置表';
+
+-- 创建订单事件序号空洞表（每库一张，记录各消费者投递时跳过的序号，迟提交的事件在 gap-retention-ms 内补投）
+CREATE TABLE IF NOT EXISTS t_order_outbox_gap
+(
+    consumer    VARCHAR(64) NOT NULL COMMENT '消费者名称',
+    id          BIGINT      NOT NULL COMMENT '跳过的事件序号',
+    create_time DATETIME(3) NOT NULL COMMENT '跳过时间',
+    PRIMARY KEY (consumer, id),
+    KEY idx_create_time (create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单事件序号空洞表';
+
+-- 创建加积分记录表（每库一张，与订单事件同库，按订单ID去重调用 point-service，见 PointAwardConsumer）
+CREATE TABLE IF NOT EXISTS t_order_point_award
+(
+    order_id    BIGINT   NOT NULL COMMENT '订单ID',
+    user_id     BIGINT   NOT NULL COMMENT '用户ID',
+    status      TINYINT  NOT NULL DEFAULT 0 COMMENT '0-已占用（调用中或结果未知） 1-已加积分',
+    create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (order_id),
+    KEY idx_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='加积分记录表';
+
+-- 创建分片迁移状态表（只在元数据库 db_order_0 中，保存当前分片槽位布局和扩容进度）
+CREATE TABLE IF NOT EXISTS t_order_resharding
+(
+    id                    INT          NOT NULL COMMENT '固定为1',
+    phase                 VARCHAR(16)  NOT NULL COMMENT '阶段：IDLE、MIGRATING、CUTOVER、CLEANING',
+    version               BIGINT       NOT NULL COMMENT '当前布局版本',
+    database_slots        VARCHAR(512) NOT NULL COMMENT '当前布局16个分库槽位对应的库，逗号分隔',
+    table_slots           VARCHAR(512) NOT NULL COMMENT '当前布局16个分表槽位对应的表，逗号分隔',
+    target_version        BIGINT COMMENT '目标布局版本',
+    target_database_slots VARCHAR(512) COMMENT '目标布局分库槽位',
+    target_table_slots    VARCHAR(512) COMMENT '目标布局分表槽位',
+    update_time           DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='分片迁移状态表';
+
 -- 创建配置表（广播表，两个库都有相同数据）
 CREATE TABLE IF NOT EXISTS t_config
 (
@@ -183,6 +274,12 @@ CREATE TABLE IF NOT EXISTS t_order_0
     KEY idx_user_id
 (
     user_id
+),
+    KEY idx_user_create_time
+(
+    user_id,
+    create_time,
+    order_id
 ),
     KEY idx_create_time
 (
@@ -231,6 +328,12 @@ CREATE TABLE IF NOT EXISTS t_order_1
     KEY idx_user_id
 (
     user_id
+),
+    KEY idx_user_create_time
+(
+    user_id,
+    create_time,
+    order_id
 ),
     KEY idx_create_time
 (
@@ -242,6 +345,67 @@ CREATE TABLE IF NOT EXISTS t_order_1
 )
     ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单表1';
 
+-- 创建用户订单汇总表（按 user_id 分库，与用户订单同库）
+CREATE TABLE IF NOT EXISTS t_user_order_summary
+(
+    user_id         BIGINT         NOT NULL COMMENT '用户ID',
+    total_amount    DECIMAL(15, 2) NOT NULL DEFAULT 0.00 COMMENT '订单总金额',
+    order_count     BIGINT         NOT NULL DEFAULT 0 COMMENT '订单总数',
+    pending_count   BIGINT         NOT NULL DEFAULT 0 COMMENT '待支付订单数',
+    paid_count      BIGINT         NOT NULL DEFAULT 0 COMMENT '已支付订单数',
+    completed_count BIGINT         NOT NULL DEFAULT 0 COMMENT '已完成订单数',
+    cancelled_count BIGINT         NOT NULL DEFAULT 0 COMMENT '已取消订单数',
+    archived_completed_count BIGINT NOT NULL DEFAULT 0 COMMENT '已归档的已完成订单数（计入 completed_count）',
+    archived_cancelled_count BIGINT NOT NULL DEFAULT 0 COMMENT '已归档的已取消订单数（计入 cancelled_count）',
+    archived_amount DECIMAL(15, 2) NOT NULL DEFAULT 0.00 COMMENT '已归档订单的总金额（计入 total_amount）',
+    last_order_time DATETIME COMMENT '最近下单时间',
+    update_time     DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='用户订单汇总表';
+
+-- 创建订单事件 outbox 表（按 user_id 分库，与用户订单同库，在订单写入的本地事务中追加）
+CREATE TABLE IF NOT EXISTS t_order_outbox
+(
+    id          BIGINT      NOT NULL AUTO_INCREMENT COMMENT '事件序号（本库内递增）',
+    event_type  VARCHAR(16) NOT NULL COMMENT '事件类型：CREATED / PAID / COMPLETED / CANCELLED',
+    order_id    BIGINT      NOT NULL COMMENT '订单ID',
+    user_id     BIGINT      NOT NULL COMMENT '用户ID',
+    create_time DATETIME(3) NOT NULL COMMENT '事件时间',
+    PRIMARY KEY (id),
+    KEY idx_create_time (create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单事件outbox表';
+
+-- 创建订单事件投递位置表（每库一张，记录各消费者在本库 outbox 中已投递到的序号）
+CREATE TABLE IF NOT EXISTS t_order_outbox_position
+(
+    consumer    VARCHAR(64) NOT NULL COMMENT '消费者名称',
+    position    BIGINT      NOT NULL DEFAULT 0 COMMENT '已投递的最大事件序号',
+    update_time DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (consumer)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单事件投递位置表';
+
+-- 创建订单事件序号空洞表（每库一张，记录各消费者投递时跳过的序号，迟提交的事件在 gap-retention-ms 内补投）
+CREATE TABLE IF NOT EXISTS t_order_outbox_gap
+(
+    consumer    VARCHAR(64) NOT NULL COMMENT '消费者名称',
+    id          BIGINT      NOT NULL COMMENT '跳过的事件序号',
+    create_time DATETIME(3) NOT NULL COMMENT '跳过时间',
+    PRIMARY KEY (consumer, id),
+    KEY idx_create_time (create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='订单事件序号空洞表';
+
+-- 创建加积分记录表（每库一张，与订单事件同库，按订单ID去重调用 point-service，见 PointAwardConsumer）
+CREATE TABLE IF NOT EXISTS t_order_point_award
+(
+    order_id    BIGINT   NOT NULL COMMENT '订单ID',
+    user_id     BIGINT   NOT NULL COMMENT '用户ID',
+    status      TINYINT  NOT NULL DEFAULT 0 COMMENT '0-已占用（调用中或结果未知） 1-已加积分',
+    create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (order_id),
+    KEY idx_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE =utf8mb4_unicode_ci COMMENT='加积分记录表';
+
 CREATE TABLE IF NOT EXISTS t_config
 (
     config_id
@@ -0,0 +1,240 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderEvent;
+import com.ruchang.power.repository.OrderOutboxRepository;
+import com.ruchang.power.sharding.OrderShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 订单事件中继（H2）：序号空洞超时后跳过、迟提交的事件补投，消费者在事务之外处理，
+ * 投递位置按读取时的位置比较推进，其他实例已推进时不回退
+ */
+@SpringBootTest(properties = {
+        "order.outbox.relay.enabled=true",
+        "order.outbox.relay.poll-interval-ms=50",
+        "order.outbox.relay.retry-backoff-ms=200",
+        "order.outbox.relay.gap-timeout-ms=" + OrderOutboxRelayTest.GAP_TIMEOUT_MILLIS})
+@ActiveProfiles("h2")
+class OrderOutboxRelayTest {
+
+    static final long GAP_TIMEOUT_MILLIS = 300;
+
+    private static final String DATA_SOURCE = "ds0";
+
+    private static final String CONSUMER = "relay-test";
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private static final String INSERT_EVENT = "INSERT INTO t_order_outbox (event_type, order_id, user_id, create_time) "
+            + "VALUES ('CREATED', 1, 0, ?)";
+
+    @Autowired
+    private RecordingConsumer consumer;
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void awaitCaughtUp() throws InterruptedException {
+        jdbcTemplate = new JdbcTemplate(orderShardRouter.getActualDataSource(DATA_SOURCE));
+        long maxId = orderOutboxRepository.getMaxId(DATA_SOURCE);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (orderOutboxRepository.getPosition(DATA_SOURCE, CONSUMER) < maxId) {
+            assertThat(System.currentTimeMillis()).as("中继追赶超时").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    @Test
+    void lateCommitIsDeliveredAfterGap() throws Exception {
+        long late;
+        try (Connection connection = orderShardRouter.getActualDataSource(DATA_SOURCE).getConnection()) {
+            // 先分配序号、迟提交的事务
+            connection.setAutoCommit(false);
+            late = insert(connection);
+            long startedAt = System.currentTimeMillis();
+            long next = insert();
+            assertThat(next).isGreaterThan(late);
+
+            long deliveredAt = awaitDelivered(next);
+            assertThat(deliveredAt - startedAt).as("空洞超时前不跳过").isGreaterThanOrEqualTo(GAP_TIMEOUT_MILLIS);
+            assertThat(consumer.count(late)).isZero();
+            assertThat(countGap(late)).isEqualTo(1);
+
+            connection.commit();
+            awaitDelivered(late);
+            assertThat(consumer.ids()).containsSubsequence(next, late);
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (countGap(late) > 0) {
+            assertThat(System.currentTimeMillis()).as("补投后删除空洞超时").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertThat(consumer.inTransaction).as("消费者在事务之外处理").isFalse();
+    }
+
+    @Test
+    void stalePositionDoesNotRegress() throws Exception {
+        long current = orderOutboxRepository.getPosition(DATA_SOURCE, CONSUMER);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        consumer.block(current, entered, release);
+        long first;
+        long second;
+        try {
+            first = insert();
+            assertThat(entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+
+            // 本实例处理这批时，其他实例投递了 first 和 second 并推进了位置
+            second = insert();
+            assertThat(orderOutboxRepository.advancePosition(DATA_SOURCE, CONSUMER, current, second)).isTrue();
+            assertThat(orderOutboxRepository.advancePosition(DATA_SOURCE, CONSUMER, current, first)).isFalse();
+        } finally {
+            release.countDown();
+        }
+        long third = insert();
+        awaitDelivered(third);
+
+        assertThat(consumer.count(first)).isEqualTo(1);
+        assertThat(consumer.count(second)).as("其他实例已投递的事件不再投递").isZero();
+        assertThat(orderOutboxRepository.getPosition(DATA_SOURCE, CONSUMER)).isEqualTo(third);
+    }
+
+    private long insert() {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_EVENT, Statement.RETURN_GENERATED_KEYS);
+            statement.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private long insert(Connection connection) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_EVENT,
+                Statement.RETURN_GENERATED_KEYS)) {
+            statement.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                assertThat(keys.next()).isTrue();
+                return keys.getLong(1);
+            }
+        }
+    }
+
+    private int countGap(long id) {
+        Integer result = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM t_order_outbox_gap WHERE consumer = ? AND id = ?", Integer.class, CONSUMER, id);
+        return result == null ? 0 : result;
+    }
+
+    private long awaitDelivered(long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (consumer.count(id) == 0) {
+            assertThat(System.currentTimeMillis()).as("投递超时: id=" + id).isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return System.currentTimeMillis();
+    }
+
+    @TestConfiguration
+    static class RecordingConsumerConfiguration {
+
+        @Bean
+        RecordingConsumer recordingConsumer() {
+            return new RecordingConsumer();
+        }
+    }
+
+    /**
+     * 记录 ds0 上投递的事件序号，可以在处理某个位置之后的第一批时阻塞
+     */
+    static class RecordingConsumer implements OrderEventConsumer {
+
+        private final List<Long> delivered = new CopyOnWriteArrayList<>();
+
+        private volatile boolean inTransaction;
+
+        private volatile long blockAfter = Long.MAX_VALUE;
+
+        private volatile CountDownLatch entered;
+
+        private volatile CountDownLatch release;
+
+        @Override
+        public String getName() {
+            return CONSUMER;
+        }
+
+        @Override
+        public void accept(List<OrderEvent> events) {
+            inTransaction |= TransactionSynchronizationManager.isActualTransactionActive();
+            List<Long> ids = new ArrayList<>(events.size());
+            long maxId = 0;
+            for (OrderEvent each : events) {
+                if (DATA_SOURCE.equals(each.getDataSourceName())) {
+                    ids.add(each.getId());
+                    maxId = Math.max(maxId, each.getId());
+                }
+            }
+            if (maxId > blockAfter) {
+                blockAfter = Long.MAX_VALUE;
+                entered.countDown();
+                try {
+                    release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            delivered.addAll(ids);
+        }
+
+        void block(long after, CountDownLatch entered, CountDownLatch release) {
+            this.entered = entered;
+            this.release = release;
+            blockAfter = after;
+        }
+
+        int count(long id) {
+            int result = 0;
+            for (Long each : delivered) {
+                if (each == id) {
+                    result++;
+                }
+            }
+            return result;
+        }
+
+        List<Long> ids() {
+            return delivered;
+        }
+    }
+}
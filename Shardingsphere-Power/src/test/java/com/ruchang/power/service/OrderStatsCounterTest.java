@@ -0,0 +1,136 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderStats;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.repository.OrderRepository;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.ReadWriteRouting;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 订单统计校准（H2）：持续写入时每轮都校准，修正其他实例造成的偏差且不会多修正
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class OrderStatsCounterTest {
+
+    private static final int WRITERS = 4;
+
+    private static final int PENDING_DRIFT = 10;
+
+    private static final int COMPLETED_DRIFT = 7;
+
+    @Autowired
+    private OrderStatsCounter orderStatsCounter;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Test
+    void reconcilesUnderConcurrentWrites() throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger writes = new AtomicInteger();
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            Random random = new Random(i);
+            Thread writer = new Thread(() -> {
+                while (!stopped.get()) {
+                    try {
+                        long userId = random.nextInt(32);
+                        Order order = orderService.createOrder(userId, "stats-" + userId, new BigDecimal("1.00"));
+                        if (random.nextBoolean()) {
+                            orderService.payOrder(order.getOrderId(), userId);
+                        }
+                        writes.incrementAndGet();
+                    } catch (Throwable e) {
+                        writerError.set(e);
+                        return;
+                    }
+                }
+            }, "stats-test-writer-" + i);
+            writer.start();
+            writers.add(writer);
+        }
+        try {
+            awaitWrites(writes, 50);
+            // 其他实例的写入：直接写库，本实例的计数器不知道
+            JdbcTemplate template = new JdbcTemplate(orderShardRouter.getActualDataSource("ds0"));
+            for (int i = 0; i < PENDING_DRIFT + COMPLETED_DRIFT; i++) {
+                template.update("INSERT INTO t_order_0 (order_id, order_no, user_id, product_name, amount, status) "
+                                + "VALUES (?, ?, 0, 'other-instance', 1.00, ?)", 9_000_000_000L + i, "DRIFT-" + i,
+                        i < PENDING_DRIFT ? 1 : 3);
+            }
+            long[] memory = counts(orderStatsCounter.snapshot());
+            long[] database = countFromDatabase();
+            assertThat(database[3] - memory[3]).isEqualTo(COMPLETED_DRIFT);
+
+            for (int round = 0; round < 5; round++) {
+                int writesBefore = writes.get();
+                long reconciledBefore = orderStatsCounter.snapshot().getReconciledAt();
+                TimeUnit.MILLISECONDS.sleep(5);
+                orderStatsCounter.reconcile();
+                assertThat(orderStatsCounter.snapshot().getReconciledAt()).isGreaterThan(reconciledBefore);
+                awaitWrites(writes, writesBefore + 10);
+            }
+        } finally {
+            stopped.set(true);
+            for (Thread each : writers) {
+                each.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        }
+        assertThat(writerError.get()).isNull();
+
+        // 写入期间的校准：写入不涉及的状态完全修正，其余状态只会少修正、不会多修正
+        long[] memory = counts(orderStatsCounter.snapshot());
+        long[] database = countFromDatabase();
+        assertThat(memory[3]).isEqualTo(database[3]);
+        assertThat(database[1] - memory[1]).isBetween(0L, (long) PENDING_DRIFT);
+        assertThat(memory[2]).isEqualTo(database[2]);
+
+        // 没有写入时一轮即可完全修正
+        orderStatsCounter.reconcile();
+        assertThat(counts(orderStatsCounter.snapshot())).isEqualTo(countFromDatabase());
+    }
+
+    private long[] countFromDatabase() {
+        long[] result = new long[5];
+        for (Object[] each : ReadWriteRouting.primary(orderRepository::countGroupByStatus)) {
+            result[((Number) each[0]).intValue()] = ((Number) each[1]).longValue();
+        }
+        return result;
+    }
+
+    private static long[] counts(OrderStats stats) {
+        return new long[]{0, stats.getPending(), stats.getPaid(), stats.getCompleted(), stats.getCancelled()};
+    }
+
+    private static void awaitWrites(AtomicInteger writes, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (writes.get() < expected) {
+            assertThat(System.currentTimeMillis()).as("并发写入超时").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
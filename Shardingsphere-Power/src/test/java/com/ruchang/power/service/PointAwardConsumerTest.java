@@ -0,0 +1,159 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderEvent;
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.repository.PointAwardRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 加积分（H2 + 本地模拟的 point-service）：同一订单重复投递只调用一次，确定失败时释放后重试，结果未知时不再调用
+ */
+@SpringBootTest(properties = {
+        "order.outbox.relay.enabled=false",
+        "order.outbox.points.enabled=true",
+        "order.outbox.points.timeout-ms=500"})
+@ActiveProfiles("h2")
+class PointAwardConsumerTest {
+
+    private static final HttpServer SERVER;
+
+    private static final ExecutorService SERVER_EXECUTOR = Executors.newCachedThreadPool();
+
+    /**
+     * Idempotency-Key -> 收到的请求数
+     */
+    private static final Map<String, AtomicInteger> CALLS = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger FAIL_NEXT = new AtomicInteger();
+
+    private static final AtomicInteger HANG_NEXT = new AtomicInteger();
+
+    static {
+        try {
+            SERVER = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SERVER.createContext("/point/add", exchange -> {
+            CALLS.computeIfAbsent(exchange.getRequestHeaders().getFirst("Idempotency-Key"),
+                    key -> new AtomicInteger()).incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (HANG_NEXT.getAndUpdate(value -> Math.max(0, value - 1)) > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int status = FAIL_NEXT.getAndUpdate(value -> Math.max(0, value - 1)) > 0 ? 500 : 200;
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        SERVER.setExecutor(SERVER_EXECUTOR);
+        SERVER.start();
+    }
+
+    @Autowired
+    private PointAwardConsumer pointAwardConsumer;
+
+    @Autowired
+    private PointAwardRepository pointAwardRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @DynamicPropertySource
+    static void pointServiceUrl(DynamicPropertyRegistry registry) {
+        registry.add("order.outbox.points.url",
+                () -> "http://localhost:" + SERVER.getAddress().getPort() + "/point/add");
+    }
+
+    @AfterAll
+    static void stopServer() {
+        SERVER.stop(0);
+        SERVER_EXECUTOR.shutdownNow();
+    }
+
+    @Test
+    void redeliveredEventAwardsOnce() {
+        OrderEvent event = paidEvent(2001);
+
+        pointAwardConsumer.accept(Arrays.asList(event, event));
+        pointAwardConsumer.accept(Collections.singletonList(event));
+
+        assertThat(calls(event)).isEqualTo(1);
+        assertThat(status(event)).isEqualTo(PointAwardRepository.STATUS_AWARDED);
+    }
+
+    @Test
+    void failedCallIsReleasedAndRetried() {
+        OrderEvent event = paidEvent(2002);
+        FAIL_NEXT.set(1);
+
+        assertThatThrownBy(() -> pointAwardConsumer.accept(Collections.singletonList(event)))
+                .isInstanceOf(HttpServerErrorException.class);
+        assertThat(status(event)).isNull();
+
+        pointAwardConsumer.accept(Collections.singletonList(event));
+        assertThat(calls(event)).isEqualTo(2);
+        assertThat(status(event)).isEqualTo(PointAwardRepository.STATUS_AWARDED);
+    }
+
+    @Test
+    void unknownOutcomeIsNotRetried() {
+        OrderEvent event = paidEvent(2003);
+        HANG_NEXT.set(1);
+
+        // 读超时：point-service 可能已经加上，保留占用
+        assertThatThrownBy(() -> pointAwardConsumer.accept(Collections.singletonList(event)))
+                .isInstanceOf(ResourceAccessException.class);
+        assertThat(status(event)).isEqualTo(PointAwardRepository.STATUS_CLAIMED);
+
+        pointAwardConsumer.accept(Collections.singletonList(event));
+        assertThat(calls(event)).isEqualTo(1);
+        assertThat(status(event)).isEqualTo(PointAwardRepository.STATUS_CLAIMED);
+    }
+
+    private OrderEvent paidEvent(long userId) {
+        Order order = orderService.createOrder(userId, "points", new BigDecimal("10.00"));
+        assertThat(orderService.payOrder(order.getOrderId())).isTrue();
+        return new OrderEvent("ds" + userId % 2, 1, OrderEvent.Type.PAID, order.getOrderId(), userId, new Date());
+    }
+
+    private int calls(OrderEvent event) {
+        AtomicInteger result = CALLS.get("point-award:" + event.getOrderId());
+        return result == null ? 0 : result.get();
+    }
+
+    private Integer status(OrderEvent event) {
+        return pointAwardRepository.getStatus(event.getDataSourceName(), event.getOrderId());
+    }
+}
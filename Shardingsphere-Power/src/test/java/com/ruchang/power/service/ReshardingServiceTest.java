@@ -0,0 +1,212 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.entity.Order;
+import com.ruchang.power.entity.UserOrderSummary;
+import com.ruchang.power.sharding.OrderShardRouter;
+import com.ruchang.power.sharding.OrderSlotLayout;
+import com.ruchang.power.sharding.ReshardingState;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 在线扩容端到端测试（H2）：2×2 扩容到 4×4，复制 -> 校验 -> 切换 -> 清理，复制和切换前持续写入（双写）
+ */
+@SpringBootTest
+@ActiveProfiles("resharding-test")
+class ReshardingServiceTest {
+
+    private static final List<String> DATABASES = Arrays.asList("ds0", "ds1", "ds2", "ds3");
+
+    private static final List<String> TABLES = Arrays.asList("t_order_0", "t_order_1", "t_order_2", "t_order_3");
+
+    private static final int USERS = 64;
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * 生效的布局是静态的，测试结束后恢复，不影响缓存的其他测试上下文
+     */
+    private static OrderSlotLayout previousLayout;
+
+    @Autowired
+    private ReshardingService reshardingService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 订单ID -> 期望状态
+     */
+    private final Map<Long, Integer> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * 订单ID -> 用户ID
+     */
+    private final Map<Long, Long> owners = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    static void saveLayout() {
+        previousLayout = OrderSlotLayout.current();
+    }
+
+    @AfterAll
+    static void restoreLayout() {
+        OrderSlotLayout.install(previousLayout);
+    }
+
+    @Test
+    void copyVerifyCutoverAndCleanupWithDualWrites() throws Exception {
+        Random random = new Random(13);
+        for (int i = 0; i < USERS * 3; i++) {
+            create(i % USERS);
+        }
+        for (Long each : new ArrayList<>(statuses.keySet())) {
+            if (random.nextInt(3) == 0) {
+                pay(each);
+            }
+        }
+        OrderSlotLayout source = OrderSlotLayout.current();
+
+        // 复制期间持续下单、支付，提交后双写到目标节点
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger writes = new AtomicInteger();
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            Random writeRandom = new Random(17);
+            List<Long> pending = new ArrayList<>();
+            while (!stopped.get()) {
+                try {
+                    if (pending.isEmpty() || writeRandom.nextBoolean()) {
+                        pending.add(create(writeRandom.nextInt(USERS)));
+                    } else {
+                        pay(pending.remove(pending.size() - 1));
+                    }
+                    writes.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    // 切换期间拒绝写入
+                } catch (Throwable e) {
+                    writerError.set(e);
+                    return;
+                }
+            }
+        }, "resharding-test-writer");
+        writer.start();
+
+        ReshardingState migrating = reshardingService.start(DATABASES, TABLES);
+        assertThat(migrating.getPhase()).isEqualTo(ReshardingState.Phase.MIGRATING);
+        awaitIdleTask();
+        reshardingService.verify();
+        awaitIdleTask();
+        // 复制、校验完成后继续写入一段时间，这部分只靠双写到达目标节点，由切换前的最终校验确认
+        int writesAfterVerify = writes.get();
+        awaitWrites(writes, writesAfterVerify + 50);
+
+        reshardingService.cutover();
+        awaitPhase(ReshardingState.Phase.IDLE);
+        stopped.set(true);
+        writer.join(TIMEOUT_MILLIS);
+        assertThat(writerError.get()).isNull();
+        assertThat(reshardingService.getStatus().get("lastError")).isNull();
+
+        OrderSlotLayout target = OrderSlotLayout.current();
+        assertThat(target.getVersion()).isEqualTo(source.getVersion() + 1);
+        assertThat(target.getDatabases()).containsExactlyInAnyOrderElementsOf(DATABASES);
+        assertThat(target.getTables()).containsExactlyInAnyOrderElementsOf(TABLES);
+
+        // 每个订单只在新布局对应的物理节点上有一行，状态与最后一次写入一致
+        Map<Long, String> located = new HashMap<>();
+        Map<Long, Integer> actualStatuses = new HashMap<>();
+        for (String database : DATABASES) {
+            JdbcTemplate template = new JdbcTemplate(orderShardRouter.getActualDataSource(database));
+            for (String table : TABLES) {
+                template.query("SELECT order_id, status FROM " + table, rs -> {
+                    long orderId = rs.getLong(1);
+                    String previous = located.put(orderId, database + "." + table);
+                    assertThat(previous).as("订单 %d 存在多份", orderId).isNull();
+                    actualStatuses.put(orderId, rs.getInt(2));
+                });
+            }
+        }
+        assertThat(actualStatuses).isEqualTo(statuses);
+        owners.forEach((orderId, userId) -> assertThat(located.get(orderId))
+                .isEqualTo(target.orderNodeOf(userId, orderId).format()));
+
+        // 切换后按新布局读写
+        for (Map.Entry<Long, Integer> entry : statuses.entrySet()) {
+            Order order = orderService.getOrderById(entry.getKey()).orElseThrow();
+            assertThat(order.getStatus()).isEqualTo(entry.getValue());
+        }
+        long orderId = create(5);
+        pay(orderId);
+        assertThat(orderService.getOrderById(orderId).orElseThrow().getStatus()).isEqualTo(2);
+
+        // 用户汇总随用户迁到新库
+        for (long userId = 0; userId < USERS; userId++) {
+            long expected = owners.values().stream().filter(Long.valueOf(userId)::equals).count();
+            UserOrderSummary summary = orderService.getUserSummary(userId).orElseThrow();
+            assertThat(summary.getOrderCount()).as("用户 %d 订单数", userId).isEqualTo(expected);
+        }
+    }
+
+    private long create(long userId) {
+        Order order = orderService.createOrder(userId, "resharding-" + userId, new BigDecimal("9.90"));
+        owners.put(order.getOrderId(), userId);
+        statuses.put(order.getOrderId(), 1);
+        return order.getOrderId();
+    }
+
+    private void pay(long orderId) {
+        if (orderService.payOrder(orderId, owners.get(orderId))) {
+            statuses.put(orderId, 2);
+        }
+    }
+
+    private void awaitWrites(AtomicInteger writes, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (writes.get() < expected) {
+            assertThat(System.currentTimeMillis()).as("并发写入超时").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private void awaitIdleTask() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (Boolean.TRUE.equals(reshardingService.getStatus().get("running"))) {
+            assertThat(System.currentTimeMillis()).as("扩容任务超时").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertThat(reshardingService.getStatus().get("lastError")).isNull();
+    }
+
+    private void awaitPhase(ReshardingState.Phase phase) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (reshardingService.getStatus().get("phase") != phase
+                || Boolean.TRUE.equals(reshardingService.getStatus().get("running"))) {
+            assertThat(System.currentTimeMillis()).as("扩容切换超时").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+}
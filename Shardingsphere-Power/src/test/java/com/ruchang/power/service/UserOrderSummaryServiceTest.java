@@ -0,0 +1,78 @@
+package com.ruchang.power.service;
+
+import com.ruchang.power.dto.OrderCreateRequest;
+import com.ruchang.power.sharding.OrderShardRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 用户订单汇总（H2）：下单时汇总行缺失按订单聚合建立，已有的按增量更新，单笔和批量下单一致
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class UserOrderSummaryServiceTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    @Test
+    void createOrderRebuildsMissingSummary() {
+        long userId = 1001;
+        orderService.createOrder(userId, "summary", new BigDecimal("1.50"));
+        assertSummary(userId, 1, "1.50");
+        orderService.createOrder(userId, "summary", new BigDecimal("2.00"));
+        assertSummary(userId, 2, "3.50");
+
+        // 汇总行缺失（尚未回填）：按订单聚合，不是只包含新订单的残缺汇总
+        deleteSummary(userId);
+        orderService.createOrder(userId, "summary", new BigDecimal("1.00"));
+        assertSummary(userId, 3, "4.50");
+    }
+
+    @Test
+    void createOrdersRebuildsOnlyMissingSummaries() {
+        long existing = 1002;
+        long missing = 1003;
+        orderService.createOrder(existing, "summary", new BigDecimal("1.00"));
+        orderService.createOrder(missing, "summary", new BigDecimal("1.00"));
+        deleteSummary(missing);
+
+        orderService.createOrders(Arrays.asList(
+                new OrderCreateRequest(existing, "bulk", new BigDecimal("2.00")),
+                new OrderCreateRequest(missing, "bulk", new BigDecimal("3.00")),
+                new OrderCreateRequest(missing, "bulk", new BigDecimal("4.00")),
+                new OrderCreateRequest(1004L, "bulk", new BigDecimal("5.00"))));
+
+        assertSummary(existing, 2, "3.00");
+        assertSummary(missing, 3, "8.00");
+        assertSummary(1004, 1, "5.00");
+    }
+
+    private void assertSummary(long userId, long orderCount, String totalAmount) {
+        Map<String, Object> row = template(userId).queryForMap(
+                "SELECT order_count, pending_count, total_amount FROM t_user_order_summary WHERE user_id = ?", userId);
+        assertThat(((Number) row.get("order_count")).longValue()).isEqualTo(orderCount);
+        assertThat(((Number) row.get("pending_count")).longValue()).isEqualTo(orderCount);
+        assertThat((BigDecimal) row.get("total_amount")).isEqualByComparingTo(totalAmount);
+    }
+
+    private void deleteSummary(long userId) {
+        assertThat(template(userId).update("DELETE FROM t_user_order_summary WHERE user_id = ?", userId)).isEqualTo(1);
+    }
+
+    private JdbcTemplate template(long userId) {
+        return new JdbcTemplate(orderShardRouter.getActualDataSource("ds" + userId % 2));
+    }
+}
@@ -0,0 +1,176 @@
+package com.ruchang.power.sharding;
+
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分库、分表基因算法：按 user_id、order_id、订单号路由到同一节点，取不到基因时广播
+ */
+class OrderGeneShardingAlgorithmTest {
+
+    private static final List<String> DATABASES = Arrays.asList("ds0", "ds1");
+
+    private static final List<String> TABLES = Arrays.asList("t_order_0", "t_order_1");
+
+    /**
+     * 旧 SNOWFLAKE 主键，最高位为 0
+     */
+    private static final long LEGACY_ORDER_ID = 1_234_567_890_123L;
+
+    /**
+     * 旧订单号，25 位不带基因
+     */
+    private static final String LEGACY_ORDER_NO = "ORD20250101120000ABCDEF12";
+
+    private final OrderKeyGenerator keyGenerator = new OrderKeyGenerator(3);
+
+    private final OrderNoGenerator orderNoGenerator = new OrderNoGenerator(3, 0);
+
+    private final OrderDatabaseShardingAlgorithm databaseAlgorithm = new OrderDatabaseShardingAlgorithm();
+
+    private final OrderTableShardingAlgorithm tableAlgorithm = new OrderTableShardingAlgorithm();
+
+    /**
+     * 生效的布局是静态的，其他测试的 Spring 上下文可能已经安装，测试结束后恢复
+     */
+    private OrderSlotLayout previousLayout;
+
+    @BeforeEach
+    void setUp() {
+        previousLayout = OrderSlotLayout.current();
+        OrderSlotLayout.install(null);
+        databaseAlgorithm.init(new Properties());
+        tableAlgorithm.init(new Properties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        OrderSlotLayout.install(previousLayout);
+    }
+
+    @Test
+    void orderIdCarriesUserGene() {
+        for (long userId = 0; userId < 40; userId++) {
+            long orderId = keyGenerator.nextOrderId(userId);
+            assertThat(OrderKeyGenerator.hasGene(orderId)).isTrue();
+            assertThat(OrderKeyGenerator.userGene(orderId)).isEqualTo((int) (userId & 0xF));
+            assertThat(OrderKeyGenerator.timestampOf(orderId))
+                    .isBetween(System.currentTimeMillis() - 1000, System.currentTimeMillis());
+        }
+        assertThat(OrderKeyGenerator.hasGene(LEGACY_ORDER_ID)).isFalse();
+        assertThat(OrderKeyGenerator.userGene(LEGACY_ORDER_ID)).isEqualTo(-1);
+        assertThat(OrderKeyGenerator.timestampOf(LEGACY_ORDER_ID)).isEqualTo(-1);
+    }
+
+    @Test
+    void userIdOrderIdAndOrderNoRouteToSameNode() {
+        for (long userId = 0; userId < 64; userId++) {
+            long orderId = keyGenerator.nextOrderId(userId);
+            String orderNo = orderNoGenerator.generate(userId, orderId);
+            String database = "ds" + userId % 2;
+            String table = "t_order_" + orderId % 2;
+
+            assertThat(database(columns("user_id", userId))).containsExactly(database);
+            assertThat(database(columns("order_id", orderId))).containsExactly(database);
+            assertThat(database(columns("order_no", orderNo))).containsExactly(database);
+            assertThat(table(columns("order_id", orderId))).containsExactly(table);
+            assertThat(table(columns("order_no", orderNo))).containsExactly(table);
+        }
+    }
+
+    @Test
+    void shardingKeyTakesPrecedenceOverGenes() {
+        long orderId = keyGenerator.nextOrderId(1);
+        Map<String, Collection<Comparable<?>>> columns = columns("user_id", 2L);
+        columns.put("order_id", Collections.singletonList(orderId));
+        assertThat(database(columns)).containsExactly("ds0");
+    }
+
+    @Test
+    void inListRoutesToEachGeneTarget() {
+        long even = keyGenerator.nextOrderId(2);
+        long odd = keyGenerator.nextOrderId(3);
+        assertThat(database(columns("order_id", even, odd))).containsExactlyInAnyOrder("ds0", "ds1");
+        assertThat(database(columns("order_id", even, keyGenerator.nextOrderId(4)))).containsExactly("ds0");
+    }
+
+    @Test
+    void broadcastsWithoutGene() {
+        assertThat(database(columns("order_id", LEGACY_ORDER_ID))).containsExactlyElementsOf(DATABASES);
+        assertThat(database(columns("order_no", LEGACY_ORDER_NO))).containsExactlyElementsOf(DATABASES);
+        assertThat(table(columns("order_no", LEGACY_ORDER_NO))).containsExactlyElementsOf(TABLES);
+        // 只要有一个取值没有基因就广播
+        assertThat(database(columns("order_id", keyGenerator.nextOrderId(1), LEGACY_ORDER_ID)))
+                .containsExactlyElementsOf(DATABASES);
+        assertThat(database(new LinkedHashMap<>())).containsExactlyElementsOf(DATABASES);
+    }
+
+    @Test
+    void broadcastsGenesWhenShardingCountDoesNotDivideSixteen() {
+        List<String> databases = Arrays.asList("ds0", "ds1", "ds2");
+        long orderId = keyGenerator.nextOrderId(5);
+        String orderNo = orderNoGenerator.generate(5, orderId);
+        assertThat(databaseAlgorithm.doSharding(databases, value(columns("order_id", orderId))))
+                .containsExactlyElementsOf(databases);
+        assertThat(databaseAlgorithm.doSharding(databases, value(columns("order_no", orderNo))))
+                .containsExactlyElementsOf(databases);
+        // 分片键本身仍然直接取模
+        assertThat(databaseAlgorithm.doSharding(databases, value(columns("user_id", 5L)))).containsExactly("ds2");
+    }
+
+    @Test
+    void routesBySlotLayout() {
+        List<String> databases = Arrays.asList("ds0", "ds1", "ds2", "ds3");
+        List<String> tables = Arrays.asList("t_order_0", "t_order_1", "t_order_2", "t_order_3");
+        OrderSlotLayout layout = OrderSlotLayout.modulo(1, DATABASES, TABLES).rebalance(databases, tables);
+        OrderSlotLayout.install(layout);
+        for (long userId = 0; userId < 64; userId++) {
+            long orderId = keyGenerator.nextOrderId(userId);
+            String orderNo = orderNoGenerator.generate(userId, orderId);
+            String database = layout.databaseOf(userId);
+
+            assertThat(databaseAlgorithm.doSharding(databases, value(columns("user_id", userId))))
+                    .containsExactly(database);
+            assertThat(databaseAlgorithm.doSharding(databases, value(columns("order_id", orderId))))
+                    .containsExactly(database);
+            assertThat(databaseAlgorithm.doSharding(databases, value(columns("order_no", orderNo))))
+                    .containsExactly(database);
+            assertThat(tableAlgorithm.doSharding(tables, value(columns("order_no", orderNo))))
+                    .containsExactly(layout.orderNodeOf(userId, orderId).getTableName());
+        }
+        // 广播只包含持有槽位的节点
+        List<String> available = Arrays.asList("ds0", "ds1", "ds2", "ds3", "ds4");
+        assertThat(databaseAlgorithm.doSharding(available, value(columns("order_id", LEGACY_ORDER_ID))))
+                .containsExactlyElementsOf(databases);
+    }
+
+    private Collection<String> database(Map<String, Collection<Comparable<?>>> columns) {
+        return databaseAlgorithm.doSharding(DATABASES, value(columns));
+    }
+
+    private Collection<String> table(Map<String, Collection<Comparable<?>>> columns) {
+        return tableAlgorithm.doSharding(TABLES, value(columns));
+    }
+
+    private static Map<String, Collection<Comparable<?>>> columns(String column, Comparable<?>... values) {
+        Map<String, Collection<Comparable<?>>> result = new LinkedHashMap<>();
+        result.put(column, Arrays.asList(values));
+        return result;
+    }
+
+    private static ComplexKeysShardingValue<Comparable<?>> value(Map<String, Collection<Comparable<?>>> columns) {
+        return new ComplexKeysShardingValue<>("t_order", columns, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,142 @@
+package com.ruchang.power.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 订单号生成器：格式、基因、同一秒内序号不重复、序列号用尽借用下一秒、时钟回拨、并发唯一
+ */
+class OrderNoGeneratorTest {
+
+    private static final int SEQUENCES_PER_SECOND = 1 << 20;
+
+    private static final int TIME_INDEX = OrderNoGene.PREFIX.length();
+
+    private static final int SEQUENCE_INDEX = TIME_INDEX + 14 + 2;
+
+    /**
+     * 2026-01-31 23:59:59.600（系统时区）
+     */
+    private static final long NOW = LocalDateTime.of(2026, 1, 31, 23, 59, 59, 600_000_000)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @Test
+    void formatsTimeWorkerAndGenes() {
+        String orderNo = new OrderNoGenerator(0xB7, 42).generate(0x1F, 0x2A, NOW);
+
+        assertThat(orderNo).hasSize(OrderNoGene.LENGTH).startsWith("ORD20260131235959B7")
+                .matches("ORD\\d{14}[0-9A-F]{10}");
+        assertThat(OrderNoGene.hasGene(orderNo)).isTrue();
+        assertThat(OrderNoGene.userGene(orderNo)).isEqualTo(0xF);
+        assertThat(OrderNoGene.orderGene(orderNo)).isEqualTo(0xA);
+        assertThat(OrderNoGene.timeOf(orderNo)).isEqualTo(NOW - 600);
+    }
+
+    @Test
+    void sequenceIsPermutationWithinSecondAndBorrowsNextSecond() {
+        OrderNoGenerator generator = new OrderNoGenerator(1, 7);
+        BitSet sequences = new BitSet(SEQUENCES_PER_SECOND);
+        for (int i = 0; i < SEQUENCES_PER_SECOND; i++) {
+            String orderNo = generator.generate(0, 0, NOW);
+            assertThat(time(orderNo)).isEqualTo("20260131235959");
+            sequences.set(sequence(orderNo));
+        }
+        // 扰动后的序号仍覆盖整个序号空间，同一秒内不重复
+        assertThat(sequences.cardinality()).isEqualTo(SEQUENCES_PER_SECOND);
+
+        // 本秒用尽后借用下一秒，时钟追上后在借用的秒内继续递增
+        Set<String> borrowed = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            String orderNo = generator.generate(0, 0, NOW);
+            assertThat(time(orderNo)).isEqualTo("20260201000000");
+            assertThat(borrowed.add(orderNo.substring(TIME_INDEX, SEQUENCE_INDEX + 5))).isTrue();
+        }
+        String caughtUp = generator.generate(0, 0, NOW + 1000);
+        assertThat(time(caughtUp)).isEqualTo("20260201000000");
+        assertThat(borrowed.add(caughtUp.substring(TIME_INDEX, SEQUENCE_INDEX + 5))).isTrue();
+    }
+
+    @Test
+    void keepsLogicalSecondOnClockRollback() {
+        OrderNoGenerator generator = new OrderNoGenerator(1, 0);
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(key(generator.generate(0, 0, NOW + 10_000)));
+        }
+        for (int i = 0; i < 100; i++) {
+            String orderNo = generator.generate(0, 0, NOW);
+            assertThat(time(orderNo)).isEqualTo("20260201000009");
+            assertThat(keys.add(key(orderNo))).isTrue();
+        }
+    }
+
+    @Test
+    void sequenceSaltIsStableAcrossRestartsAndDiffersByWorker() {
+        String first = new OrderNoGenerator(1, 7).generate(0, 0, NOW);
+        assertThat(sequence(new OrderNoGenerator(1, 7).generate(0, 0, NOW))).isEqualTo(sequence(first));
+        Set<Integer> starts = new HashSet<>();
+        for (int worker = 0; worker < 16; worker++) {
+            starts.add(sequence(new OrderNoGenerator(worker, 7).generate(0, 0, NOW)));
+        }
+        assertThat(starts).hasSizeGreaterThan(1);
+    }
+
+    @Test
+    void uniqueUnderConcurrentThreads() throws Exception {
+        OrderNoGenerator generator = new OrderNoGenerator(2, 0);
+        int threads = 8;
+        int perThread = 25_000;
+        Set<String> orderNos = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long userId = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String orderNo = generator.generate(userId, i);
+                        assertThat(orderNo).hasSize(OrderNoGene.LENGTH);
+                        assertThat(OrderNoGene.userGene(orderNo)).isEqualTo((int) userId);
+                        assertThat(OrderNoGene.orderGene(orderNo)).isEqualTo(i & 0xF);
+                        // 去掉随机位和基因后也不重复
+                        orderNos.add(key(orderNo));
+                    }
+                }));
+            }
+            for (Future<?> each : futures) {
+                each.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(orderNos).hasSize(threads * perThread);
+    }
+
+    private static String time(String orderNo) {
+        return orderNo.substring(TIME_INDEX, TIME_INDEX + 14);
+    }
+
+    private static int sequence(String orderNo) {
+        return Integer.parseInt(orderNo.substring(SEQUENCE_INDEX, SEQUENCE_INDEX + 5), 16);
+    }
+
+    /**
+     * 时间 + 节点号 + 序列号
+     */
+    private static String key(String orderNo) {
+        return orderNo.substring(TIME_INDEX, SEQUENCE_INDEX + 5);
+    }
+}
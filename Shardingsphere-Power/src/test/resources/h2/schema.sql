@@ -0,0 +1,143 @@
+-- H2 版本的订单表，结构与 schema.sql 中的 MySQL 表一致
+-- t_order_2、t_order_3 为扩容预留的槽位表，默认的 2×2 布局不会访问
+CREATE TABLE IF NOT EXISTS t_order_0
+(
+    order_id     BIGINT         NOT NULL,
+    order_no     VARCHAR(64)    NOT NULL,
+    user_id      BIGINT         NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    amount       DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    status       TINYINT        NOT NULL DEFAULT 1,
+    create_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    update_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (order_id),
+    CONSTRAINT uk_order_no_0 UNIQUE (order_no)
+);
+CREATE INDEX IF NOT EXISTS idx_user_id_0 ON t_order_0 (user_id);
+CREATE INDEX IF NOT EXISTS idx_user_create_time_0 ON t_order_0 (user_id, create_time, order_id);
+CREATE INDEX IF NOT EXISTS idx_create_time_0 ON t_order_0 (create_time);
+CREATE INDEX IF NOT EXISTS idx_status_0 ON t_order_0 (status);
+
+CREATE TABLE IF NOT EXISTS t_order_1
+(
+    order_id     BIGINT         NOT NULL,
+    order_no     VARCHAR(64)    NOT NULL,
+    user_id      BIGINT         NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    amount       DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    status       TINYINT        NOT NULL DEFAULT 1,
+    create_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    update_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (order_id),
+    CONSTRAINT uk_order_no_1 UNIQUE (order_no)
+);
+CREATE INDEX IF NOT EXISTS idx_user_id_1 ON t_order_1 (user_id);
+CREATE INDEX IF NOT EXISTS idx_user_create_time_1 ON t_order_1 (user_id, create_time, order_id);
+CREATE INDEX IF NOT EXISTS idx_create_time_1 ON t_order_1 (create_time);
+CREATE INDEX IF NOT EXISTS idx_status_1 ON t_order_1 (status);
+
+CREATE TABLE IF NOT EXISTS t_order_2
+(
+    order_id     BIGINT         NOT NULL,
+    order_no     VARCHAR(64)    NOT NULL,
+    user_id      BIGINT         NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    amount       DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    status       TINYINT        NOT NULL DEFAULT 1,
+    create_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    update_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (order_id),
+    CONSTRAINT uk_order_no_2 UNIQUE (order_no)
+);
+CREATE INDEX IF NOT EXISTS idx_user_id_2 ON t_order_2 (user_id);
+CREATE INDEX IF NOT EXISTS idx_user_create_time_2 ON t_order_2 (user_id, create_time, order_id);
+CREATE INDEX IF NOT EXISTS idx_create_time_2 ON t_order_2 (create_time);
+CREATE INDEX IF NOT EXISTS idx_status_2 ON t_order_2 (status);
+
+CREATE TABLE IF NOT EXISTS t_order_3
+(
+    order_id     BIGINT         NOT NULL,
+    order_no     VARCHAR(64)    NOT NULL,
+    user_id      BIGINT         NOT NULL,
+    product_name VARCHAR(255)   NOT NULL,
+    amount       DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    status       TINYINT        NOT NULL DEFAULT 1,
+    create_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    update_time  DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (order_id),
+    CONSTRAINT uk_order_no_3 UNIQUE (order_no)
+);
+CREATE INDEX IF NOT EXISTS idx_user_id_3 ON t_order_3 (user_id);
+CREATE INDEX IF NOT EXISTS idx_user_create_time_3 ON t_order_3 (user_id, create_time, order_id);
+CREATE INDEX IF NOT EXISTS idx_create_time_3 ON t_order_3 (create_time);
+CREATE INDEX IF NOT EXISTS idx_status_3 ON t_order_3 (status);
+
+CREATE TABLE IF NOT EXISTS t_user_order_summary
+(
+    user_id         BIGINT         NOT NULL,
+    total_amount    DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    order_count     BIGINT         NOT NULL DEFAULT 0,
+    pending_count   BIGINT         NOT NULL DEFAULT 0,
+    paid_count      BIGINT         NOT NULL DEFAULT 0,
+    completed_count BIGINT         NOT NULL DEFAULT 0,
+    cancelled_count BIGINT         NOT NULL DEFAULT 0,
+    archived_completed_count BIGINT NOT NULL DEFAULT 0,
+    archived_cancelled_count BIGINT NOT NULL DEFAULT 0,
+    archived_amount DECIMAL(15, 2) NOT NULL DEFAULT 0.00,
+    last_order_time DATETIME,
+    update_time     DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS t_order_outbox
+(
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    event_type  VARCHAR(16)  NOT NULL,
+    order_id    BIGINT       NOT NULL,
+    user_id     BIGINT       NOT NULL,
+    create_time DATETIME(3)  NOT NULL,
+    PRIMARY KEY (id)
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_create_time ON t_order_outbox (create_time);
+
+CREATE TABLE IF NOT EXISTS t_order_outbox_position
+(
+    consumer    VARCHAR(64)  NOT NULL,
+    position    BIGINT       NOT NULL DEFAULT 0,
+    update_time DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (consumer)
+);
+
+CREATE TABLE IF NOT EXISTS t_order_outbox_gap
+(
+    consumer    VARCHAR(64)  NOT NULL,
+    id          BIGINT       NOT NULL,
+    create_time DATETIME(3)  NOT NULL,
+    PRIMARY KEY (consumer, id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_gap_create_time ON t_order_outbox_gap (create_time);
+
+CREATE TABLE IF NOT EXISTS t_order_point_award
+(
+    order_id    BIGINT       NOT NULL,
+    user_id     BIGINT       NOT NULL,
+    status      TINYINT      NOT NULL DEFAULT 0,
+    create_time DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    update_time DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (order_id)
+);
+
+CREATE TABLE IF NOT EXISTS t_order_resharding
+(
+    id                    INT          NOT NULL,
+    phase                 VARCHAR(16)  NOT NULL,
+    version               BIGINT       NOT NULL,
+    database_slots        VARCHAR(512) NOT NULL,
+    table_slots           VARCHAR(512) NOT NULL,
+    target_version        BIGINT,
+    target_database_slots VARCHAR(512),
+    target_table_slots    VARCHAR(512),
+    update_time           DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);